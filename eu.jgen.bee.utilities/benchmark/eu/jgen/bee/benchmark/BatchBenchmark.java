@@ -0,0 +1,151 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+import eu.jgen.bee.extractor.batch.BatchRunner;
+import eu.jgen.bee.extractor.batch.ModelJob;
+import eu.jgen.bee.extractor.batch.StubExtractor;
+
+/*
+ * Runs the batch extraction over a folder of generated model directories with
+ * StubExtractor in place of the real extractors, once with one worker and
+ * once with several. Models must start with the largest first, no more
+ * extractions than workers may run at once, a crashed or hanging extraction
+ * must succeed when started again, and an extraction which always fails must
+ * be given up after the retries.
+ *
+ * Arguments: [workers (default 4)] [milliseconds per KB (default 2)]
+ */
+public class BatchBenchmark {
+
+	private static final int RETRIES = 2;
+	private static final long TIMEOUT = 5000;
+	/* Workers taking models from the queue at the same time may start them in any order */
+	private static final long START_TOLERANCE = 50;
+
+	private static final String[][] MODELS = { { "sales/orders.ief", "800" }, { "sales/billing.ief", "300" },
+			{ "sales/archive/old.ief", "150" }, { "hr/payroll.ief", "700" }, { "hr/people.ief", "250" },
+			{ "finance.ief", "600" }, { "core/shared.ief", "400" }, { "core/tools.ief", "100" },
+			{ "core/crash.ief", "200", "stub.crash-once" }, { "core/hang.ief", "120", "stub.hang-once" },
+			{ "core/broken.ief", "60", "stub.fail" } };
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int workers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		String millisPerKB = args.length > 1 ? args[1] : "2";
+		File root = File.createTempFile("beegen", ".batch");
+		root.delete();
+		try {
+			create(root);
+			new File(root, "documents").mkdirs();
+			long serial = run(root, 1, millisPerKB);
+			long parallel = run(root, workers, millisPerKB);
+			System.out.println(String.format("1 worker %d ms, %d workers %d ms, speed up %.2f", serial, workers,
+					parallel, (double) serial / parallel));
+		} finally {
+			delete(root);
+		}
+	}
+
+	private static void create(File root) throws IOException {
+		for (String[] model : MODELS) {
+			File directory = new File(root, model[0]);
+			directory.mkdirs();
+			FileOutputStream stream = new FileOutputStream(new File(directory, "model.dat"));
+			stream.write(new byte[Integer.parseInt(model[1]) * 1024]);
+			stream.close();
+			if (model.length > 2) {
+				new File(directory, model[2]).createNewFile();
+			}
+		}
+	}
+
+	private static long run(File root, int workers, String millisPerKB) throws IOException, InterruptedException {
+		for (String[] model : MODELS) {
+			delete(new File(new File(root, model[0]), "bee"));
+		}
+		List<ModelJob> jobs = ModelJob.discover(root);
+		List<String> command = StubExtractor.command();
+		File output = new File(root, "bee-batch");
+		BatchRunner runner = new BatchRunner(command, Arrays.asList("-millisPerKB=" + millisPerKB), output, workers,
+				RETRIES, TIMEOUT);
+		runner.run(jobs);
+		File summary = new File(output, "summary.json");
+		runner.writeSummary(summary, root.getPath(), StubExtractor.class.getName());
+		System.out.println(runner.report());
+
+		List<String> problems = new ArrayList<String>();
+		if (jobs.size() != MODELS.length) {
+			problems.add("found " + jobs.size() + " models");
+		}
+		if (runner.getMaxRunning() > workers) {
+			problems.add(runner.getMaxRunning() + " extractions were running at once");
+		}
+		List<ModelJob> done = runner.getJobs();
+		for (int i = 0; i < done.size(); i++) {
+			ModelJob job = done.get(i);
+			if (i > 0 && job.getSize() > done.get(i - 1).getSize()) {
+				problems.add("models are not ordered by size");
+			}
+			for (int j = i + 1; j < done.size(); j++) {
+				if (done.get(j).getStarted() + START_TOLERANCE < job.getStarted()) {
+					problems.add(done.get(j).getName() + " started before the larger " + job.getName());
+				}
+			}
+			String expected = job.getName().equals("core/broken.ief") ? "FAILED" : "OK";
+			int attempts = job.getName().equals("core/broken.ief") ? RETRIES + 1
+					: job.getName().equals("core/crash.ief") || job.getName().equals("core/hang.ief") ? 2 : 1;
+			if (!job.getStatus().equals(expected) || job.getAttempts() != attempts) {
+				problems.add(job.getName() + " is " + job.getStatus() + " after " + job.getAttempts() + " attempts");
+			}
+		}
+		InputStream stream = new FileInputStream(summary);
+		JsonObject json = Json.createReader(stream).readObject();
+		stream.close();
+		if (json.getInt("succeeded") != MODELS.length - 1 || json.getInt("failed") != 1
+				|| !json.getJsonArray("results").getJsonObject(0).containsKey("counts")) {
+			problems.add("summary does not match the extractions");
+		}
+		if (!problems.isEmpty()) {
+			System.out.println("Batch extraction with " + workers + " workers is not correct: " + problems);
+			System.exit(1);
+		}
+		System.out.println("Batch extraction with " + workers + " workers is correct.");
+		return runner.getElapsed();
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,533 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
+
+import eu.jgen.bee.extractor.BeeGenExtractor;
+import eu.jgen.bee.extractor.ExtractorOptions;
+import eu.jgen.bee.extractor.model.ModelProfile;
+import eu.jgen.bee.extractor.model.SyntheticModelSource;
+
+/*
+ * Runs the benchmarks of ModelBenchmarks on synthetic models of the given
+ * sizes in the manner of JMH single shot mode: every benchmark and model size
+ * runs in fresh JVMs, each doing some warm up iterations followed by measured
+ * ones, and the score is the mean time of the measured iterations with its
+ * 99.9% confidence interval. The results are written in the JSON format of
+ * JMH, so the tools reading JMH results can read them as well, and can be
+ * compared with the results of an earlier version to find regressions.
+ */
+public class BenchmarkHarness {
+
+	private static final String MODE = "ss";
+	private static final String UNIT = "ms/op";
+	private static final String PREFIX = ModelBenchmarks.class.getName() + ".";
+
+	/*
+	 * Quantiles of the Student's t-distribution for the 99.9% confidence
+	 * interval, by degrees of freedom from 1 to 30.
+	 */
+	private static final double[] T_999 = { 636.62, 31.60, 12.92, 8.61, 6.87, 5.96, 5.41, 5.04, 4.78, 4.59, 4.44,
+			4.32, 4.22, 4.14, 4.07, 4.01, 3.97, 3.92, 3.88, 3.85, 3.82, 3.79, 3.77, 3.75, 3.73, 3.71, 3.69, 3.67, 3.66,
+			3.65 };
+	private static final double T_999_LIMIT = 3.29;
+	private static final String[] OPTIONS = { "benchmarks", "objects", "profile", "seed", "warmup", "iterations",
+			"forks", "javaOptions", "baseline", "threshold" };
+
+	private Pattern include = Pattern.compile(".*");
+	private int[] sizes = { 1000, 100000 };
+	private String profile = ModelProfile.TYPICAL;
+	private long seed = 20200101L;
+	private int warmup = 5;
+	private int iterations = 10;
+	private int forks = 1;
+	private String javaOptions = "";
+	private String baseline;
+	private int threshold = 10;
+
+	public static void main(String[] args) {
+		BenchmarkHarness harness = new BenchmarkHarness();
+		int exitCode = 1;
+		try {
+			ExtractorOptions options = ExtractorOptions.parse(args);
+			harness.configure(options);
+			if (harness.forks == 0) {
+				harness.write(harness.runHere(), new File(options.getModelPath()));
+				exitCode = 0;
+			} else {
+				System.out.println("Bee Gen Benchmarks, Version " + BeeGenExtractor.VERSION);
+				exitCode = harness.start(new File(options.getModelPath()));
+			}
+		} catch (IllegalArgumentException e) {
+			harness.usage();
+			System.out.println(e.getMessage());
+		} catch (Exception e) {
+			System.out.println("Benchmarks have failed.");
+			e.printStackTrace();
+		}
+		System.exit(exitCode);
+	}
+
+	private void usage() {
+		System.out.println("USAGE:");
+		System.out.println(
+				"\tpathResults    -   JSON file the results are written to");
+		System.out.println(
+				"\t-benchmarks=x  -   Regular expression selecting the benchmarks by name (default all)");
+		System.out.println(
+				"\t-objects=n,n   -   Numbers of objects of the synthetic models (default 1000,100000)");
+		System.out.println(
+				"\t-profile=x     -   Distributions of the synthetic models, typical or uniform (default typical)");
+		System.out.println(
+				"\t-seed=n        -   Seed of the synthetic models (default 20200101)");
+		System.out.println(
+				"\t-warmup=n      -   Iterations before the measured ones (default 5)");
+		System.out.println(
+				"\t-iterations=n  -   Measured iterations in each JVM (default 10)");
+		System.out.println(
+				"\t-forks=n       -   JVMs started for each benchmark, 0 runs them in this JVM (default 1)");
+		System.out.println(
+				"\t-javaOptions=x -   Options of the forked JVMs, separated by commas");
+		System.out.println(
+				"\t-baseline=path -   Results of an earlier run the new results are compared with");
+		System.out.println(
+				"\t-threshold=n   -   Percent by which a score may grow before it is a regression (default 10)");
+		System.out.println("\tBenchmarks: " + names());
+	}
+
+	private void configure(ExtractorOptions options) {
+		options.check(OPTIONS);
+		include = Pattern.compile(options.getString("benchmarks", include.pattern()));
+		String objects = options.getString("objects", null);
+		if (objects != null) {
+			String[] values = objects.split(",");
+			sizes = new int[values.length];
+			for (int i = 0; i < values.length; i++) {
+				try {
+					sizes[i] = Integer.parseInt(values[i].trim());
+				} catch (NumberFormatException e) {
+					sizes[i] = 0;
+				}
+				if (sizes[i] < 1) {
+					throw new IllegalArgumentException(
+							"Option 'objects' expects numbers of at least 1, found '" + objects + "'.");
+				}
+			}
+		}
+		profile = ModelProfile.forName(options.getString("profile", profile)).getName();
+		seed = options.getInt("seed", (int) seed);
+		warmup = options.getInt("warmup", warmup, 0);
+		iterations = options.getInt("iterations", iterations, 1);
+		forks = options.getInt("forks", forks, 0);
+		javaOptions = options.getString("javaOptions", javaOptions);
+		baseline = options.getString("baseline", null);
+		threshold = options.getInt("threshold", threshold, 0);
+	}
+
+	/*
+	 * Returns the exit code, 1 when the benchmarks have failed or there are
+	 * regressions.
+	 */
+	private int start(File output) throws Exception {
+		List<Result> results = new ArrayList<Result>();
+		for (Microbenchmark benchmark : ModelBenchmarks.all()) {
+			if (!include.matcher(benchmark.getName()).find()) {
+				continue;
+			}
+			for (int objects : sizes) {
+				System.out.println("# Benchmark: " + PREFIX + benchmark.getName() + ", objects " + objects
+						+ ", profile " + profile);
+				Result result = null;
+				for (int fork = 1; fork <= forks; fork++) {
+					System.out.println("# Fork: " + fork + " of " + forks);
+					Result forked = fork(benchmark.getName(), objects);
+					if (forked == null) {
+						System.out.println("Benchmark " + benchmark.getName() + " has failed.");
+						return 1;
+					}
+					if (result == null) {
+						result = forked;
+					} else if (result.check != forked.check) {
+						System.out.println("Benchmark " + benchmark.getName() + " gives another result in fork " + fork
+								+ ".");
+						return 1;
+					} else {
+						result.rawData.addAll(forked.rawData);
+					}
+				}
+				System.out.println(result.describe());
+				results.add(result);
+			}
+		}
+		write(results, output);
+		System.out.println();
+		System.out.println(String.format("%-20s %10s %6s %12s %10s %14s", "Benchmark", "objects", "cnt", "score ms",
+				"error", "objects/s"));
+		for (Result result : results) {
+			System.out.println(String.format("%-20s %10d %6d %12.3f %10.3f %14.0f", result.name, result.objects,
+					result.values().length, result.getScore(), result.getError(), result.getThroughput()));
+		}
+		System.out.println("Results have been written to '" + output.getPath() + "'");
+		if (baseline == null) {
+			return 0;
+		}
+		return compare(results, read(new File(baseline))) == 0 ? 0 : 1;
+	}
+
+	/*
+	 * Runs one benchmark with one model size in a new JVM, which writes its
+	 * result to a temporary file. Returns null when the JVM fails.
+	 */
+	private Result fork(String name, int objects) throws IOException, InterruptedException {
+		File file = File.createTempFile("beegen-benchmark", ".json");
+		try {
+			List<String> command = new ArrayList<String>();
+			command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+			for (String option : javaOptions.split(",")) {
+				if (option.trim().length() > 0) {
+					command.add(option.trim());
+				}
+			}
+			command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), BenchmarkHarness.class.getName(),
+					file.getPath(), "-forks=0", "-benchmarks=^" + Pattern.quote(name) + "$", "-objects=" + objects,
+					"-profile=" + profile, "-seed=" + seed, "-warmup=" + warmup, "-iterations=" + iterations));
+			Process process = new ProcessBuilder(command).inheritIO().start();
+			if (process.waitFor() != 0) {
+				return null;
+			}
+			List<Result> results = read(file);
+			return results.size() == 1 ? results.get(0) : null;
+		} finally {
+			file.delete();
+		}
+	}
+
+	/*
+	 * Runs the selected benchmarks in this JVM.
+	 */
+	private List<Result> runHere() throws Exception {
+		List<Result> results = new ArrayList<Result>();
+		for (Microbenchmark benchmark : ModelBenchmarks.all()) {
+			if (!include.matcher(benchmark.getName()).find()) {
+				continue;
+			}
+			for (int objects : sizes) {
+				results.add(run(benchmark, objects));
+			}
+		}
+		return results;
+	}
+
+	private Result run(Microbenchmark benchmark, int objects) throws Exception {
+		File folder = Files.createTempDirectory("beegen-benchmark").toFile();
+		Result result = new Result(benchmark.getName(), objects, profile);
+		result.operations = benchmark.getObjects(objects);
+		double[] values = new double[iterations];
+		try {
+			benchmark.setUp(new SyntheticModelSource("BENCHMARK", objects, seed, ModelProfile.forName(profile)),
+					folder);
+			for (int i = 0; i < warmup + iterations; i++) {
+				System.gc();
+				long start = System.nanoTime();
+				long check = benchmark.run();
+				double elapsed = (System.nanoTime() - start) / 1000000.0;
+				benchmark.reset();
+				if (i == 0) {
+					result.check = check;
+				} else if (check != result.check) {
+					throw new IllegalStateException("Benchmark " + benchmark.getName() + " gives another result in "
+							+ "iteration " + (i + 1) + ".");
+				}
+				if (i < warmup) {
+					System.out.println(String.format("# Warmup Iteration %3d: %.3f %s", i + 1, elapsed, UNIT));
+				} else {
+					System.out.println(String.format("Iteration %3d: %.3f %s", i - warmup + 1, elapsed, UNIT));
+					values[i - warmup] = elapsed;
+				}
+			}
+			benchmark.tearDown();
+		} finally {
+			ModelBenchmarks.clear(folder);
+			folder.delete();
+		}
+		result.rawData.add(values);
+		return result;
+	}
+
+	/*
+	 * Prints the change of each score against the baseline. A score is a
+	 * regression when it has grown by more than the threshold and its whole
+	 * confidence interval lies above the score of the baseline. Returns the
+	 * number of regressions.
+	 */
+	private int compare(List<Result> results, List<Result> previous) {
+		Map<String, Result> baselines = new HashMap<String, Result>();
+		for (Result result : previous) {
+			baselines.put(result.getKey(), result);
+		}
+		System.out.println("Comparison with '" + baseline + "':");
+		System.out.println(String.format("%-20s %10s %22s %22s %8s", "Benchmark", "objects", "baseline ms", "score ms",
+				"change"));
+		int regressions = 0;
+		for (Result result : results) {
+			Result base = baselines.get(result.getKey());
+			if (base == null) {
+				System.out.println(String.format("%-20s %10d %22s %12.3f +- %7.3f %8s", result.name, result.objects,
+						"-", result.getScore(), result.getError(), "new"));
+				continue;
+			}
+			double change = (result.getScore() / base.getScore() - 1) * 100;
+			boolean regression = change > threshold && result.getScore() - result.getError() > base.getScore();
+			if (regression) {
+				regressions++;
+			}
+			System.out.println(String.format("%-20s %10d %12.3f +- %7.3f %12.3f +- %7.3f %+7.1f%%%s", result.name,
+					result.objects, base.getScore(), base.getError(), result.getScore(), result.getError(), change,
+					regression ? "  REGRESSION" : ""));
+		}
+		System.out.println(regressions == 0 ? "No regressions." : regressions + " regressions.");
+		return regressions;
+	}
+
+	private void write(List<Result> results, File file) throws IOException {
+		JsonGenerator generator = Json
+				.createGeneratorFactory(Collections.singletonMap(JsonGenerator.PRETTY_PRINTING, Boolean.TRUE))
+				.createGenerator(new BufferedOutputStream(new FileOutputStream(file)));
+		generator.writeStartArray();
+		for (Result result : results) {
+			double[] values = result.values();
+			double[] sorted = values.clone();
+			Arrays.sort(sorted);
+			generator.writeStartObject();
+			generator.write("benchmark", PREFIX + result.name);
+			generator.write("mode", MODE);
+			generator.write("threads", 1);
+			generator.write("forks", result.rawData.size());
+			generator.write("jdkVersion", System.getProperty("java.version"));
+			generator.write("vmName", System.getProperty("java.vm.name"));
+			generator.write("vmVersion", System.getProperty("java.vm.version"));
+			generator.write("beeVersion", BeeGenExtractor.VERSION);
+			generator.write("warmupIterations", warmup);
+			generator.write("warmupTime", "single-shot");
+			generator.write("measurementIterations", iterations);
+			generator.write("measurementTime", "single-shot");
+			generator.writeStartObject("params");
+			generator.write("objects", String.valueOf(result.objects));
+			generator.write("profile", result.profile);
+			generator.writeEnd();
+			generator.writeStartObject("primaryMetric");
+			generator.write("score", result.getScore());
+			write(generator, "scoreError", result.getError());
+			generator.writeStartArray("scoreConfidence");
+			write(generator, null, result.getScore() - result.getError());
+			write(generator, null, result.getScore() + result.getError());
+			generator.writeEnd();
+			generator.writeStartObject("scorePercentiles");
+			for (double percentile : new double[] { 0, 50, 90, 100 }) {
+				int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+				generator.write(String.valueOf(percentile), sorted[Math.max(0, index)]);
+			}
+			generator.writeEnd();
+			generator.write("scoreUnit", UNIT);
+			generator.writeStartArray("rawData");
+			for (double[] fork : result.rawData) {
+				generator.writeStartArray();
+				for (double value : fork) {
+					generator.write(value);
+				}
+				generator.writeEnd();
+			}
+			generator.writeEnd();
+			generator.writeEnd();
+			generator.writeStartObject("secondaryMetrics");
+			generator.writeStartObject("objects");
+			generator.write("score", result.getThroughput());
+			generator.write("scoreUnit", "objects/s");
+			generator.writeEnd();
+			generator.writeEnd();
+			generator.write("operations", result.operations);
+			generator.write("check", result.check);
+			generator.writeEnd();
+		}
+		generator.writeEnd();
+		generator.close();
+	}
+
+	/*
+	 * Writes NaN as a string, as JMH does, because JSON numbers cannot hold it.
+	 */
+	private static void write(JsonGenerator generator, String key, double value) {
+		if (Double.isNaN(value)) {
+			if (key == null) {
+				generator.write("NaN");
+			} else {
+				generator.write(key, "NaN");
+			}
+		} else if (key == null) {
+			generator.write(value);
+		} else {
+			generator.write(key, value);
+		}
+	}
+
+	private static List<Result> read(File file) throws IOException {
+		List<Result> results = new ArrayList<Result>();
+		InputStream stream = new FileInputStream(file);
+		try {
+			JsonReader reader = Json.createReader(stream);
+			JsonArray array = reader.readArray();
+			reader.close();
+			for (JsonValue value : array) {
+				JsonObject object = (JsonObject) value;
+				String name = object.getString("benchmark");
+				if (name.startsWith(PREFIX)) {
+					name = name.substring(PREFIX.length());
+				}
+				JsonObject params = object.getJsonObject("params");
+				Result result = new Result(name, Integer.parseInt(params.getString("objects")),
+						params.getString("profile"));
+				if (object.containsKey("operations")) {
+					result.operations = object.getInt("operations");
+				}
+				if (object.containsKey("check")) {
+					result.check = object.getJsonNumber("check").longValue();
+				}
+				for (JsonValue fork : object.getJsonObject("primaryMetric").getJsonArray("rawData")) {
+					JsonArray data = (JsonArray) fork;
+					double[] values = new double[data.size()];
+					for (int i = 0; i < values.length; i++) {
+						values[i] = data.getJsonNumber(i).doubleValue();
+					}
+					result.rawData.add(values);
+				}
+				results.add(result);
+			}
+		} finally {
+			stream.close();
+		}
+		return results;
+	}
+
+	private static String names() {
+		StringBuilder builder = new StringBuilder();
+		for (Microbenchmark benchmark : ModelBenchmarks.all()) {
+			if (builder.length() > 0) {
+				builder.append(", ");
+			}
+			builder.append(benchmark.getName());
+		}
+		return builder.toString();
+	}
+
+	/*
+	 * Times of the measured iterations of one benchmark with one model, for
+	 * each JVM it has run in.
+	 */
+	private static class Result {
+
+		private final String name;
+		private final int objects;
+		private final String profile;
+		private final List<double[]> rawData = new ArrayList<double[]>();
+		private int operations;
+		private long check;
+
+		Result(String name, int objects, String profile) {
+			this.name = name;
+			this.objects = objects;
+			this.profile = profile;
+			this.operations = objects;
+		}
+
+		String getKey() {
+			return name + "/" + objects + "/" + profile;
+		}
+
+		double[] values() {
+			int count = 0;
+			for (double[] fork : rawData) {
+				count += fork.length;
+			}
+			double[] values = new double[count];
+			int i = 0;
+			for (double[] fork : rawData) {
+				System.arraycopy(fork, 0, values, i, fork.length);
+				i += fork.length;
+			}
+			return values;
+		}
+
+		double getScore() {
+			double sum = 0;
+			double[] values = values();
+			for (double value : values) {
+				sum += value;
+			}
+			return sum / values.length;
+		}
+
+		/*
+		 * Half width of the 99.9% confidence interval of the score, NaN for a
+		 * single iteration.
+		 */
+		double getError() {
+			double[] values = values();
+			if (values.length < 2) {
+				return Double.NaN;
+			}
+			double mean = getScore();
+			double squares = 0;
+			for (double value : values) {
+				squares += (value - mean) * (value - mean);
+			}
+			double deviation = Math.sqrt(squares / (values.length - 1));
+			int freedom = values.length - 1;
+			double t = freedom <= T_999.length ? T_999[freedom - 1] : T_999_LIMIT;
+			return t * deviation / Math.sqrt(values.length);
+		}
+
+		double getThroughput() {
+			return operations * 1000 / getScore();
+		}
+
+		String describe() {
+			return String.format("Result \"%s\": %.3f +-(99.9%%) %.3f %s", PREFIX + name, getScore(), getError(), UNIT);
+		}
+
+	}
+
+}
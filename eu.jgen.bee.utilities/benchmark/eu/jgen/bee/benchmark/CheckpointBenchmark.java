@@ -0,0 +1,236 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import com.ca.gen.jmmi.ids.ObjId;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.model.SyntheticModelSource;
+import eu.jgen.bee.extractor.sqlite.BulkInserter;
+import eu.jgen.bee.extractor.sqlite.Checkpoint;
+import eu.jgen.bee.extractor.sqlite.CheckpointSink;
+import eu.jgen.bee.extractor.sqlite.ModelSchema;
+import eu.jgen.bee.extractor.sqlite.SQLiteModelSink;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+import eu.jgen.bee.extractor.traversal.ObjectRecord;
+
+/*
+ * Shows the cost of committing a synthetic model in parts of different sizes,
+ * compared with a single transaction without a journal. Commit time is the
+ * time of the commits alone, without writing the rows. Then a load is run in
+ * a separate JVM which halts in the middle, as after a native crash, and the
+ * load is resumed from its checkpoint. The resumed database must hold exactly
+ * the rows of a database loaded at once.
+ *
+ * Arguments: [objects (default 200000)]
+ */
+public class CheckpointBenchmark {
+
+	private static final long SEED = 20200101L;
+	private static final int[] COMMIT_EVERY = { 100, 1000, 10000, 50000 };
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && args[0].equals("crash")) {
+			crash(new File(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+			return;
+		}
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		System.out.println("Loading " + objects + " synthetic objects");
+		File reference = File.createTempFile("beegen", ".db");
+		File resumed = File.createTempFile("beegen", ".db");
+		try {
+			Connection connection = open(reference, false);
+			create(connection, null);
+			load(connection, Math.min(objects, 100000), null, 0, null);
+			connection.close();
+
+			long start = System.nanoTime();
+			connection = open(reference, false);
+			create(connection, null);
+			load(connection, objects, null, 0, null);
+			connection.close();
+			long single = System.nanoTime() - start;
+			System.out.println(String.format("%-22s %10s %10s %10s", "commit every", "total ms", "commits",
+					"commit ms"));
+			System.out.println(String.format("%-22s %10d %10d %10d", "single transaction", single / 1000000, 1, 0));
+			for (int commitEvery : COMMIT_EVERY) {
+				File file = File.createTempFile("beegen", ".db");
+				start = System.nanoTime();
+				connection = open(file, true);
+				Checkpoint checkpoint = new Checkpoint("BENCHMARK");
+				create(connection, checkpoint);
+				CheckpointSink sink = load(connection, objects, checkpoint, commitEvery, null);
+				connection.close();
+				System.out.println(String.format("%-22d %10d %10d %10d", commitEvery,
+						(System.nanoTime() - start) / 1000000, sink.getCommitCount(), sink.getElapsed() / 1000000));
+				delete(file);
+			}
+
+			int crashAfter = objects / 2 + 777;
+			Process process = new ProcessBuilder(System.getProperty("java.home") + File.separator + "bin"
+					+ File.separator + "java", "-cp", System.getProperty("java.class.path"),
+					CheckpointBenchmark.class.getName(), "crash", resumed.getPath(), String.valueOf(objects), "1000",
+					String.valueOf(crashAfter)).inheritIO().start();
+			System.out.println("Load halted after " + crashAfter + " objects with exit code " + process.waitFor());
+			connection = open(resumed, true);
+			Checkpoint checkpoint = Checkpoint.load(connection);
+			System.out.println("Checkpoint in the phase '" + checkpoint.getPhase() + "' after object "
+					+ checkpoint.getLastObjid() + ", " + checkpoint.getObjectCount() + " objects committed");
+			CheckpointSink sink = load(connection, objects, checkpoint, 1000, null);
+			connection.close();
+			System.out.println("Resumed load committed " + sink.getCommitCount() + " times, "
+					+ checkpoint.getObjectCount() + " objects in total");
+
+			String expected = checksum(reference);
+			String actual = checksum(resumed);
+			System.out.println("\treference " + expected + "\n\tresumed   " + actual);
+			if (!expected.equals(actual)) {
+				System.out.println("Resumed database differs from the one loaded at once.");
+				System.exit(1);
+			}
+			System.out.println("Resumed database holds the same rows as the one loaded at once.");
+		} finally {
+			delete(reference);
+			delete(resumed);
+		}
+	}
+
+	/*
+	 * Load halting the JVM when the given number of objects has been passed to
+	 * the sinks.
+	 */
+	private static void crash(File file, int objects, int commitEvery, final int crashAfter)
+			throws SQLException, ExtractionException {
+		Connection connection = open(file, true);
+		Checkpoint checkpoint = new Checkpoint("BENCHMARK");
+		create(connection, checkpoint);
+		load(connection, objects, checkpoint, commitEvery, new ModelSink() {
+
+			private int count;
+
+			public void begin(ModelSource source) {
+			}
+
+			public void object(ObjectRecord record) {
+				if (++count == crashAfter) {
+					Runtime.getRuntime().halt(3);
+				}
+			}
+
+			public void end() {
+			}
+
+		});
+	}
+
+	private static Connection open(File file, boolean wal) throws SQLException {
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+		Statement stmt = connection.createStatement();
+		if (wal) {
+			stmt.execute("PRAGMA journal_mode = WAL;");
+			stmt.execute("PRAGMA synchronous = NORMAL;");
+		} else {
+			stmt.execute("PRAGMA journal_mode = OFF;");
+		}
+		stmt.close();
+		return connection;
+	}
+
+	private static void create(Connection connection, Checkpoint checkpoint) throws SQLException {
+		Statement stmt = connection.createStatement();
+		ModelSchema.dropTables(stmt);
+		ModelSchema.createTables(stmt);
+		if (checkpoint != null) {
+			ModelSchema.createCheckpointTable(stmt);
+			checkpoint.save(connection);
+		}
+		stmt.close();
+	}
+
+	private static CheckpointSink load(Connection connection, int objects, Checkpoint checkpoint, int commitEvery,
+			ModelSink next) throws SQLException, ExtractionException {
+		connection.setAutoCommit(false);
+		ModelTraversal traversal = new ModelTraversal(new SyntheticModelSource("BENCHMARK", objects, SEED));
+		BulkInserter statementObj = new BulkInserter(connection, "GenObjects",
+				new String[] { "id", "objType", "objMnemonic", "name" }, 1000, 1);
+		BulkInserter statementPrp = new BulkInserter(connection, "GenProperties",
+				new String[] { "objid", "prpType", "mnemonic", "format", "value" }, 1000, 1);
+		BulkInserter statementAsc = new BulkInserter(connection, "GenAssociations", new String[] { "fromObjid",
+				"ascType", "toObjid", "inverseAscType", "ascMnemonic", "card", "direction", "seqno" }, 1000, 1);
+		SQLiteModelSink sink = new SQLiteModelSink(statementObj, statementPrp, statementAsc);
+		CheckpointSink checkpointSink = null;
+		if (checkpoint == null) {
+			traversal.addSink(sink);
+		} else {
+			if (checkpoint.getLastObjid() != -1) {
+				traversal.setResumeAfter(ObjId.getInstance(checkpoint.getLastObjid()));
+			}
+			checkpointSink = new CheckpointSink(sink, connection, checkpoint, commitEvery, statementObj,
+					statementPrp, statementAsc);
+			traversal.addSink(checkpointSink);
+		}
+		if (next != null) {
+			traversal.addSink(next);
+		}
+		traversal.run();
+		connection.commit();
+		connection.setAutoCommit(true);
+		return checkpointSink;
+	}
+
+	private static String checksum(File file) throws SQLException {
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+		StringBuilder builder = new StringBuilder();
+		for (String query : new String[] { "SELECT * FROM GenObjects ORDER BY id",
+				"SELECT * FROM GenProperties ORDER BY objid, prpType",
+				"SELECT * FROM GenAssociations ORDER BY fromObjid, ascType, seqno" }) {
+			Statement stmt = connection.createStatement();
+			ResultSet resultSet = stmt.executeQuery(query);
+			ResultSetMetaData meta = resultSet.getMetaData();
+			long rows = 0;
+			long hash = 0;
+			while (resultSet.next()) {
+				for (int i = 1; i <= meta.getColumnCount(); i++) {
+					hash = hash * 31 + String.valueOf(resultSet.getString(i)).hashCode();
+				}
+				rows++;
+			}
+			resultSet.close();
+			stmt.close();
+			builder.append(rows).append(" rows ").append(Long.toHexString(hash)).append("  ");
+		}
+		connection.close();
+		return builder.toString().trim();
+	}
+
+	private static void delete(File file) throws IOException {
+		for (String suffix : new String[] { "", "-wal", "-shm" }) {
+			new File(file.getPath() + suffix).delete();
+		}
+	}
+
+}
@@ -0,0 +1,351 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.ca.gen.jmmi.ids.ObjId;
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.diff.ChangeWriter;
+import eu.jgen.bee.extractor.diff.DatabaseDiffSource;
+import eu.jgen.bee.extractor.diff.DiffSource;
+import eu.jgen.bee.extractor.diff.DiffTable;
+import eu.jgen.bee.extractor.diff.JsonDiffSource;
+import eu.jgen.bee.extractor.diff.ModelDiff;
+import eu.jgen.bee.extractor.json.JsonModelSink;
+import eu.jgen.bee.extractor.model.ModelObject;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.model.SyntheticModelSource;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+import eu.jgen.bee.extractor.sqlite.BulkInserter;
+import eu.jgen.bee.extractor.sqlite.ModelSchema;
+import eu.jgen.bee.extractor.sqlite.SQLiteModelSink;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+
+/*
+ * Measures the throughput of ModelDiff on two generated extractions of the
+ * same model, each written as a Bee Gen Model database and as JSON files. The
+ * later extraction lacks every 50th object of the earlier one and has other
+ * objects instead, renames every 20th object and reverses the order of the
+ * one-to-many associations of every 30th object. The change feeds of the
+ * databases, of the JSON files and of a database compared with JSON files
+ * must be the same, and must hold the expected number of added, removed and
+ * renamed records. The extractions are written by a separate process, because
+ * JMMI keeps every object id it has seen. Run it with a small heap, for
+ * example -Xmx64m, to see that memory use of the comparison does not depend
+ * on the size of the model.
+ *
+ * Arguments: [objects (default 200000)] [records sorted in memory (default 100000)]
+ */
+public class DiffBenchmark {
+
+	private static final long SEED = 20200101L;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 3 && args[0].equals("-generate")) {
+			generate(Integer.parseInt(args[1]), new File(args[2]));
+			return;
+		}
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int sortRows = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		File folder = Files.createTempDirectory("beegen-diff").toFile();
+		List<String> problems = new ArrayList<String>();
+		try {
+			File older = new File(folder, "older");
+			File newer = new File(folder, "newer");
+			Process process = new ProcessBuilder(
+					System.getProperty("java.home") + File.separator + "bin" + File.separator + "java", "-cp",
+					System.getProperty("java.class.path"), DiffBenchmark.class.getName(), "-generate",
+					String.valueOf(objects), folder.getPath()).inheritIO().start();
+			if (process.waitFor() != 0) {
+				System.out.println("Extractions cannot be generated.");
+				System.exit(1);
+			}
+
+			String[] names = { "database", "json", "mixed" };
+			DiffSource[][] sources = {
+					{ new DatabaseDiffSource(new File(older, "MODEL.db")), new DatabaseDiffSource(new File(newer, "MODEL.db")) },
+					{ json(older, sortRows, folder), json(newer, sortRows, folder) },
+					{ new DatabaseDiffSource(new File(older, "MODEL.db")), json(newer, sortRows, folder) } };
+			File[] feeds = new File[names.length];
+			ModelDiff[] diffs = new ModelDiff[names.length];
+			System.out.println(String.format("%-10s %12s %10s %12s %10s %8s", "sources", "rows", "ms", "rows/s", "changes",
+					"runs"));
+			for (int i = 0; i < names.length; i++) {
+				feeds[i] = new File(folder, names[i] + ".ndjson");
+				ChangeWriter writer = new ChangeWriter(new FileOutputStream(feeds[i]));
+				diffs[i] = new ModelDiff(sources[i][0], sources[i][1], writer);
+				System.gc();
+				diffs[i].run();
+				writer.close();
+				sources[i][0].close();
+				sources[i][1].close();
+				int runs = 0;
+				for (DiffSource source : sources[i]) {
+					if (source instanceof JsonDiffSource) {
+						runs += ((JsonDiffSource) source).getRunCount();
+					}
+				}
+				long millis = Math.max(1, diffs[i].getElapsed() / 1000000);
+				System.out.println(String.format("%-10s %12d %10d %12d %10d %8d", names[i], diffs[i].getRowCount(), millis,
+						diffs[i].getRowCount() * 1000 / millis, diffs[i].getChangeCount(), runs));
+			}
+			System.out.println("\t" + diffs[0].report().replace("\n", "\n\t"));
+
+			for (int i = 1; i < names.length; i++) {
+				if (!sameContent(feeds[0], feeds[i])) {
+					problems.add("change feed of " + names[i] + " differs from the one of " + names[0]);
+				}
+			}
+			long added = 0;
+			long removed = 0;
+			long renamed = 0;
+			for (int index = 0; index < objects; index++) {
+				if (EditedModelSource.isAdded(index)) {
+					added++;
+				} else if (EditedModelSource.isRemoved(index)) {
+					removed++;
+				} else if (EditedModelSource.isRenamed(index)) {
+					renamed++;
+				}
+			}
+			if (diffs[0].getCount(DiffTable.OBJECTS, ModelDiff.ADDED) != added
+					|| diffs[0].getCount(DiffTable.OBJECTS, ModelDiff.REMOVED) != removed
+					|| diffs[0].getCount(DiffTable.OBJECTS, ModelDiff.CHANGED) != 0) {
+				problems.add("expected " + added + " added and " + removed + " removed objects");
+			}
+			if (diffs[0].getCount(DiffTable.PROPERTIES, ModelDiff.CHANGED) != renamed) {
+				problems.add("expected " + renamed + " changed properties");
+			}
+			if (diffs[0].getCount(DiffTable.ASSOCIATIONS, ModelDiff.CHANGED) == 0) {
+				problems.add("expected changed associations");
+			}
+		} finally {
+			delete(folder);
+		}
+		if (!problems.isEmpty()) {
+			System.out.println("Change feeds are not correct: " + problems);
+			System.exit(1);
+		}
+		System.out.println("Change feeds of databases and JSON files are the same and hold the expected changes.");
+	}
+
+	private static void generate(int objects, File folder) throws SQLException, ExtractionException, IOException {
+		File older = new File(folder, "older");
+		File newer = new File(folder, "newer");
+		older.mkdir();
+		newer.mkdir();
+		SyntheticModelSource synthetic = new SyntheticModelSource("BENCHMARK", objects, SEED);
+		write(new EditedModelSource(synthetic, false), older);
+		write(new EditedModelSource(synthetic, true), newer);
+	}
+
+	private static boolean sameContent(File one, File other) throws IOException {
+		if (one.length() != other.length()) {
+			return false;
+		}
+		InputStream input = new BufferedInputStream(new FileInputStream(one), 65536);
+		InputStream otherInput = new BufferedInputStream(new FileInputStream(other), 65536);
+		try {
+			int c;
+			do {
+				c = input.read();
+				if (c != otherInput.read()) {
+					return false;
+				}
+			} while (c != -1);
+			return true;
+		} finally {
+			input.close();
+			otherInput.close();
+		}
+	}
+
+	private static DiffSource json(File folder, int sortRows, File tempFolder) {
+		return new JsonDiffSource(new File(folder, "objects.json"), new File(folder, "associations.json"), sortRows,
+				tempFolder);
+	}
+
+	private static void write(ModelSource source, File folder) throws SQLException, ExtractionException, IOException {
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + new File(folder, "MODEL.db").getPath());
+		Statement stmt = connection.createStatement();
+		stmt.execute("PRAGMA journal_mode = OFF;");
+		ModelSchema.createTables(stmt);
+		stmt.close();
+		connection.setAutoCommit(false);
+		ModelTraversal traversal = new ModelTraversal(source);
+		traversal.addSink(new SQLiteModelSink(inserter(connection, "GenObjects", "id", "objType", "objMnemonic", "name"),
+				inserter(connection, "GenProperties", "objid", "prpType", "mnemonic", "format", "value"),
+				inserter(connection, "GenAssociations", "fromObjid", "ascType", "toObjid", "inverseAscType",
+						"ascMnemonic", "card", "direction", "seqno")));
+		traversal.addSink(new JsonModelSink(new FileOutputStream(new File(folder, "objects.json")),
+				new FileOutputStream(new File(folder, "associations.json"))));
+		traversal.run();
+		connection.commit();
+		connection.close();
+	}
+
+	private static BulkInserter inserter(Connection connection, String table, String... columns)
+			throws SQLException {
+		return new BulkInserter(connection, table, columns, 1000, 1);
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/*
+	 * The earlier or the later extraction of the synthetic model.
+	 */
+	private static final class EditedModelSource implements ModelSource {
+
+		private final SyntheticModelSource source;
+		private final boolean later;
+		private final List<ObjId> objIds;
+
+		EditedModelSource(SyntheticModelSource source, boolean later) {
+			this.source = source;
+			this.later = later;
+			final int[] indexes = new int[source.size()];
+			int count = 0;
+			for (int index = 0; index < indexes.length; index++) {
+				if (later ? !isRemoved(index) : !isAdded(index)) {
+					indexes[count++] = index;
+				}
+			}
+			final int size = count;
+			this.objIds = new AbstractList<ObjId>() {
+
+				public ObjId get(int i) {
+					return ObjId.getInstance(SyntheticModelSource.FIRST_ID + indexes[i]);
+				}
+
+				public int size() {
+					return size;
+				}
+
+			};
+		}
+
+		static boolean isAdded(int index) {
+			return index % 50 == 49;
+		}
+
+		static boolean isRemoved(int index) {
+			return index % 50 == 0;
+		}
+
+		static boolean isRenamed(int index) {
+			return index % 20 == 3;
+		}
+
+		static boolean isReordered(int index) {
+			return index % 30 == 11;
+		}
+
+		public String getName() {
+			return source.getName();
+		}
+
+		public SchemaCatalog getCatalog() {
+			return source.getCatalog();
+		}
+
+		public List<ObjId> getObjIds() {
+			return objIds;
+		}
+
+		public List<ObjId> getObjIds(ObjTypeCode objTypeCode) {
+			List<ObjId> result = new ArrayList<ObjId>();
+			for (ObjId objId : objIds) {
+				if (source.getObject(objId).getObjTypeCode() == objTypeCode) {
+					result.add(objId);
+				}
+			}
+			return result;
+		}
+
+		public ModelObject getObject(ObjId objId) {
+			final ModelObject object = source.getObject(objId);
+			final int index = (int) (objId.getValue() - SyntheticModelSource.FIRST_ID);
+			if (!later || !(isRenamed(index) || isReordered(index))) {
+				return object;
+			}
+			return new ModelObject() {
+
+				public ObjId getId() {
+					return object.getId();
+				}
+
+				public ObjTypeCode getObjTypeCode() {
+					return object.getObjTypeCode();
+				}
+
+				public String getTextProperty(PrpTypeCode prpTypeCode) {
+					String value = object.getTextProperty(prpTypeCode);
+					return prpTypeCode == PrpTypeCode.NAME && isRenamed(index) ? value + "_V2" : value;
+				}
+
+				public char getCharProperty(PrpTypeCode prpTypeCode) {
+					return object.getCharProperty(prpTypeCode);
+				}
+
+				public int getIntProperty(PrpTypeCode prpTypeCode) {
+					return object.getIntProperty(prpTypeCode);
+				}
+
+				public ObjId followAssociationOne(AscTypeCode ascTypeCode) {
+					return object.followAssociationOne(ascTypeCode);
+				}
+
+				public List<ObjId> followAssociationMany(AscTypeCode ascTypeCode) {
+					List<ObjId> list = new ArrayList<ObjId>(object.followAssociationMany(ascTypeCode));
+					if (isReordered(index)) {
+						Collections.reverse(list);
+					}
+					return list;
+				}
+
+			};
+		}
+
+	}
+
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import eu.jgen.bee.api.BeeGenException;
+import eu.jgen.bee.api.BeeGenModel;
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.SyntheticModelSource;
+import eu.jgen.bee.extractor.sqlite.BulkInserter;
+import eu.jgen.bee.extractor.sqlite.ModelSchema;
+import eu.jgen.bee.extractor.sqlite.SQLiteModelSink;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+
+/*
+ * Finds objects of a Bee Gen Model generated from a synthetic model by
+ * fragments of their names, once with LIKE over the property values and once
+ * with the full text index. The words are the beginnings of the number and of
+ * the object type mnemonic in the generated names. The full text search must
+ * find the same objects as the LIKE scan after its values are filtered to
+ * those having words starting with the fragments.
+ *
+ * Arguments: [objects (default 200000)] [queries (default 50)]
+ */
+public class FullTextBenchmark {
+
+	private static final long SEED = 20200101L;
+	private static final int TOP = 20;
+	private static final String SELECT_LIKE = "SELECT objid, value FROM GenProperties"
+			+ " WHERE format IN ('NAME', 'LOADNAME', 'TEXT') AND value LIKE ?";
+
+	public static void main(String[] args) throws SQLException, ExtractionException, BeeGenException, IOException {
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int queries = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		File file = File.createTempFile("beegen", ".db");
+		List<String> problems = new ArrayList<String>();
+		try {
+			Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+			long start = System.nanoTime();
+			load(connection, objects);
+			System.out.println("Loaded " + objects + " synthetic objects in " + millis(start) + " ms");
+			long size = file.length();
+			connection.setAutoCommit(false);
+			System.out.println(ModelSchema.createFullText(connection));
+			connection.commit();
+			connection.setAutoCommit(true);
+			System.out.println("Database grew from " + (size >> 20) + " MB to " + (file.length() >> 20) + " MB");
+
+			List<String> texts = texts(connection, objects, queries);
+			BeeGenModel model = new BeeGenModel(connection, 100);
+			long likeTime = 0;
+			long allTime = 0;
+			long topTime = 0;
+			long found = 0;
+			for (int run = 0; run < 2; run++) {
+				likeTime = allTime = topTime = found = 0;
+				for (String text : texts) {
+					String[] words = text.split(" ");
+					start = System.nanoTime();
+					Set<Long> expected = like(connection, words);
+					likeTime += System.nanoTime() - start;
+					start = System.nanoTime();
+					List<Long> all = model.search(text, Integer.MAX_VALUE);
+					allTime += System.nanoTime() - start;
+					start = System.nanoTime();
+					List<Long> top = model.search(text, TOP);
+					topTime += System.nanoTime() - start;
+					found += all.size();
+					if (!expected.equals(new HashSet<Long>(all)) || !all.subList(0, top.size()).equals(top)) {
+						problems.add("'" + text + "' found " + all.size() + " objects instead of " + expected.size());
+					}
+				}
+			}
+			System.out.println("Queries found " + found / texts.size() + " objects on average");
+			System.out.println(String.format("%-28s %10s %8s", "query", "avg us", "speed up"));
+			System.out.println(String.format("%-28s %10d %8s", "LIKE scan", likeTime / texts.size() / 1000, ""));
+			System.out.println(String.format("%-28s %10d %8.1f", "full text, all matches", allTime / texts.size()
+					/ 1000, (double) likeTime / Math.max(1, allTime)));
+			System.out.println(String.format("%-28s %10d %8.1f", "full text, best " + TOP, topTime / texts.size()
+					/ 1000, (double) likeTime / Math.max(1, topTime)));
+			model.close();
+		} finally {
+			file.delete();
+		}
+		if (!problems.isEmpty()) {
+			System.out.println("Full text search is not correct: " + problems);
+			System.exit(1);
+		}
+		System.out.println("Full text search found the same objects as the LIKE scan.");
+	}
+
+	private static void load(Connection connection, int objects) throws SQLException, ExtractionException {
+		Statement stmt = connection.createStatement();
+		stmt.execute("PRAGMA journal_mode = OFF;");
+		ModelSchema.createTables(stmt);
+		stmt.close();
+		connection.setAutoCommit(false);
+		ModelTraversal traversal = new ModelTraversal(new SyntheticModelSource("BENCHMARK", objects, SEED));
+		traversal.addSink(new SQLiteModelSink(
+				new BulkInserter(connection, "GenObjects", new String[] { "id", "objType", "objMnemonic", "name" },
+						1000, 1),
+				new BulkInserter(connection, "GenProperties",
+						new String[] { "objid", "prpType", "mnemonic", "format", "value" }, 1000, 1),
+				new BulkInserter(connection, "GenAssociations", new String[] { "fromObjid", "ascType", "toObjid",
+						"inverseAscType", "ascMnemonic", "card", "direction", "seqno" }, 1000, 1)));
+		traversal.run();
+		connection.commit();
+		connection.setAutoCommit(true);
+	}
+
+	/*
+	 * Texts made of the beginning of the number in the name of a random object,
+	 * every second one also with the beginning of its object type mnemonic.
+	 */
+	private static List<String> texts(Connection connection, int objects, int queries) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement("SELECT name FROM GenObjects WHERE id = ?;");
+		Random random = new Random(SEED);
+		List<String> texts = new ArrayList<String>();
+		for (int i = 0; i < queries; i++) {
+			statement.setLong(1, SyntheticModelSource.FIRST_ID + random.nextInt(objects));
+			ResultSet resultSet = statement.executeQuery();
+			resultSet.next();
+			String name = resultSet.getString(1);
+			resultSet.close();
+			int separator = name.lastIndexOf('_');
+			String number = name.substring(separator + 1);
+			String text = number.substring(0, Math.min(number.length(), 3 + random.nextInt(3)));
+			if (i % 2 == 1) {
+				text = name.substring(0, Math.min(separator, 4)).toLowerCase(Locale.ROOT) + " " + text;
+			}
+			texts.add(text);
+		}
+		statement.close();
+		return texts;
+	}
+
+	/*
+	 * Objects having a value containing all words, kept only when the value has
+	 * words starting with each of them.
+	 */
+	private static Set<Long> like(Connection connection, String[] words) throws SQLException {
+		StringBuilder sql = new StringBuilder(SELECT_LIKE);
+		for (int i = 1; i < words.length; i++) {
+			sql.append(" AND value LIKE ?");
+		}
+		PreparedStatement statement = connection.prepareStatement(sql.toString());
+		for (int i = 0; i < words.length; i++) {
+			statement.setString(i + 1, "%" + words[i] + "%");
+		}
+		ResultSet resultSet = statement.executeQuery();
+		Set<Long> ids = new HashSet<Long>();
+		while (resultSet.next()) {
+			if (startsWords(resultSet.getString(2), words)) {
+				ids.add(resultSet.getLong(1));
+			}
+		}
+		resultSet.close();
+		statement.close();
+		return ids;
+	}
+
+	private static boolean startsWords(String value, String[] words) {
+		String[] tokens = value.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+");
+		for (String word : words) {
+			boolean found = false;
+			for (String token : tokens) {
+				if (token.startsWith(word.toLowerCase(Locale.ROOT))) {
+					found = true;
+					break;
+				}
+			}
+			if (!found) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long millis(long start) {
+		return (System.nanoTime() - start) / 1000000;
+	}
+
+}
@@ -0,0 +1,391 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.json.Json;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+import eu.jgen.bee.api.BeeGenException;
+import eu.jgen.bee.api.graph.GraphLoader;
+import eu.jgen.bee.api.graph.GraphSearch;
+import eu.jgen.bee.api.graph.ModelGraph;
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.json.NdjsonModelSink;
+import eu.jgen.bee.extractor.model.SyntheticModelSource;
+import eu.jgen.bee.extractor.sqlite.BulkInserter;
+import eu.jgen.bee.extractor.sqlite.ModelSchema;
+import eu.jgen.bee.extractor.sqlite.SQLiteModelSink;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+
+/*
+ * Compares ModelGraph with the usual graph of boxed ids in hash maps of lists,
+ * both loaded from the associations of a synthetic model written as NDJSON.
+ * Objects without associations are left out of both.
+ * Loading, memory, a scan of all associations, where used queries and
+ * breadth first searches are measured, and both must give the same answers.
+ * A graph loaded from the Bee Gen Model database of a smaller model must be
+ * the same as the one loaded from its JSON files.
+ *
+ * Queries are repeated and the best time is shown.
+ *
+ * Arguments: [objects (default 1000000)] [queries (default 100000)]
+ * Run with -Xmx2g or more for the default size.
+ */
+public class GraphBenchmark {
+
+	private static final long SEED = 20200101L;
+	private static final int SEARCH_DEPTH = 3;
+	private static final int RUNS = 3;
+	private static final int DATABASE_OBJECTS = 20000;
+
+	public static void main(String[] args) throws IOException, ExtractionException, BeeGenException, SQLException {
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int queries = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		File folder = File.createTempFile("beegen", ".graph");
+		folder.delete();
+		folder.mkdir();
+		File objectsFile = new File(folder, "objects.ndjson");
+		File associationsFile = new File(folder, "associations.ndjson");
+		List<String> problems = new ArrayList<String>();
+		try {
+			long start = System.nanoTime();
+			write(new SyntheticModelSource("BENCHMARK", objects, SEED), objectsFile, associationsFile);
+			System.out.println("Written " + objects + " synthetic objects in " + millis(start) + " ms");
+
+			long base = usedMemory();
+			start = System.nanoTime();
+			ModelGraph graph = GraphLoader.loadJson(associationsFile, null);
+			long graphLoad = millis(start);
+			long graphMemory = usedMemory() - base;
+			start = System.nanoTime();
+			BoxedGraph boxed = BoxedGraph.load(associationsFile);
+			long boxedLoad = millis(start);
+			long boxedMemory = usedMemory() - base - graphMemory;
+			System.out.println(graph.report());
+			System.out.println(String.format("%-24s %12s %12s %8s", "", "CSR", "boxed", "ratio"));
+			print("load ms", graphLoad, boxedLoad);
+			print("retained MB", graphMemory >> 20, boxedMemory >> 20);
+
+			long[] ids = new long[queries];
+			Random random = new Random(SEED);
+			for (int i = 0; i < queries; i++) {
+				ids[i] = SyntheticModelSource.FIRST_ID + random.nextInt(objects);
+			}
+
+			long[] graphTimes = new long[3];
+			long[] boxedTimes = new long[3];
+			Arrays.fill(graphTimes, Long.MAX_VALUE);
+			Arrays.fill(boxedTimes, Long.MAX_VALUE);
+			for (int run = 0; run < RUNS; run++) {
+				long[] graphResults = new long[3];
+				long[] boxedResults = new long[3];
+
+				start = System.nanoTime();
+				graphResults[0] = scan(graph);
+				graphTimes[0] = Math.min(graphTimes[0], millis(start));
+				start = System.nanoTime();
+				boxedResults[0] = boxed.scan();
+				boxedTimes[0] = Math.min(boxedTimes[0], millis(start));
+
+				start = System.nanoTime();
+				for (long id : ids) {
+					int node = graph.indexOf(id);
+					graphResults[1] += node < 0 ? 0 : graph.whereUsed(node).length;
+				}
+				graphTimes[1] = Math.min(graphTimes[1], millis(start));
+				start = System.nanoTime();
+				for (long id : ids) {
+					boxedResults[1] += boxed.whereUsed(id).size();
+				}
+				boxedTimes[1] = Math.min(boxedTimes[1], millis(start));
+
+				GraphSearch search = new GraphSearch(graph, 1);
+				start = System.nanoTime();
+				for (int i = 0; i < queries / 10; i++) {
+					int node = graph.indexOf(ids[i]);
+					graphResults[2] += node < 0 ? 1 : search.search(node, false, SEARCH_DEPTH).length;
+				}
+				graphTimes[2] = Math.min(graphTimes[2], millis(start));
+				search.close();
+				start = System.nanoTime();
+				for (int i = 0; i < queries / 10; i++) {
+					boxedResults[2] += boxed.search(ids[i], SEARCH_DEPTH);
+				}
+				boxedTimes[2] = Math.min(boxedTimes[2], millis(start));
+				if (!Arrays.equals(graphResults, boxedResults)) {
+					problems.add("answers differ " + Arrays.toString(graphResults) + " "
+							+ Arrays.toString(boxedResults));
+				}
+			}
+			print("scan ms", graphTimes[0], boxedTimes[0]);
+			print(queries + " where used ms", graphTimes[1], boxedTimes[1]);
+			print(queries / 10 + " searches ms", graphTimes[2], boxedTimes[2]);
+			boxed = null;
+
+			searchAll(graph, problems);
+			checkDatabase(folder, problems);
+		} finally {
+			for (File file : folder.listFiles()) {
+				file.delete();
+			}
+			folder.delete();
+		}
+		if (!problems.isEmpty()) {
+			System.out.println("Graph is not correct: " + problems);
+			System.exit(1);
+		}
+		System.out.println("Graph answers are the same as those of the boxed graph.");
+	}
+
+	/*
+	 * Searches the whole graph from the most used node with one thread and
+	 * with all processors.
+	 */
+	private static void searchAll(ModelGraph graph, List<String> problems) {
+		int root = 0;
+		for (int node = 0; node < graph.size(); node++) {
+			if (graph.getInDegree(node) > graph.getInDegree(root)) {
+				root = node;
+			}
+		}
+		int processors = Runtime.getRuntime().availableProcessors();
+		int[] previous = null;
+		for (int parallelism : new int[] { 1, Math.max(2, processors) }) {
+			GraphSearch search = new GraphSearch(graph, parallelism);
+			search.search(root, true, Integer.MAX_VALUE);
+			long start = System.nanoTime();
+			int[] nodes = search.search(root, true, Integer.MAX_VALUE);
+			int[] depths = new int[graph.size()];
+			for (int node = 0; node < depths.length; node++) {
+				depths[node] = search.getDepth(node);
+			}
+			System.out.println("Where used closure of " + graph.getId(root) + " reached " + nodes.length
+					+ " objects with " + parallelism + " threads in " + millis(start) + " ms, "
+					+ search.getParallelLevelCount() / 2 + " of " + search.getLevelCount() / 2 + " levels in parallel");
+			search.close();
+			if (previous != null && !Arrays.equals(previous, depths)) {
+				problems.add("parallel search differs");
+			}
+			previous = depths;
+		}
+	}
+
+	/*
+	 * Loads a smaller model into the database and compares the graph read from
+	 * it with the graph read from its JSON files.
+	 */
+	private static void checkDatabase(File folder, List<String> problems)
+			throws SQLException, ExtractionException, IOException, BeeGenException {
+		File database = new File(folder, "model.db");
+		File objectsFile = new File(folder, "small-objects.ndjson");
+		File associationsFile = new File(folder, "small-associations.ndjson");
+		SyntheticModelSource source = new SyntheticModelSource("BENCHMARK", DATABASE_OBJECTS, SEED);
+		write(source, objectsFile, associationsFile);
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database.getPath());
+		Statement stmt = connection.createStatement();
+		stmt.execute("PRAGMA journal_mode = OFF;");
+		ModelSchema.createTables(stmt);
+		stmt.close();
+		connection.setAutoCommit(false);
+		ModelTraversal traversal = new ModelTraversal(source);
+		traversal.addSink(new SQLiteModelSink(
+				new BulkInserter(connection, "GenObjects", new String[] { "id", "objType", "objMnemonic", "name" },
+						1000, 1),
+				new BulkInserter(connection, "GenProperties",
+						new String[] { "objid", "prpType", "mnemonic", "format", "value" }, 1000, 1),
+				new BulkInserter(connection, "GenAssociations", new String[] { "fromObjid", "ascType", "toObjid",
+						"inverseAscType", "ascMnemonic", "card", "direction", "seqno" }, 1000, 1)));
+		traversal.run();
+		connection.commit();
+		connection.close();
+
+		ModelGraph fromDatabase = GraphLoader.loadDatabase(database.getPath());
+		ModelGraph fromJson = GraphLoader.loadJson(associationsFile, objectsFile);
+		if (!same(fromDatabase, fromJson)) {
+			problems.add("graph of the database differs from the graph of the JSON files");
+		} else {
+			System.out.println("Graph of the database is the same as the graph of the JSON files, "
+					+ fromDatabase.report());
+		}
+	}
+
+	private static boolean same(ModelGraph one, ModelGraph other) {
+		if (one.size() != other.size() || one.getEdgeCount() != other.getEdgeCount()) {
+			return false;
+		}
+		for (int node = 0; node < one.size(); node++) {
+			if (one.getId(node) != other.getId(node) || one.getObjType(node) != other.getObjType(node)
+					|| one.getFirstEdge(node) != other.getFirstEdge(node)
+					|| one.getFirstInverseEdge(node) != other.getFirstInverseEdge(node)) {
+				return false;
+			}
+		}
+		for (int edge = 0; edge < one.getEdgeCount(); edge++) {
+			if (one.getTarget(edge) != other.getTarget(edge) || one.getAscType(edge) != other.getAscType(edge)
+					|| one.getSource(edge) != other.getSource(edge)
+					|| one.getSourceAscType(edge) != other.getSourceAscType(edge)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void write(SyntheticModelSource source, File objectsFile, File associationsFile)
+			throws IOException, ExtractionException {
+		ModelTraversal traversal = new ModelTraversal(source);
+		traversal.addSink(new NdjsonModelSink(new FileOutputStream(objectsFile), new FileOutputStream(associationsFile)));
+		traversal.run();
+	}
+
+	/*
+	 * Sum of the ids of the targets of all associations.
+	 */
+	private static long scan(ModelGraph graph) {
+		long sum = 0;
+		for (int node = 0; node < graph.size(); node++) {
+			for (int edge = graph.getFirstEdge(node); edge < graph.getEndEdge(node); edge++) {
+				sum += graph.getId(graph.getTarget(edge));
+			}
+		}
+		return sum;
+	}
+
+	private static void print(String name, long graph, long boxed) {
+		System.out.println(String.format("%-24s %12d %12d %8.1f", name, graph, boxed, (double) boxed / Math.max(1, graph)));
+	}
+
+	private static long millis(long start) {
+		return (System.nanoTime() - start) / 1000000;
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/*
+	 * Graph as analysis tools usually build it, with the targets and sources
+	 * of every object in lists of boxed ids.
+	 */
+	private static final class BoxedGraph {
+
+		final Map<Long, List<Long>> targets = new HashMap<Long, List<Long>>();
+		final Map<Long, List<Long>> sources = new HashMap<Long, List<Long>>();
+
+		static BoxedGraph load(File associationsFile) throws IOException {
+			BoxedGraph graph = new BoxedGraph();
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(new FileInputStream(associationsFile), StandardCharsets.UTF_8), 65536);
+			String line;
+			while ((line = reader.readLine()) != null) {
+				JsonParser parser = Json.createParser(new StringReader(line));
+				String key = null;
+				long from = 0;
+				long to = 0;
+				while (parser.hasNext()) {
+					Event event = parser.next();
+					if (event == Event.KEY_NAME) {
+						key = parser.getString();
+					} else if (event == Event.VALUE_NUMBER && "from".equals(key)) {
+						from = parser.getLong();
+					} else if (event == Event.VALUE_NUMBER && "to".equals(key)) {
+						to = parser.getLong();
+					}
+				}
+				parser.close();
+				add(graph.targets, from, to);
+				add(graph.sources, to, from);
+			}
+			reader.close();
+			return graph;
+		}
+
+		private static void add(Map<Long, List<Long>> map, long key, long value) {
+			List<Long> list = map.get(key);
+			if (list == null) {
+				list = new ArrayList<Long>(2);
+				map.put(key, list);
+			}
+			list.add(value);
+		}
+
+		long scan() {
+			long sum = 0;
+			for (List<Long> list : targets.values()) {
+				for (Long id : list) {
+					sum += id;
+				}
+			}
+			return sum;
+		}
+
+		Set<Long> whereUsed(long id) {
+			List<Long> list = sources.get(id);
+			return list == null ? new HashSet<Long>() : new HashSet<Long>(list);
+		}
+
+		int search(long start, int maxDepth) {
+			Set<Long> visited = new HashSet<Long>();
+			ArrayDeque<Long> frontier = new ArrayDeque<Long>();
+			visited.add(start);
+			frontier.add(start);
+			for (int depth = 1; depth <= maxDepth && !frontier.isEmpty(); depth++) {
+				ArrayDeque<Long> next = new ArrayDeque<Long>();
+				for (Long id : frontier) {
+					List<Long> list = targets.get(id);
+					if (list == null) {
+						continue;
+					}
+					for (Long target : list) {
+						if (visited.add(target)) {
+							next.add(target);
+						}
+					}
+				}
+				frontier = next;
+			}
+			return visited.size();
+		}
+
+	}
+
+}
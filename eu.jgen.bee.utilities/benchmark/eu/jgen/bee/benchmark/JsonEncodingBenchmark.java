@@ -0,0 +1,161 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.json.JsonModelSink;
+import eu.jgen.bee.extractor.json.ParallelJsonModelSink;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.model.SyntheticModelSource;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+import eu.jgen.bee.extractor.traversal.ObjectRecord;
+
+/*
+ * Compares serial and parallel JSON encoding of a synthetic model. The model is
+ * generated while it is read, and the output goes to streams which only count
+ * and checksum the bytes, so the times show the reading and encoding cost
+ * without the disk. A run with a sink doing nothing shows the reading cost
+ * alone. Both encodings must give the same checksum.
+ *
+ * Arguments: [objects (default 1000000)] [threads] [shardSize (default 4096)]
+ */
+public class JsonEncodingBenchmark {
+
+	private static final long SEED = 20200101L;
+
+	public static void main(String[] args) throws ExtractionException {
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int shardSize = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+		System.out.println("JSON encoding of " + objects + " synthetic objects, " + threads + " threads, shards of "
+				+ shardSize + " objects");
+
+		ModelSource warmup = new SyntheticModelSource("WARMUP", Math.min(objects, 100000), SEED);
+		read(warmup);
+		serial(warmup);
+		parallel(warmup, threads, shardSize);
+
+		ModelSource source = new SyntheticModelSource("BENCHMARK", objects, SEED);
+		long read = read(source);
+		Result serial = serial(source);
+		Result parallel = parallel(source, threads, shardSize);
+		System.out.println("\tread only     " + format(read, objects));
+		System.out.println("\tserial        " + format(serial.elapsed, objects) + "  " + serial);
+		System.out.println("\tparallel      " + format(parallel.elapsed, objects) + "  " + parallel);
+		System.out.println("\tspeed up " + String.format("%.2f", (double) serial.elapsed / parallel.elapsed)
+				+ ", encoding only " + String.format("%.2f", (double) (serial.elapsed - read)
+						/ Math.max(1, parallel.elapsed - read)));
+		if (!serial.equals(parallel)) {
+			System.out.println("Serial and parallel output differ.");
+			System.exit(1);
+		}
+		System.out.println("Serial and parallel output are identical.");
+	}
+
+	private static long read(ModelSource source) throws ExtractionException {
+		ModelTraversal traversal = new ModelTraversal(source);
+		traversal.addSink(new ModelSink() {
+
+			public void begin(ModelSource source) {
+			}
+
+			public void object(ObjectRecord record) {
+			}
+
+			public void end() {
+			}
+
+		});
+		long start = System.nanoTime();
+		traversal.run();
+		return System.nanoTime() - start;
+	}
+
+	private static Result serial(ModelSource source) throws ExtractionException {
+		Result result = new Result();
+		return result.run(source, new JsonModelSink(result.objects, result.associations));
+	}
+
+	private static Result parallel(ModelSource source, int threads, int shardSize) throws ExtractionException {
+		Result result = new Result();
+		return result.run(source, new ParallelJsonModelSink(result.objects, result.associations, shardSize, threads));
+	}
+
+	private static String format(long elapsed, int objects) {
+		return String.format("%8d ms %10.0f objects/s", elapsed / 1000000, objects * 1e9 / elapsed);
+	}
+
+	private static class Result {
+		final ChecksumStream objects = new ChecksumStream();
+		final ChecksumStream associations = new ChecksumStream();
+		long elapsed;
+
+		Result run(ModelSource source, ModelSink sink) throws ExtractionException {
+			ModelTraversal traversal = new ModelTraversal(source);
+			traversal.addSink(sink);
+			long start = System.nanoTime();
+			traversal.run();
+			elapsed = System.nanoTime() - start;
+			return this;
+		}
+
+		public boolean equals(Object other) {
+			Result result = (Result) other;
+			return objects.equals(result.objects) && associations.equals(result.associations);
+		}
+
+		public int hashCode() {
+			return objects.hashCode();
+		}
+
+		public String toString() {
+			return objects + ", " + associations;
+		}
+	}
+
+	private static class ChecksumStream extends OutputStream {
+		private final CRC32 crc = new CRC32();
+		private long count;
+
+		public void write(int b) {
+			crc.update(b);
+			count++;
+		}
+
+		public void write(byte[] b, int off, int len) {
+			crc.update(b, off, len);
+			count += len;
+		}
+
+		public boolean equals(Object other) {
+			ChecksumStream stream = (ChecksumStream) other;
+			return count == stream.count && crc.getValue() == stream.crc.getValue();
+		}
+
+		public int hashCode() {
+			return (int) crc.getValue();
+		}
+
+		public String toString() {
+			return count + " bytes crc " + Long.toHexString(crc.getValue());
+		}
+	}
+
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConfig.JournalMode;
+
+import eu.jgen.bee.extractor.metrics.ExtractionMetrics;
+import eu.jgen.bee.extractor.metrics.MeteredSchemaSource;
+import eu.jgen.bee.extractor.schema.SchemaSource;
+import eu.jgen.bee.extractor.sqlite.BulkInserter;
+import eu.jgen.bee.extractor.sqlite.MetaCache;
+import eu.jgen.bee.extractor.sqlite.MetaDataWriter;
+import eu.jgen.bee.extractor.sqlite.MetaTypeGenerator;
+import eu.jgen.bee.extractor.sqlite.ModelSchema;
+
+/*
+ * Measures the fixed cost of the meta data of a model, once read from the
+ * schema for every model and once copied from the meta data cache, which is
+ * built for the first model. The schema has about as many properties and
+ * associations as schema level 9.2.A6. Calls to the schema are counted the
+ * same way the extractor counts calls to the JMMI helpers. Meta data tables
+ * and enums of every model must be the same in both cases, and the cache must
+ * be rebuilt when it was written by another version.
+ *
+ * Arguments: [number of models (default 20)]
+ */
+public class MetaCacheBenchmark {
+
+	private static final String[] TABLES = { "GenMetaObjects", "GenMetaProperties", "GenMetaAssociations" };
+	private static final String[][] COLUMNS = { MetaDataWriter.OBJECT_COLUMNS, MetaDataWriter.PROPERTY_COLUMNS,
+			MetaDataWriter.ASSOCIATION_COLUMNS };
+
+	public static void main(String[] args) throws Exception {
+		int models = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		ExtractionMetrics metrics = new ExtractionMetrics("benchmark");
+		SchemaSource schema = new MeteredSchemaSource(new WideSchemaSource(22, 15), metrics);
+		File folder = Files.createTempDirectory("beegen").toFile();
+		List<String> problems = new ArrayList<String>();
+		try {
+			File direct = new File(folder, "direct");
+			File cached = new File(folder, "cached");
+			direct.mkdir();
+			cached.mkdir();
+			MetaCache cache = new MetaCache(new File(folder, "cache"), schema, "1.0");
+
+			long directTime = 0;
+			long directCalls = 0;
+			long cachedTime = 0;
+			long cachedCalls = 0;
+			for (int i = 0; i < models; i++) {
+				long calls = metrics.getNativeCallCount();
+				long start = System.nanoTime();
+				File model = new File(direct, "MODEL" + i);
+				model.mkdir();
+				Connection connection = createModel(model, null);
+				MetaDataWriter.writeObjects(schema, inserter(connection, 0));
+				MetaDataWriter.writeProperties(schema, inserter(connection, 1));
+				MetaDataWriter.writeAssociations(schema, inserter(connection, 2));
+				connection.commit();
+				connection.close();
+				new MetaTypeGenerator(schema).writeAll(model);
+				directTime += System.nanoTime() - start;
+				directCalls += metrics.getNativeCallCount() - calls;
+
+				calls = metrics.getNativeCallCount();
+				start = System.nanoTime();
+				model = new File(cached, "MODEL" + i);
+				model.mkdir();
+				cache.prepare();
+				connection = createModel(model, cache);
+				for (int table = 0; table < TABLES.length; table++) {
+					cache.copyTable(connection, TABLES[table], COLUMNS[table]);
+				}
+				connection.commit();
+				connection.close();
+				cache.copyEnums(model);
+				cachedTime += System.nanoTime() - start;
+				cachedCalls += metrics.getNativeCallCount() - calls;
+			}
+
+			for (int i = 0; i < models; i++) {
+				File one = new File(direct, "MODEL" + i);
+				File other = new File(cached, "MODEL" + i);
+				for (String table : TABLES) {
+					if (!dump(one, table).equals(dump(other, table))) {
+						problems.add(table + " of model " + i + " differs");
+					}
+				}
+				for (String fileName : MetaTypeGenerator.FILE_NAMES) {
+					if (!Arrays.equals(Files.readAllBytes(new File(one, fileName).toPath()),
+							Files.readAllBytes(new File(other, fileName).toPath()))) {
+						problems.add(fileName + " of model " + i + " differs");
+					}
+				}
+			}
+
+			System.out.println("Meta data of " + models + " models, " + dump(new File(direct, "MODEL0"), TABLES[1]).size()
+					+ " meta properties and " + dump(new File(direct, "MODEL0"), TABLES[2]).size() + " meta associations each");
+			System.out.println(String.format("%-8s %12s %12s %16s", "", "total ms", "ms/model", "schema calls"));
+			System.out.println(String.format("%-8s %12d %12.1f %16d", "schema", directTime / 1000000,
+					directTime / 1e6 / models, directCalls));
+			System.out.println(String.format("%-8s %12d %12.1f %16d", "cache", cachedTime / 1000000,
+					cachedTime / 1e6 / models, cachedCalls));
+			System.out.println("Building the cache took " + cache.getBuildTime() / 1000000 + " ms of the first model");
+
+			if (cache.prepare() || !cache.isValid()) {
+				problems.add("valid cache is built again");
+			}
+			MetaCache other = new MetaCache(new File(folder, "cache"), schema, "1.1");
+			if (other.isValid() || other.getFolder().equals(cache.getFolder())) {
+				problems.add("cache of another version is used");
+			}
+			Connection connection = new SQLiteConfig().createConnection("jdbc:sqlite:"
+					+ new File(cache.getFolder(), MetaCache.DATABASE_NAME).getPath());
+			connection.createStatement().execute("UPDATE GenMetaCache SET value = '0.9' WHERE key = 'version';");
+			connection.close();
+			if (cache.isValid() || !cache.prepare() || !cache.isValid()) {
+				problems.add("cache written by another version is not rebuilt");
+			}
+			if (new File(folder, "cache").list().length != 1) {
+				problems.add("temporary folders are left in the cache");
+			}
+		} finally {
+			delete(folder);
+		}
+		if (!problems.isEmpty()) {
+			System.out.println("Meta data cache is not correct: " + problems);
+			System.exit(1);
+		}
+		System.out.println("Models have the same meta data with and without the cache.");
+	}
+
+	private static Connection createModel(File model, MetaCache cache) throws SQLException {
+		SQLiteConfig config = new SQLiteConfig();
+		config.setJournalMode(JournalMode.OFF);
+		Connection connection = config.createConnection("jdbc:sqlite:" + new File(model, "MODEL.db").getPath());
+		Statement stmt = connection.createStatement();
+		ModelSchema.createTables(stmt);
+		stmt.close();
+		if (cache != null) {
+			cache.attach(connection);
+		}
+		connection.setAutoCommit(false);
+		return connection;
+	}
+
+	private static BulkInserter inserter(Connection connection, int table) throws SQLException {
+		return new BulkInserter(connection, TABLES[table], COLUMNS[table], 1000, 1);
+	}
+
+	private static List<String> dump(File model, String table) throws SQLException {
+		List<String> rows = new ArrayList<String>();
+		Connection connection = new SQLiteConfig().createConnection("jdbc:sqlite:" + new File(model, "MODEL.db").getPath());
+		Statement stmt = connection.createStatement();
+		ResultSet resultSet = stmt.executeQuery("SELECT * FROM " + table + " ORDER BY 1, 2;");
+		int columns = resultSet.getMetaData().getColumnCount();
+		while (resultSet.next()) {
+			StringBuilder row = new StringBuilder();
+			for (int i = 1; i <= columns; i++) {
+				row.append(resultSet.getObject(i)).append('|');
+			}
+			rows.add(row.toString());
+		}
+		resultSet.close();
+		stmt.close();
+		connection.close();
+		return rows;
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
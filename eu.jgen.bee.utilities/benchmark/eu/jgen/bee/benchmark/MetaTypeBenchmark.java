@@ -0,0 +1,256 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+
+import eu.jgen.bee.extractor.sqlite.MetaTypeGenerator;
+import eu.jgen.bee.extractor.schema.SchemaSource;
+
+/*
+ * Measures decoding of type codes with the meta type enums. The enums are
+ * generated for a synthetic schema with more properties and associations than
+ * the real one, once in the form written before, where getType scans values(),
+ * and once by MetaTypeGenerator. Both are compiled together with a loop
+ * decoding random codes, and must decode the same constants. The generated
+ * property and association codes of every object type must be those of the
+ * schema.
+ *
+ * Arguments: [decodes in each round (default 2000000)] [rounds (default 5)]
+ */
+public class MetaTypeBenchmark {
+
+	private static final long SEED = 20200101L;
+	private static final String[] ENUMS = { "ObjMetaType", "PrpMetaType", "AscMetaType" };
+
+	public static void main(String[] args) throws Exception {
+		int decodes = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			System.out.println("Java compiler is not available, run with a JDK.");
+			System.exit(1);
+		}
+		SchemaSource schema = new WideSchemaSource(40, 30);
+		File folder = File.createTempFile("beegen", ".meta");
+		folder.delete();
+		List<String> problems = new ArrayList<String>();
+		try {
+			File before = new File(folder, "before");
+			before.mkdirs();
+			for (String name : ENUMS) {
+				write(new File(before, name + ".java"), linearEnum(schema, name));
+			}
+			write(new File(before, "Decode.java"), decodeLoop("before", "INVALID.getType"));
+			File after = new File(folder, "after");
+			after.mkdirs();
+			new MetaTypeGenerator(schema, "after").writeAll(after);
+			write(new File(after, "Decode.java"), decodeLoop("after", "getType"));
+			long start = System.nanoTime();
+			List<String> arguments = new ArrayList<String>(Arrays.asList("-nowarn", "-d", folder.getPath()));
+			for (File directory : new File[] { before, after }) {
+				for (File file : directory.listFiles()) {
+					arguments.add(file.getPath());
+				}
+			}
+			if (compiler.run(null, null, null, arguments.toArray(new String[arguments.size()])) != 0) {
+				System.out.println("Generated enums do not compile.");
+				System.exit(1);
+			}
+			System.out.println("Generated and compiled enums in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+			URLClassLoader loader = new URLClassLoader(new URL[] { folder.toURI().toURL() });
+			checkObjects(loader.loadClass("after.ObjMetaType"), schema, problems);
+			Method[] methods = { loader.loadClass("before.Decode").getMethod("decode", String.class, short[].class),
+					loader.loadClass("after.Decode").getMethod("decode", String.class, short[].class) };
+			System.out.println(String.format("%-14s %12s %12s %8s", "enum", "before ns", "after ns", "speed up"));
+			for (String name : ENUMS) {
+				short[] codes = codes(loader, name, decodes);
+				long[] best = { Long.MAX_VALUE, Long.MAX_VALUE };
+				long[] sums = new long[2];
+				for (int round = 0; round < rounds; round++) {
+					for (int variant = 0; variant < 2; variant++) {
+						start = System.nanoTime();
+						sums[variant] = (Long) methods[variant].invoke(null, name, codes);
+						best[variant] = Math.min(best[variant], System.nanoTime() - start);
+					}
+				}
+				if (sums[0] != sums[1]) {
+					problems.add(name + " decodes other constants");
+				}
+				System.out.println(String.format("%-14s %12.1f %12.1f %8.1f", name, (double) best[0] / decodes,
+						(double) best[1] / decodes, (double) best[0] / Math.max(1, best[1])));
+			}
+			loader.close();
+		} finally {
+			delete(folder);
+		}
+		if (!problems.isEmpty()) {
+			System.out.println("Generated enums are not correct: " + problems);
+			System.exit(1);
+		}
+		System.out.println("Generated enums decode the same constants and hold the schema of every object type.");
+	}
+
+	/*
+	 * Random codes of the constants of the enum with a tenth of them unknown.
+	 */
+	private static short[] codes(ClassLoader loader, String name, int count) throws Exception {
+		Object[] constants = loader.loadClass("after." + name).getEnumConstants();
+		Field code = loader.loadClass("after." + name).getField("code");
+		int max = 0;
+		for (Object constant : constants) {
+			max = Math.max(max, code.getShort(constant));
+		}
+		Random random = new Random(SEED);
+		short[] codes = new short[count];
+		for (int i = 0; i < count; i++) {
+			codes[i] = random.nextInt(10) == 0 ? (short) (max + 1 + random.nextInt(100))
+					: code.getShort(constants[random.nextInt(constants.length - 2)]);
+		}
+		return codes;
+	}
+
+	private static void checkObjects(Class<?> type, SchemaSource schema, List<String> problems) throws Exception {
+		Method getType = type.getMethod("getType", short.class);
+		for (ObjTypeCode objTypeCode : ObjTypeCode.values()) {
+			short code = schema.getCode(objTypeCode);
+			if (code == -1) {
+				continue;
+			}
+			Object constant = getType.invoke(null, code);
+			short[] prpCodes = new short[schema.getProperties(objTypeCode).size()];
+			for (int i = 0; i < prpCodes.length; i++) {
+				prpCodes[i] = schema.getCode(schema.getProperties(objTypeCode).get(i));
+			}
+			Arrays.sort(prpCodes);
+			short[] ascCodes = new short[schema.getAssociations(objTypeCode).size()];
+			for (int i = 0; i < ascCodes.length; i++) {
+				ascCodes[i] = schema.getCode(schema.getAssociations(objTypeCode).get(i));
+			}
+			Arrays.sort(ascCodes);
+			if (objTypeCode == ObjTypeCode.HORIZUS || objTypeCode == ObjTypeCode.GUIPROP) {
+				ascCodes = new short[0];
+			}
+			if (!objTypeCode.name().equals(constant.toString())
+					|| !Arrays.equals(prpCodes, (short[]) type.getField("prpCodes").get(constant))
+					|| ((Object[]) type.getField("defaults").get(constant)).length != prpCodes.length
+					|| !Arrays.equals(ascCodes, (short[]) type.getField("ascCodes").get(constant))) {
+				problems.add(objTypeCode.name() + " does not match the schema");
+			}
+		}
+	}
+
+	/*
+	 * Enum as it was generated before, with getType scanning values().
+	 */
+	private static String linearEnum(SchemaSource schema, String name) {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append("package before;\n");
+		buffer.append("public enum " + name + " {\n");
+		if (name.equals("ObjMetaType")) {
+			for (ObjTypeCode objTypeCode : ObjTypeCode.values()) {
+				append(buffer, schema.getMnemonic(objTypeCode), schema.getCode(objTypeCode));
+			}
+		} else if (name.equals("PrpMetaType")) {
+			for (PrpTypeCode prpTypeCode : PrpTypeCode.values()) {
+				append(buffer, schema.getMnemonic(prpTypeCode), schema.getCode(prpTypeCode));
+			}
+		} else {
+			for (AscTypeCode ascTypeCode : AscTypeCode.values()) {
+				append(buffer, schema.getMnemonic(ascTypeCode), schema.getCode(ascTypeCode));
+			}
+		}
+		buffer.append("\tINVALID((short) -1),\n");
+		buffer.append("\tDISCOVER((short) -2);\n");
+		buffer.append("\n\tpublic final short code;\n");
+		buffer.append("\n\t" + name + "(short code) {\n");
+		buffer.append("\t\tthis.code = code;\n");
+		buffer.append("\t}\n");
+		buffer.append("\n\tpublic " + name + " getType(short code) {\n");
+		buffer.append("\t\tfor (" + name + " obj : " + name + ".values()) {\n");
+		buffer.append("\t\t\tif (obj.code == code) {\n");
+		buffer.append("\t\t\t\treturn obj;\n");
+		buffer.append("\t\t\t}\n");
+		buffer.append("\t\t}\n");
+		buffer.append("\t\treturn " + name + ".INVALID;\n");
+		buffer.append("\t}\n");
+		buffer.append("}");
+		return buffer.toString();
+	}
+
+	private static void append(StringBuilder buffer, String mnemonic, short code) {
+		if (code != -1) {
+			buffer.append("\t" + mnemonic + "((short) " + code + "),\n");
+		}
+	}
+
+	/*
+	 * Sum of the ordinals of the constants decoded from the codes.
+	 */
+	private static String decodeLoop(String packageName, String call) {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append("package " + packageName + ";\n");
+		buffer.append("public class Decode {\n");
+		buffer.append("\tpublic static long decode(String name, short[] codes) {\n");
+		buffer.append("\t\tlong sum = 0;\n");
+		for (String name : ENUMS) {
+			buffer.append("\t\tif (name.equals(\"" + name + "\")) {\n");
+			buffer.append("\t\t\tfor (short code : codes) {\n");
+			buffer.append("\t\t\t\tsum += " + name + "." + call + "(code).ordinal();\n");
+			buffer.append("\t\t\t}\n");
+			buffer.append("\t\t}\n");
+		}
+		buffer.append("\t\treturn sum;\n");
+		buffer.append("\t}\n");
+		buffer.append("}\n");
+		return buffer.toString();
+	}
+
+	private static void write(File file, String source) throws IOException {
+		FileWriter writer = new FileWriter(file);
+		writer.write(source);
+		writer.close();
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.json.JsonModelSink;
+import eu.jgen.bee.extractor.metrics.ExtractionMetrics;
+import eu.jgen.bee.extractor.metrics.MeteredModelSink;
+import eu.jgen.bee.extractor.metrics.MeteredModelSource;
+import eu.jgen.bee.extractor.metrics.MeteredSchemaSource;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.model.SyntheticModelSource;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+import eu.jgen.bee.extractor.schema.SyntheticSchemaSource;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+
+/*
+ * Measures the cost of the extraction metrics. A synthetic model is written
+ * as JSON to streams discarding the bytes, once as it is and once with the
+ * source, schema and sink metered. The metrics are then read back through
+ * the platform MBean server and written to a JSON report, which must give the
+ * same numbers.
+ *
+ * Arguments: [objects (default 500000)]
+ */
+public class MetricsBenchmark {
+
+	private static final long SEED = 20200101L;
+
+	public static void main(String[] args) throws ExtractionException, IOException, JMException {
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+		System.out.println("Extraction metrics on " + objects + " synthetic objects");
+
+		plain(Math.min(objects, 100000));
+		metered(Math.min(objects, 100000), new ExtractionMetrics("benchmark"));
+
+		long plain = plain(objects);
+		ExtractionMetrics metrics = new ExtractionMetrics("benchmark");
+		metrics.register("BENCHMARK");
+		long metered = metered(objects, metrics);
+		System.out.println(String.format("\tplain    %8d ms", plain / 1000000));
+		System.out.println(String.format("\tmetered  %8d ms, overhead %.1f%%", metered / 1000000,
+				(metered - plain) * 100.0 / plain));
+		System.out.println("\t" + metrics.report().replace("\n", "\n\t"));
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("eu.jgen.bee:type=ExtractionMetrics,tool=benchmark,model=\"BENCHMARK\"");
+		long objectsRead = (Long) server.getAttribute(name, "ObjectsRead");
+		long nativeCalls = (Long) server.getAttribute(name, "NativeCallCount");
+		String[] phases = (String[]) server.getAttribute(name, "PhaseTimes");
+		System.out.println("\tMBean: " + objectsRead + " objects read, " + nativeCalls + " native calls, phases "
+				+ Arrays.toString(phases));
+
+		File file = File.createTempFile("metrics", ".json");
+		metrics.writeReport(file);
+		JsonReader reader = Json.createReader(new FileInputStream(file));
+		JsonObject report = reader.readObject();
+		reader.close();
+		file.delete();
+		metrics.unregister();
+		long reportedCalls = report.getJsonObject("nativeCalls").getJsonNumber("total").longValue();
+		long reportedRows = report.getJsonArray("tables").getJsonObject(0).getJsonNumber("rows").longValue();
+		System.out.println("\tReport: " + reportedCalls + " native calls, " + reportedRows + " rows written");
+		if (objectsRead != objects || reportedCalls != nativeCalls || server.isRegistered(name)) {
+			System.out.println("Metrics differ between the MBean and the report.");
+			System.exit(1);
+		}
+		System.out.println("MBean and report show the same metrics.");
+	}
+
+	private static long plain(int objects) throws ExtractionException {
+		ModelSource source = new SyntheticModelSource("PLAIN", objects, SEED);
+		ModelTraversal traversal = new ModelTraversal(source);
+		traversal.addSink(new JsonModelSink(new NullOutputStream(), new NullOutputStream()));
+		long start = System.nanoTime();
+		traversal.run();
+		return System.nanoTime() - start;
+	}
+
+	private static long metered(int objects, ExtractionMetrics metrics) throws ExtractionException {
+		SchemaCatalog catalog = new SchemaCatalog(new MeteredSchemaSource(new SyntheticSchemaSource(), metrics));
+		ModelSource source = new MeteredModelSource(new SyntheticModelSource("METERED", objects, SEED, catalog),
+				metrics);
+		ModelTraversal traversal = new ModelTraversal(source);
+		traversal.addSink(new MeteredModelSink(
+				new JsonModelSink(new NullOutputStream(), new NullOutputStream()), "JSON files", metrics));
+		long start = System.nanoTime();
+		metrics.startPhase("model");
+		traversal.run();
+		metrics.finish();
+		return System.nanoTime() - start;
+	}
+
+	private static class NullOutputStream extends OutputStream {
+
+		public void write(int b) {
+		}
+
+		public void write(byte[] b, int off, int len) {
+		}
+
+	}
+
+}
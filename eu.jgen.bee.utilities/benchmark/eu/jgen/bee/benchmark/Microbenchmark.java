@@ -0,0 +1,69 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.File;
+
+import eu.jgen.bee.extractor.model.SyntheticModelSource;
+
+/*
+ * Operation measured by BenchmarkHarness. The harness calls setUp() once for
+ * a model, then run() for every warm up and measured iteration, each of them
+ * followed by reset(), and tearDown() at the end. Only run() is timed.
+ */
+public abstract class Microbenchmark {
+
+	private final String name;
+
+	protected Microbenchmark(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/*
+	 * Prepares the input of the operation in the given empty folder.
+	 */
+	public void setUp(SyntheticModelSource source, File folder) throws Exception {
+	}
+
+	/*
+	 * Runs the operation once. The returned value is derived from its result
+	 * and is checked to be the same in every iteration, so the work cannot be
+	 * left out and does not change between iterations.
+	 */
+	public abstract long run() throws Exception;
+
+	/*
+	 * Number of objects handled by one run() of a model of the given size,
+	 * used for the throughput.
+	 */
+	public int getObjects(int size) {
+		return size;
+	}
+
+	/*
+	 * Removes the output of run().
+	 */
+	public void reset() throws Exception {
+	}
+
+	public void tearDown() throws Exception {
+	}
+
+}
@@ -0,0 +1,330 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import eu.jgen.bee.api.BeeGenModel;
+import eu.jgen.bee.api.BeeGenObject;
+import eu.jgen.bee.api.graph.GraphLoader;
+import eu.jgen.bee.api.graph.ModelGraph;
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.json.BeeGenExtractorJSON;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.model.SyntheticModelSource;
+import eu.jgen.bee.extractor.snapshot.SnapshotModelSink;
+import eu.jgen.bee.extractor.snapshot.SnapshotReader;
+import eu.jgen.bee.extractor.sqlite.BulkInserter;
+import eu.jgen.bee.extractor.sqlite.ModelSchema;
+import eu.jgen.bee.extractor.sqlite.SQLiteModelSink;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+import eu.jgen.bee.extractor.traversal.ObjectRecord;
+
+/*
+ * Benchmarks run by BenchmarkHarness. The writers read the synthetic model
+ * through a traversal, so the traversal alone is measured as well to tell
+ * the cost of reading the model from the cost of writing it. The readers
+ * work on output written once by setUp().
+ */
+public final class ModelBenchmarks {
+
+	private static final int OBJECTS_READ = 10000;
+
+	private ModelBenchmarks() {
+	}
+
+	public static List<Microbenchmark> all() {
+		List<Microbenchmark> list = new ArrayList<Microbenchmark>();
+		list.add(new Traversal());
+		list.add(new JsonWriter("jsonWriter", false));
+		list.add(new JsonWriter("ndjsonWriter", true));
+		list.add(new SQLiteLoader());
+		list.add(new GraphFromDatabase());
+		list.add(new GraphFromJson());
+		list.add(new ModelObjects());
+		list.add(new SnapshotScan());
+		return list;
+	}
+
+	/*
+	 * Reads the model without writing it.
+	 */
+	private static class Traversal extends Microbenchmark {
+
+		private ModelSource source;
+
+		Traversal() {
+			super("traversal");
+		}
+
+		public void setUp(SyntheticModelSource source, File folder) {
+			this.source = source;
+		}
+
+		public long run() throws ExtractionException {
+			final long[] count = new long[1];
+			ModelTraversal traversal = new ModelTraversal(source);
+			traversal.addSink(new ModelSink() {
+
+				public void begin(ModelSource source) {
+				}
+
+				public void object(ObjectRecord record) {
+					count[0] += record.getPropertyCount() + record.getAssociationCount();
+				}
+
+				public void end() {
+				}
+
+			});
+			traversal.run();
+			return count[0];
+		}
+
+	}
+
+	/*
+	 * Writes objects.json and associations.json as the JSON extractor does.
+	 */
+	private static class JsonWriter extends Microbenchmark {
+
+		private final boolean ndjson;
+		private ModelSource source;
+		private File folder;
+
+		JsonWriter(String name, boolean ndjson) {
+			super(name);
+			this.ndjson = ndjson;
+		}
+
+		public void setUp(SyntheticModelSource source, File folder) {
+			this.source = source;
+			this.folder = folder;
+		}
+
+		public long run() throws Exception {
+			ModelTraversal traversal = new ModelTraversal(source);
+			traversal.addSink(BeeGenExtractorJSON.createSink(folder.getPath(), ndjson, false));
+			traversal.run();
+			return length(folder);
+		}
+
+		public void reset() {
+			clear(folder);
+		}
+
+	}
+
+	/*
+	 * Loads the wide tables and creates their indexes as the SQLite extractor
+	 * does.
+	 */
+	private static class SQLiteLoader extends Microbenchmark {
+
+		private ModelSource source;
+		private File file;
+
+		SQLiteLoader() {
+			super("sqliteLoader");
+		}
+
+		public void setUp(SyntheticModelSource source, File folder) {
+			this.source = source;
+			this.file = new File(folder, source.getName() + ".db");
+		}
+
+		public long run() throws SQLException, ExtractionException {
+			load(source, file);
+			return file.length();
+		}
+
+		public void reset() {
+			file.delete();
+		}
+
+	}
+
+	/*
+	 * Loads the associations of the database into a ModelGraph.
+	 */
+	private static class GraphFromDatabase extends Microbenchmark {
+
+		private File file;
+
+		GraphFromDatabase() {
+			super("graphFromDatabase");
+		}
+
+		public void setUp(SyntheticModelSource source, File folder) throws SQLException, ExtractionException {
+			file = new File(folder, source.getName() + ".db");
+			load(source, file);
+		}
+
+		public long run() throws Exception {
+			ModelGraph graph = GraphLoader.loadDatabase(file.getPath());
+			return graph.size() * 31L + graph.getEdgeCount();
+		}
+
+	}
+
+	/*
+	 * Loads the associations of the JSON files into a ModelGraph.
+	 */
+	private static class GraphFromJson extends Microbenchmark {
+
+		private File folder;
+
+		GraphFromJson() {
+			super("graphFromJson");
+		}
+
+		public void setUp(SyntheticModelSource source, File folder) throws Exception {
+			this.folder = folder;
+			ModelTraversal traversal = new ModelTraversal(source);
+			traversal.addSink(BeeGenExtractorJSON.createSink(folder.getPath(), false, false));
+			traversal.run();
+		}
+
+		public long run() throws Exception {
+			ModelGraph graph = GraphLoader.loadJson(new File(folder, "associations.json"),
+					new File(folder, "objects.json"));
+			return graph.size() * 31L + graph.getEdgeCount();
+		}
+
+	}
+
+	/*
+	 * Reads random objects with their properties through BeeGenModel without
+	 * its cache.
+	 */
+	private static class ModelObjects extends Microbenchmark {
+
+		private File file;
+		private int count;
+
+		ModelObjects() {
+			super("modelObjects");
+		}
+
+		public void setUp(SyntheticModelSource source, File folder) throws SQLException, ExtractionException {
+			file = new File(folder, source.getName() + ".db");
+			count = source.size();
+			load(source, file);
+		}
+
+		public int getObjects(int size) {
+			return OBJECTS_READ;
+		}
+
+		public long run() throws Exception {
+			BeeGenModel model = BeeGenModel.open(file.getPath(), 0);
+			Random random = new Random(count);
+			long hash = 0;
+			for (int i = 0; i < OBJECTS_READ; i++) {
+				BeeGenObject object = model.getObject(SyntheticModelSource.FIRST_ID + random.nextInt(count));
+				hash = hash * 31 + object.getId();
+				for (int p = 0; p < object.getPropertyCount(); p++) {
+					hash = hash * 31 + object.getValue(p).hashCode();
+				}
+			}
+			model.close();
+			return hash;
+		}
+
+	}
+
+	/*
+	 * Opens the snapshot and reads every object, property and association.
+	 */
+	private static class SnapshotScan extends Microbenchmark {
+
+		private File file;
+
+		SnapshotScan() {
+			super("snapshotScan");
+		}
+
+		public void setUp(SyntheticModelSource source, File folder) throws ExtractionException {
+			file = new File(folder, source.getName() + ".snapshot");
+			ModelTraversal traversal = new ModelTraversal(source);
+			traversal.addSink(new SnapshotModelSink(file));
+			traversal.run();
+		}
+
+		public long run() throws Exception {
+			SnapshotReader reader = new SnapshotReader(file);
+			long checksum = 0;
+			for (int i = 0; i < reader.getObjectCount(); i++) {
+				checksum += reader.getId(i) + reader.getObjType(i);
+			}
+			for (int i = 0; i < reader.getPropertyCount(); i++) {
+				checksum += reader.getPropertyObjid(i) + reader.getPrpType(i) + reader.getRawValue(i);
+			}
+			for (int i = 0; i < reader.getAssociationCount(); i++) {
+				checksum += reader.getFrom(i) + reader.getTo(i) + reader.getAscType(i) + reader.getSeqno(i);
+			}
+			return checksum;
+		}
+
+	}
+
+	private static void load(ModelSource source, File file) throws SQLException, ExtractionException {
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+		Statement stmt = connection.createStatement();
+		stmt.execute("PRAGMA journal_mode = OFF;");
+		ModelSchema.createTables(stmt);
+		stmt.close();
+		connection.setAutoCommit(false);
+		ModelTraversal traversal = new ModelTraversal(source);
+		traversal.addSink(new SQLiteModelSink(inserter(connection, "GenObjects", "id", "objType", "objMnemonic", "name"),
+				inserter(connection, "GenProperties", "objid", "prpType", "mnemonic", "format", "value"),
+				inserter(connection, "GenAssociations", "fromObjid", "ascType", "toObjid", "inverseAscType",
+						"ascMnemonic", "card", "direction", "seqno")));
+		traversal.run();
+		connection.commit();
+		ModelSchema.createIndexes(connection);
+		connection.commit();
+		connection.close();
+	}
+
+	private static BulkInserter inserter(Connection connection, String table, String... columns)
+			throws SQLException {
+		return new BulkInserter(connection, table, columns, 1000, 1);
+	}
+
+	private static long length(File folder) {
+		long length = 0;
+		for (File file : folder.listFiles()) {
+			length += file.length();
+		}
+		return length;
+	}
+
+	static void clear(File folder) {
+		for (File file : folder.listFiles()) {
+			file.delete();
+		}
+	}
+
+}
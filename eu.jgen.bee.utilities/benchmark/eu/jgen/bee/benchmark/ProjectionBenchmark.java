@@ -0,0 +1,209 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.metrics.ExtractionMetrics;
+import eu.jgen.bee.extractor.metrics.MeteredModelSource;
+import eu.jgen.bee.extractor.model.MemoryModelSource;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.schema.ObjTypeEntry;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+import eu.jgen.bee.extractor.traversal.ObjectRecord;
+import eu.jgen.bee.extractor.traversal.Projection;
+
+/*
+ * Extracts projections of a synthetic in-memory model and compares them with
+ * the full extraction. The objects of a projection must be exactly those
+ * within the closure of the roots, found here by a separate breadth first
+ * search of the full extraction, with only the projected properties and
+ * associations and no association leading outside of the projection. Time
+ * and calls made to the model are shown for each projection.
+ *
+ * Arguments: [number of objects (default 200000)]
+ */
+public class ProjectionBenchmark {
+
+	private static final long SEED = 2020;
+
+	public static void main(String[] args) throws Exception {
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		MemoryModelSource model = MemoryModelSource.generate("BENCHMARK", objects, SEED);
+		ObjTypeEntry root = model.getCatalog().get(ObjTypeCode.ACBLKBSD);
+		String rootAscs = String.join(",", root.ascMnemonics);
+		List<String> problems = new ArrayList<String>();
+
+		ExtractionMetrics metrics = new ExtractionMetrics("benchmark");
+		Map<Long, ObjectRecord> full = new LinkedHashMap<Long, ObjectRecord>();
+		long start = System.nanoTime();
+		extract(new MeteredModelSource(model, metrics), null, full);
+		long fullTime = System.nanoTime() - start;
+		long fullCalls = metrics.getNativeCallCount();
+
+		Projection[] projections = { Projection.parse("ACBLKBSD", "", "", 0),
+				Projection.parse("ACBLKBSD", "", "", 2),
+				Projection.parse("ACBLKBSD", "NAME", rootAscs, 3),
+				Projection.parse("", "NAME,MODDATE", rootAscs, 0) };
+
+		System.out.println("Projections of a model of " + objects + " objects, "
+				+ model.getObjIds(ObjTypeCode.ACBLKBSD).size() + " of them of the type ACBLKBSD");
+		System.out.println(String.format("%-70s %9s %9s %9s %10s", "", "objects", "reached", "ms", "calls"));
+		System.out.println(String.format("%-70s %9d %9s %9d %10d", "full extraction", full.size(), "",
+				fullTime / 1000000, fullCalls));
+		for (Projection projection : projections) {
+			metrics = new ExtractionMetrics("benchmark");
+			Map<Long, ObjectRecord> projected = new LinkedHashMap<Long, ObjectRecord>();
+			start = System.nanoTime();
+			ModelTraversal traversal = extract(new MeteredModelSource(model, metrics), projection, projected);
+			long time = System.nanoTime() - start;
+			System.out.println(String.format("%-70s %9d %9d %9d %10d", projection, projected.size(),
+					traversal.getReachedCount(), time / 1000000, metrics.getNativeCallCount()));
+			if (projected.size() != traversal.getObjectCount()) {
+				problems.add(projection + ": objects are read more than once");
+			}
+			check(full, projection, projected, problems);
+		}
+
+		if (problems.isEmpty()) {
+			System.out.println("All projections match the full extraction.");
+		} else {
+			for (String problem : problems) {
+				System.out.println("Problem: " + problem);
+			}
+			System.exit(1);
+		}
+	}
+
+	private static ModelTraversal extract(ModelSource source, Projection projection,
+			final Map<Long, ObjectRecord> records) throws ExtractionException {
+		ModelTraversal traversal = new ModelTraversal(source);
+		if (projection != null) {
+			traversal.setProjection(projection);
+		}
+		traversal.addSink(new ModelSink() {
+
+			public void begin(ModelSource source) {
+			}
+
+			public void object(ObjectRecord record) {
+				records.put(record.getId(), record);
+			}
+
+			public void end() {
+			}
+
+		});
+		traversal.run();
+		return traversal;
+	}
+
+	/*
+	 * Compares the projection with the full extraction.
+	 */
+	private static void check(Map<Long, ObjectRecord> full, Projection projection,
+			Map<Long, ObjectRecord> projected, List<String> problems) {
+		Map<Long, Integer> distances = distances(full, projection);
+		for (Map.Entry<Long, Integer> entry : distances.entrySet()) {
+			if (entry.getValue() <= projection.getClosure() && !projected.containsKey(entry.getKey())) {
+				problems.add(projection + ": object " + entry.getKey() + " at distance " + entry.getValue()
+						+ " is missing");
+				return;
+			}
+		}
+		for (ObjectRecord record : projected.values()) {
+			Integer distance = distances.get(record.getId());
+			if (distance == null || distance > projection.getClosure()) {
+				problems.add(projection + ": object " + record.getId() + " is outside the closure");
+				return;
+			}
+			String expected = describe(full.get(record.getId()), projection, projected);
+			String found = describe(record, projection, projected);
+			if (!expected.equals(found)) {
+				problems.add(projection + ": object " + record.getId() + " is " + found + " instead of " + expected);
+				return;
+			}
+			for (int i = 0; i < record.getAssociationCount(); i++) {
+				if (!projected.containsKey(record.getTarget(i))) {
+					problems.add(projection + ": association of object " + record.getId() + " leads outside");
+					return;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Shortest number of projected associations from a root to each object of
+	 * the full extraction, all objects are roots without object types.
+	 */
+	private static Map<Long, Integer> distances(Map<Long, ObjectRecord> full, Projection projection) {
+		Map<Long, Integer> distances = new HashMap<Long, Integer>();
+		ArrayDeque<Long> queue = new ArrayDeque<Long>();
+		for (ObjectRecord record : full.values()) {
+			if (!projection.hasObjTypes() || projection.getObjTypes().contains(record.getEntry().objTypeCode)) {
+				distances.put(record.getId(), 0);
+				queue.add(record.getId());
+			}
+		}
+		while (!queue.isEmpty()) {
+			ObjectRecord record = full.get(queue.poll());
+			int distance = distances.get(record.getId());
+			for (int i = 0; i < record.getAssociationCount(); i++) {
+				if (!projection.getAssociations().isEmpty() && !projection.getAssociations()
+						.contains(record.getEntry().associations[record.getAssociationIndex(i)])) {
+					continue;
+				}
+				if (!distances.containsKey(record.getTarget(i))) {
+					distances.put(record.getTarget(i), distance + 1);
+					queue.add(record.getTarget(i));
+				}
+			}
+		}
+		return distances;
+	}
+
+	/*
+	 * Projected properties and associations of the record, the associations
+	 * only when their target is in the projection.
+	 */
+	private static String describe(ObjectRecord record, Projection projection, Map<Long, ObjectRecord> projected) {
+		StringBuilder builder = new StringBuilder(record.getObjMnemonic());
+		for (int i = 0; i < record.getPropertyCount(); i++) {
+			if (projection.getProperties().isEmpty() || projection.getProperties()
+					.contains(record.getEntry().properties[record.getPropertyIndex(i)])) {
+				builder.append(" " + record.getPrpMnemonic(i) + "=" + record.getValue(i));
+			}
+		}
+		for (int i = 0; i < record.getAssociationCount(); i++) {
+			if ((projection.getAssociations().isEmpty() || projection.getAssociations()
+					.contains(record.getEntry().associations[record.getAssociationIndex(i)]))
+					&& projected.containsKey(record.getTarget(i))) {
+				builder.append(" " + record.getAscMnemonic(i) + "->" + record.getTarget(i) + "#" + record.getSeqno(i));
+			}
+		}
+		return builder.toString();
+	}
+
+}
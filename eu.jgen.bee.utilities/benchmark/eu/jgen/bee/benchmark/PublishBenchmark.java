@@ -0,0 +1,353 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.sqlite.SQLiteConfig;
+
+import eu.jgen.bee.api.graph.GraphLoader;
+import eu.jgen.bee.extractor.json.BeeGenExtractorJSON;
+import eu.jgen.bee.extractor.model.ModelProfile;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.model.SyntheticModelSource;
+import eu.jgen.bee.extractor.publish.Manifest;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+import eu.jgen.bee.extractor.schema.SchemaSource;
+import eu.jgen.bee.extractor.schema.SyntheticSchemaSource;
+import eu.jgen.bee.extractor.sqlite.BeeGenExtractorSQLite;
+import eu.jgen.bee.extractor.sqlite.BulkInserter;
+import eu.jgen.bee.extractor.sqlite.MetaDataWriter;
+import eu.jgen.bee.extractor.sqlite.MetaTypeGenerator;
+import eu.jgen.bee.extractor.sqlite.ModelSchema;
+import eu.jgen.bee.extractor.trace.RecordingModelSource;
+import eu.jgen.bee.extractor.trace.RecordingSchemaSource;
+import eu.jgen.bee.extractor.trace.TraceWriter;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+import eu.jgen.bee.extractor.traversal.ObjectRecord;
+
+/*
+ * Runs the SQLite and JSON extractors in separate JVMs on traces of synthetic
+ * models while readers keep querying the published database. One reader
+ * holds its connection open across the publication and must go on seeing the
+ * old model, another looks up the database through the manifest for every
+ * query and must see either the old or the new model, never an error. The
+ * manifests must match the files of the published generation, earlier
+ * generations must be removed, a failed extraction must leave the published
+ * database as it was, and outputs the JSON extractor no longer writes must
+ * not be published.
+ *
+ * Arguments: [number of objects (default 100000)]
+ */
+public class PublishBenchmark {
+
+	private static final String MODEL = "PUBLISH";
+	private static final long SEED = 2020;
+
+	public static void main(String[] args) throws Exception {
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		File root = Files.createTempDirectory("bee-publish").toFile();
+		List<String> problems = new ArrayList<String>();
+		try {
+			File model = new File(root, "publish.ief");
+			File bee = new File(model, "bee");
+			model.mkdirs();
+			File first = new File(root, "first.trace");
+			File second = new File(root, "second.trace");
+			record(first, objects, root);
+			record(second, objects + 1000, root);
+
+			long time = extract(BeeGenExtractorSQLite.class, model, first, root);
+			System.out.println("First extraction published in " + time + " ms");
+			File database = new File(bee, MODEL + ".db");
+			verify(bee, "sqlite", "GenObjects", objects, problems);
+
+			Connection held = open(database);
+			Reader heldReader = new Reader(database, held);
+			Reader freshReader = new Reader(database, null);
+			heldReader.start();
+			freshReader.start();
+			time = extract(BeeGenExtractorSQLite.class, model, second, root);
+			Thread.sleep(200);
+			heldReader.finish();
+			freshReader.finish();
+			held.close();
+			System.out.println("Second extraction published in " + time + " ms");
+			System.out.println("\tReader holding its connection: " + heldReader.report());
+			System.out.println("\tReader opening the database for every query: " + freshReader.report());
+			verify(bee, "sqlite", "GenObjects", objects + 1000, problems);
+			heldReader.check("held", new long[] { objects }, problems);
+			freshReader.check("fresh", new long[] { objects, objects + 1000 }, problems);
+			if (freshReader.last != objects + 1000) {
+				problems.add("fresh reader does not see the new model");
+			}
+			String[] generations = bee.list();
+			Arrays.sort(generations);
+			if (!Arrays.equals(generations, new String[] { "sqlite-1", "sqlite-2", "sqlite-manifest.json" })) {
+				problems.add("bee folder holds " + Arrays.toString(generations) + " after the publication");
+			}
+
+			File truncated = new File(root, "truncated.trace");
+			truncate(first, truncated);
+			if (run(BeeGenExtractorSQLite.class, model, truncated, root) == 0) {
+				problems.add("extraction of a truncated trace has not failed");
+			}
+			System.out.println("Extraction of a truncated trace has failed as expected");
+			verify(bee, "sqlite", "GenObjects", objects + 1000, problems);
+			if (!Manifest.resolve(database).getParentFile().getName().equals("sqlite-2")) {
+				problems.add("failed extraction has changed the published generation");
+			}
+
+			extract(BeeGenExtractorJSON.class, model, first, root, "-ndjson");
+			verify(bee, "json", "objects.ndjson", objects, problems);
+			extract(BeeGenExtractorJSON.class, model, second, root, "-ndjson", "-gzip");
+			verify(bee, "json", "objects.ndjson.gz", objects + 1000, problems);
+			if (Manifest.resolve(new File(bee, "objects.ndjson")).exists()) {
+				problems.add("objects.ndjson written by the earlier extraction is still published");
+			}
+			int nodes = GraphLoader.loadJson(new File(bee, "associations.ndjson.gz"),
+					new File(bee, "objects.ndjson.gz")).size();
+			if (nodes != objects + 1000) {
+				problems.add("published JSON files hold " + nodes + " objects");
+			}
+		} finally {
+			delete(root);
+		}
+		if (problems.isEmpty()) {
+			System.out.println("All publications are complete and no reader has failed.");
+		} else {
+			for (String problem : problems) {
+				System.out.println("Problem: " + problem);
+			}
+			System.exit(1);
+		}
+	}
+
+	/*
+	 * Records the calls the extractors make for a synthetic model: the
+	 * traversal, the meta data tables and the enums.
+	 */
+	private static void record(File file, int objects, File root) throws Exception {
+		TraceWriter writer = new TraceWriter(file, MODEL, SyntheticSchemaSource.SCHEMA_LEVEL, "-objects=" + objects);
+		SchemaSource schema = new RecordingSchemaSource(new SyntheticSchemaSource(), writer);
+		ModelSource source = new RecordingModelSource(new SyntheticModelSource(MODEL, objects, SEED,
+				new SchemaCatalog(schema), ModelProfile.typical()), writer);
+		ModelTraversal traversal = new ModelTraversal(source);
+		traversal.addSink(new ModelSink() {
+
+			public void begin(ModelSource source) {
+			}
+
+			public void object(ObjectRecord record) {
+			}
+
+			public void end() {
+			}
+
+		});
+		traversal.run();
+		File scratch = new File(root, "scratch");
+		scratch.mkdirs();
+		new MetaTypeGenerator(schema).writeAll(scratch);
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + new File(scratch, "meta.db").getPath());
+		Statement stmt = connection.createStatement();
+		ModelSchema.createTables(stmt);
+		stmt.close();
+		connection.setAutoCommit(false);
+		MetaDataWriter.writeObjects(schema, new BulkInserter(connection, "GenMetaObjects",
+				MetaDataWriter.OBJECT_COLUMNS, 1000, 1));
+		MetaDataWriter.writeProperties(schema, new BulkInserter(connection, "GenMetaProperties",
+				MetaDataWriter.PROPERTY_COLUMNS, 1000, 1));
+		MetaDataWriter.writeAssociations(schema, new BulkInserter(connection, "GenMetaAssociations",
+				MetaDataWriter.ASSOCIATION_COLUMNS, 1000, 1));
+		connection.commit();
+		connection.close();
+		delete(scratch);
+		writer.close();
+	}
+
+	private static long extract(Class<?> extractor, File model, File trace, File root, String... options)
+			throws Exception {
+		long start = System.nanoTime();
+		if (run(extractor, model, trace, root, options) != 0) {
+			throw new IllegalStateException(extractor.getSimpleName() + " has failed on " + trace.getName());
+		}
+		return (System.nanoTime() - start) / 1000000;
+	}
+
+	/*
+	 * Runs the extractor in its own JVM, as it calls System.exit, and returns
+	 * its exit code. The output is shown when it fails.
+	 */
+	private static int run(Class<?> extractor, File model, File trace, File root, String... options)
+			throws Exception {
+		List<String> command = new ArrayList<String>(Arrays.asList(
+				System.getProperty("java.home") + File.separator + "bin" + File.separator + "java", "-cp",
+				System.getProperty("java.class.path"), extractor.getName(), model.getPath(),
+				"-replay=" + trace.getPath()));
+		command.addAll(Arrays.asList(options));
+		File log = new File(root, "extractor.log");
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+		int code = process.waitFor();
+		if (code != 0 && !trace.getName().startsWith("truncated")) {
+			System.out.println(new String(Files.readAllBytes(log.toPath()), "UTF-8"));
+		}
+		return code;
+	}
+
+	/*
+	 * Checks the published files against the manifest and the rows it records.
+	 */
+	private static void verify(File bee, String tool, String table, long rows, List<String> problems)
+			throws IOException {
+		Manifest manifest = Manifest.read(Manifest.getFile(bee, tool));
+		for (String problem : manifest.verify(bee)) {
+			problems.add(tool + ": " + problem);
+		}
+		Long found = manifest.getRows().get(table);
+		if (found == null || found.longValue() != rows) {
+			problems.add(tool + ": manifest records " + found + " rows of " + table + " instead of " + rows);
+		}
+		System.out.println("\tManifest of " + tool + " lists " + manifest.getFileNames() + ", " + manifest.getLength()
+				+ " bytes");
+	}
+
+	private static void truncate(File file, File truncated) throws IOException {
+		byte[] bytes = new byte[(int) (file.length() / 2)];
+		FileInputStream input = new FileInputStream(file);
+		int read = 0;
+		while (read < bytes.length) {
+			read += input.read(bytes, read, bytes.length - read);
+		}
+		input.close();
+		FileOutputStream output = new FileOutputStream(truncated);
+		output.write(bytes);
+		output.close();
+	}
+
+	/*
+	 * Opens the database of the published generation.
+	 */
+	private static Connection open(File database) throws SQLException, IOException {
+		SQLiteConfig config = new SQLiteConfig();
+		config.setReadOnly(true);
+		return config.createConnection("jdbc:sqlite:" + Manifest.resolve(database).getPath());
+	}
+
+	/*
+	 * Counts the objects of the database again and again, either on its own
+	 * connection or on a new connection for every query.
+	 */
+	private static final class Reader extends Thread {
+
+		private final File database;
+		private final Connection connection;
+		private final List<Long> seen = new ArrayList<Long>();
+		private volatile boolean done;
+		private int querycount;
+		private int errorcount;
+		private String lastError;
+		private long maxTime;
+		private long last = -1;
+
+		Reader(File database, Connection connection) {
+			this.database = database;
+			this.connection = connection;
+		}
+
+		public void run() {
+			while (!done) {
+				long start = System.nanoTime();
+				try {
+					Connection current = connection == null ? open(database) : connection;
+					try {
+						Statement stmt = current.createStatement();
+						ResultSet resultSet = stmt.executeQuery("SELECT COUNT(*) FROM GenObjects;");
+						resultSet.next();
+						last = resultSet.getLong(1);
+						resultSet.close();
+						stmt.close();
+						if (!seen.contains(last)) {
+							seen.add(last);
+						}
+					} finally {
+						if (connection == null) {
+							current.close();
+						}
+					}
+				} catch (SQLException e) {
+					errorcount++;
+					lastError = e.getMessage();
+				} catch (IOException e) {
+					errorcount++;
+					lastError = e.getMessage();
+				}
+				querycount++;
+				maxTime = Math.max(maxTime, System.nanoTime() - start);
+			}
+		}
+
+		void finish() throws InterruptedException {
+			done = true;
+			join();
+		}
+
+		void check(String name, long[] expected, List<String> problems) {
+			if (errorcount > 0) {
+				problems.add(name + " reader has failed " + errorcount + " times: " + lastError);
+			}
+			for (Long count : seen) {
+				boolean found = false;
+				for (long value : expected) {
+					found |= count.longValue() == value;
+				}
+				if (!found) {
+					problems.add(name + " reader has seen " + count + " objects");
+				}
+			}
+		}
+
+		String report() {
+			return querycount + " queries, " + errorcount + " errors, longest " + maxTime / 1000000
+					+ " ms, object counts seen " + seen;
+		}
+
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.SyntheticModelSource;
+import eu.jgen.bee.extractor.sqlite.BulkInserter;
+import eu.jgen.bee.extractor.sqlite.ModelSchema;
+import eu.jgen.bee.extractor.sqlite.SQLiteModelSink;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+
+/*
+ * Runs representative queries against a Bee Gen Model generated from a
+ * synthetic model, first with the primary keys only and then after the
+ * secondary indexes are created and analyzed. Each query is run with
+ * parameters taken from rows of the database, and the average time and the
+ * query plan are shown for both runs.
+ *
+ * Arguments: [objects (default 200000)] [runs of each query (default 50)]
+ */
+public class QueryBenchmark {
+
+	private static final long SEED = 20200101L;
+
+	private static final String[][] QUERIES = {
+			{ "object by id", "SELECT id, objType, name FROM GenObjects WHERE id = ?;",
+					"SELECT id FROM GenObjects" },
+			{ "forward navigation", "SELECT toObjid FROM GenAssociations WHERE fromObjid = ? AND ascType = ? ORDER BY seqno;",
+					"SELECT fromObjid, ascType FROM GenAssociations" },
+			{ "inverse navigation", "SELECT fromObjid FROM GenAssociations WHERE toObjid = ? AND ascType = ?;",
+					"SELECT toObjid, ascType FROM GenAssociations" },
+			{ "where used", "SELECT fromObjid, ascType FROM GenAssociations WHERE toObjid = ?;",
+					"SELECT toObjid FROM GenAssociations" },
+			{ "objects of type", "SELECT id, name FROM GenObjects WHERE objType = ?;",
+					"SELECT objType FROM GenObjects" },
+			{ "object by name", "SELECT id, objType FROM GenObjects WHERE name = ?;",
+					"SELECT name FROM GenObjects" },
+			{ "property by value", "SELECT objid FROM GenProperties WHERE prpType = ? AND value = ?;",
+					"SELECT prpType, value FROM GenProperties" } };
+
+	public static void main(String[] args) throws SQLException, ExtractionException, IOException {
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		File file = File.createTempFile("beegen", ".db");
+		try {
+			Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+			long start = System.nanoTime();
+			load(connection, objects);
+			System.out.println("Loaded " + objects + " synthetic objects in " + (System.nanoTime() - start) / 1000000
+					+ " ms");
+
+			List<List<Object[]>> parameters = new ArrayList<List<Object[]>>();
+			for (String[] query : QUERIES) {
+				parameters.add(sample(connection, query[2], runs));
+			}
+			long[] before = run(connection, parameters);
+			String[] plansBefore = plans(connection);
+
+			System.out.println(ModelSchema.createIndexes(connection));
+			long[] after = run(connection, parameters);
+			String[] plansAfter = plans(connection);
+
+			System.out.println(String.format("%-20s %12s %12s %8s", "query", "before us", "after us", "speed up"));
+			for (int i = 0; i < QUERIES.length; i++) {
+				System.out.println(String.format("%-20s %12d %12d %8.1f", QUERIES[i][0], before[i] / 1000,
+						after[i] / 1000, (double) before[i] / Math.max(1, after[i])));
+			}
+			System.out.println("Query plans:");
+			for (int i = 0; i < QUERIES.length; i++) {
+				System.out.println("\t" + QUERIES[i][0] + ": " + plansBefore[i] + " -> " + plansAfter[i]);
+			}
+			connection.close();
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static void load(Connection connection, int objects) throws SQLException, ExtractionException {
+		Statement stmt = connection.createStatement();
+		stmt.execute("PRAGMA journal_mode = OFF;");
+		ModelSchema.createTables(stmt);
+		stmt.close();
+		connection.setAutoCommit(false);
+		ModelTraversal traversal = new ModelTraversal(new SyntheticModelSource("BENCHMARK", objects, SEED));
+		traversal.addSink(new SQLiteModelSink(
+				new BulkInserter(connection, "GenObjects", new String[] { "id", "objType", "objMnemonic", "name" },
+						1000, 1),
+				new BulkInserter(connection, "GenProperties",
+						new String[] { "objid", "prpType", "mnemonic", "format", "value" }, 1000, 1),
+				new BulkInserter(connection, "GenAssociations", new String[] { "fromObjid", "ascType", "toObjid",
+						"inverseAscType", "ascMnemonic", "card", "direction", "seqno" }, 1000, 1)));
+		traversal.run();
+		connection.commit();
+		connection.setAutoCommit(true);
+	}
+
+	/*
+	 * Parameters for the query taken from random rows of the table.
+	 */
+	private static List<Object[]> sample(Connection connection, String sql, int runs) throws SQLException {
+		Statement stmt = connection.createStatement();
+		ResultSet resultSet = stmt.executeQuery(sql + " ORDER BY random() LIMIT " + runs + ";");
+		List<Object[]> list = new ArrayList<Object[]>();
+		int columns = resultSet.getMetaData().getColumnCount();
+		while (resultSet.next()) {
+			Object[] row = new Object[columns];
+			for (int i = 0; i < columns; i++) {
+				row[i] = resultSet.getObject(i + 1);
+			}
+			list.add(row);
+		}
+		resultSet.close();
+		stmt.close();
+		return list;
+	}
+
+	/*
+	 * Average time in nanoseconds of each query.
+	 */
+	private static long[] run(Connection connection, List<List<Object[]>> parameters) throws SQLException {
+		long[] times = new long[QUERIES.length];
+		Random random = new Random(SEED);
+		for (int i = 0; i < QUERIES.length; i++) {
+			PreparedStatement statement = connection.prepareStatement(QUERIES[i][1]);
+			List<Object[]> rows = parameters.get(i);
+			execute(statement, rows.get(random.nextInt(rows.size())));
+			long start = System.nanoTime();
+			for (Object[] row : rows) {
+				execute(statement, row);
+			}
+			times[i] = (System.nanoTime() - start) / Math.max(1, rows.size());
+			statement.close();
+		}
+		return times;
+	}
+
+	private static int execute(PreparedStatement statement, Object[] row) throws SQLException {
+		for (int i = 0; i < row.length; i++) {
+			statement.setObject(i + 1, row[i]);
+		}
+		ResultSet resultSet = statement.executeQuery();
+		int count = 0;
+		while (resultSet.next()) {
+			count++;
+		}
+		resultSet.close();
+		return count;
+	}
+
+	private static String[] plans(Connection connection) throws SQLException {
+		String[] plans = new String[QUERIES.length];
+		Statement stmt = connection.createStatement();
+		for (int i = 0; i < QUERIES.length; i++) {
+			String sql = QUERIES[i][1].replace("?", "1");
+			ResultSet resultSet = stmt.executeQuery("EXPLAIN QUERY PLAN " + sql);
+			StringBuilder plan = new StringBuilder();
+			while (resultSet.next()) {
+				plan.append(plan.length() == 0 ? "" : "; ").append(resultSet.getString(4));
+			}
+			resultSet.close();
+			plans[i] = plan.toString();
+		}
+		stmt.close();
+		return plans;
+	}
+
+}
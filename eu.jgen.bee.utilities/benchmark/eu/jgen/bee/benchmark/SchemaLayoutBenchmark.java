@@ -0,0 +1,180 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import eu.jgen.bee.api.BeeGenException;
+import eu.jgen.bee.api.BeeGenModel;
+import eu.jgen.bee.api.BeeGenObject;
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.SyntheticModelSource;
+import eu.jgen.bee.extractor.sqlite.BulkInserter;
+import eu.jgen.bee.extractor.sqlite.CompactModelSink;
+import eu.jgen.bee.extractor.sqlite.ModelSchema;
+import eu.jgen.bee.extractor.sqlite.SQLiteModelSink;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+
+/*
+ * Loads the same synthetic model with the wide and with the compact layout and
+ * compares load time, file size and the time to read random objects with
+ * their properties through BeeGenModel. The views of the compact layout must
+ * return exactly the rows of the wide tables, and the objects read must be
+ * the same.
+ *
+ * Arguments: [objects (default 200000)] [objects read (default 20000)]
+ */
+public class SchemaLayoutBenchmark {
+
+	private static final long SEED = 20200101L;
+
+	public static void main(String[] args) throws SQLException, ExtractionException, IOException, BeeGenException {
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int reads = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+		File wide = File.createTempFile("beegen-wide", ".db");
+		File compact = File.createTempFile("beegen-compact", ".db");
+		try {
+			long wideLoad = load(wide, objects, false);
+			long compactLoad = load(compact, objects, true);
+			int differences = compare(wide, compact);
+			long[] wideRead = read(wide, objects, reads);
+			long[] compactRead = read(compact, objects, reads);
+			if (wideRead[1] != compactRead[1]) {
+				differences++;
+			}
+
+			System.out.println(String.format("%-10s %12s %12s %14s", "layout", "load ms", "size KB", "read us/object"));
+			System.out.println(String.format("%-10s %12d %12d %14.1f", "wide", wideLoad / 1000000, wide.length() / 1024,
+					wideRead[0] / 1000.0 / reads));
+			System.out.println(String.format("%-10s %12d %12d %14.1f", "compact", compactLoad / 1000000,
+					compact.length() / 1024, compactRead[0] / 1000.0 / reads));
+			System.out.println(String.format("Compact file is %.0f%% of the wide one.",
+					compact.length() * 100.0 / wide.length()));
+			if (differences != 0) {
+				System.out.println("Compact layout differs from the wide one in " + differences + " rows.");
+				System.exit(1);
+			}
+			System.out.println("Views and objects read from the compact layout are the same as from the wide one.");
+		} finally {
+			wide.delete();
+			compact.delete();
+		}
+	}
+
+	private static long load(File file, int objects, boolean compact) throws SQLException, ExtractionException {
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+		Statement stmt = connection.createStatement();
+		stmt.execute("PRAGMA journal_mode = OFF;");
+		long start = System.nanoTime();
+		if (compact) {
+			ModelSchema.createCompactTables(stmt);
+		} else {
+			ModelSchema.createTables(stmt);
+		}
+		connection.setAutoCommit(false);
+		ModelTraversal traversal = new ModelTraversal(new SyntheticModelSource("BENCHMARK", objects, SEED));
+		ModelSink sink;
+		if (compact) {
+			sink = new CompactModelSink(connection, inserter(connection, "GenObjectsData", "id", "objType", "name"),
+					inserter(connection, "GenPropertiesData", "objid", "prpType", "intValue", "textId"),
+					inserter(connection, "GenAssociationsData", "fromObjid", "ascType", "seqno", "toObjid"),
+					inserter(connection, "GenTexts", "id", "value"));
+		} else {
+			sink = new SQLiteModelSink(inserter(connection, "GenObjects", "id", "objType", "objMnemonic", "name"),
+					inserter(connection, "GenProperties", "objid", "prpType", "mnemonic", "format", "value"),
+					inserter(connection, "GenAssociations", "fromObjid", "ascType", "toObjid", "inverseAscType",
+							"ascMnemonic", "card", "direction", "seqno"));
+		}
+		traversal.addSink(sink);
+		traversal.run();
+		connection.commit();
+		ModelSchema.createIndexes(connection, compact);
+		connection.commit();
+		long elapsed = System.nanoTime() - start;
+		stmt.close();
+		connection.close();
+		return elapsed;
+	}
+
+	private static BulkInserter inserter(Connection connection, String table, String... columns)
+			throws SQLException {
+		return new BulkInserter(connection, table, columns, 1000, 1);
+	}
+
+	/*
+	 * Number of rows found in only one of the databases.
+	 */
+	private static int compare(File wide, File compact) throws SQLException {
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + wide.getPath());
+		Statement stmt = connection.createStatement();
+		stmt.execute("ATTACH DATABASE '" + compact.getPath() + "' AS compact;");
+		int differences = 0;
+		for (String table : new String[] { "GenObjects", "GenProperties", "GenAssociations" }) {
+			differences += count(stmt, "SELECT COUNT(*) FROM (SELECT * FROM main." + table + " EXCEPT SELECT * FROM compact."
+					+ table + ");");
+			differences += count(stmt, "SELECT COUNT(*) FROM (SELECT * FROM compact." + table + " EXCEPT SELECT * FROM main."
+					+ table + ");");
+			if (count(stmt, "SELECT COUNT(*) FROM main." + table) != count(stmt, "SELECT COUNT(*) FROM compact." + table)) {
+				differences++;
+			}
+		}
+		stmt.close();
+		connection.close();
+		return differences;
+	}
+
+	private static int count(Statement stmt, String sql) throws SQLException {
+		ResultSet resultSet = stmt.executeQuery(sql);
+		resultSet.next();
+		int count = resultSet.getInt(1);
+		resultSet.close();
+		return count;
+	}
+
+	/*
+	 * Time taken to read the objects and a hash of their contents.
+	 */
+	private static long[] read(File file, int objects, int reads) throws BeeGenException {
+		BeeGenModel model = BeeGenModel.open(file.getPath(), 0);
+		Random random = new Random(SEED);
+		BeeGenObject[] read = new BeeGenObject[reads];
+		long start = System.nanoTime();
+		for (int i = 0; i < reads; i++) {
+			read[i] = model.getObject(SyntheticModelSource.FIRST_ID + random.nextInt(objects));
+		}
+		long elapsed = System.nanoTime() - start;
+		model.close();
+		long hash = 0;
+		for (BeeGenObject object : read) {
+			hash = hash * 31 + object.getId() + object.getObjType() + object.getObjMnemonic().hashCode()
+					+ String.valueOf(object.getName()).hashCode();
+			for (int i = 0; i < object.getPropertyCount(); i++) {
+				hash = hash * 31 + object.getPrpType(i) + object.getPrpMnemonic(i).hashCode()
+						+ object.getFormat(i).hashCode() + object.getValue(i).hashCode();
+			}
+		}
+		return new long[] { elapsed, hash };
+	}
+
+}
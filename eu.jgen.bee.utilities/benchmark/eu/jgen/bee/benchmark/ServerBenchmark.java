@@ -0,0 +1,587 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.ProcessBuilder.Redirect;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+
+import com.ca.gen.jmmi.ids.ObjId;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+
+import eu.jgen.bee.api.BeeGenModel;
+import eu.jgen.bee.api.BeeGenObject;
+import eu.jgen.bee.api.server.BeeGenServer;
+import eu.jgen.bee.api.server.LatencyHistogram;
+import eu.jgen.bee.api.server.ModelRegistry;
+import eu.jgen.bee.extractor.model.MemoryObject;
+import eu.jgen.bee.extractor.model.SyntheticModelSource;
+import eu.jgen.bee.extractor.schema.ObjTypeEntry;
+import eu.jgen.bee.extractor.schema.SyntheticSchemaSource;
+import eu.jgen.bee.extractor.sqlite.BulkInserter;
+import eu.jgen.bee.extractor.sqlite.MetaDataWriter;
+import eu.jgen.bee.extractor.sqlite.ModelSchema;
+import eu.jgen.bee.extractor.sqlite.SQLiteModelSink;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+
+/*
+ * Runs the same analysis scripts against a Bee Gen Model generated from a
+ * synthetic model, first each script opening the database itself as the
+ * scripts do today, then each script asking the query server. Every script
+ * runs a mix of object lookups, property reads and navigations of
+ * associations and their inverses, several scripts at once. The scripts are
+ * run as threads of this JVM and then each in its own JVM, as a build farm
+ * runs them. The answers of the server are compared with BeeGenModel for a
+ * sample of objects, and at the end the database is replaced while a script
+ * keeps asking, which must load it again without failing any request.
+ *
+ * Arguments: [objects (default 100000)] [scripts (default 32)] [queries per script (default 200)]
+ *            [scripts at once (default 8)]
+ */
+public class ServerBenchmark {
+
+	private static final long SEED = 20200101L;
+	private static final String NAME = "BENCHMARK";
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 3 && args[0].equals("-script")) {
+			System.exit(runScript(args[1], new File(args[2])));
+		}
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int scripts = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+		int queries = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+		int clients = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+		File folder = Files.createTempDirectory("beegen").toFile();
+		File database = new File(folder, NAME + ".db");
+		List<String> problems = new ArrayList<String>();
+		BeeGenServer server = null;
+		try {
+			long start = System.nanoTime();
+			write(database, objects);
+			System.out.println("Generated " + objects + " synthetic objects in " + (System.nanoTime() - start) / 1000000
+					+ " ms");
+			List<Query[]> work = new ArrayList<Query[]>();
+			SyntheticModelSource source = new SyntheticModelSource(NAME, objects, SEED);
+			Random random = new Random(SEED);
+			for (int i = 0; i < scripts; i++) {
+				work.add(queries(source, random, queries));
+			}
+
+			Result cold = run(new Script(database, null), work, clients);
+
+			ModelRegistry registry = new ModelRegistry();
+			start = System.nanoTime();
+			registry.add(database);
+			long loadTime = System.nanoTime() - start;
+			server = new BeeGenServer(registry);
+			server.setPort(0);
+			server.setReload(1);
+			server.start();
+			String base = "http://127.0.0.1:" + server.getPort() + "/models/" + NAME;
+			Result resident = run(new Script(null, base), work, clients);
+
+			System.out.println(scripts + " scripts of " + queries + " queries, " + clients + " at once, model loaded by the server in "
+					+ loadTime / 1000000 + " ms");
+			System.out.println(String.format("%-14s %10s %12s %10s %10s %10s %12s %8s", "", "wall ms", "queries/s",
+					"p50 us", "p99 us", "max us", "script p50", "errors"));
+			print("database", cold);
+			print("server", resident);
+			print("database JVMs", launch(database.getPath(), work, clients, folder));
+			print("server JVMs", launch(base, work, clients, folder));
+
+			check(database, base, source, random, problems);
+			reload(database, base, objects, source, random, problems);
+			System.out.println("Server Statistics:");
+			System.out.println("\t" + server.getStats().report().replace("\n", "\n\t"));
+			problems.addAll(cold.problems);
+			problems.addAll(resident.problems);
+		} finally {
+			if (server != null) {
+				server.stop();
+			}
+			for (File file : folder.listFiles()) {
+				file.delete();
+			}
+			folder.delete();
+		}
+		if (problems.isEmpty()) {
+			System.out.println("All answers of the server match the database.");
+		} else {
+			for (String problem : problems.subList(0, Math.min(20, problems.size()))) {
+				System.out.println("Problem: " + problem);
+			}
+			System.exit(1);
+		}
+	}
+
+	private static void print(String name, Result result) {
+		System.out.println(String.format("%-14s %10d %12d %10s %10s %10s %12d %8d", name, result.wall / 1000000,
+				result.queries.get() * 1000000000L / Math.max(1, result.wall), micros(result.latency, 50),
+				micros(result.latency, 99), micros(result.latency, 100), result.scripts.getPercentile(50) / 1000,
+				result.errors.get()));
+	}
+
+	/*
+	 * Percentile of the latencies of the queries, which are not known when
+	 * the scripts run in their own JVMs.
+	 */
+	private static String micros(LatencyHistogram latency, double percentile) {
+		if (latency.getCount() == 0) {
+			return "-";
+		}
+		return String.valueOf((percentile == 100 ? latency.getMax() : latency.getPercentile(percentile)) / 1000);
+	}
+
+	/*
+	 * Runs the scripts with the given number of them at once.
+	 */
+	private static Result run(final Script script, final List<Query[]> work, int clients) throws InterruptedException {
+		final Result result = new Result();
+		final AtomicInteger next = new AtomicInteger();
+		Thread[] threads = new Thread[clients];
+		long start = System.nanoTime();
+		for (int i = 0; i < clients; i++) {
+			threads[i] = new Thread() {
+
+				public void run() {
+					int index;
+					while ((index = next.getAndIncrement()) < work.size()) {
+						script.run(work.get(index), result);
+					}
+				}
+
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		result.wall = System.nanoTime() - start;
+		return result;
+	}
+
+	/*
+	 * Runs every script in its own JVM, the given number of them at once. The
+	 * target is the database or the address of the model on the server.
+	 */
+	private static Result launch(final String target, final List<Query[]> work, int clients, final File folder)
+			throws Exception {
+		final List<File> files = new ArrayList<File>();
+		for (int i = 0; i < work.size(); i++) {
+			File file = new File(folder, "script" + i + ".txt");
+			PrintWriter writer = new PrintWriter(file, "UTF-8");
+			for (Query query : work.get(i)) {
+				writer.println(query.kind + " " + query.id + " " + query.type);
+			}
+			writer.close();
+			files.add(file);
+		}
+		final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		final Result result = new Result();
+		final AtomicInteger next = new AtomicInteger();
+		Thread[] threads = new Thread[clients];
+		long start = System.nanoTime();
+		for (int i = 0; i < clients; i++) {
+			threads[i] = new Thread() {
+
+				public void run() {
+					int index;
+					while ((index = next.getAndIncrement()) < files.size()) {
+						long began = System.nanoTime();
+						try {
+							Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+									ServerBenchmark.class.getName(), "-script", target, files.get(index).getPath())
+											.redirectErrorStream(true)
+											.redirectOutput(Redirect.appendTo(new File(folder, "scripts.log"))).start();
+							if (process.waitFor() != 0) {
+								result.errors.incrementAndGet();
+								result.problems.add("script " + index + " failed, see its output");
+							}
+						} catch (Exception e) {
+							result.errors.incrementAndGet();
+							result.problems.add(String.valueOf(e));
+						}
+						result.queries.addAndGet(work.get(index).length);
+						result.scripts.record(System.nanoTime() - began);
+					}
+				}
+
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		result.wall = System.nanoTime() - start;
+		return result;
+	}
+
+	/*
+	 * Runs one script in a JVM started by launch(). Returns the number of
+	 * failed queries.
+	 */
+	private static int runScript(String target, File file) throws IOException {
+		List<Query> queries = new ArrayList<Query>();
+		for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+			String[] fields = line.split(" ");
+			queries.add(new Query(Integer.parseInt(fields[0]), Long.parseLong(fields[1]), Short.parseShort(fields[2])));
+		}
+		Result result = new Result();
+		if (target.startsWith("http:")) {
+			new Script(null, target).run(queries.toArray(new Query[queries.size()]), result);
+		} else {
+			new Script(new File(target), null).run(queries.toArray(new Query[queries.size()]), result);
+		}
+		for (String problem : result.problems) {
+			System.out.println(problem);
+		}
+		return (int) result.errors.get();
+	}
+
+	/*
+	 * Compares the answers of the server for a sample of objects with those
+	 * of BeeGenModel.
+	 */
+	private static void check(File database, String base, SyntheticModelSource source, Random random,
+			List<String> problems) throws Exception {
+		BeeGenModel model = BeeGenModel.open(database.getPath());
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database.getPath());
+		PreparedStatement usedBy = connection.prepareStatement(
+				"SELECT DISTINCT fromObjid FROM GenAssociations WHERE toObjid = ? ORDER BY fromObjid;");
+		for (int i = 0; i < 500; i++) {
+			long id = SyntheticModelSource.FIRST_ID + random.nextInt(source.size());
+			BeeGenObject object = model.getObject(id);
+			JsonObject answer = Json.createReader(new StringReader(get(base + "/objects/" + id))).readObject();
+			if (!describe(object).equals(describe(answer))) {
+				problems.add("object " + id + " is " + describe(answer) + " instead of " + describe(object));
+			}
+			ObjTypeEntry entry = source.getCatalog().get(source.getObject(ObjId.getInstance(id)).getObjTypeCode());
+			for (short ascType : entry.ascCodes) {
+				List<Long> expected = ids(model.followMany(id, ascType));
+				List<Long> found = ids(get(base + "/objects/" + id + "/associations/" + ascType));
+				if (!expected.equals(found)) {
+					problems.add("association " + ascType + " of " + id + " is " + found + " instead of " + expected);
+				}
+				expected = ids(model.followInverse(id, ascType));
+				found = ids(get(base + "/objects/" + id + "/associations/" + ascType + "?inverse=true"));
+				Collections.sort(expected);
+				Collections.sort(found);
+				if (!expected.equals(found)) {
+					problems.add("inverse association " + ascType + " of " + id + " is " + found + " instead of "
+							+ expected);
+				}
+			}
+			usedBy.setLong(1, id);
+			List<Long> expected = new ArrayList<Long>();
+			ResultSet resultSet = usedBy.executeQuery();
+			while (resultSet.next()) {
+				expected.add(resultSet.getLong(1));
+			}
+			resultSet.close();
+			List<Long> found = ids(get(base + "/objects/" + id + "/usedBy"));
+			if (!expected.equals(found)) {
+				problems.add("objects using " + id + " are " + found + " instead of " + expected);
+			}
+		}
+		if (!get(base + "/objects/1").contains("does not exist")) {
+			problems.add("unknown object is found");
+		}
+		usedBy.close();
+		connection.close();
+		model.close();
+	}
+
+	/*
+	 * Writes a larger model next to the database and moves it over the
+	 * database while a script keeps asking the server.
+	 */
+	private static void reload(File database, String base, int objects, SyntheticModelSource source, Random random,
+			List<String> problems) throws Exception {
+		File next = new File(database.getParentFile(), "next.tmp");
+		write(next, objects + 1000);
+		final Script script = new Script(null, base);
+		final Query[] queries = queries(source, random, 100);
+		final Result result = new Result();
+		final boolean[] done = new boolean[1];
+		Thread client = new Thread() {
+
+			public void run() {
+				while (!done[0]) {
+					script.run(queries, result);
+				}
+			}
+
+		};
+		client.start();
+		long start = System.nanoTime();
+		Files.move(next.toPath(), database.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		JsonObject model = null;
+		while (System.nanoTime() - start < 30000000000L) {
+			model = Json.createReader(new StringReader(get(base))).readObject();
+			if (model.getInt("generation") == 2) {
+				break;
+			}
+			Thread.sleep(50);
+		}
+		long elapsed = System.nanoTime() - start;
+		done[0] = true;
+		client.join();
+		if (model == null || model.getInt("generation") != 2 || model.getInt("objects") != objects + 1000) {
+			problems.add("database written again is not loaded: " + model);
+		}
+		System.out.println("Database replaced, served again after " + elapsed / 1000000 + " ms, "
+				+ result.latency.getCount() + " requests answered meanwhile with " + result.errors.get() + " errors");
+		problems.addAll(result.problems);
+	}
+
+	private static String describe(BeeGenObject object) {
+		StringBuilder builder = new StringBuilder(object.getId() + " " + object.getObjType() + " " + object.getName());
+		for (int i = 0; i < object.getPropertyCount(); i++) {
+			builder.append(" " + object.getPrpType(i) + "=" + object.getValue(i));
+		}
+		return builder.toString();
+	}
+
+	private static String describe(JsonObject object) {
+		StringBuilder builder = new StringBuilder(object.getJsonNumber("id").longValue() + " " + object.getInt("type")
+				+ " " + object.getString("name", null));
+		for (JsonValue value : object.getJsonArray("properties")) {
+			JsonObject property = (JsonObject) value;
+			builder.append(" " + property.getInt("type") + "=" + property.getString("value", null));
+		}
+		return builder.toString();
+	}
+
+	private static List<Long> ids(List<BeeGenObject> objects) {
+		List<Long> ids = new ArrayList<Long>();
+		for (BeeGenObject object : objects) {
+			ids.add(object.getId());
+		}
+		return ids;
+	}
+
+	private static List<Long> ids(String answer) {
+		List<Long> ids = new ArrayList<Long>();
+		JsonArray objects = Json.createReader(new StringReader(answer)).readObject().getJsonArray("objects");
+		for (JsonValue value : objects) {
+			ids.add(((JsonObject) value).getJsonNumber("id").longValue());
+		}
+		return ids;
+	}
+
+	/*
+	 * Answer of the server, also when it is an error.
+	 */
+	static String get(String url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		InputStream stream = connection.getResponseCode() < 400 ? connection.getInputStream()
+				: connection.getErrorStream();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int count;
+		while ((count = stream.read(buffer)) != -1) {
+			body.write(buffer, 0, count);
+		}
+		stream.close();
+		return body.toString("UTF-8");
+	}
+
+	/*
+	 * Queries of one script. Inverse navigations start at a target of an
+	 * association, so that they find at least one object.
+	 */
+	private static Query[] queries(SyntheticModelSource source, Random random, int count) {
+		Query[] queries = new Query[count];
+		for (int i = 0; i < count; i++) {
+			long id = SyntheticModelSource.FIRST_ID + random.nextInt(source.size());
+			MemoryObject object = source.getObject(ObjId.getInstance(id));
+			ObjTypeEntry entry = object.getEntry();
+			int kind = random.nextInt(4);
+			if (kind == 1) {
+				queries[i] = new Query(kind, id, entry.prpCodes[entry.indexOf(PrpTypeCode.NAME)]);
+			} else if (kind >= 2 && entry.associations.length > 0) {
+				int a = random.nextInt(entry.associations.length);
+				List<ObjId> targets = object.followAssociationMany(entry.associations[a]);
+				if (kind == 3 && !targets.isEmpty()) {
+					queries[i] = new Query(kind, targets.get(0).getValue(), entry.ascCodes[a]);
+				} else {
+					queries[i] = new Query(2, id, entry.ascCodes[a]);
+				}
+			} else {
+				queries[i] = new Query(0, id, (short) 0);
+			}
+		}
+		return queries;
+	}
+
+	private static void write(File file, int objects) throws Exception {
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+		Statement stmt = connection.createStatement();
+		stmt.execute("PRAGMA journal_mode = OFF;");
+		ModelSchema.createTables(stmt);
+		stmt.execute("INSERT INTO GenModel (key, value) VALUES ('name', '" + NAME + "'), ('schema', '"
+				+ SyntheticSchemaSource.SCHEMA_LEVEL + "');");
+		stmt.close();
+		connection.setAutoCommit(false);
+		SyntheticSchemaSource schema = new SyntheticSchemaSource();
+		MetaDataWriter.writeObjects(schema, inserter(connection, "GenMetaObjects", MetaDataWriter.OBJECT_COLUMNS));
+		MetaDataWriter.writeProperties(schema,
+				inserter(connection, "GenMetaProperties", MetaDataWriter.PROPERTY_COLUMNS));
+		MetaDataWriter.writeAssociations(schema,
+				inserter(connection, "GenMetaAssociations", MetaDataWriter.ASSOCIATION_COLUMNS));
+		ModelTraversal traversal = new ModelTraversal(new SyntheticModelSource(NAME, objects, SEED));
+		traversal.addSink(new SQLiteModelSink(
+				inserter(connection, "GenObjects", new String[] { "id", "objType", "objMnemonic", "name" }),
+				inserter(connection, "GenProperties", new String[] { "objid", "prpType", "mnemonic", "format", "value" }),
+				inserter(connection, "GenAssociations", new String[] { "fromObjid", "ascType", "toObjid",
+						"inverseAscType", "ascMnemonic", "card", "direction", "seqno" })));
+		traversal.run();
+		connection.commit();
+		connection.setAutoCommit(true);
+		ModelSchema.createIndexes(connection);
+		connection.close();
+	}
+
+	private static BulkInserter inserter(Connection connection, String table, String[] columns) throws SQLException {
+		return new BulkInserter(connection, table, columns, 1000, 1);
+	}
+
+	private static final class Query {
+
+		private final int kind;
+		private final long id;
+		private final short type;
+
+		Query(int kind, long id, short type) {
+			this.kind = kind;
+			this.id = id;
+			this.type = type;
+		}
+
+	}
+
+	private static final class Result {
+
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final LatencyHistogram scripts = new LatencyHistogram();
+		private final AtomicLong queries = new AtomicLong();
+		private final AtomicLong errors = new AtomicLong();
+		private final List<String> problems = Collections.synchronizedList(new ArrayList<String>());
+		private long wall;
+
+	}
+
+	/*
+	 * Script opening the database itself, or asking the server when it is
+	 * given its address.
+	 */
+	private static final class Script {
+
+		private final File database;
+		private final String base;
+
+		Script(File database, String base) {
+			this.database = database;
+			this.base = base;
+		}
+
+		void run(Query[] queries, Result result) {
+			long start = System.nanoTime();
+			try {
+				BeeGenModel model = database == null ? null : BeeGenModel.open(database.getPath());
+				for (Query query : queries) {
+					long began = System.nanoTime();
+					if (model != null) {
+						ask(model, query);
+					} else {
+						String answer = get(url(query));
+						if (answer.startsWith("{\"error\"")) {
+							result.errors.incrementAndGet();
+							result.problems.add(url(query) + ": " + answer);
+						}
+					}
+					result.latency.record(System.nanoTime() - began);
+					result.queries.incrementAndGet();
+				}
+				if (model != null) {
+					model.close();
+				}
+			} catch (Exception e) {
+				result.errors.incrementAndGet();
+				result.problems.add(String.valueOf(e));
+			}
+			result.scripts.record(System.nanoTime() - start);
+		}
+
+		private static void ask(BeeGenModel model, Query query) throws Exception {
+			switch (query.kind) {
+			case 0:
+				model.getObject(query.id);
+				break;
+			case 1:
+				model.getProperty(query.id, query.type);
+				break;
+			case 2:
+				model.followMany(query.id, query.type);
+				break;
+			default:
+				model.followInverse(query.id, query.type);
+				break;
+			}
+		}
+
+		private String url(Query query) {
+			switch (query.kind) {
+			case 0:
+				return base + "/objects/" + query.id;
+			case 1:
+				return base + "/objects/" + query.id + "/properties/" + query.type;
+			case 2:
+				return base + "/objects/" + query.id + "/associations/" + query.type;
+			default:
+				return base + "/objects/" + query.id + "/associations/" + query.type + "?inverse=true";
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+import eu.jgen.bee.extractor.BeeGenExtractor;
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.model.SyntheticModelSource;
+import eu.jgen.bee.extractor.snapshot.SnapshotModelSink;
+import eu.jgen.bee.extractor.snapshot.SnapshotReader;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+import eu.jgen.bee.extractor.traversal.ObjectRecord;
+
+/*
+ * Writes a synthetic model into a snapshot, reads it back and compares every
+ * object, property and association with a second traversal of the same model.
+ * Also shows how long writing, opening and scanning the snapshot takes.
+ *
+ * Arguments: [objects (default 100000)] [file (default temporary file)]
+ */
+public class SnapshotRoundTrip {
+
+	private static final long SEED = 20200101L;
+
+	public static void main(String[] args) throws ExtractionException, IOException {
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		File file = args.length > 1 ? new File(args[1]) : File.createTempFile("beegen", ".snapshot");
+		ModelSource source = new SyntheticModelSource("ROUNDTRIP", objects, SEED);
+
+		long start = System.nanoTime();
+		ModelTraversal traversal = new ModelTraversal(source);
+		SnapshotModelSink sink = new SnapshotModelSink(file);
+		traversal.addSink(sink);
+		traversal.run();
+		long written = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		SnapshotReader reader = new SnapshotReader(file);
+		long opened = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		long checksum = 0;
+		for (int i = 0; i < reader.getObjectCount(); i++) {
+			checksum += reader.getId(i) + reader.getObjType(i);
+		}
+		for (int i = 0; i < reader.getPropertyCount(); i++) {
+			checksum += reader.getPropertyObjid(i) + reader.getPrpType(i) + reader.getRawValue(i);
+		}
+		for (int i = 0; i < reader.getAssociationCount(); i++) {
+			checksum += reader.getFrom(i) + reader.getTo(i) + reader.getAscType(i) + reader.getSeqno(i);
+		}
+		long scanned = System.nanoTime() - start;
+
+		Comparison comparison = new Comparison(reader);
+		traversal = new ModelTraversal(source);
+		traversal.addSink(comparison);
+		traversal.run();
+
+		System.out.println("Snapshot " + file + " of " + sink.getLength() + " bytes, " + reader.getObjectCount()
+				+ " objects, " + reader.getPropertyCount() + " properties, " + reader.getAssociationCount()
+				+ " associations, " + reader.getStringCount() + " strings");
+		System.out.println("\twritten in " + (written / 1000000) + " ms, opened in " + (opened / 1000) + " us, scanned in "
+				+ (scanned / 1000000) + " ms (checksum " + Long.toHexString(checksum) + ")");
+		if (args.length < 2) {
+			file.delete();
+		}
+		if (comparison.differences != 0) {
+			System.out.println("Snapshot differs from the model in " + comparison.differences + " values.");
+			System.exit(1);
+		}
+		System.out.println("Snapshot matches the model.");
+	}
+
+	private static class Comparison implements ModelSink {
+
+		private final SnapshotReader reader;
+		private int object;
+		private int property;
+		private int association;
+		int differences;
+
+		Comparison(SnapshotReader reader) {
+			this.reader = reader;
+		}
+
+		public void begin(ModelSource source) {
+			check(BeeGenExtractor.VERSION, reader.getVersion());
+			check(BeeGenExtractor.SCHEMA, reader.getSchema());
+			check(source.getCatalog().getSchemaLevel(), reader.getSchemaLevel());
+			check(source.getName(), reader.getModelName());
+		}
+
+		public void object(ObjectRecord record) {
+			check(record.getId(), reader.getId(object));
+			check(record.getObjType(), reader.getObjType(object));
+			check(record.getObjMnemonic(), reader.getObjMnemonic(object));
+			check(record.getName(), reader.getName(object));
+			object++;
+			for (int i = 0; i < record.getPropertyCount(); i++) {
+				check(record.getId(), reader.getPropertyObjid(property));
+				check(record.getPrpType(i), reader.getPrpType(property));
+				check(record.getFormat(i), reader.getFormat(property));
+				check(record.getPrpMnemonic(i), reader.getPrpMnemonic(property));
+				check(record.getValue(i), reader.getValue(property));
+				property++;
+			}
+			for (int i = 0; i < record.getAssociationCount(); i++) {
+				check(record.getId(), reader.getFrom(association));
+				check(record.getAscType(i), reader.getAscType(association));
+				check(record.getTarget(i), reader.getTo(association));
+				check(record.getSeqno(i), reader.getSeqno(association));
+				check(record.getInverseAscType(i), reader.getInverseAscType(association));
+				check(record.getAscMnemonic(i), reader.getAscMnemonic(association));
+				check(record.getCard(i), reader.getCard(association));
+				check(record.getDirection(i), reader.getDirection(association));
+				association++;
+			}
+		}
+
+		public void end() {
+			check(object, reader.getObjectCount());
+			check(property, reader.getPropertyCount());
+			check(association, reader.getAssociationCount());
+		}
+
+		private void check(Object expected, Object actual) {
+			if (expected == null ? actual != null : !expected.equals(actual)) {
+				if (differences++ < 10) {
+					System.out.println("Expected " + expected + " but found " + actual);
+				}
+			}
+		}
+
+	}
+
+}
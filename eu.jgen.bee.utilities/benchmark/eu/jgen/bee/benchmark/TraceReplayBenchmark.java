@@ -0,0 +1,154 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import eu.jgen.bee.extractor.json.BeeGenExtractorJSON;
+import eu.jgen.bee.extractor.model.ModelProfile;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.model.SyntheticModelSource;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+import eu.jgen.bee.extractor.schema.SchemaSource;
+import eu.jgen.bee.extractor.schema.SyntheticSchemaSource;
+import eu.jgen.bee.extractor.sqlite.MetaTypeGenerator;
+import eu.jgen.bee.extractor.trace.RecordingModelSource;
+import eu.jgen.bee.extractor.trace.RecordingSchemaSource;
+import eu.jgen.bee.extractor.trace.ReplayModelSource;
+import eu.jgen.bee.extractor.trace.ReplaySchemaSource;
+import eu.jgen.bee.extractor.trace.Trace;
+import eu.jgen.bee.extractor.trace.TraceWriter;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+import eu.jgen.bee.extractor.traversal.PipelinedTraversal;
+
+/*
+ * Extracts a synthetic model into NDJSON files and enums once directly, once
+ * while recording a trace and then replaying the trace, at full speed, with
+ * the pipelined traversal which reads in another order and with the recorded
+ * latencies. All extractions must write the same files. Time of each of them
+ * and the size of the trace are shown.
+ *
+ * Arguments: [number of objects (default 200000)]
+ */
+public class TraceReplayBenchmark {
+
+	private static final long SEED = 2020;
+
+	public static void main(String[] args) throws Exception {
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		File folder = Files.createTempDirectory("bee-trace").toFile();
+		File traceFile = new File(folder, "model.trace.gz");
+		List<String> problems = new ArrayList<String>();
+
+		System.out.println(String.format("%-30s %9s", "", "ms"));
+		SchemaSource schema = new SyntheticSchemaSource();
+		File direct = new File(folder, "direct");
+		long time = extract(new SyntheticModelSource("BENCHMARK", objects, SEED, new SchemaCatalog(schema),
+				ModelProfile.typical()), schema, direct, false);
+		System.out.println(String.format("%-30s %9d", "direct", time / 1000000));
+
+		TraceWriter writer = new TraceWriter(traceFile, "BENCHMARK", SyntheticSchemaSource.SCHEMA_LEVEL,
+				"-objects=" + objects);
+		schema = new RecordingSchemaSource(new SyntheticSchemaSource(), writer);
+		ModelSource source = new RecordingModelSource(new SyntheticModelSource("BENCHMARK", objects, SEED,
+				new SchemaCatalog(schema), ModelProfile.typical()), writer);
+		File recorded = new File(folder, "recorded");
+		time = extract(source, schema, recorded, false);
+		writer.close();
+		System.out.println(String.format("%-30s %9d", "recording", time / 1000000));
+		compare(direct, recorded, "recording", problems);
+
+		long start = System.nanoTime();
+		Trace trace = Trace.read(traceFile);
+		System.out.println(String.format("%-30s %9d", "reading the trace", (System.nanoTime() - start) / 1000000));
+		replay(trace, false, false, "replay", folder, direct, problems);
+		replay(trace, false, true, "pipelined replay", folder, direct, problems);
+		replay(trace, true, false, "replay with latency", folder, direct, problems);
+
+		System.out.println("Trace of " + trace.getObjectCount() + " objects has " + traceFile.length() / 1024
+				+ " KB, complete " + trace.isComplete());
+		System.out.println("\t" + trace.report().replace("\n", "\n\t"));
+		if (!trace.isComplete()) {
+			problems.add("trace is not complete");
+		}
+		delete(folder);
+		if (problems.isEmpty()) {
+			System.out.println("All replays match the direct extraction.");
+		} else {
+			for (String problem : problems) {
+				System.out.println("Problem: " + problem);
+			}
+			System.exit(1);
+		}
+	}
+
+	private static void replay(Trace trace, boolean latency, boolean pipeline, String name, File folder,
+			File direct, List<String> problems) throws Exception {
+		SchemaSource schema = new ReplaySchemaSource(trace, latency);
+		ModelSource source = new ReplayModelSource(trace, new SchemaCatalog(schema), latency);
+		File replayed = new File(folder, name.replace(' ', '-'));
+		long time = extract(source, schema, replayed, pipeline);
+		System.out.println(String.format("%-30s %9d", name, time / 1000000));
+		compare(direct, replayed, name, problems);
+	}
+
+	/*
+	 * Writes the NDJSON files and the enums of the meta data into the folder.
+	 */
+	private static long extract(ModelSource source, SchemaSource schema, File folder, boolean pipeline)
+			throws Exception {
+		folder.mkdirs();
+		long start = System.nanoTime();
+		ModelTraversal traversal = pipeline ? new PipelinedTraversal(source, 256, 16) : new ModelTraversal(source);
+		traversal.addSink(BeeGenExtractorJSON.createSink(folder.getPath(), true, false));
+		traversal.run();
+		File enums = new File(folder, "enums");
+		enums.mkdirs();
+		new MetaTypeGenerator(schema).writeAll(enums);
+		return System.nanoTime() - start;
+	}
+
+	private static void compare(File expected, File found, String name, List<String> problems) throws Exception {
+		String[] names = expected.list();
+		Arrays.sort(names);
+		for (String fileName : names) {
+			File expectedFile = new File(expected, fileName);
+			File foundFile = new File(found, fileName);
+			if (expectedFile.isDirectory()) {
+				compare(expectedFile, foundFile, name, problems);
+			} else if (!foundFile.isFile()) {
+				problems.add(name + ": " + fileName + " is missing");
+			} else if (!Arrays.equals(Files.readAllBytes(expectedFile.toPath()), Files.readAllBytes(foundFile.toPath()))) {
+				problems.add(name + ": " + fileName + " differs");
+			}
+		}
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
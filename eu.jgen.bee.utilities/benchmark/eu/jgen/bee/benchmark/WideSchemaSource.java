@@ -0,0 +1,67 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+
+import eu.jgen.bee.extractor.schema.SyntheticSchemaSource;
+
+/*
+ * Synthetic schema with the given number of properties and associations for
+ * every object type, so that the size of a real schema level can be matched
+ * or exceeded.
+ */
+public class WideSchemaSource extends SyntheticSchemaSource {
+
+	private static final PrpTypeCode[] PRP_TYPES = PrpTypeCode.values();
+	private static final AscTypeCode[] ASC_TYPES = AscTypeCode.values();
+
+	private final int properties;
+	private final int associations;
+
+	public WideSchemaSource(int properties, int associations) {
+		this.properties = properties;
+		this.associations = associations;
+	}
+
+	public List<PrpTypeCode> getProperties(ObjTypeCode objTypeCode) {
+		List<PrpTypeCode> list = new ArrayList<PrpTypeCode>(super.getProperties(objTypeCode));
+		for (int k = 0; objTypeCode != ObjTypeCode.INVALID && list.size() < properties; k++) {
+			PrpTypeCode prp = PRP_TYPES[(objTypeCode.ordinal() * 7 + k * 11) % PRP_TYPES.length];
+			if (prp != PrpTypeCode.INVALID && !list.contains(prp)) {
+				list.add(prp);
+			}
+		}
+		return list;
+	}
+
+	public List<AscTypeCode> getAssociations(ObjTypeCode objTypeCode) {
+		List<AscTypeCode> list = new ArrayList<AscTypeCode>(super.getAssociations(objTypeCode));
+		for (int k = 0; objTypeCode != ObjTypeCode.INVALID && list.size() < associations; k++) {
+			AscTypeCode asc = ASC_TYPES[(objTypeCode.ordinal() * 5 + k * 13) % ASC_TYPES.length];
+			if (asc != AscTypeCode.INVALID && !list.contains(asc)) {
+				list.add(asc);
+			}
+		}
+		return list;
+	}
+
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.api;
+
+/*
+ * Problem with reading the Bee Gen Model.
+ */
+public class BeeGenException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	public BeeGenException(String message) {
+		super(message);
+	}
+
+	public BeeGenException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
@@ -0,0 +1,478 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.api;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sqlite.SQLiteConfig;
+
+import eu.jgen.bee.extractor.publish.Manifest;
+
+/*
+ * Read access to the Bee Gen Model created by BeeGenExtractorSQLite. Objects
+ * are read together with their properties and kept in a cache of limited size,
+ * so walking the model visits the database only for objects not seen
+ * recently. Every query is prepared once and reused. Both the wide and the
+ * compact layout of the database can be read. An instance uses a single
+ * connection and is not meant to be shared by threads.
+ */
+public class BeeGenModel {
+
+	public static final int DEFAULT_CACHE_SIZE = 10000;
+
+	private static final String SELECT_OBJECT_COLUMNS = "SELECT o.id, o.objType, o.objMnemonic, o.name, p.prpType, p.mnemonic, p.format, p.value"
+			+ " FROM GenObjects o LEFT JOIN GenProperties p ON p.objid = o.id";
+	private static final String SELECT_COMPACT_OBJECT_COLUMNS = "SELECT o.id, o.objType, t.objMnemonic, o.name, p.prpType, pt.mnemonic, pt.format,"
+			+ " CASE WHEN p.textId IS NOT NULL THEN x.value WHEN pt.format = 'CHAR' THEN char(p.intValue) ELSE CAST(p.intValue AS TEXT) END"
+			+ " FROM GenObjectsData o JOIN GenObjTypes t ON t.objType = o.objType"
+			+ " LEFT JOIN GenPropertiesData p ON p.objid = o.id"
+			+ " LEFT JOIN GenPrpTypes pt ON pt.objType = o.objType AND pt.prpType = p.prpType"
+			+ " LEFT JOIN GenTexts x ON x.id = p.textId";
+	private static final String WHERE_ID = " WHERE o.id = ? ORDER BY p.prpType;";
+	private static final String WHERE_TYPE = " WHERE o.objType = ? ORDER BY o.id, p.prpType;";
+	private static final String WHERE_MNEMONIC = " WHERE t.objMnemonic = ? ORDER BY o.id, p.prpType;";
+	private static final String WHERE_MNEMONIC_WIDE = " WHERE o.objMnemonic = ? ORDER BY o.id, p.prpType;";
+	private static final String SELECT_PROPERTY = "SELECT value FROM GenProperties WHERE objid = ? AND prpType = ?;";
+	private static final String SELECT_TARGETS = "SELECT toObjid FROM GenAssociations WHERE fromObjid = ? AND ascType = ? ORDER BY seqno;";
+	private static final String SELECT_SOURCES = "SELECT fromObjid FROM GenAssociations WHERE toObjid = ? AND ascType = ? ORDER BY fromObjid, seqno;";
+	private static final String SELECT_LAYOUT = "SELECT name FROM sqlite_master WHERE type = 'table' AND name = 'GenObjectsData';";
+	private static final String SELECT_MODEL = "SELECT key, value FROM GenModel;";
+	private static final String SELECT_FULL_TEXT = "SELECT name FROM sqlite_master WHERE type = 'table' AND name = 'GenPropertiesText';";
+	private static final String SELECT_MATCHES = "SELECT objid FROM GenPropertiesText WHERE GenPropertiesText MATCH ?"
+			+ " GROUP BY objid ORDER BY min(rank) LIMIT ?;";
+
+	private final Connection connection;
+	private final StatementPool statements;
+	private final ObjectCache cache;
+	private Map<String, String> modelValues;
+	private Boolean compact;
+	private Boolean fullText;
+	private long querycount;
+
+	public BeeGenModel(Connection connection, int cacheSize) {
+		this.connection = connection;
+		this.statements = new StatementPool(connection);
+		this.cache = new ObjectCache(cacheSize);
+	}
+
+	/*
+	 * Opens the database file read only with the default cache size.
+	 */
+	public static BeeGenModel open(String path) throws BeeGenException {
+		return open(path, DEFAULT_CACHE_SIZE);
+	}
+
+	public static BeeGenModel open(String path, int cacheSize) throws BeeGenException {
+		File file = resolve(new File(path));
+		if (!file.isFile()) {
+			throw new BeeGenException("Bee Gen Model '" + path + "' does not exist.");
+		}
+		try {
+			Class.forName("org.sqlite.JDBC");
+			SQLiteConfig config = new SQLiteConfig();
+			config.setReadOnly(true);
+			return new BeeGenModel(config.createConnection("jdbc:sqlite:" + file.getPath()), cacheSize);
+		} catch (ClassNotFoundException e) {
+			throw new BeeGenException("SQLite JDBC driver is not available.", e);
+		} catch (SQLException e) {
+			throw new BeeGenException("Cannot open Bee Gen Model '" + path + "'.", e);
+		}
+	}
+
+	/*
+	 * Database file to open for the given one. A database in the bee
+	 * sub-folder of a model, such as bee/MODEL.db, is found in the generation
+	 * named by the manifest published there.
+	 */
+	public static File resolve(File file) throws BeeGenException {
+		try {
+			return Manifest.resolve(file);
+		} catch (IOException e) {
+			throw new BeeGenException("Cannot read the manifest of Bee Gen Model '" + file.getPath() + "'.", e);
+		}
+	}
+
+	public String getName() throws BeeGenException {
+		return getModelValue("name");
+	}
+
+	/*
+	 * Version of the extractor which created the model.
+	 */
+	public String getVersion() throws BeeGenException {
+		return getModelValue("version");
+	}
+
+	public String getSchema() throws BeeGenException {
+		return getModelValue("schema");
+	}
+
+	private String getModelValue(String key) throws BeeGenException {
+		if (modelValues == null) {
+			try {
+				Map<String, String> values = new HashMap<String, String>();
+				ResultSet resultSet = execute(statements.get(SELECT_MODEL));
+				while (resultSet.next()) {
+					values.put(resultSet.getString(1), resultSet.getString(2));
+				}
+				resultSet.close();
+				modelValues = values;
+			} catch (SQLException e) {
+				throw failed(e);
+			}
+		}
+		return modelValues.get(key);
+	}
+
+	/*
+	 * Objects of the compact layout are read from its tables directly instead
+	 * of the views, which saves joining the objects once more for properties.
+	 */
+	private String objectQuery(String where) throws SQLException {
+		if (compact == null) {
+			ResultSet resultSet = execute(statements.get(SELECT_LAYOUT));
+			compact = Boolean.valueOf(resultSet.next());
+			resultSet.close();
+		}
+		if (compact.booleanValue()) {
+			return SELECT_COMPACT_OBJECT_COLUMNS + where;
+		}
+		return SELECT_OBJECT_COLUMNS + (WHERE_MNEMONIC.equals(where) ? WHERE_MNEMONIC_WIDE : where);
+	}
+
+	/*
+	 * Object with its properties, or null when there is no such object.
+	 */
+	public BeeGenObject getObject(long id) throws BeeGenException {
+		BeeGenObject object = cache.get(id);
+		if (object != null) {
+			return object;
+		}
+		try {
+			PreparedStatement statement = statements.get(objectQuery(WHERE_ID));
+			statement.setLong(1, id);
+			List<BeeGenObject> list = readObjects(execute(statement));
+			return list.isEmpty() ? null : list.get(0);
+		} catch (SQLException e) {
+			throw failed(e);
+		}
+	}
+
+	/*
+	 * All objects of the object type in the order of their ids.
+	 */
+	public List<BeeGenObject> getObjects(short objType) throws BeeGenException {
+		try {
+			PreparedStatement statement = statements.get(objectQuery(WHERE_TYPE));
+			statement.setShort(1, objType);
+			return readObjects(execute(statement));
+		} catch (SQLException e) {
+			throw failed(e);
+		}
+	}
+
+	/*
+	 * All objects of the object type with the mnemonic in the order of their ids.
+	 */
+	public List<BeeGenObject> getObjects(String objMnemonic) throws BeeGenException {
+		try {
+			PreparedStatement statement = statements.get(objectQuery(WHERE_MNEMONIC));
+			statement.setString(1, objMnemonic);
+			return readObjects(execute(statement));
+		} catch (SQLException e) {
+			throw failed(e);
+		}
+	}
+
+	/*
+	 * Value of the property, or null when it is not stored. The cached object
+	 * is used when there is one, otherwise only the property is read.
+	 */
+	public String getProperty(long id, short prpType) throws BeeGenException {
+		BeeGenObject object = cache.peek(id);
+		if (object != null) {
+			return object.getProperty(prpType);
+		}
+		try {
+			PreparedStatement statement = statements.get(SELECT_PROPERTY);
+			statement.setLong(1, id);
+			statement.setShort(2, prpType);
+			ResultSet resultSet = execute(statement);
+			String value = resultSet.next() ? resultSet.getString(1) : null;
+			resultSet.close();
+			return value;
+		} catch (SQLException e) {
+			throw failed(e);
+		}
+	}
+
+	/*
+	 * Object at the other end of the one to one association, or null when
+	 * the association is not set.
+	 */
+	public BeeGenObject followOne(long id, short ascType) throws BeeGenException {
+		List<Long> targets = query(SELECT_TARGETS, id, ascType);
+		if (targets.isEmpty()) {
+			return null;
+		}
+		if (targets.size() > 1) {
+			throw new BeeGenException("Association " + ascType + " of the object " + id + " is one to many.");
+		}
+		return getObject(targets.get(0));
+	}
+
+	/*
+	 * Objects at the other end of the association in the order of their
+	 * sequence numbers.
+	 */
+	public List<BeeGenObject> followMany(long id, short ascType) throws BeeGenException {
+		return getObjects(query(SELECT_TARGETS, id, ascType));
+	}
+
+	/*
+	 * Objects having the association pointing to the object, that is the
+	 * objects reached by following the inverse of the association.
+	 */
+	public List<BeeGenObject> followInverse(long id, short ascType) throws BeeGenException {
+		return getObjects(query(SELECT_SOURCES, id, ascType));
+	}
+
+	/*
+	 * Ids of the objects having a name or description with words starting with
+	 * all the words of the text, the best matches first. The database must have
+	 * been created with the option -fullText.
+	 */
+	public List<Long> search(String text, int limit) throws BeeGenException {
+		return search(text, null, limit);
+	}
+
+	/*
+	 * Ids of the objects of the object type with the mnemonic matching the
+	 * text, the best matches first.
+	 */
+	public List<Long> search(String text, String objMnemonic, int limit) throws BeeGenException {
+		List<Long> ids = new ArrayList<Long>();
+		String expression = matchExpression(text, objMnemonic);
+		if (expression == null) {
+			return ids;
+		}
+		try {
+			if (fullText == null) {
+				ResultSet resultSet = execute(statements.get(SELECT_FULL_TEXT));
+				fullText = Boolean.valueOf(resultSet.next());
+				resultSet.close();
+			}
+			if (!fullText.booleanValue()) {
+				throw new BeeGenException("Bee Gen Model has no full text index, it is created with the option -fullText.");
+			}
+			PreparedStatement statement = statements.get(SELECT_MATCHES);
+			statement.setString(1, expression);
+			statement.setInt(2, limit);
+			ResultSet resultSet = execute(statement);
+			while (resultSet.next()) {
+				ids.add(resultSet.getLong(1));
+			}
+			resultSet.close();
+			return ids;
+		} catch (SQLException e) {
+			throw failed(e);
+		}
+	}
+
+	/*
+	 * Full text query matching values with words starting with every word of
+	 * the text. Words are split the same way as by the index, so a name such
+	 * as PERSON_CREATE is found by "pers crea". Returns null when the text has
+	 * no words.
+	 */
+	static String matchExpression(String text, String objMnemonic) {
+		StringBuilder words = new StringBuilder();
+		for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+			if (!word.isEmpty()) {
+				words.append(words.length() == 0 ? "" : " ").append('"').append(word).append("\"*");
+			}
+		}
+		if (words.length() == 0) {
+			return null;
+		}
+		String expression = "value : (" + words + ")";
+		if (objMnemonic != null) {
+			expression = "objMnemonic : \"" + objMnemonic.replace("\"", "\"\"") + "\" AND " + expression;
+		}
+		return expression;
+	}
+
+	private List<BeeGenObject> getObjects(List<Long> ids) throws BeeGenException {
+		List<BeeGenObject> list = new ArrayList<BeeGenObject>(ids.size());
+		for (Long id : ids) {
+			BeeGenObject object = getObject(id);
+			if (object != null) {
+				list.add(object);
+			}
+		}
+		return list;
+	}
+
+	private List<Long> query(String sql, long id, short ascType) throws BeeGenException {
+		try {
+			PreparedStatement statement = statements.get(sql);
+			statement.setLong(1, id);
+			statement.setShort(2, ascType);
+			ResultSet resultSet = execute(statement);
+			List<Long> ids = new ArrayList<Long>();
+			while (resultSet.next()) {
+				ids.add(resultSet.getLong(1));
+			}
+			resultSet.close();
+			return ids;
+		} catch (SQLException e) {
+			throw failed(e);
+		}
+	}
+
+	/*
+	 * Builds objects from rows of one object joined with its properties, the
+	 * rows of each object follow each other. Objects are placed in the cache.
+	 */
+	private List<BeeGenObject> readObjects(ResultSet resultSet) throws SQLException {
+		List<BeeGenObject> list = new ArrayList<BeeGenObject>();
+		List<Short> prpTypes = new ArrayList<Short>();
+		List<String> prpMnemonics = new ArrayList<String>();
+		List<String> formats = new ArrayList<String>();
+		List<String> values = new ArrayList<String>();
+		long id = 0;
+		short objType = 0;
+		String objMnemonic = null;
+		String name = null;
+		boolean pending = false;
+		while (resultSet.next()) {
+			long rowId = resultSet.getLong(1);
+			if (!pending || rowId != id) {
+				if (pending) {
+					list.add(build(id, objType, objMnemonic, name, prpTypes, prpMnemonics, formats, values));
+				}
+				id = rowId;
+				objType = resultSet.getShort(2);
+				objMnemonic = resultSet.getString(3);
+				name = resultSet.getString(4);
+				pending = true;
+			}
+			short prpType = resultSet.getShort(5);
+			if (!resultSet.wasNull()) {
+				prpTypes.add(prpType);
+				prpMnemonics.add(resultSet.getString(6));
+				formats.add(resultSet.getString(7));
+				values.add(resultSet.getString(8));
+			}
+		}
+		resultSet.close();
+		if (pending) {
+			list.add(build(id, objType, objMnemonic, name, prpTypes, prpMnemonics, formats, values));
+		}
+		return list;
+	}
+
+	private BeeGenObject build(long id, short objType, String objMnemonic, String name, List<Short> prpTypes,
+			List<String> prpMnemonics, List<String> formats, List<String> values) {
+		short[] types = new short[prpTypes.size()];
+		for (int i = 0; i < types.length; i++) {
+			types[i] = prpTypes.get(i);
+		}
+		BeeGenObject object = new BeeGenObject(id, objType, objMnemonic, name, types,
+				prpMnemonics.toArray(new String[types.length]), formats.toArray(new String[types.length]),
+				values.toArray(new String[types.length]));
+		prpTypes.clear();
+		prpMnemonics.clear();
+		formats.clear();
+		values.clear();
+		cache.put(object);
+		return object;
+	}
+
+	private ResultSet execute(PreparedStatement statement) throws SQLException {
+		querycount++;
+		return statement.executeQuery();
+	}
+
+	private BeeGenException failed(SQLException e) {
+		return new BeeGenException("Problem with reading the Bee Gen Model.", e);
+	}
+
+	/*
+	 * Removes all objects from the cache, for example after the database was
+	 * updated by another process.
+	 */
+	public void clearCache() {
+		cache.clear();
+		modelValues = null;
+	}
+
+	public void close() throws BeeGenException {
+		try {
+			statements.close();
+			connection.close();
+		} catch (SQLException e) {
+			throw failed(e);
+		}
+	}
+
+	public long getQueryCount() {
+		return querycount;
+	}
+
+	public long getCacheHitCount() {
+		return cache.getHitCount();
+	}
+
+	public long getCacheMissCount() {
+		return cache.getMissCount();
+	}
+
+	public long getCacheEvictionCount() {
+		return cache.getEvictionCount();
+	}
+
+	public int getCacheSize() {
+		return cache.size();
+	}
+
+	public long getPreparedCount() {
+		return statements.getPreparedCount();
+	}
+
+	public long getReusedCount() {
+		return statements.getReusedCount();
+	}
+
+	public String report() {
+		long lookups = cache.getHitCount() + cache.getMissCount();
+		return "Number of queries is " + querycount + "\n" + "Number of prepared statements is "
+				+ statements.getPreparedCount() + ", reused " + statements.getReusedCount() + " times\n"
+				+ "Object cache holds " + cache.size() + " of " + cache.getCapacity() + " objects\n"
+				+ "Object cache hits " + cache.getHitCount() + ", misses " + cache.getMissCount() + ", evictions "
+				+ cache.getEvictionCount() + (lookups == 0 ? "" : " (hit ratio " + (cache.getHitCount() * 100 / lookups) + "%)");
+	}
+
+}
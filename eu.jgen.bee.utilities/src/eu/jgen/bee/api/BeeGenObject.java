@@ -0,0 +1,111 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.api;
+
+/*
+ * Object of the Bee Gen Model with all its stored properties. Properties are
+ * kept in parallel arrays in the order of their property type. Only properties
+ * which had other than default values in the CA Gen model are stored, for the
+ * others null is returned. Objects are immutable and may be shared.
+ */
+public final class BeeGenObject {
+
+	private final long id;
+	private final short objType;
+	private final String objMnemonic;
+	private final String name;
+	private final short[] prpTypes;
+	private final String[] prpMnemonics;
+	private final String[] formats;
+	private final String[] values;
+
+	BeeGenObject(long id, short objType, String objMnemonic, String name, short[] prpTypes, String[] prpMnemonics,
+			String[] formats, String[] values) {
+		this.id = id;
+		this.objType = objType;
+		this.objMnemonic = objMnemonic;
+		this.name = name;
+		this.prpTypes = prpTypes;
+		this.prpMnemonics = prpMnemonics;
+		this.formats = formats;
+		this.values = values;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public short getObjType() {
+		return objType;
+	}
+
+	public String getObjMnemonic() {
+		return objMnemonic;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getPropertyCount() {
+		return prpTypes.length;
+	}
+
+	public short getPrpType(int i) {
+		return prpTypes[i];
+	}
+
+	public String getPrpMnemonic(int i) {
+		return prpMnemonics[i];
+	}
+
+	public String getFormat(int i) {
+		return formats[i];
+	}
+
+	public String getValue(int i) {
+		return values[i];
+	}
+
+	/*
+	 * Value of the property, or null when it is not stored.
+	 */
+	public String getProperty(short prpType) {
+		for (int i = 0; i < prpTypes.length; i++) {
+			if (prpTypes[i] == prpType) {
+				return values[i];
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Value of the property with the mnemonic, or null when it is not stored.
+	 */
+	public String getProperty(String prpMnemonic) {
+		for (int i = 0; i < prpMnemonics.length; i++) {
+			if (prpMnemonics[i].equals(prpMnemonic)) {
+				return values[i];
+			}
+		}
+		return null;
+	}
+
+	public String toString() {
+		return objMnemonic + " " + id + (name != null ? " " + name : "");
+	}
+
+}
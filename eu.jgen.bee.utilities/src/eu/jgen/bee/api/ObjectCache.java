@@ -0,0 +1,102 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Objects kept in the order of their last use. When the cache is full the
+ * object not used for the longest time is removed.
+ */
+class ObjectCache {
+
+	private final int capacity;
+	private final LinkedHashMap<Long, BeeGenObject> objects;
+	private long hitcount;
+	private long misscount;
+	private long evictioncount;
+
+	ObjectCache(final int capacity) {
+		this.capacity = capacity;
+		this.objects = new LinkedHashMap<Long, BeeGenObject>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Long, BeeGenObject> eldest) {
+				if (size() > ObjectCache.this.capacity) {
+					evictioncount++;
+					return true;
+				}
+				return false;
+			}
+
+		};
+	}
+
+	/*
+	 * Cached object, or null when it has to be read.
+	 */
+	BeeGenObject get(long id) {
+		BeeGenObject object = objects.get(id);
+		if (object == null) {
+			misscount++;
+		} else {
+			hitcount++;
+		}
+		return object;
+	}
+
+	/*
+	 * Cached object or null, without counting a hit or a miss. Used when a
+	 * missing object is not read into the cache. A found object still becomes
+	 * the most recently used one, as its property is a use of the object.
+	 */
+	BeeGenObject peek(long id) {
+		return objects.get(id);
+	}
+
+	void put(BeeGenObject object) {
+		if (capacity > 0) {
+			objects.put(object.getId(), object);
+		}
+	}
+
+	void clear() {
+		objects.clear();
+	}
+
+	int size() {
+		return objects.size();
+	}
+
+	int getCapacity() {
+		return capacity;
+	}
+
+	long getHitCount() {
+		return hitcount;
+	}
+
+	long getMissCount() {
+		return misscount;
+	}
+
+	long getEvictionCount() {
+		return evictioncount;
+	}
+
+}
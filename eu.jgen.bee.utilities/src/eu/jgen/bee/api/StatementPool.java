@@ -0,0 +1,76 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.api;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Prepared statements of one connection kept by their SQL text, so that each
+ * query is compiled by SQLite only once. Parameters are cleared when a
+ * statement is handed out again.
+ */
+class StatementPool {
+
+	private final Connection connection;
+	private final Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+	private long preparedcount;
+	private long reusedcount;
+
+	StatementPool(Connection connection) {
+		this.connection = connection;
+	}
+
+	PreparedStatement get(String sql) throws SQLException {
+		PreparedStatement statement = statements.get(sql);
+		if (statement == null) {
+			statement = connection.prepareStatement(sql);
+			statements.put(sql, statement);
+			preparedcount++;
+		} else {
+			statement.clearParameters();
+			reusedcount++;
+		}
+		return statement;
+	}
+
+	void close() throws SQLException {
+		SQLException failure = null;
+		for (PreparedStatement statement : statements.values()) {
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				failure = e;
+			}
+		}
+		statements.clear();
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	long getPreparedCount() {
+		return preparedcount;
+	}
+
+	long getReusedCount() {
+		return reusedcount;
+	}
+
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.api.graph;
+
+import java.util.Arrays;
+
+/*
+ * Collects objects and associations in growing primitive arrays and turns them
+ * into a ModelGraph. They can be added in any order. Objects found only at the
+ * end of an association become nodes of unknown type. Edges are put in order
+ * with stable counting sorts, first by the sequence number, then by the
+ * association type and at last by the source, so building takes time linear in
+ * the number of associations apart from the mapping of ids to nodes.
+ */
+public class GraphBuilder {
+
+	private static final int TYPE_RANGE = 0x10000;
+
+	private long[] objIds = new long[1024];
+	private short[] objTypes = new short[1024];
+	private int objcount;
+	private long[] fromIds = new long[1024];
+	private long[] toIds = new long[1024];
+	private short[] ascTypes = new short[1024];
+	private int[] seqnos = new int[1024];
+	private int edgecount;
+	private int maxSeqno;
+
+	public void addObject(long id, short objType) {
+		if (objcount == objIds.length) {
+			objIds = Arrays.copyOf(objIds, objcount * 2);
+			objTypes = Arrays.copyOf(objTypes, objcount * 2);
+		}
+		objIds[objcount] = id;
+		objTypes[objcount] = objType;
+		objcount++;
+	}
+
+	public void addAssociation(long fromObjid, short ascType, long toObjid, int seqno) {
+		if (seqno < 0) {
+			throw new IllegalArgumentException("Association " + ascType + " of the object " + fromObjid
+					+ " has negative sequence number.");
+		}
+		if (edgecount == fromIds.length) {
+			int capacity = edgecount * 2;
+			fromIds = Arrays.copyOf(fromIds, capacity);
+			toIds = Arrays.copyOf(toIds, capacity);
+			ascTypes = Arrays.copyOf(ascTypes, capacity);
+			seqnos = Arrays.copyOf(seqnos, capacity);
+		}
+		fromIds[edgecount] = fromObjid;
+		toIds[edgecount] = toObjid;
+		ascTypes[edgecount] = ascType;
+		seqnos[edgecount] = seqno;
+		edgecount++;
+		maxSeqno = Math.max(maxSeqno, seqno);
+	}
+
+	public int getObjectCount() {
+		return objcount;
+	}
+
+	public int getAssociationCount() {
+		return edgecount;
+	}
+
+	public ModelGraph build() {
+		long[] ids = collectIds();
+		int size = ids.length;
+		short[] nodeTypes = new short[size];
+		for (int i = 0; i < objcount; i++) {
+			nodeTypes[Arrays.binarySearch(ids, objIds[i])] = objTypes[i];
+		}
+		int[] from = new int[edgecount];
+		int[] to = new int[edgecount];
+		int[] typeKeys = new int[edgecount];
+		for (int e = 0; e < edgecount; e++) {
+			from[e] = Arrays.binarySearch(ids, fromIds[e]);
+			to[e] = Arrays.binarySearch(ids, toIds[e]);
+			typeKeys[e] = ascTypes[e] & 0xFFFF;
+		}
+
+		int[] order = new int[edgecount];
+		for (int e = 0; e < edgecount; e++) {
+			order[e] = e;
+		}
+		order = sort(order, Arrays.copyOf(seqnos, edgecount), maxSeqno + 1);
+		order = sort(order, typeKeys, TYPE_RANGE);
+		order = sort(order, from, size);
+		int[] targets = new int[edgecount];
+		short[] types = new short[edgecount];
+		for (int i = 0; i < edgecount; i++) {
+			targets[i] = to[order[i]];
+			types[i] = ascTypes[order[i]];
+		}
+
+		int[] inverse = sort(order, typeKeys, TYPE_RANGE);
+		inverse = sort(inverse, to, size);
+		int[] sources = new int[edgecount];
+		short[] sourceTypes = new short[edgecount];
+		for (int i = 0; i < edgecount; i++) {
+			sources[i] = from[inverse[i]];
+			sourceTypes[i] = ascTypes[inverse[i]];
+		}
+		return new ModelGraph(ids, nodeTypes, offsets(from, size), targets, types, offsets(to, size), sources,
+				sourceTypes);
+	}
+
+	/*
+	 * Ids of all objects and of both ends of all associations, sorted and
+	 * without duplicates.
+	 */
+	private long[] collectIds() {
+		long[] ids = new long[objcount + edgecount * 2];
+		System.arraycopy(objIds, 0, ids, 0, objcount);
+		System.arraycopy(fromIds, 0, ids, objcount, edgecount);
+		System.arraycopy(toIds, 0, ids, objcount + edgecount, edgecount);
+		Arrays.sort(ids);
+		int count = 0;
+		for (int i = 0; i < ids.length; i++) {
+			if (i == 0 || ids[i] != ids[i - 1]) {
+				ids[count++] = ids[i];
+			}
+		}
+		return Arrays.copyOf(ids, count);
+	}
+
+	/*
+	 * Edges of the order stably sorted by their keys, which are less than the
+	 * range.
+	 */
+	private static int[] sort(int[] order, int[] keys, int range) {
+		int[] counts = new int[range + 1];
+		for (int e : order) {
+			counts[keys[e] + 1]++;
+		}
+		for (int k = 0; k < range; k++) {
+			counts[k + 1] += counts[k];
+		}
+		int[] sorted = new int[order.length];
+		for (int e : order) {
+			sorted[counts[keys[e]]++] = e;
+		}
+		return sorted;
+	}
+
+	/*
+	 * Start of the row of every node and the end of the last row.
+	 */
+	private static int[] offsets(int[] nodes, int size) {
+		int[] offsets = new int[size + 1];
+		for (int node : nodes) {
+			offsets[node + 1]++;
+		}
+		for (int i = 0; i < size; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		return offsets;
+	}
+
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.api.graph;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.zip.GZIPInputStream;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+import org.sqlite.SQLiteConfig;
+
+import eu.jgen.bee.api.BeeGenException;
+import eu.jgen.bee.api.BeeGenModel;
+import eu.jgen.bee.extractor.publish.Manifest;
+
+/*
+ * Builds a ModelGraph from the Bee Gen Model database or from the JSON files
+ * written by BeeGenExtractorJSON. Rows are read straight into a GraphBuilder
+ * without creating an object for each of them. The JSON files are read with
+ * the streaming parser, so they are never held in memory as a whole. Files
+ * named .ndjson hold one object or association on each line, and files ending
+ * with .gz are decompressed while they are read.
+ */
+public final class GraphLoader {
+
+	private static final String SELECT_LAYOUT = "SELECT name FROM sqlite_master WHERE type = 'table' AND name = 'GenObjectsData';";
+	private static final String SELECT_OBJECTS = "SELECT id, objType FROM GenObjects;";
+	private static final String SELECT_ASSOCIATIONS = "SELECT fromObjid, ascType, toObjid, seqno FROM GenAssociations;";
+	private static final String SELECT_COMPACT_OBJECTS = "SELECT id, objType FROM GenObjectsData;";
+	private static final String SELECT_COMPACT_ASSOCIATIONS = "SELECT fromObjid, ascType, toObjid, seqno FROM GenAssociationsData;";
+
+	private GraphLoader() {
+	}
+
+	/*
+	 * Opens the database file read only and loads the graph.
+	 */
+	public static ModelGraph loadDatabase(String path) throws BeeGenException {
+		File file = BeeGenModel.resolve(new File(path));
+		if (!file.isFile()) {
+			throw new BeeGenException("Bee Gen Model '" + path + "' does not exist.");
+		}
+		try {
+			Class.forName("org.sqlite.JDBC");
+			SQLiteConfig config = new SQLiteConfig();
+			config.setReadOnly(true);
+			Connection connection = config.createConnection("jdbc:sqlite:" + file.getPath());
+			try {
+				return load(connection);
+			} finally {
+				connection.close();
+			}
+		} catch (ClassNotFoundException e) {
+			throw new BeeGenException("SQLite JDBC driver is not available.", e);
+		} catch (SQLException e) {
+			throw new BeeGenException("Cannot open Bee Gen Model '" + path + "'.", e);
+		}
+	}
+
+	/*
+	 * Loads the graph from the database of either layout. The tables of the
+	 * compact layout are read directly instead of through the views.
+	 */
+	public static ModelGraph load(Connection connection) throws BeeGenException {
+		try {
+			GraphBuilder builder = new GraphBuilder();
+			Statement stmt = connection.createStatement();
+			ResultSet resultSet = stmt.executeQuery(SELECT_LAYOUT);
+			boolean compact = resultSet.next();
+			resultSet.close();
+			resultSet = stmt.executeQuery(compact ? SELECT_COMPACT_OBJECTS : SELECT_OBJECTS);
+			while (resultSet.next()) {
+				builder.addObject(resultSet.getLong(1), resultSet.getShort(2));
+			}
+			resultSet.close();
+			resultSet = stmt.executeQuery(compact ? SELECT_COMPACT_ASSOCIATIONS : SELECT_ASSOCIATIONS);
+			while (resultSet.next()) {
+				builder.addAssociation(resultSet.getLong(1), resultSet.getShort(2), resultSet.getLong(3),
+						resultSet.getInt(4));
+			}
+			resultSet.close();
+			stmt.close();
+			return builder.build();
+		} catch (SQLException e) {
+			throw new BeeGenException("Problem with reading the Bee Gen Model.", e);
+		}
+	}
+
+	/*
+	 * Loads the graph from the associations file and, when it is given, the
+	 * objects file which supplies the object types and the objects without
+	 * associations. Files in the bee sub-folder of a model are found in the
+	 * generation named by the manifest published there.
+	 */
+	public static ModelGraph loadJson(File associations, File objects) throws BeeGenException {
+		GraphBuilder builder = new GraphBuilder();
+		if (objects != null) {
+			read(objects, builder, false);
+		}
+		read(associations, builder, true);
+		return builder.build();
+	}
+
+	private static void read(File file, GraphBuilder builder, boolean associations) throws BeeGenException {
+		try {
+			file = Manifest.resolve(file);
+			InputStream stream = new FileInputStream(file);
+			try {
+				if (file.getName().endsWith(".gz")) {
+					stream = new GZIPInputStream(stream, 65536);
+				}
+				Reader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8), 65536);
+				if (file.getName().contains(".ndjson")) {
+					readLines((BufferedReader) reader, builder, associations);
+				} else {
+					read(Json.createParser(reader), 2, builder, associations);
+				}
+			} finally {
+				stream.close();
+			}
+		} catch (IOException e) {
+			throw new BeeGenException("Cannot read '" + file.getPath() + "'.", e);
+		} catch (JsonException e) {
+			throw new BeeGenException("Problem with reading '" + file.getPath() + "'.", e);
+		}
+	}
+
+	private static void readLines(BufferedReader reader, GraphBuilder builder, boolean associations)
+			throws IOException {
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (!line.isEmpty()) {
+				read(Json.createParser(new StringReader(line)), 1, builder, associations);
+			}
+		}
+	}
+
+	/*
+	 * Reads the objects or associations at the given depth of nesting. Keys of
+	 * nested values, such as the properties of an object, are skipped.
+	 */
+	private static void read(JsonParser parser, int elementDepth, GraphBuilder builder, boolean associations) {
+		int depth = 0;
+		String key = null;
+		long id = 0;
+		long to = 0;
+		int type = 0;
+		int seqno = 0;
+		while (parser.hasNext()) {
+			Event event = parser.next();
+			switch (event) {
+			case START_OBJECT:
+			case START_ARRAY:
+				depth++;
+				break;
+			case END_OBJECT:
+				if (depth == elementDepth) {
+					if (associations) {
+						builder.addAssociation(id, (short) type, to, seqno);
+					} else {
+						builder.addObject(id, (short) type);
+					}
+					id = to = 0;
+					type = seqno = 0;
+				}
+				depth--;
+				break;
+			case END_ARRAY:
+				depth--;
+				break;
+			case KEY_NAME:
+				key = parser.getString();
+				break;
+			case VALUE_NUMBER:
+				if (depth != elementDepth) {
+					break;
+				}
+				if (associations ? "from".equals(key) : "id".equals(key)) {
+					id = parser.getLong();
+				} else if ("to".equals(key)) {
+					to = parser.getLong();
+				} else if ("type".equals(key)) {
+					type = parser.getInt();
+				} else if ("seqno".equals(key)) {
+					seqno = parser.getInt();
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		parser.close();
+	}
+
+}
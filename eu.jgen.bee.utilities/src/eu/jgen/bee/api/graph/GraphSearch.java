@@ -0,0 +1,213 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.api.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/*
+ * Breadth first search over a ModelGraph, level by level. When the frontier of
+ * a level is large it is split into chunks expanded by the threads of a
+ * ForkJoinPool. A node belongs to the thread which first sets its depth, so
+ * every node is placed in the next frontier once. Smaller frontiers are
+ * expanded by the calling thread. The search may follow the associations or
+ * their inverses, all of them or only some association types. The depths are
+ * kept between searches and only the nodes reached by the last search are
+ * cleared, so a search near the start node does not cost time proportional
+ * to the size of the graph. One search runs at a time.
+ */
+public class GraphSearch {
+
+	public static final int UNREACHED = -1;
+	public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+	private final ModelGraph graph;
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+	private final AtomicIntegerArray depths;
+	private int[] reached = new int[0];
+	private long searchcount;
+	private long levelcount;
+	private long parallelcount;
+
+	public GraphSearch(ModelGraph graph, int parallelism) {
+		this(graph, parallelism, DEFAULT_CHUNK_SIZE);
+	}
+
+	public GraphSearch(ModelGraph graph, int parallelism, int chunkSize) {
+		this.graph = graph;
+		this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+		this.chunkSize = chunkSize;
+		this.depths = new AtomicIntegerArray(graph.size());
+		for (int node = 0; node < graph.size(); node++) {
+			depths.set(node, UNREACHED);
+		}
+	}
+
+	/*
+	 * Nodes reached from the start node in the order of their depth, the start
+	 * node first. Nodes deeper than maxDepth are not visited. Without
+	 * association types all associations are followed. The depth of every
+	 * node is then given by getDepth until the next search.
+	 */
+	public synchronized int[] search(int start, boolean inverse, int maxDepth, short... ascTypes) {
+		for (int node : reached) {
+			depths.set(node, UNREACHED);
+		}
+		boolean[] followed = followed(ascTypes);
+		int[] offsets = inverse ? graph.inverseOffsets : graph.offsets;
+		int[] ends = inverse ? graph.sources : graph.targets;
+		short[] types = inverse ? graph.sourceAscTypes : graph.ascTypes;
+
+		depths.set(start, 0);
+		Frontier all = new Frontier(16);
+		all.add(start);
+		Frontier frontier = all;
+		for (int depth = 1; depth <= maxDepth && frontier.size > 0; depth++) {
+			if (pool == null || frontier.size <= chunkSize) {
+				frontier = expand(frontier, 0, frontier.size, depth, offsets, ends, types, followed, depths);
+			} else {
+				frontier = expandParallel(frontier, depth, offsets, ends, types, followed, depths);
+				parallelcount++;
+			}
+			all.addAll(frontier);
+			levelcount++;
+		}
+		searchcount++;
+		reached = Arrays.copyOf(all.nodes, all.size);
+		return reached.clone();
+	}
+
+	/*
+	 * Depth at which the node was reached by the last search, or UNREACHED.
+	 */
+	public int getDepth(int node) {
+		return depths.get(node);
+	}
+
+	/*
+	 * Nodes from which the node can be reached by following associations,
+	 * that is all objects using the object directly or indirectly, in the
+	 * order of the nodes.
+	 */
+	public int[] whereUsedClosure(int node, short... ascTypes) {
+		int[] nodes = search(node, true, Integer.MAX_VALUE, ascTypes);
+		int[] used = Arrays.copyOfRange(nodes, 1, nodes.length);
+		Arrays.sort(used);
+		return used;
+	}
+
+	private Frontier expandParallel(final Frontier frontier, final int depth, final int[] offsets, final int[] ends,
+			final short[] types, final boolean[] followed, final AtomicIntegerArray depths) {
+		List<ForkJoinTask<Frontier>> tasks = new ArrayList<ForkJoinTask<Frontier>>();
+		for (int from = 0; from < frontier.size; from += chunkSize) {
+			final int chunkFrom = from;
+			final int chunkTo = Math.min(frontier.size, from + chunkSize);
+			tasks.add(pool.submit(new Callable<Frontier>() {
+				public Frontier call() {
+					return expand(frontier, chunkFrom, chunkTo, depth, offsets, ends, types, followed, depths);
+				}
+			}));
+		}
+		Frontier next = new Frontier(frontier.size);
+		for (ForkJoinTask<Frontier> task : tasks) {
+			next.addAll(task.join());
+		}
+		return next;
+	}
+
+	private static Frontier expand(Frontier frontier, int from, int to, int depth, int[] offsets, int[] ends,
+			short[] types, boolean[] followed, AtomicIntegerArray depths) {
+		Frontier next = new Frontier(Math.max(16, to - from));
+		for (int i = from; i < to; i++) {
+			int node = frontier.nodes[i];
+			for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+				if (followed != null && !followed[types[edge] & 0xFFFF]) {
+					continue;
+				}
+				int end = ends[edge];
+				if (depths.get(end) == UNREACHED && depths.compareAndSet(end, UNREACHED, depth)) {
+					next.add(end);
+				}
+			}
+		}
+		return next;
+	}
+
+	private static boolean[] followed(short[] ascTypes) {
+		if (ascTypes.length == 0) {
+			return null;
+		}
+		boolean[] followed = new boolean[0x10000];
+		for (short ascType : ascTypes) {
+			followed[ascType & 0xFFFF] = true;
+		}
+		return followed;
+	}
+
+	public void close() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	public long getSearchCount() {
+		return searchcount;
+	}
+
+	public long getLevelCount() {
+		return levelcount;
+	}
+
+	public long getParallelLevelCount() {
+		return parallelcount;
+	}
+
+	/*
+	 * Nodes of one level of the search.
+	 */
+	private static final class Frontier {
+
+		int[] nodes;
+		int size;
+
+		Frontier(int capacity) {
+			nodes = new int[capacity];
+		}
+
+		void add(int node) {
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, size * 2);
+			}
+			nodes[size++] = node;
+		}
+
+		void addAll(Frontier other) {
+			if (size + other.size > nodes.length) {
+				nodes = Arrays.copyOf(nodes, Math.max(size + other.size, size * 2));
+			}
+			System.arraycopy(other.nodes, 0, nodes, size, other.size);
+			size += other.size;
+		}
+
+	}
+
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.api.graph;
+
+import java.util.Arrays;
+
+/*
+ * Associations of the Bee Gen Model held in primitive arrays in the compressed
+ * sparse row layout. Object ids are mapped to dense node numbers in the order
+ * of the ids. The edges of a node are the positions from getFirstEdge(node) to
+ * getEndEdge(node) of the edge arrays, grouped by association type and in the
+ * order of the sequence numbers within the type. The inverse edges of a node
+ * are the associations pointing to it, grouped by association type and in the
+ * order of the sources. Walking the edges does not allocate any objects, for
+ * example:
+ *
+ *   for (int edge = graph.getFirstEdge(node); edge < graph.getEndEdge(node); edge++) {
+ *       int target = graph.getTarget(edge);
+ *   }
+ *
+ * The graph is not changed after it is built and can be read by any number of
+ * threads. It is created with GraphLoader or GraphBuilder. Ids are found
+ * through a table of buckets over the range of ids, so the binary search
+ * covers only the few nodes of one bucket.
+ */
+public class ModelGraph {
+
+	final long[] ids;
+	final short[] objTypes;
+	final int[] offsets;
+	final int[] targets;
+	final short[] ascTypes;
+	final int[] inverseOffsets;
+	final int[] sources;
+	final short[] sourceAscTypes;
+	private final int shift;
+	private final int[] buckets;
+
+	ModelGraph(long[] ids, short[] objTypes, int[] offsets, int[] targets, short[] ascTypes, int[] inverseOffsets,
+			int[] sources, short[] sourceAscTypes) {
+		this.ids = ids;
+		this.objTypes = objTypes;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.ascTypes = ascTypes;
+		this.inverseOffsets = inverseOffsets;
+		this.sources = sources;
+		this.sourceAscTypes = sourceAscTypes;
+		int shift = 0;
+		if (ids.length > 0) {
+			long range = ids[ids.length - 1] - ids[0];
+			while ((range >>> shift) > ids.length / 4) {
+				shift++;
+			}
+		}
+		this.shift = shift;
+		this.buckets = buckets();
+	}
+
+	/*
+	 * First node of every bucket and the end of the last bucket.
+	 */
+	private int[] buckets() {
+		if (ids.length == 0) {
+			return new int[1];
+		}
+		int count = (int) ((ids[ids.length - 1] - ids[0]) >>> shift) + 1;
+		int[] buckets = new int[count + 1];
+		int node = 0;
+		for (int bucket = 0; bucket <= count; bucket++) {
+			while (node < ids.length && ((ids[node] - ids[0]) >>> shift) < bucket) {
+				node++;
+			}
+			buckets[bucket] = node;
+		}
+		return buckets;
+	}
+
+	/*
+	 * Number of nodes, which are numbered from 0.
+	 */
+	public int size() {
+		return ids.length;
+	}
+
+	public int getEdgeCount() {
+		return targets.length;
+	}
+
+	/*
+	 * Node of the object, or -1 when the object is not in the graph.
+	 */
+	public int indexOf(long id) {
+		if (ids.length == 0 || id < ids[0] || id > ids[ids.length - 1]) {
+			return -1;
+		}
+		int bucket = (int) ((id - ids[0]) >>> shift);
+		int node = Arrays.binarySearch(ids, buckets[bucket], buckets[bucket + 1], id);
+		return node < 0 ? -1 : node;
+	}
+
+	public long getId(int node) {
+		return ids[node];
+	}
+
+	/*
+	 * Object type of the node, or 0 when it is not known because the object
+	 * was only found at the end of an association.
+	 */
+	public short getObjType(int node) {
+		return objTypes[node];
+	}
+
+	public int getFirstEdge(int node) {
+		return offsets[node];
+	}
+
+	public int getEndEdge(int node) {
+		return offsets[node + 1];
+	}
+
+	/*
+	 * First edge of the node with the association type.
+	 */
+	public int getFirstEdge(int node, short ascType) {
+		return lowerBound(ascTypes, offsets[node], offsets[node + 1], ascType & 0xFFFF);
+	}
+
+	/*
+	 * Position after the last edge of the node with the association type.
+	 */
+	public int getEndEdge(int node, short ascType) {
+		return lowerBound(ascTypes, offsets[node], offsets[node + 1], (ascType & 0xFFFF) + 1);
+	}
+
+	public int getTarget(int edge) {
+		return targets[edge];
+	}
+
+	public short getAscType(int edge) {
+		return ascTypes[edge];
+	}
+
+	public int getOutDegree(int node) {
+		return offsets[node + 1] - offsets[node];
+	}
+
+	public int getFirstInverseEdge(int node) {
+		return inverseOffsets[node];
+	}
+
+	public int getEndInverseEdge(int node) {
+		return inverseOffsets[node + 1];
+	}
+
+	/*
+	 * First inverse edge of the node coming from the association type.
+	 */
+	public int getFirstInverseEdge(int node, short ascType) {
+		return lowerBound(sourceAscTypes, inverseOffsets[node], inverseOffsets[node + 1], ascType & 0xFFFF);
+	}
+
+	public int getEndInverseEdge(int node, short ascType) {
+		return lowerBound(sourceAscTypes, inverseOffsets[node], inverseOffsets[node + 1], (ascType & 0xFFFF) + 1);
+	}
+
+	/*
+	 * Node having the association which is the inverse edge.
+	 */
+	public int getSource(int inverseEdge) {
+		return sources[inverseEdge];
+	}
+
+	/*
+	 * Type of the association which is the inverse edge, as seen from its
+	 * source.
+	 */
+	public short getSourceAscType(int inverseEdge) {
+		return sourceAscTypes[inverseEdge];
+	}
+
+	public int getInDegree(int node) {
+		return inverseOffsets[node + 1] - inverseOffsets[node];
+	}
+
+	/*
+	 * Nodes having any association pointing to the node, each of them once
+	 * and in the order of the nodes.
+	 */
+	public int[] whereUsed(int node) {
+		int[] used = Arrays.copyOfRange(sources, inverseOffsets[node], inverseOffsets[node + 1]);
+		Arrays.sort(used);
+		return unique(used);
+	}
+
+	/*
+	 * Nodes having the association pointing to the node, each of them once
+	 * and in the order of the nodes.
+	 */
+	public int[] whereUsed(int node, short ascType) {
+		return unique(Arrays.copyOfRange(sources, getFirstInverseEdge(node, ascType), getEndInverseEdge(node, ascType)));
+	}
+
+	private static int[] unique(int[] sorted) {
+		int count = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[i - 1]) {
+				sorted[count++] = sorted[i];
+			}
+		}
+		return count == sorted.length ? sorted : Arrays.copyOf(sorted, count);
+	}
+
+	/*
+	 * Position of the first edge in the range with the type not less than the
+	 * key. Edges of a node are ordered by the type taken as unsigned.
+	 */
+	private static int lowerBound(short[] types, int from, int to, int key) {
+		while (from < to) {
+			int middle = (from + to) >>> 1;
+			if ((types[middle] & 0xFFFF) < key) {
+				from = middle + 1;
+			} else {
+				to = middle;
+			}
+		}
+		return from;
+	}
+
+	/*
+	 * Bytes taken by the arrays of the graph.
+	 */
+	public long getMemoryUsage() {
+		return ids.length * 10L + (offsets.length + inverseOffsets.length + buckets.length) * 4L
+				+ targets.length * 12L;
+	}
+
+	public String report() {
+		return "Graph holds " + ids.length + " objects and " + targets.length + " associations in "
+				+ getMemoryUsage() / 1024 + " KB";
+	}
+
+}
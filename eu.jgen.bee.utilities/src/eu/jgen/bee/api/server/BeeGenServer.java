@@ -0,0 +1,306 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.api.server;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.stream.JsonGenerator;
+
+import com.sun.net.httpserver.HttpServer;
+
+import eu.jgen.bee.api.BeeGenException;
+import eu.jgen.bee.extractor.BeeGenExtractor;
+import eu.jgen.bee.extractor.ExtractorOptions;
+import eu.jgen.bee.extractor.publish.Manifest;
+
+/*
+ * Long running service keeping Bee Gen Models in memory and answering queries
+ * of many clients over HTTP on the local host. The connections are accepted
+ * by one thread and the requests answered by a fixed pool of workers. When
+ * the queue of the workers is full the accepting thread answers the request
+ * itself, which slows down accepting new ones instead of refusing them.
+ * Databases written again by the extractor are loaded again while the old
+ * models keep being served.
+ */
+public class BeeGenServer {
+
+	public static final int DEFAULT_PORT = 8470;
+
+	/*
+	 * Without it the headers and the body of an answer wait for each other
+	 * in TCP, which adds about 40 ms to every request of a client keeping its
+	 * connection open. It is read when the first server is created.
+	 */
+	private static final String NODELAY = "sun.net.httpserver.nodelay";
+	private static final String[] OPTIONS = { "port", "workers", "queue", "reload" };
+
+	private final ModelRegistry registry;
+	private final ServerStats stats = new ServerStats();
+	private int port = DEFAULT_PORT;
+	private int workers = Runtime.getRuntime().availableProcessors() * 2;
+	private int queue = 1000;
+	private int reload = 5;
+	private HttpServer server;
+	private ThreadPoolExecutor pool;
+
+	public BeeGenServer(ModelRegistry registry) {
+		this.registry = registry;
+	}
+
+	public static void main(String[] args) {
+
+		System.out.println("Bee Gen Query Server, Version " + BeeGenExtractor.VERSION + ", Schema Level " + BeeGenExtractor.SCHEMA);
+		System.out.println("Keeps Bee Gen Models in memory and answers queries over HTTP on the local host.");
+		final BeeGenServer server = new BeeGenServer(new ModelRegistry());
+		try {
+			server.usage();
+			ExtractorOptions options = ExtractorOptions.parse(args);
+			server.configure(options);
+			server.load(options.getModelPath());
+			server.start();
+			System.out.println("Serving " + server.registry.getEntries().size() + " models at http://"
+					+ InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort() + "/models");
+			Runtime.getRuntime().addShutdownHook(new Thread("Bee Gen Server Shutdown") {
+
+				public void run() {
+					server.stop();
+					System.out.println("Server Statistics:");
+					System.out.println("\t" + server.stats.report().replace("\n", "\n\t"));
+				}
+
+			});
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		} catch (BeeGenException e) {
+			System.out.println(e.getMessage());
+			e.printStackTrace();
+			System.exit(1);
+		} catch (IOException e) {
+			System.out.println("Cannot start the server on the port " + server.port + ".");
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	private void usage() {
+		System.out.println("USAGE:");
+		System.out.println(
+				"\tpathModels     -   Bee Gen Model databases or folders searched for them, separated by commas");
+		System.out.println(
+				"\t-port=n        -   Port on the local host the server listens on (default " + DEFAULT_PORT + ")");
+		System.out.println(
+				"\t-workers=n     -   Number of threads answering requests (default twice the number of processors)");
+		System.out.println(
+				"\t-queue=n       -   Number of requests waiting for a worker (default 1000)");
+		System.out.println(
+				"\t-reload=n      -   Seconds between checks for databases written again, 0 for none (default 5)");
+		System.out.println("");
+	}
+
+	private void configure(ExtractorOptions options) {
+		options.check(OPTIONS);
+		port = options.getInt("port", port, 1, 65535);
+		workers = options.getInt("workers", workers, 1);
+		queue = options.getInt("queue", queue, 1);
+		reload = options.getInt("reload", reload, 0);
+	}
+
+	/*
+	 * Loads the databases found at the locations separated by commas.
+	 */
+	private void load(String paths) throws BeeGenException {
+		for (String path : paths.split(",")) {
+			if (path.trim().isEmpty()) {
+				continue;
+			}
+			List<File> databases = findDatabases(new File(path.trim()));
+			if (databases.isEmpty()) {
+				throw new IllegalArgumentException("Cannot find any Bee Gen Model at '" + path.trim() + "'.");
+			}
+			for (File database : databases) {
+				System.out.println("Loading '" + database.getPath() + "'...");
+				ModelRegistry.Entry entry = registry.add(database);
+				System.out.println("\t" + entry.getModel().report());
+			}
+		}
+	}
+
+	/*
+	 * A file is taken for a database. A folder is searched for databases,
+	 * including its bee sub-folder and the bee sub-folders of the CA Gen
+	 * Models in it. A database published in a generation of a bee sub-folder
+	 * is found by its name in the bee sub-folder, so that it is loaded again
+	 * when a new generation is published.
+	 */
+	public static List<File> findDatabases(File file) throws BeeGenException {
+		List<File> result = new ArrayList<File>();
+		if (file.isFile()) {
+			result.add(file);
+			return result;
+		}
+		FileFilter databases = new FileFilter() {
+
+			public boolean accept(File child) {
+				return child.isFile() && child.getName().endsWith(".db");
+			}
+
+		};
+		List<File> folders = new ArrayList<File>();
+		folders.add(file);
+		folders.add(new File(file, "bee"));
+		File[] models = file.listFiles(new FileFilter() {
+
+			public boolean accept(File child) {
+				return child.isDirectory() && child.getName().toLowerCase().endsWith(".ief");
+			}
+
+		});
+		if (models != null) {
+			for (File model : models) {
+				folders.add(new File(model, "bee"));
+			}
+		}
+		for (File folder : folders) {
+			try {
+				for (Manifest manifest : Manifest.list(folder)) {
+					for (String name : manifest.getFileNames()) {
+						if (name.endsWith(".db")) {
+							result.add(new File(folder, name));
+						}
+					}
+				}
+			} catch (IOException e) {
+				throw new BeeGenException("Cannot read the manifests in '" + folder.getPath() + "'.", e);
+			}
+			File[] files = folder.listFiles(databases);
+			if (files != null) {
+				for (File database : files) {
+					if (!result.contains(database)) {
+						result.add(database);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	public void setWorkers(int workers) {
+		this.workers = workers;
+	}
+
+	public void setQueue(int queue) {
+		this.queue = queue;
+	}
+
+	/*
+	 * Seconds between checks for databases written again, 0 for none.
+	 */
+	public void setReload(int reload) {
+		this.reload = reload;
+	}
+
+	/*
+	 * Starts listening on the port of the local host, port 0 takes any free
+	 * one.
+	 */
+	public void start() throws IOException {
+		pool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(Math.max(1, queue)), new ThreadFactory() {
+
+					private int count;
+
+					public synchronized Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "Bee Gen Server Worker " + (++count));
+						thread.setDaemon(true);
+						return thread;
+					}
+
+				}, new RejectedExecutionHandler() {
+
+					public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+						if (!executor.isShutdown()) {
+							stats.recordSaturated();
+							runnable.run();
+						}
+					}
+
+				});
+		if (System.getProperty(NODELAY) == null) {
+			System.setProperty(NODELAY, "true");
+		}
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/", new QueryHandler(registry, stats, this));
+		server.setExecutor(new Executor() {
+
+			public void execute(final Runnable command) {
+				final long queued = System.nanoTime();
+				pool.execute(new Runnable() {
+
+					public void run() {
+						stats.recordQueueWait(System.nanoTime() - queued);
+						command.run();
+					}
+
+				});
+			}
+
+		});
+		server.start();
+		registry.startWatching(reload * 1000L);
+	}
+
+	public void stop() {
+		registry.stop();
+		if (server != null) {
+			server.stop(0);
+			pool.shutdown();
+			server = null;
+		}
+	}
+
+	public int getPort() {
+		return server == null ? port : server.getAddress().getPort();
+	}
+
+	public ServerStats getStats() {
+		return stats;
+	}
+
+	void writeStats(JsonGenerator generator) {
+		stats.write(generator);
+		generator.writeStartObject("workers").write("threads", pool.getPoolSize())
+				.write("active", pool.getActiveCount()).write("queued", pool.getQueue().size())
+				.write("queueCapacity", queue).writeEnd();
+	}
+
+}
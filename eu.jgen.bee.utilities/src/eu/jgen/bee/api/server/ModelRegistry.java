@@ -0,0 +1,246 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.api.server;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import eu.jgen.bee.api.BeeGenException;
+import eu.jgen.bee.api.BeeGenModel;
+
+/*
+ * Resident models served by name, which is the name of the database file
+ * without .db. A thread checks the files at a fixed interval and loads a
+ * database again once it has been changed and then left unchanged for one
+ * interval, so a database still being written by the extractor is not
+ * loaded. The new model replaces the old one only when it has been loaded
+ * completely, requests already running finish with the model they started
+ * with, and a database which cannot be loaded leaves the old model in place.
+ */
+public class ModelRegistry {
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private ScheduledExecutorService watcher;
+
+	/*
+	 * Loads the database and serves it under the name of its file.
+	 */
+	public Entry add(File file) throws BeeGenException {
+		String name = file.getName().replaceFirst("\\.db$", "");
+		if (entries.containsKey(name)) {
+			throw new BeeGenException("Model " + name + " is served already from '" + entries.get(name).file.getPath()
+					+ "'.");
+		}
+		Entry entry = new Entry(name, file);
+		entry.signature = signature(file);
+		entry.model = ResidentModel.load(file);
+		entries.put(name, entry);
+		return entry;
+	}
+
+	/*
+	 * Model currently served under the name, or null when there is none.
+	 */
+	public ResidentModel get(String name) {
+		Entry entry = entries.get(name);
+		return entry == null ? null : entry.model;
+	}
+
+	public Entry getEntry(String name) {
+		return entries.get(name);
+	}
+
+	/*
+	 * Entries in the order of their names.
+	 */
+	public List<Entry> getEntries() {
+		return new ArrayList<Entry>(new TreeMap<String, Entry>(entries).values());
+	}
+
+	/*
+	 * Starts checking the files every given number of milliseconds.
+	 */
+	public synchronized void startWatching(long interval) {
+		if (watcher != null || interval <= 0) {
+			return;
+		}
+		watcher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Bee Gen Model Watcher");
+				thread.setDaemon(true);
+				return thread;
+			}
+
+		});
+		watcher.scheduleWithFixedDelay(new Runnable() {
+
+			public void run() {
+				checkAll();
+			}
+
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void stop() {
+		if (watcher != null) {
+			watcher.shutdownNow();
+			watcher = null;
+		}
+	}
+
+	/*
+	 * Checks every file once, returns the number of models loaded again.
+	 */
+	public int checkAll() {
+		int reloaded = 0;
+		for (Entry entry : getEntries()) {
+			if (entry.check()) {
+				reloaded++;
+			}
+		}
+		return reloaded;
+	}
+
+	/*
+	 * Path, modification times and lengths of the published database and its
+	 * write-ahead log, or 0 when the database does not exist. A new generation
+	 * published in a bee sub-folder changes the path.
+	 */
+	static long signature(File file) {
+		try {
+			file = BeeGenModel.resolve(file);
+		} catch (BeeGenException e) {
+			return 0;
+		}
+		if (!file.isFile()) {
+			return 0;
+		}
+		File wal = new File(file.getPath() + "-wal");
+		long signature = (file.getPath().hashCode() * 31L + file.lastModified()) * 31 + file.length();
+		return signature * 31 + wal.lastModified() * 17 + wal.length();
+	}
+
+	/*
+	 * One served model with the counts of its reloads.
+	 */
+	public static final class Entry {
+
+		private final String name;
+		private final File file;
+		private volatile ResidentModel model;
+		private volatile int generation = 1;
+		private volatile int failedcount;
+		private volatile String lastError;
+		private long signature;
+		private long pending;
+
+		Entry(String name, File file) {
+			this.name = name;
+			this.file = file;
+		}
+
+		/*
+		 * Loads the database again when it has been changed and has not been
+		 * changed since the previous check. Returns true when the model was
+		 * replaced.
+		 */
+		synchronized boolean check() {
+			long current = signature(file);
+			if (current == 0 || current == signature) {
+				pending = 0;
+				return false;
+			}
+			if (current != pending) {
+				pending = current;
+				return false;
+			}
+			return reload(current);
+		}
+
+		/*
+		 * Loads the database now, returns true when the model was replaced.
+		 */
+		public synchronized boolean reload() {
+			return reload(signature(file));
+		}
+
+		private boolean reload(long current) {
+			try {
+				ResidentModel loaded = ResidentModel.load(file);
+				if (signature(file) != current) {
+					pending = signature(file);
+					return false;
+				}
+				model = loaded;
+				signature = current;
+				pending = 0;
+				generation++;
+				lastError = null;
+				System.out.println("Model " + name + " loaded again, generation " + generation + ": "
+						+ loaded.report());
+				return true;
+			} catch (BeeGenException e) {
+				failedcount++;
+				lastError = e.getMessage() + (e.getCause() != null ? " " + e.getCause().getMessage() : "");
+				pending = 0;
+				System.out.println("Model " + name + " cannot be loaded again, the previous one is served: "
+						+ lastError);
+				return false;
+			}
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public ResidentModel getModel() {
+			return model;
+		}
+
+		/*
+		 * Number of times the model has been loaded, starting with 1.
+		 */
+		public int getGeneration() {
+			return generation;
+		}
+
+		public int getFailedCount() {
+			return failedcount;
+		}
+
+		/*
+		 * Reason why the last attempt to load the model failed, or null.
+		 */
+		public String getLastError() {
+			return lastError;
+		}
+
+	}
+
+}
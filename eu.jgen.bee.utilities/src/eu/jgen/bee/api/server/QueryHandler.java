@@ -0,0 +1,381 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.api.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import eu.jgen.bee.api.graph.ModelGraph;
+
+/*
+ * Answers the requests of the query server with JSON. Each request reads the
+ * model served at the time it started, so a model loaded again meanwhile does
+ * not change the answer half way. The paths are:
+ *
+ *   GET  /models                                       served models
+ *   GET  /models/{model}                               one served model
+ *   POST /models/{model}/reload                        loads the database again now
+ *   GET  /models/{model}/types/{objType}?limit=n       objects of the type
+ *   GET  /models/{model}/objects/{id}                  object with its properties
+ *   GET  /models/{model}/objects/{id}/properties/{prpType}
+ *   GET  /models/{model}/objects/{id}/associations/{ascType}[?inverse=true]
+ *   GET  /models/{model}/objects/{id}/usedBy[?ascType=x]
+ *   GET  /stats                                        latencies and throughput
+ *
+ * Types are given by their mnemonics or codes.
+ */
+class QueryHandler implements HttpHandler {
+
+	private static final JsonGeneratorFactory FACTORY = Json.createGeneratorFactory(null);
+	private static final int DEFAULT_LIMIT = 100;
+
+	private final ModelRegistry registry;
+	private final ServerStats stats;
+	private final BeeGenServer server;
+
+	QueryHandler(ModelRegistry registry, ServerStats stats, BeeGenServer server) {
+		this.registry = registry;
+		this.stats = stats;
+		this.server = server;
+	}
+
+	public void handle(HttpExchange exchange) throws IOException {
+		long start = System.nanoTime();
+		String endpoint = "unknown";
+		int status = 200;
+		ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+		JsonGenerator generator = FACTORY.createGenerator(body);
+		try {
+			String[] path = split(exchange.getRequestURI().getRawPath());
+			Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+			endpoint = endpointOf(path);
+			if (!exchange.getRequestMethod().equals(endpoint.equals("reload") ? "POST" : "GET")) {
+				throw new RequestException(405, "Method " + exchange.getRequestMethod() + " is not allowed.");
+			}
+			generator.writeStartObject();
+			answer(endpoint, path, query, generator);
+			generator.writeEnd();
+		} catch (RequestException e) {
+			status = e.status;
+			body.reset();
+			generator = FACTORY.createGenerator(body);
+			generator.writeStartObject().write("error", e.getMessage()).writeEnd();
+		} catch (RuntimeException e) {
+			status = 500;
+			body.reset();
+			generator = FACTORY.createGenerator(body);
+			generator.writeStartObject().write("error", String.valueOf(e)).writeEnd();
+		}
+		generator.close();
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.size());
+		OutputStream stream = exchange.getResponseBody();
+		body.writeTo(stream);
+		stream.close();
+		stats.record(endpoint, System.nanoTime() - start, status);
+	}
+
+	private static String[] split(String path) throws RequestException {
+		String trimmed = path.replaceAll("^/+|/+$", "");
+		if (trimmed.isEmpty()) {
+			return new String[0];
+		}
+		String[] segments = trimmed.split("/+");
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = decode(segments[i]);
+		}
+		return segments;
+	}
+
+	private static Map<String, String> parseQuery(String query) throws RequestException {
+		Map<String, String> result = new HashMap<String, String>();
+		if (query == null) {
+			return result;
+		}
+		for (String pair : query.split("&")) {
+			int pos = pair.indexOf('=');
+			if (pos == -1) {
+				result.put(decode(pair), "");
+			} else {
+				result.put(decode(pair.substring(0, pos)), decode(pair.substring(pos + 1)));
+			}
+		}
+		return result;
+	}
+
+	private static String decode(String text) throws RequestException {
+		try {
+			return URLDecoder.decode(text, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RequestException(400, "Cannot decode '" + text + "'.");
+		} catch (IllegalArgumentException e) {
+			throw new RequestException(400, "Cannot decode '" + text + "'.");
+		}
+	}
+
+	/*
+	 * Name of the kind of request under which its latency is counted.
+	 */
+	private static String endpointOf(String[] path) throws RequestException {
+		if (path.length == 0 || (path.length == 1 && path[0].equals("models"))) {
+			return "models";
+		}
+		if (path.length == 1 && path[0].equals("stats")) {
+			return "stats";
+		}
+		if (path[0].equals("models")) {
+			if (path.length == 2) {
+				return "model";
+			}
+			if (path.length == 3 && path[2].equals("reload")) {
+				return "reload";
+			}
+			if (path.length == 4 && path[2].equals("types")) {
+				return "type";
+			}
+			if (path.length >= 4 && path[2].equals("objects")) {
+				if (path.length == 4) {
+					return "object";
+				}
+				if (path.length == 6 && path[4].equals("properties")) {
+					return "property";
+				}
+				if (path.length == 6 && path[4].equals("associations")) {
+					return "association";
+				}
+				if (path.length == 5 && path[4].equals("usedBy")) {
+					return "usedBy";
+				}
+			}
+		}
+		throw new RequestException(404, "Unknown request.");
+	}
+
+	private void answer(String endpoint, String[] path, Map<String, String> query, JsonGenerator generator)
+			throws RequestException {
+		if (endpoint.equals("models")) {
+			generator.writeStartArray("models");
+			for (ModelRegistry.Entry entry : registry.getEntries()) {
+				generator.writeStartObject();
+				writeModel(entry, generator);
+				generator.writeEnd();
+			}
+			generator.writeEnd();
+			return;
+		}
+		if (endpoint.equals("stats")) {
+			server.writeStats(generator);
+			return;
+		}
+		ModelRegistry.Entry entry = registry.getEntry(path[1]);
+		if (entry == null) {
+			throw new RequestException(404, "Model " + path[1] + " is not served.");
+		}
+		if (endpoint.equals("model")) {
+			writeModel(entry, generator);
+			return;
+		}
+		if (endpoint.equals("reload")) {
+			generator.write("reloaded", entry.reload());
+			writeModel(entry, generator);
+			return;
+		}
+		ResidentModel model = entry.getModel();
+		if (endpoint.equals("type")) {
+			int objType = model.toObjType(path[3]);
+			if (objType == -1) {
+				throw new RequestException(404, "Unknown object type " + path[3] + ".");
+			}
+			int limit = toInt(query, "limit", DEFAULT_LIMIT);
+			int[] nodes = model.getNodes((short) objType);
+			generator.write("type", objType);
+			writeMnemonic(generator, model.getObjMnemonic((short) objType));
+			generator.write("count", nodes.length);
+			generator.writeStartArray("objects");
+			for (int i = 0; i < nodes.length && i < limit; i++) {
+				writeSummary(model, nodes[i], generator);
+			}
+			generator.writeEnd();
+			return;
+		}
+		int node = toNode(model, path[3]);
+		if (endpoint.equals("object")) {
+			writeObject(model, node, generator);
+		} else if (endpoint.equals("property")) {
+			int prpType = model.toPrpType(path[5]);
+			if (prpType == -1) {
+				throw new RequestException(404, "Unknown property type " + path[5] + ".");
+			}
+			generator.write("id", model.getId(node)).write("type", prpType);
+			writeMnemonic(generator, model.getPrpMnemonic((short) prpType));
+			String value = model.getProperty(node, (short) prpType);
+			if (value == null) {
+				generator.writeNull("value");
+			} else {
+				generator.write("value", value);
+			}
+		} else if (endpoint.equals("association")) {
+			int ascType = model.toAscType(path[5]);
+			if (ascType == -1) {
+				throw new RequestException(404, "Unknown association type " + path[5] + ".");
+			}
+			boolean inverse = "true".equals(query.get("inverse"));
+			ModelGraph graph = model.getGraph();
+			generator.write("id", model.getId(node)).write("type", ascType);
+			writeMnemonic(generator, model.getAscMnemonic((short) ascType));
+			generator.write("inverse", inverse);
+			generator.writeStartArray("objects");
+			if (inverse) {
+				for (int edge = graph.getFirstInverseEdge(node, (short) ascType); edge < graph
+						.getEndInverseEdge(node, (short) ascType); edge++) {
+					writeSummary(model, graph.getSource(edge), generator);
+				}
+			} else {
+				for (int edge = graph.getFirstEdge(node, (short) ascType); edge < graph.getEndEdge(node,
+						(short) ascType); edge++) {
+					writeSummary(model, graph.getTarget(edge), generator);
+				}
+			}
+			generator.writeEnd();
+		} else {
+			int[] used;
+			String text = query.get("ascType");
+			if (text == null || text.isEmpty()) {
+				used = model.getGraph().whereUsed(node);
+			} else {
+				int ascType = model.toAscType(text);
+				if (ascType == -1) {
+					throw new RequestException(404, "Unknown association type " + text + ".");
+				}
+				used = model.getGraph().whereUsed(node, (short) ascType);
+			}
+			generator.write("id", model.getId(node));
+			generator.writeStartArray("objects");
+			for (int user : used) {
+				writeSummary(model, user, generator);
+			}
+			generator.writeEnd();
+		}
+	}
+
+	private static int toNode(ResidentModel model, String text) throws RequestException {
+		long id;
+		try {
+			id = Long.parseLong(text);
+		} catch (NumberFormatException e) {
+			throw new RequestException(400, "Object id expected, found '" + text + "'.");
+		}
+		int node = model.indexOf(id);
+		if (node == -1 || model.getObjType(node) == 0) {
+			throw new RequestException(404, "Object " + id + " does not exist.");
+		}
+		return node;
+	}
+
+	private static int toInt(Map<String, String> query, String name, int defaultValue) throws RequestException {
+		String text = query.get(name);
+		if (text == null || text.isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(text);
+		} catch (NumberFormatException e) {
+			throw new RequestException(400, "Parameter " + name + " expects a number, found '" + text + "'.");
+		}
+	}
+
+	private static void writeModel(ModelRegistry.Entry entry, JsonGenerator generator) {
+		ResidentModel model = entry.getModel();
+		generator.write("name", entry.getName()).write("file", entry.getFile().getPath())
+				.write("generation", entry.getGeneration()).write("objects", model.size())
+				.write("properties", model.getPropertyCount())
+				.write("associations", model.getGraph().getEdgeCount())
+				.write("loadMillis", model.getLoadTime() / 1000000).write("failedReloads", entry.getFailedCount());
+		if (model.getSchema() != null) {
+			generator.write("schema", model.getSchema());
+		}
+		if (entry.getLastError() != null) {
+			generator.write("lastError", entry.getLastError());
+		}
+	}
+
+	private static void writeObject(ResidentModel model, int node, JsonGenerator generator) {
+		short objType = model.getObjType(node);
+		generator.write("id", model.getId(node)).write("type", objType);
+		writeMnemonic(generator, model.getObjMnemonic(objType));
+		if (model.getName(node) != null) {
+			generator.write("name", model.getName(node));
+		}
+		generator.writeStartArray("properties");
+		for (int p = model.getFirstProperty(node); p < model.getEndProperty(node); p++) {
+			short prpType = model.getPrpType(p);
+			generator.writeStartObject().write("type", prpType);
+			writeMnemonic(generator, model.getPrpMnemonic(prpType));
+			if (model.getValue(p) == null) {
+				generator.writeNull("value");
+			} else {
+				generator.write("value", model.getValue(p));
+			}
+			generator.writeEnd();
+		}
+		generator.writeEnd();
+	}
+
+	private static void writeSummary(ResidentModel model, int node, JsonGenerator generator) {
+		short objType = model.getObjType(node);
+		generator.writeStartObject().write("id", model.getId(node)).write("type", objType);
+		writeMnemonic(generator, model.getObjMnemonic(objType));
+		if (model.getName(node) != null) {
+			generator.write("name", model.getName(node));
+		}
+		generator.writeEnd();
+	}
+
+	private static void writeMnemonic(JsonGenerator generator, String mnemonic) {
+		if (mnemonic != null) {
+			generator.write("mnemonic", mnemonic);
+		}
+	}
+
+	/*
+	 * Request which cannot be answered, with the HTTP status telling why.
+	 */
+	private static final class RequestException extends Exception {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int status;
+
+		RequestException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+
+	}
+
+}
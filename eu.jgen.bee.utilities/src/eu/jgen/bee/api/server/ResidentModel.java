@@ -0,0 +1,425 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.api.server;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sqlite.SQLiteConfig;
+
+import eu.jgen.bee.api.BeeGenException;
+import eu.jgen.bee.api.BeeGenModel;
+import eu.jgen.bee.api.graph.GraphLoader;
+import eu.jgen.bee.api.graph.ModelGraph;
+
+/*
+ * Bee Gen Model loaded entirely into memory. The associations are held in a
+ * ModelGraph, and the names and properties of the objects in arrays indexed by
+ * the nodes of the graph, the properties of a node ordered by property type.
+ * Mnemonics of the types are read from the meta data tables. The model is not
+ * changed after it is loaded and can be read by any number of threads, a newer
+ * database is loaded into a new instance.
+ */
+public final class ResidentModel {
+
+	private static final String SELECT_MODEL = "SELECT key, value FROM GenModel;";
+	private static final String SELECT_NAMES = "SELECT id, name FROM GenObjects;";
+	private static final String SELECT_PROPERTIES = "SELECT objid, prpType, value FROM GenProperties;";
+	private static final String SELECT_META_OBJECTS = "SELECT objType, objMnemonic FROM GenMetaObjects;";
+	private static final String SELECT_META_PROPERTIES = "SELECT DISTINCT prpType, prpMnemonic FROM GenMetaProperties;";
+	private static final String SELECT_META_ASSOCIATIONS = "SELECT DISTINCT ascType, ascMnemonic FROM GenMetaAssociations;";
+	private static final String SELECT_OBJECT_TYPES = "SELECT DISTINCT objType, objMnemonic FROM GenObjects;";
+	private static final String SELECT_PROPERTY_TYPES = "SELECT DISTINCT prpType, mnemonic FROM GenProperties;";
+	private static final String SELECT_ASSOCIATION_TYPES = "SELECT DISTINCT ascType, ascMnemonic FROM GenAssociations;";
+	private static final int TYPE_RANGE = 65536;
+
+	private final File file;
+	private final long lastModified;
+	private final long length;
+	private final Map<String, String> modelValues = new HashMap<String, String>();
+	private final Mnemonics objTypes = new Mnemonics();
+	private final Mnemonics prpTypes = new Mnemonics();
+	private final Mnemonics ascTypes = new Mnemonics();
+	private ModelGraph graph;
+	private String[] names;
+	private int[] prpOffsets;
+	private short[] prpCodes;
+	private String[] values;
+	private int[] typeOffsets;
+	private int[] typeNodes;
+	private long loadTime;
+
+	private ResidentModel(File file) {
+		this.file = file;
+		this.lastModified = file.lastModified();
+		this.length = file.length();
+	}
+
+	/*
+	 * Opens the database file read only and loads the whole model. A database
+	 * in a bee sub-folder is loaded from its published generation.
+	 */
+	public static ResidentModel load(File file) throws BeeGenException {
+		file = BeeGenModel.resolve(file);
+		if (!file.isFile()) {
+			throw new BeeGenException("Bee Gen Model '" + file.getPath() + "' does not exist.");
+		}
+		long start = System.nanoTime();
+		ResidentModel model = new ResidentModel(file);
+		try {
+			Class.forName("org.sqlite.JDBC");
+			SQLiteConfig config = new SQLiteConfig();
+			config.setReadOnly(true);
+			Connection connection = config.createConnection("jdbc:sqlite:" + file.getPath());
+			try {
+				model.read(connection);
+			} finally {
+				connection.close();
+			}
+		} catch (ClassNotFoundException e) {
+			throw new BeeGenException("SQLite JDBC driver is not available.", e);
+		} catch (SQLException e) {
+			throw new BeeGenException("Cannot load Bee Gen Model '" + file.getPath() + "'.", e);
+		}
+		model.loadTime = System.nanoTime() - start;
+		return model;
+	}
+
+	private void read(Connection connection) throws SQLException, BeeGenException {
+		Statement stmt = connection.createStatement();
+		ResultSet resultSet = stmt.executeQuery(SELECT_MODEL);
+		while (resultSet.next()) {
+			modelValues.put(resultSet.getString(1), resultSet.getString(2));
+		}
+		resultSet.close();
+		graph = GraphLoader.load(connection);
+		int size = graph.size();
+		names = new String[size];
+		resultSet = stmt.executeQuery(SELECT_NAMES);
+		while (resultSet.next()) {
+			int node = graph.indexOf(resultSet.getLong(1));
+			if (node != -1) {
+				names[node] = resultSet.getString(2);
+			}
+		}
+		resultSet.close();
+		readProperties(stmt);
+		indexTypes();
+		readMnemonics(stmt, objTypes, SELECT_META_OBJECTS, SELECT_OBJECT_TYPES);
+		readMnemonics(stmt, prpTypes, SELECT_META_PROPERTIES, SELECT_PROPERTY_TYPES);
+		readMnemonics(stmt, ascTypes, SELECT_META_ASSOCIATIONS, SELECT_ASSOCIATION_TYPES);
+		stmt.close();
+	}
+
+	/*
+	 * Properties are collected in the order of the rows and then put in order
+	 * of the node and the property type with two stable counting sorts.
+	 */
+	private void readProperties(Statement stmt) throws SQLException {
+		int size = graph.size();
+		int count = 0;
+		int[] nodes = new int[1024];
+		short[] codes = new short[1024];
+		String[] texts = new String[1024];
+		ResultSet resultSet = stmt.executeQuery(SELECT_PROPERTIES);
+		while (resultSet.next()) {
+			int node = graph.indexOf(resultSet.getLong(1));
+			if (node == -1) {
+				continue;
+			}
+			if (count == nodes.length) {
+				nodes = Arrays.copyOf(nodes, count * 2);
+				codes = Arrays.copyOf(codes, count * 2);
+				texts = Arrays.copyOf(texts, count * 2);
+			}
+			nodes[count] = node;
+			codes[count] = resultSet.getShort(2);
+			texts[count] = resultSet.getString(3);
+			count++;
+		}
+		resultSet.close();
+
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		int[] typeKeys = new int[count];
+		for (int i = 0; i < count; i++) {
+			typeKeys[i] = codes[i] & 0xFFFF;
+		}
+		order = sort(order, typeKeys, TYPE_RANGE);
+		order = sort(order, nodes, size);
+		prpOffsets = new int[size + 1];
+		prpCodes = new short[count];
+		values = new String[count];
+		for (int i = 0; i < count; i++) {
+			prpOffsets[nodes[order[i]] + 1]++;
+			prpCodes[i] = codes[order[i]];
+			values[i] = texts[order[i]];
+		}
+		for (int node = 0; node < size; node++) {
+			prpOffsets[node + 1] += prpOffsets[node];
+		}
+	}
+
+	/*
+	 * Stable counting sort of the positions by their keys.
+	 */
+	private static int[] sort(int[] order, int[] keys, int range) {
+		int[] starts = new int[range + 1];
+		for (int position : order) {
+			starts[keys[position] + 1]++;
+		}
+		for (int key = 0; key < range; key++) {
+			starts[key + 1] += starts[key];
+		}
+		int[] sorted = new int[order.length];
+		for (int position : order) {
+			sorted[starts[keys[position]]++] = position;
+		}
+		return sorted;
+	}
+
+	/*
+	 * Nodes grouped by object type, in the order of the ids within the type.
+	 */
+	private void indexTypes() {
+		int size = graph.size();
+		typeOffsets = new int[TYPE_RANGE + 1];
+		for (int node = 0; node < size; node++) {
+			typeOffsets[(graph.getObjType(node) & 0xFFFF) + 1]++;
+		}
+		for (int type = 0; type < TYPE_RANGE; type++) {
+			typeOffsets[type + 1] += typeOffsets[type];
+		}
+		int[] next = Arrays.copyOf(typeOffsets, TYPE_RANGE);
+		typeNodes = new int[size];
+		for (int node = 0; node < size; node++) {
+			typeNodes[next[graph.getObjType(node) & 0xFFFF]++] = node;
+		}
+	}
+
+	/*
+	 * Mnemonics are read from the meta data table, or from the model itself
+	 * when the table is empty.
+	 */
+	private static void readMnemonics(Statement stmt, Mnemonics mnemonics, String meta, String model)
+			throws SQLException {
+		read(stmt, mnemonics, meta);
+		if (mnemonics.isEmpty()) {
+			read(stmt, mnemonics, model);
+		}
+	}
+
+	private static void read(Statement stmt, Mnemonics mnemonics, String sql) throws SQLException {
+		ResultSet resultSet = stmt.executeQuery(sql);
+		while (resultSet.next()) {
+			mnemonics.add(resultSet.getShort(1), resultSet.getString(2));
+		}
+		resultSet.close();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/*
+	 * Modification time and length of the file when it was loaded.
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public String getName() {
+		String name = modelValues.get("name");
+		return name != null ? name : file.getName().replaceFirst("\\.db$", "");
+	}
+
+	public String getVersion() {
+		return modelValues.get("version");
+	}
+
+	public String getSchema() {
+		return modelValues.get("schema");
+	}
+
+	/*
+	 * Time it took to load the model, in nanoseconds.
+	 */
+	public long getLoadTime() {
+		return loadTime;
+	}
+
+	public ModelGraph getGraph() {
+		return graph;
+	}
+
+	public int size() {
+		return graph.size();
+	}
+
+	/*
+	 * Node of the object, or -1 when there is no such object.
+	 */
+	public int indexOf(long id) {
+		return graph.indexOf(id);
+	}
+
+	public long getId(int node) {
+		return graph.getId(node);
+	}
+
+	public short getObjType(int node) {
+		return graph.getObjType(node);
+	}
+
+	public String getName(int node) {
+		return names[node];
+	}
+
+	public int getFirstProperty(int node) {
+		return prpOffsets[node];
+	}
+
+	public int getEndProperty(int node) {
+		return prpOffsets[node + 1];
+	}
+
+	public short getPrpType(int property) {
+		return prpCodes[property];
+	}
+
+	public String getValue(int property) {
+		return values[property];
+	}
+
+	/*
+	 * Value of the property of the node, or null when it is not stored.
+	 */
+	public String getProperty(int node, short prpType) {
+		int from = prpOffsets[node];
+		int to = prpOffsets[node + 1];
+		while (from < to) {
+			int middle = (from + to) >>> 1;
+			int code = prpCodes[middle] & 0xFFFF;
+			if (code < (prpType & 0xFFFF)) {
+				from = middle + 1;
+			} else if (code > (prpType & 0xFFFF)) {
+				to = middle;
+			} else {
+				return values[middle];
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Nodes of the object type in the order of their ids.
+	 */
+	public int[] getNodes(short objType) {
+		int type = objType & 0xFFFF;
+		return Arrays.copyOfRange(typeNodes, typeOffsets[type], typeOffsets[type + 1]);
+	}
+
+	public int getCount(short objType) {
+		int type = objType & 0xFFFF;
+		return typeOffsets[type + 1] - typeOffsets[type];
+	}
+
+	public String getObjMnemonic(short objType) {
+		return objTypes.get(objType);
+	}
+
+	public String getPrpMnemonic(short prpType) {
+		return prpTypes.get(prpType);
+	}
+
+	public String getAscMnemonic(short ascType) {
+		return ascTypes.get(ascType);
+	}
+
+	/*
+	 * Code of the object type given by its mnemonic or its code, or -1 when
+	 * it is not known.
+	 */
+	public int toObjType(String text) {
+		return objTypes.toCode(text);
+	}
+
+	public int toPrpType(String text) {
+		return prpTypes.toCode(text);
+	}
+
+	public int toAscType(String text) {
+		return ascTypes.toCode(text);
+	}
+
+	public int getPropertyCount() {
+		return values.length;
+	}
+
+	public String report() {
+		return "Model " + getName() + " holds " + graph.size() + " objects, " + values.length + " properties and "
+				+ graph.getEdgeCount() + " associations, loaded in " + loadTime / 1000000 + " ms";
+	}
+
+	/*
+	 * Mnemonics of the types of one kind, by code and by mnemonic.
+	 */
+	private static final class Mnemonics {
+
+		private final Map<Short, String> byCode = new HashMap<Short, String>();
+		private final Map<String, Short> byMnemonic = new HashMap<String, Short>();
+
+		void add(short code, String mnemonic) {
+			byCode.put(code, mnemonic);
+			byMnemonic.put(mnemonic, code);
+		}
+
+		boolean isEmpty() {
+			return byCode.isEmpty();
+		}
+
+		String get(short code) {
+			return byCode.get(code);
+		}
+
+		int toCode(String text) {
+			Short code = byMnemonic.get(text.toUpperCase());
+			if (code != null) {
+				return code;
+			}
+			try {
+				int value = Integer.parseInt(text);
+				return value >= 0 && value < TYPE_RANGE ? value : -1;
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+
+	}
+
+}
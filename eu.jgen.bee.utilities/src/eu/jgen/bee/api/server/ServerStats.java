@@ -0,0 +1,180 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.api.server;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.json.stream.JsonGenerator;
+
+/*
+ * Latency histogram and error count of every kind of request, the time
+ * requests waited for a worker, and the number of requests completed in each
+ * of the last 60 seconds, which gives the current throughput next to the
+ * average since the start.
+ */
+public final class ServerStats {
+
+	private static final int WINDOW = 60;
+
+	private final long started = System.currentTimeMillis();
+	private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<String, Endpoint>();
+	private final LatencyHistogram queueWait = new LatencyHistogram();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong saturated = new AtomicLong();
+	private final AtomicLongArray seconds = new AtomicLongArray(WINDOW);
+	private final AtomicLongArray secondCounts = new AtomicLongArray(WINDOW);
+
+	/*
+	 * Records a completed request. Status codes from 400 up count as errors.
+	 */
+	public void record(String endpoint, long nanos, int status) {
+		Endpoint stats = endpoints.get(endpoint);
+		if (stats == null) {
+			endpoints.putIfAbsent(endpoint, new Endpoint());
+			stats = endpoints.get(endpoint);
+		}
+		stats.latency.record(nanos);
+		requests.incrementAndGet();
+		if (status >= 400) {
+			stats.errors.incrementAndGet();
+			errors.incrementAndGet();
+		}
+		long second = System.currentTimeMillis() / 1000;
+		int slot = (int) (second % WINDOW);
+		long current = seconds.get(slot);
+		if (current != second && seconds.compareAndSet(slot, current, second)) {
+			secondCounts.set(slot, 0);
+		}
+		secondCounts.incrementAndGet(slot);
+	}
+
+	/*
+	 * Records the time a request waited in the queue of the workers.
+	 */
+	public void recordQueueWait(long nanos) {
+		queueWait.record(nanos);
+	}
+
+	/*
+	 * Counts a request run by the thread accepting connections because the
+	 * queue of the workers was full.
+	 */
+	public void recordSaturated() {
+		saturated.incrementAndGet();
+	}
+
+	public long getRequestCount() {
+		return requests.get();
+	}
+
+	public long getErrorCount() {
+		return errors.get();
+	}
+
+	public long getSaturatedCount() {
+		return saturated.get();
+	}
+
+	public LatencyHistogram getLatency(String endpoint) {
+		Endpoint stats = endpoints.get(endpoint);
+		return stats == null ? null : stats.latency;
+	}
+
+	public LatencyHistogram getQueueWait() {
+		return queueWait;
+	}
+
+	public long getUptime() {
+		return System.currentTimeMillis() - started;
+	}
+
+	/*
+	 * Requests per second since the start.
+	 */
+	public double getAverageRate() {
+		return requests.get() * 1000.0 / Math.max(1, getUptime());
+	}
+
+	/*
+	 * Requests per second over the last complete seconds of the window.
+	 */
+	public double getRecentRate() {
+		long now = System.currentTimeMillis() / 1000;
+		long span = Math.min(WINDOW - 1, Math.max(1, getUptime() / 1000));
+		long sum = 0;
+		for (int slot = 0; slot < WINDOW; slot++) {
+			long second = seconds.get(slot);
+			if (second < now && second >= now - span) {
+				sum += secondCounts.get(slot);
+			}
+		}
+		return (double) sum / span;
+	}
+
+	public void write(JsonGenerator generator) {
+		generator.write("uptimeMillis", getUptime()).write("requests", requests.get()).write("errors", errors.get())
+				.write("saturated", saturated.get()).write("averageRate", round(getAverageRate()))
+				.write("recentRate", round(getRecentRate()));
+		write(generator, "queueWait", queueWait);
+		generator.writeStartArray("endpoints");
+		for (Map.Entry<String, Endpoint> entry : new TreeMap<String, Endpoint>(endpoints).entrySet()) {
+			generator.writeStartObject().write("name", entry.getKey()).write("errors",
+					entry.getValue().errors.get());
+			write(generator, "latency", entry.getValue().latency);
+			generator.writeEnd();
+		}
+		generator.writeEnd();
+	}
+
+	private static void write(JsonGenerator generator, String name, LatencyHistogram histogram) {
+		generator.writeStartObject(name).write("count", histogram.getCount())
+				.write("meanMicros", histogram.getMean() / 1000)
+				.write("p50Micros", histogram.getPercentile(50) / 1000)
+				.write("p90Micros", histogram.getPercentile(90) / 1000)
+				.write("p99Micros", histogram.getPercentile(99) / 1000)
+				.write("maxMicros", histogram.getMax() / 1000).writeEnd();
+	}
+
+	private static double round(double value) {
+		return Math.round(value * 10) / 10.0;
+	}
+
+	public String report() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("Requests " + requests.get() + ", errors " + errors.get() + ", run by the acceptor "
+				+ saturated.get() + ", " + round(getAverageRate()) + " per second since the start, "
+				+ round(getRecentRate()) + " recently");
+		builder.append("\nqueue wait: " + queueWait.report());
+		for (Map.Entry<String, Endpoint> entry : new TreeMap<String, Endpoint>(endpoints).entrySet()) {
+			builder.append("\n" + entry.getKey() + ": " + entry.getValue().latency.report() + ", errors "
+					+ entry.getValue().errors.get());
+		}
+		return builder.toString();
+	}
+
+	private static final class Endpoint {
+
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final AtomicLong errors = new AtomicLong();
+
+	}
+
+}
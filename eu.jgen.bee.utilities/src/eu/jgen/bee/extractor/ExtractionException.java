@@ -0,0 +1,34 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor;
+
+/*
+ * Signals a failure while reading the model or writing one of the outputs. The
+ * original exception is kept as the cause.
+ */
+public class ExtractionException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	public ExtractionException(String message) {
+		super(message);
+	}
+
+	public ExtractionException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Command line arguments of the extractors. The first argument is always the
+ * location of the model, any following arguments are options written as
+ * -name=value or just -name for switches.
+ */
+public class ExtractorOptions {
+
+	private final String modelPath;
+	private final Map<String, String> options = new LinkedHashMap<String, String>();
+
+	private ExtractorOptions(String modelPath) {
+		this.modelPath = modelPath;
+	}
+
+	public static ExtractorOptions parse(String[] args) {
+		if (args.length == 0) {
+			throw new IllegalArgumentException("Missing location of the CA Gen Model.");
+		}
+		ExtractorOptions result = new ExtractorOptions(args[0]);
+		for (int i = 1; i < args.length; i++) {
+			String arg = args[i];
+			if (!arg.startsWith("-") || arg.length() == 1) {
+				throw new IllegalArgumentException("Unrecognized option '" + arg + "'.");
+			}
+			int pos = arg.indexOf('=');
+			if (pos == -1) {
+				result.options.put(arg.substring(1), "");
+			} else {
+				result.options.put(arg.substring(1, pos), arg.substring(pos + 1));
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * Fails on the first option missing from all of the given lists, so a
+	 * misspelled option is not silently ignored.
+	 */
+	public void check(String[]... known) {
+		List<String> names = new ArrayList<String>();
+		for (String[] list : known) {
+			names.addAll(Arrays.asList(list));
+		}
+		for (String name : options.keySet()) {
+			if (!names.contains(name)) {
+				throw new IllegalArgumentException("Unknown option '-" + name + "'.");
+			}
+		}
+	}
+
+	public String getModelPath() {
+		return modelPath;
+	}
+
+	public boolean has(String name) {
+		return options.containsKey(name);
+	}
+
+	public String getString(String name, String defaultValue) {
+		String value = options.get(name);
+		if (value == null || value.length() == 0) {
+			return defaultValue;
+		}
+		return value;
+	}
+
+	/*
+	 * Options other than the given ones, written back as command line
+	 * arguments.
+	 */
+	public List<String> getOtherOptions(String... names) {
+		List<String> excluded = Arrays.asList(names);
+		List<String> result = new ArrayList<String>();
+		for (Map.Entry<String, String> option : options.entrySet()) {
+			if (excluded.contains(option.getKey())) {
+				continue;
+			}
+			if (option.getValue().length() == 0) {
+				result.add("-" + option.getKey());
+			} else {
+				result.add("-" + option.getKey() + "=" + option.getValue());
+			}
+		}
+		return result;
+	}
+
+	public int getInt(String name, int defaultValue) {
+		String value = options.get(name);
+		if (value == null || value.length() == 0) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Option '" + name + "' expects a number, found '" + value + "'.");
+		}
+	}
+
+	/*
+	 * Number of at least the given minimum, used for counts and sizes.
+	 */
+	public int getInt(String name, int defaultValue, int min) {
+		int value = getInt(name, defaultValue);
+		if (value < min) {
+			throw new IllegalArgumentException(
+					"Option '" + name + "' expects a number of at least " + min + ", found '" + value + "'.");
+		}
+		return value;
+	}
+
+	public int getInt(String name, int defaultValue, int min, int max) {
+		int value = getInt(name, defaultValue);
+		if (value < min || value > max) {
+			throw new IllegalArgumentException("Option '" + name + "' expects a number from " + min + " to " + max
+					+ ", found '" + value + "'.");
+		}
+		return value;
+	}
+
+}
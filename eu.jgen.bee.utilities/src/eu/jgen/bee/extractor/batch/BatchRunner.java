@@ -0,0 +1,344 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.batch;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ProcessBuilder.Redirect;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.stream.JsonGenerator;
+
+import eu.jgen.bee.extractor.publish.Manifest;
+
+/*
+ * Runs extractions of several models, each in its own JVM. The JMMI native
+ * layer keeps global state and cannot serve several models from threads of
+ * one process, so the pool is a pool of processes, with one thread waiting
+ * for each of them. Models are started with the largest first. An extraction
+ * ending with other exit code than 0, or running longer than the time limit,
+ * is started again up to the given number of retries. Output of all attempts
+ * goes to a log file of the model in the log folder.
+ */
+public class BatchRunner {
+
+	private static final String BEE_FOLDER_NAME = "bee";
+	private static final String METRICS_SUFFIX = "-metrics.json";
+
+	/*
+	 * Allowance for the resolution of file modification times.
+	 */
+	private static final long CLOCK_GRANULARITY = 2000;
+
+	private final List<String> command;
+	private final List<String> options;
+	private final File logFolder;
+	private final int workers;
+	private final int retries;
+	private final long timeout;
+
+	private List<ModelJob> jobs = Collections.emptyList();
+	private long started;
+	private long elapsed;
+	private int running;
+	private int maxRunning;
+	private int retrycount;
+
+	/*
+	 * The command starts the JVM with the main class of the extractor, it is
+	 * followed by the location of the model and the options. The time limit is
+	 * in milliseconds, 0 means no limit.
+	 */
+	public BatchRunner(List<String> command, List<String> options, File logFolder, int workers, int retries,
+			long timeout) {
+		this.command = command;
+		this.options = options;
+		this.logFolder = logFolder;
+		this.workers = Math.max(1, workers);
+		this.retries = Math.max(0, retries);
+		this.timeout = Math.max(0, timeout);
+	}
+
+	public void run(List<ModelJob> jobs) throws InterruptedException {
+		this.jobs = new ArrayList<ModelJob>(jobs);
+		ModelJob.sortLargestFirst(this.jobs);
+		logFolder.mkdirs();
+		started = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+
+			private int count;
+
+			public synchronized Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Bee Gen Batch Worker " + (++count));
+				thread.setDaemon(true);
+				return thread;
+			}
+
+		});
+		for (final ModelJob job : this.jobs) {
+			executor.execute(new Runnable() {
+
+				public void run() {
+					extract(job);
+				}
+
+			});
+		}
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			throw e;
+		} finally {
+			elapsed = System.currentTimeMillis() - started;
+		}
+	}
+
+	private void extract(ModelJob job) {
+		File log = new File(logFolder, job.getName().replace('/', '_').replace('\\', '_') + ".log");
+		log.delete();
+		job.setLog(log);
+		job.setStarted(System.currentTimeMillis() - started);
+		begin();
+		System.out.println("Extracting model '" + job.getName() + "' (" + job.getSize() / 1024 + " KB)...");
+		Process process = null;
+		try {
+			for (int attempt = 1; attempt <= retries + 1; attempt++) {
+				if (attempt > 1) {
+					System.out.println("Extraction of the model '" + job.getName() + "' "
+							+ (job.isTimedOut() ? "timed out" : "ended with exit code " + job.getExitCode())
+							+ ", starting again...");
+					retried();
+				}
+				job.setAttempts(attempt);
+				job.setTimedOut(false);
+				long attemptStarted = System.currentTimeMillis();
+				List<String> arguments = new ArrayList<String>(command);
+				arguments.add(job.getDirectory().getPath());
+				arguments.addAll(options);
+				appendLog(log, "Attempt " + attempt + ": " + arguments);
+				ProcessBuilder builder = new ProcessBuilder(arguments);
+				builder.redirectErrorStream(true);
+				builder.redirectOutput(Redirect.appendTo(log));
+				process = builder.start();
+				if (timeout == 0) {
+					process.waitFor();
+				} else if (!process.waitFor(timeout, TimeUnit.MILLISECONDS)) {
+					process.destroyForcibly();
+					process.waitFor();
+					job.setTimedOut(true);
+				}
+				job.setExitCode(process.exitValue());
+				process = null;
+				if (!job.isTimedOut() && job.getExitCode() == 0) {
+					job.setSucceeded(true);
+					job.setMetrics(readMetrics(job, attemptStarted));
+					break;
+				}
+			}
+		} catch (IOException e) {
+			System.out.println("Cannot start extraction of the model '" + job.getName() + "': " + e.getMessage());
+		} catch (InterruptedException e) {
+			if (process != null) {
+				process.destroyForcibly();
+			}
+			Thread.currentThread().interrupt();
+		} finally {
+			job.setFinished(System.currentTimeMillis() - started);
+			end();
+		}
+		System.out.println("Extraction of the model '" + job.getName() + "' " + job.getStatus() + " after "
+				+ job.getAttempts() + " attempt(s) in " + (job.getFinished() - job.getStarted()) / 1000 + " s");
+	}
+
+	private synchronized void begin() {
+		running++;
+		if (running > maxRunning) {
+			maxRunning = running;
+		}
+	}
+
+	private synchronized void end() {
+		running--;
+	}
+
+	private synchronized void retried() {
+		retrycount++;
+	}
+
+	private static void appendLog(File log, String line) throws IOException {
+		FileWriter writer = new FileWriter(log, true);
+		try {
+			writer.write("### " + line + System.getProperty("line.separator"));
+		} finally {
+			writer.close();
+		}
+	}
+
+	/*
+	 * Reads the metrics report the extraction has written into the bee
+	 * sub-folder of the model, or published there in a generation, if there
+	 * is one.
+	 */
+	private static JsonObject readMetrics(ModelJob job, long attemptStarted) {
+		File bee = new File(job.getDirectory(), BEE_FOLDER_NAME);
+		File[] listed = bee.listFiles();
+		if (listed == null) {
+			return null;
+		}
+		List<File> files = new ArrayList<File>();
+		Collections.addAll(files, listed);
+		try {
+			for (Manifest manifest : Manifest.list(bee)) {
+				for (String name : manifest.getFileNames()) {
+					files.add(new File(manifest.getFolder(bee), name));
+				}
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		File latest = null;
+		for (File file : files) {
+			if (file.getName().endsWith(METRICS_SUFFIX)
+					&& file.lastModified() >= attemptStarted - CLOCK_GRANULARITY
+					&& (latest == null || file.lastModified() > latest.lastModified())) {
+				latest = file;
+			}
+		}
+		if (latest == null) {
+			return null;
+		}
+		try {
+			InputStream stream = new FileInputStream(latest);
+			try {
+				JsonReader reader = Json.createReader(stream);
+				return reader.readObject();
+			} finally {
+				stream.close();
+			}
+		} catch (IOException e) {
+			return null;
+		} catch (JsonException e) {
+			return null;
+		}
+	}
+
+	public List<ModelJob> getJobs() {
+		return jobs;
+	}
+
+	/*
+	 * Wall clock time of the batch, in milliseconds.
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	/*
+	 * Largest number of extractions which were running at the same time.
+	 */
+	public synchronized int getMaxRunning() {
+		return maxRunning;
+	}
+
+	public synchronized int getRetryCount() {
+		return retrycount;
+	}
+
+	public int getSucceededCount() {
+		int count = 0;
+		for (ModelJob job : jobs) {
+			if (job.isSucceeded()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int getFailedCount() {
+		return jobs.size() - getSucceededCount();
+	}
+
+	/*
+	 * Writes the outcome of every extraction in the batch as a JSON document.
+	 * Counts from the metrics of each extraction are included when available.
+	 */
+	public void writeSummary(File file, String root, String extractor) throws IOException {
+		try {
+			JsonGenerator generator = Json
+					.createGeneratorFactory(Collections.singletonMap(JsonGenerator.PRETTY_PRINTING, Boolean.TRUE))
+					.createGenerator(new BufferedOutputStream(new FileOutputStream(file)));
+			generator.writeStartObject();
+			generator.write("root", root).write("extractor", extractor)
+					.write("started", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(new Date(started)))
+					.write("elapsedMillis", elapsed).write("workers", workers).write("maxRunning", getMaxRunning())
+					.write("models", jobs.size()).write("succeeded", getSucceededCount())
+					.write("failed", getFailedCount()).write("retries", getRetryCount());
+			generator.writeStartArray("results");
+			for (ModelJob job : jobs) {
+				generator.writeStartObject().write("model", job.getName()).write("path", job.getDirectory().getPath())
+						.write("sizeBytes", job.getSize()).write("status", job.getStatus())
+						.write("attempts", job.getAttempts()).write("exitCode", job.getExitCode())
+						.write("startMillis", job.getStarted()).write("finishMillis", job.getFinished());
+				if (job.getLog() != null) {
+					generator.write("log", job.getLog().getPath());
+				}
+				JsonObject metrics = job.getMetrics();
+				if (metrics != null && metrics.containsKey("counts")) {
+					generator.write("counts", metrics.getJsonObject("counts"));
+				}
+				generator.writeEnd();
+			}
+			generator.writeEnd();
+			generator.writeEnd();
+			generator.close();
+		} catch (JsonException e) {
+			throw new IOException("Problem with writing batch summary.", e);
+		}
+	}
+
+	public String report() {
+		StringBuilder builder = new StringBuilder();
+		for (ModelJob job : jobs) {
+			builder.append(String.format("%-12s %3d %8d KB %8d s  %s\n", job.getStatus(), job.getAttempts(),
+					job.getSize() / 1024, Math.max(0, job.getFinished() - job.getStarted()) / 1000, job.getName()));
+		}
+		builder.append("Number of models is " + jobs.size() + ", extracted " + getSucceededCount() + ", failed "
+				+ getFailedCount() + ", restarted " + getRetryCount() + " times\n");
+		builder.append("Batch took " + elapsed / 1000 + " s with up to " + getMaxRunning() + " of " + workers
+				+ " extractions running at once");
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import eu.jgen.bee.extractor.BeeGenExtractor;
+import eu.jgen.bee.extractor.ExtractorOptions;
+import eu.jgen.bee.extractor.json.BeeGenExtractorJSON;
+import eu.jgen.bee.extractor.snapshot.BeeGenExtractorSnapshot;
+import eu.jgen.bee.extractor.sqlite.BeeGenExtractorSQLite;
+import eu.jgen.bee.extractor.traversal.Projection;
+
+/*
+ * Extracts all CA Gen Local Models found under a folder. Each model is
+ * extracted by one of the extractors running in its own JVM, several of them
+ * at once. Options not known to the batch are passed to every extraction,
+ * they are checked up front when one of the built-in extractors is used.
+ */
+public class BeeGenBatchExtractor {
+
+	private static final String BATCH_FOLDER_NAME = "bee-batch";
+	private static final String SUMMARY_JSON = "summary.json";
+	private static final String[] BATCH_OPTIONS = { "extractor", "workers", "retries", "timeout", "java",
+			"javaOptions", "output" };
+
+	private String extractor = "sqlite";
+	private String mainClass = BeeGenExtractorSQLite.class.getName();
+	private int workers = Runtime.getRuntime().availableProcessors();
+	private int retries = 2;
+	private int timeout = 0;
+	private String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+	private String javaOptions = "";
+	private String output;
+	private List<String> extractorOptions = new ArrayList<String>();
+	private int failedcount;
+
+	public static void main(String[] args) {
+
+		System.out.println("Bee Gen Batch Extractor, Version " + BeeGenExtractor.VERSION + ", Schema Level " + BeeGenExtractor.SCHEMA);
+		System.out.println("Extracts all CA Gen Models found in a folder, each of them in a separate process.");
+		BeeGenBatchExtractor batch = new BeeGenBatchExtractor();
+		boolean completed = false;
+		try {
+			batch.usage();
+			ExtractorOptions options = ExtractorOptions.parse(args);
+			batch.configure(options);
+			completed = batch.start(options.getModelPath());
+			if (completed) {
+				System.out.println("Batch extraction completed.");
+			} else {
+				System.out.println("Batch extraction failed for " + batch.failedcount + " models.");
+			}
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+		} catch (IOException e) {
+			System.out.println("Problem with writing batch summary.");
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			System.out.println("Batch extraction has been interrupted.");
+		}
+		if (!completed) {
+			System.exit(1);
+		}
+	}
+
+	private void usage() {
+		System.out.println("USAGE:");
+		System.out.println(
+				"\tpathRoot       -   Location of the directory searched for CA Gen Local Models (directories ending with .ief)");
+		System.out.println(
+				"\t-extractor=x   -   sqlite, json, snapshot or the name of a main class (default sqlite)");
+		System.out.println(
+				"\t-workers=n     -   Number of extractions running at once (default number of processors)");
+		System.out.println(
+				"\t-retries=n     -   Number of times a failed extraction is started again (default 2)");
+		System.out.println(
+				"\t-timeout=n     -   Minutes after which an extraction is stopped and started again (default no limit)");
+		System.out.println(
+				"\t-java=path     -   Java executable running the extractions (default the one running the batch)");
+		System.out.println(
+				"\t-javaOptions=x -   Options of the Java virtual machine of the extractions, separated by commas");
+		System.out.println(
+				"\t-output=path   -   Location of the logs and the summary (default sub-folder bee-batch of pathRoot)");
+		System.out.println(
+				"\tOther options are passed to each extraction.");
+	}
+
+	private void configure(ExtractorOptions options) {
+		extractor = options.getString("extractor", extractor);
+		if (extractor.equals("sqlite")) {
+			mainClass = BeeGenExtractorSQLite.class.getName();
+			options.check(BATCH_OPTIONS, BeeGenExtractorSQLite.OPTIONS, Projection.OPTIONS);
+		} else if (extractor.equals("json")) {
+			mainClass = BeeGenExtractorJSON.class.getName();
+			options.check(BATCH_OPTIONS, BeeGenExtractorJSON.OPTIONS, Projection.OPTIONS);
+		} else if (extractor.equals("snapshot")) {
+			mainClass = BeeGenExtractorSnapshot.class.getName();
+			options.check(BATCH_OPTIONS, BeeGenExtractorSnapshot.OPTIONS, Projection.OPTIONS);
+		} else {
+			mainClass = extractor;
+		}
+		workers = options.getInt("workers", workers, 1);
+		retries = options.getInt("retries", retries, 0);
+		timeout = options.getInt("timeout", timeout, 0);
+		java = options.getString("java", java);
+		javaOptions = options.getString("javaOptions", javaOptions);
+		output = options.getString("output", null);
+		extractorOptions = options.getOtherOptions(BATCH_OPTIONS);
+	}
+
+	/*
+	 * Returns true when all models have been extracted.
+	 */
+	private boolean start(String rootPath) throws IOException, InterruptedException {
+		File root = new File(rootPath);
+		if (!root.isDirectory()) {
+			System.out.println("Specified location is not a path to the folder.");
+			System.exit(9);
+		}
+		File outputFolder = output == null ? new File(root, BATCH_FOLDER_NAME) : new File(output);
+		System.out.println("Searching for CA Gen Models in the directory '" + rootPath + "'");
+		List<ModelJob> jobs = ModelJob.discover(root);
+		System.out.println("Found " + jobs.size() + " models, extracting them with " + extractor + " by up to "
+				+ workers + " processes...");
+
+		BatchRunner runner = new BatchRunner(createCommand(), extractorOptions, outputFolder, workers, retries,
+				timeout * 60000L);
+		runner.run(jobs);
+		File summary = new File(outputFolder, SUMMARY_JSON);
+		runner.writeSummary(summary, root.getPath(), extractor);
+		System.out.println("Summary and logs of the extractions have been written to '" + outputFolder.getPath() + "'");
+		System.out.println("Batch Statistics:");
+		System.out.println("\t" + runner.report().replace("\n", "\n\t"));
+		failedcount = runner.getFailedCount();
+		return failedcount == 0;
+	}
+
+	/*
+	 * Command starting the extractor with the class path of the batch.
+	 */
+	private List<String> createCommand() {
+		List<String> command = new ArrayList<String>();
+		command.add(java);
+		for (String option : javaOptions.split(",")) {
+			if (option.trim().length() > 0) {
+				command.add(option.trim());
+			}
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(mainClass);
+		return command;
+	}
+
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.batch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.json.JsonObject;
+
+/*
+ * Extraction of one CA Gen Local Model in the batch, with the outcome of its
+ * attempts. Times are in milliseconds since the start of the batch.
+ */
+public class ModelJob {
+
+	private static final String IEF_SUFFIX = ".ief";
+	private static final String BEE_FOLDER_NAME = "bee";
+
+	private final File directory;
+	private final String name;
+	private final long size;
+
+	private int attempts;
+	private int exitCode = -1;
+	private boolean succeeded;
+	private boolean timedOut;
+	private long started = -1;
+	private long finished = -1;
+	private File log;
+	private JsonObject metrics;
+
+	public ModelJob(File directory, String name, long size) {
+		this.directory = directory;
+		this.name = name;
+		this.size = size;
+	}
+
+	/*
+	 * Finds all directories ending with .ief under the root, which is included
+	 * as well. Directories of a model are not searched further. Models are
+	 * returned with the largest first, the order in which they are extracted,
+	 * so that a large model does not start last and extend the batch alone.
+	 */
+	public static List<ModelJob> discover(File root) {
+		List<ModelJob> jobs = new ArrayList<ModelJob>();
+		discover(root, root, jobs);
+		sortLargestFirst(jobs);
+		return jobs;
+	}
+
+	private static void discover(File root, File directory, List<ModelJob> jobs) {
+		if (directory.getName().toLowerCase().endsWith(IEF_SUFFIX)) {
+			String name = root.toURI().relativize(directory.toURI()).getPath();
+			if (name.endsWith("/")) {
+				name = name.substring(0, name.length() - 1);
+			}
+			if (name.length() == 0) {
+				name = directory.getName();
+			}
+			jobs.add(new ModelJob(directory, name, sizeOf(directory)));
+			return;
+		}
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (file.isDirectory()) {
+				discover(root, file, jobs);
+			}
+		}
+	}
+
+	/*
+	 * Size of the files of the model, without the outputs of earlier
+	 * extractions in the bee sub-folder.
+	 */
+	private static long sizeOf(File directory) {
+		long size = 0;
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return 0;
+		}
+		for (File file : files) {
+			if (file.isDirectory()) {
+				if (!file.getName().equals(BEE_FOLDER_NAME)) {
+					size += sizeOf(file);
+				}
+			} else {
+				size += file.length();
+			}
+		}
+		return size;
+	}
+
+	public static void sortLargestFirst(List<ModelJob> jobs) {
+		Collections.sort(jobs, new Comparator<ModelJob>() {
+
+			public int compare(ModelJob job1, ModelJob job2) {
+				if (job1.size != job2.size) {
+					return job1.size > job2.size ? -1 : 1;
+				}
+				return job1.name.compareTo(job2.name);
+			}
+
+		});
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/*
+	 * Location of the model relative to the root of the batch.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+
+	/*
+	 * Exit code of the last attempt.
+	 */
+	public int getExitCode() {
+		return exitCode;
+	}
+
+	void setExitCode(int exitCode) {
+		this.exitCode = exitCode;
+	}
+
+	public boolean isSucceeded() {
+		return succeeded;
+	}
+
+	void setSucceeded(boolean succeeded) {
+		this.succeeded = succeeded;
+	}
+
+	/*
+	 * Tells whether the last attempt was stopped after the time limit.
+	 */
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+
+	void setTimedOut(boolean timedOut) {
+		this.timedOut = timedOut;
+	}
+
+	public long getStarted() {
+		return started;
+	}
+
+	void setStarted(long started) {
+		this.started = started;
+	}
+
+	public long getFinished() {
+		return finished;
+	}
+
+	void setFinished(long finished) {
+		this.finished = finished;
+	}
+
+	public File getLog() {
+		return log;
+	}
+
+	void setLog(File log) {
+		this.log = log;
+	}
+
+	/*
+	 * Metrics report written by the extraction, or null when there is none.
+	 */
+	public JsonObject getMetrics() {
+		return metrics;
+	}
+
+	void setMetrics(JsonObject metrics) {
+		this.metrics = metrics;
+	}
+
+	public String getStatus() {
+		if (succeeded) {
+			return "OK";
+		}
+		if (started == -1) {
+			return "NOT STARTED";
+		}
+		return timedOut ? "TIMED OUT" : "FAILED";
+	}
+
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.diff;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+
+import eu.jgen.bee.extractor.BeeGenExtractor;
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.ExtractorOptions;
+import eu.jgen.bee.extractor.publish.Manifest;
+
+/*
+ * Compares two extractions of the same CA Gen Model and writes what changed
+ * between them as a change feed. Each extraction is either a Bee Gen Model
+ * database or a folder with objects.json and associations.json, and the two
+ * may be of different kinds.
+ */
+public class BeeGenDiff {
+
+	private static final String[] SUFFIXES = { ".json", ".ndjson", ".json.gz", ".ndjson.gz" };
+	private static final String BEE_FOLDER_NAME = "bee";
+	private static final String[] TOOLS = { "sqlite", "json" };
+	private static final String[] OPTIONS = { "new", "output", "sortRows", "tempDir" };
+
+	private String newPath;
+	private String output = "changes.ndjson";
+	private int sortRows = 200000;
+	private File tempFolder = new File(System.getProperty("java.io.tmpdir"));
+
+	public static void main(String[] args) {
+
+		System.out.println("Bee Gen Model Diff, Version: " + BeeGenExtractor.VERSION + ",  Schema Level: " + BeeGenExtractor.SCHEMA);
+		System.out.println("Compares two extractions of the CA Gen Model and writes the changes.");
+		BeeGenDiff diff = new BeeGenDiff();
+		boolean completed = false;
+		try {
+			diff.usage();
+			ExtractorOptions options = ExtractorOptions.parse(args);
+			diff.configure(options);
+			diff.start(options.getModelPath());
+			System.out.println("Comparison completed.");
+			completed = true;
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+		} catch (ExtractionException e) {
+			System.out.println(e.getMessage());
+			e.printStackTrace();
+		} catch (IOException e) {
+			System.out.println("Problem with writing the change feed.");
+			e.printStackTrace();
+		}
+		if (!completed) {
+			System.exit(1);
+		}
+	}
+
+	private void usage() {
+		System.out.println("USAGE:");
+		System.out.println(
+				"\tpathOld        -   Earlier extraction, a Bee Gen Model database or a folder with objects.json and associations.json");
+		System.out.println(
+				"\t-new=path      -   Later extraction of the same model, a database or a folder with the JSON files");
+		System.out.println(
+				"\t-output=path   -   Change feed written as one JSON object per line (default changes.ndjson)");
+		System.out.println(
+				"\t-sortRows=n    -   Number of records of the JSON files sorted in memory at once (default 200000)");
+		System.out.println(
+				"\t-tempDir=path  -   Folder of the temporary files used for sorting (default the temporary folder of Java)");
+		System.out.println("");
+	}
+
+	private void configure(ExtractorOptions options) {
+		options.check(OPTIONS);
+		newPath = options.getString("new", null);
+		if (newPath == null) {
+			throw new IllegalArgumentException("Missing location of the later extraction (-new=path).");
+		}
+		output = options.getString("output", output);
+		sortRows = options.getInt("sortRows", sortRows, 1);
+		tempFolder = new File(options.getString("tempDir", tempFolder.getPath()));
+	}
+
+	private void start(String oldPath) throws ExtractionException, IOException {
+		DiffSource older = openSource(new File(oldPath), sortRows, tempFolder);
+		DiffSource newer = openSource(new File(newPath), sortRows, tempFolder);
+		System.out.println("Comparing '" + older.getPath() + "' with '" + newer.getPath() + "'...");
+		ChangeWriter writer = new ChangeWriter(new FileOutputStream(output));
+		ModelDiff diff = new ModelDiff(older, newer, writer);
+		try {
+			diff.run();
+		} finally {
+			writer.close();
+			older.close();
+			newer.close();
+		}
+		System.out.println("Changes have been written to '" + output + "'");
+		System.out.println("Diff Statistics:");
+		System.out.println("\t" + diff.report().replace("\n", "\n\t"));
+	}
+
+	/*
+	 * A file is taken for a database, unless it is one of the JSON files. In a
+	 * folder a single database is preferred to the JSON files, as it needs no
+	 * sorting. The bee sub-folder of a CA Gen Model is searched as well, and
+	 * in a folder with manifests the files of the published generation are
+	 * used.
+	 */
+	public static DiffSource openSource(File file, int sortRows, File tempFolder) throws ExtractionException {
+		try {
+			file = Manifest.resolve(file);
+			if (file.isDirectory()) {
+				file = getPublished(file);
+			}
+		} catch (IOException e) {
+			throw new ExtractionException("Cannot read the manifests of '" + file.getPath() + "'.", e);
+		}
+		if (file.isFile()) {
+			if (file.getName().endsWith(".db")) {
+				return new DatabaseDiffSource(file);
+			}
+			file = file.getAbsoluteFile().getParentFile();
+		}
+		if (!file.isDirectory()) {
+			throw new IllegalArgumentException("Cannot find '" + file.getPath() + "'.");
+		}
+		File[] databases = file.listFiles(new FilenameFilter() {
+
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".db");
+			}
+
+		});
+		if (databases.length == 1) {
+			return new DatabaseDiffSource(databases[0]);
+		}
+		File objects = find(file, "objects");
+		File associations = find(file, "associations");
+		if (objects != null && associations != null) {
+			return new JsonDiffSource(objects, associations, sortRows, tempFolder);
+		}
+		File bee = new File(file, BEE_FOLDER_NAME);
+		if (bee.isDirectory()) {
+			return openSource(bee, sortRows, tempFolder);
+		}
+		throw new IllegalArgumentException(
+				"Cannot find a Bee Gen Model database or the JSON files in '" + file.getPath() + "'.");
+	}
+
+	/*
+	 * Generation folder published by the SQLite or else the JSON extractor in
+	 * the folder, the folder itself when there is none.
+	 */
+	private static File getPublished(File folder) throws IOException {
+		for (String tool : TOOLS) {
+			File file = Manifest.getFile(folder, tool);
+			if (file.isFile()) {
+				return Manifest.read(file).getFolder(folder);
+			}
+		}
+		return folder;
+	}
+
+	private static File find(File folder, String name) {
+		for (String suffix : SUFFIXES) {
+			File file = new File(folder, name + suffix);
+			if (file.isFile()) {
+				return file;
+			}
+		}
+		return null;
+	}
+
+}
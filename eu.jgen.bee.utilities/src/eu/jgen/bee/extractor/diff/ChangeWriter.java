@@ -0,0 +1,129 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.diff;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+
+/*
+ * Writes the change feed as newline delimited JSON, one change on each line.
+ * Every line has the operation (add, remove or change), the kind of record
+ * and its key. Added and removed records carry all their fields, changed
+ * records carry the old and the new values of the fields which differ.
+ */
+public class ChangeWriter {
+
+	public static final String ADD = "add";
+	public static final String REMOVE = "remove";
+	public static final String CHANGE = "change";
+
+	private static final JsonGeneratorFactory FACTORY = Json.createGeneratorFactory(null);
+
+	private final OutputStream output;
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+
+	public ChangeWriter(OutputStream output) {
+		this.output = new BufferedOutputStream(output, 65536);
+	}
+
+	public void added(DiffTable table, DiffRow row) throws IOException {
+		JsonGenerator generator = start(ADD, table, row);
+		writeFields(generator, table, row, null);
+		end(generator);
+	}
+
+	public void removed(DiffTable table, DiffRow row) throws IOException {
+		JsonGenerator generator = start(REMOVE, table, row);
+		writeFields(generator, table, row, null);
+		end(generator);
+	}
+
+	public void changed(DiffTable table, DiffRow older, DiffRow newer) throws IOException {
+		JsonGenerator generator = start(CHANGE, table, newer);
+		generator.writeStartObject("old");
+		writeFields(generator, table, older, newer);
+		generator.writeEnd();
+		generator.writeStartObject("new");
+		writeFields(generator, table, newer, older);
+		generator.writeEnd();
+		end(generator);
+	}
+
+	public void close() throws IOException {
+		output.close();
+	}
+
+	private JsonGenerator start(String op, DiffTable table, DiffRow row) {
+		buffer.reset();
+		JsonGenerator generator = FACTORY.createGenerator(buffer);
+		generator.writeStartObject().write("op", op).write("kind", table.kind).write(table.keys[0], row.id);
+		if (table.keys.length > 1) {
+			generator.write(table.keys[1], row.type);
+		}
+		if (table.keys.length > 2) {
+			generator.write(table.keys[2], row.seqno);
+		}
+		return generator;
+	}
+
+	/*
+	 * Writes the fields of the record, or only those differing from the other
+	 * record when it is given.
+	 */
+	private static void writeFields(JsonGenerator generator, DiffTable table, DiffRow row, DiffRow other) {
+		for (int i = 0; i < table.fields.length; i++) {
+			String value = row.values[i];
+			if (other != null && (value == null ? other.values[i] == null : value.equals(other.values[i]))) {
+				continue;
+			}
+			if (value == null) {
+				generator.writeNull(table.fields[i]);
+			} else if (table.numeric[i] && isNumber(value)) {
+				generator.write(table.fields[i], Long.parseLong(value));
+			} else {
+				generator.write(table.fields[i], value);
+			}
+		}
+	}
+
+	private static boolean isNumber(String value) {
+		int length = value.length();
+		if (length == 0 || length > 18) {
+			return false;
+		}
+		for (int i = value.charAt(0) == '-' && length > 1 ? 1 : 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void end(JsonGenerator generator) throws IOException {
+		generator.writeEnd();
+		generator.close();
+		buffer.write('\n');
+		buffer.writeTo(output);
+	}
+
+}
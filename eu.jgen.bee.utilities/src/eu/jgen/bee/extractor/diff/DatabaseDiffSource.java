@@ -0,0 +1,104 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.diff;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.sqlite.SQLiteConfig;
+
+import eu.jgen.bee.extractor.ExtractionException;
+
+/*
+ * Reads the records from a Bee Gen Model database opened read only. The
+ * primary keys of the tables give the order, so SQLite normally returns the
+ * rows one by one without sorting them, and when it sorts it spills to
+ * temporary files. The compact layout is read through its views.
+ */
+public class DatabaseDiffSource implements DiffSource {
+
+	private final File database;
+	private Connection connection;
+
+	public DatabaseDiffSource(File database) {
+		this.database = database;
+	}
+
+	public String getPath() {
+		return database.getPath();
+	}
+
+	public RowReader open(final DiffTable table) throws ExtractionException {
+		try {
+			if (connection == null) {
+				if (!database.isFile()) {
+					throw new ExtractionException("Cannot find the database '" + database.getPath() + "'.");
+				}
+				SQLiteConfig config = new SQLiteConfig();
+				config.setReadOnly(true);
+				connection = config.createConnection("jdbc:sqlite:" + database.getPath());
+			}
+			final Statement stmt = connection.createStatement();
+			final ResultSet resultSet = stmt.executeQuery(table.query);
+			final int keys = table.keys.length;
+			return new RowReader() {
+
+				public DiffRow next() throws ExtractionException {
+					try {
+						if (!resultSet.next()) {
+							return null;
+						}
+						String[] values = new String[table.fields.length];
+						for (int i = 0; i < values.length; i++) {
+							values[i] = resultSet.getString(keys + i + 1);
+						}
+						return new DiffRow(resultSet.getLong(1), keys > 1 ? resultSet.getInt(2) : 0,
+								keys > 2 ? resultSet.getInt(3) : 0, values);
+					} catch (SQLException e) {
+						throw new ExtractionException("Problem with reading '" + database.getPath() + "'.", e);
+					}
+				}
+
+				public void close() throws ExtractionException {
+					try {
+						resultSet.close();
+						stmt.close();
+					} catch (SQLException e) {
+						throw new ExtractionException("Problem with reading '" + database.getPath() + "'.", e);
+					}
+				}
+
+			};
+		} catch (SQLException e) {
+			throw new ExtractionException("Problem with reading '" + database.getPath() + "'.", e);
+		}
+	}
+
+	public void close() throws ExtractionException {
+		try {
+			if (connection != null) {
+				connection.close();
+				connection = null;
+			}
+		} catch (SQLException e) {
+			throw new ExtractionException("Problem with closing '" + database.getPath() + "'.", e);
+		}
+	}
+
+}
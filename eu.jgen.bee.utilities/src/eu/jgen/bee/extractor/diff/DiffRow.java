@@ -0,0 +1,57 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.diff;
+
+import java.util.Arrays;
+
+/*
+ * One record of an extraction: the object id, the property or association
+ * type and the sequence number forming its key, and the values of the
+ * compared fields as text. Parts of the key not used by the kind of record
+ * are 0.
+ */
+public final class DiffRow implements Comparable<DiffRow> {
+
+	public final long id;
+	public final int type;
+	public final int seqno;
+	public final String[] values;
+
+	public DiffRow(long id, int type, int seqno, String[] values) {
+		this.id = id;
+		this.type = type;
+		this.seqno = seqno;
+		this.values = values;
+	}
+
+	public int compareTo(DiffRow other) {
+		if (id != other.id) {
+			return id < other.id ? -1 : 1;
+		}
+		if (type != other.type) {
+			return type < other.type ? -1 : 1;
+		}
+		if (seqno != other.seqno) {
+			return seqno < other.seqno ? -1 : 1;
+		}
+		return 0;
+	}
+
+	public boolean sameValues(DiffRow other) {
+		return Arrays.equals(values, other.values);
+	}
+
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.diff;
+
+/*
+ * Kinds of records compared between two extractions. Each has a key of one to
+ * three numbers, by which records of both extractions are read in ascending
+ * order, and the fields compared for records with the same key. The names of
+ * the keys and fields are those of the JSON files.
+ */
+public enum DiffTable {
+
+	OBJECTS("object", new String[] { "id" }, new String[] { "type", "mnemonic" }, new boolean[] { true, false },
+			"SELECT id, objType, objMnemonic FROM GenObjects ORDER BY id;"),
+
+	PROPERTIES("property", new String[] { "objid", "type" }, new String[] { "mnemonic", "format", "value" },
+			new boolean[] { false, false, false },
+			"SELECT objid, prpType, mnemonic, format, value FROM GenProperties ORDER BY objid, prpType;"),
+
+	ASSOCIATIONS("association", new String[] { "from", "type", "seqno" },
+			new String[] { "to", "inverseType", "mnemonic", "card", "direction" },
+			new boolean[] { true, true, false, false, false },
+			"SELECT fromObjid, ascType, seqno, toObjid, inverseAscType, ascMnemonic, card, direction FROM GenAssociations ORDER BY fromObjid, ascType, seqno;");
+
+	public final String kind;
+	final String[] keys;
+	final String[] fields;
+	final boolean[] numeric;
+	final String query;
+
+	DiffTable(String kind, String[] keys, String[] fields, boolean[] numeric, String query) {
+		this.kind = kind;
+		this.keys = keys;
+		this.fields = fields;
+		this.numeric = numeric;
+		this.query = query;
+	}
+
+	public int getFieldCount() {
+		return fields.length;
+	}
+
+}
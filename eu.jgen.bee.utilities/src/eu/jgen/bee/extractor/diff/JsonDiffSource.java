@@ -0,0 +1,202 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.diff;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+import eu.jgen.bee.extractor.ExtractionException;
+
+/*
+ * Reads the records from objects.json and associations.json written by
+ * BeeGenExtractorJSON, or from their .ndjson forms, optionally compressed
+ * with gzip. The files are read with the streaming parser and follow the
+ * order of the model rather than the order of the keys, so the records pass
+ * through a RowSorter holding at most a run of them in memory. Objects and
+ * properties are read in two passes over the objects file.
+ */
+public class JsonDiffSource implements DiffSource {
+
+	private final File objects;
+	private final File associations;
+	private final int runSize;
+	private final File folder;
+	private int runcount;
+
+	public JsonDiffSource(File objects, File associations, int runSize, File folder) {
+		this.objects = objects;
+		this.associations = associations;
+		this.runSize = runSize;
+		this.folder = folder;
+	}
+
+	public String getPath() {
+		return objects.getParent();
+	}
+
+	/*
+	 * Number of sorted runs written to temporary files so far.
+	 */
+	public int getRunCount() {
+		return runcount;
+	}
+
+	public RowReader open(DiffTable table) throws ExtractionException {
+		File file = table == DiffTable.ASSOCIATIONS ? associations : objects;
+		RowSorter sorter = new RowSorter(runSize, folder, table.fields.length);
+		try {
+			InputStream stream = new FileInputStream(file);
+			try {
+				if (file.getName().endsWith(".gz")) {
+					stream = new GZIPInputStream(stream, 65536);
+				}
+				BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8), 65536);
+				if (file.getName().contains(".ndjson")) {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						if (!line.isEmpty()) {
+							read(Json.createParser(new StringReader(line)), 1, table, sorter);
+						}
+					}
+				} else {
+					read(Json.createParser(reader), 2, table, sorter);
+				}
+			} finally {
+				stream.close();
+			}
+		} catch (IOException e) {
+			throw new ExtractionException("Cannot read '" + file.getPath() + "'.", e);
+		} catch (JsonException e) {
+			throw new ExtractionException("Problem with reading '" + file.getPath() + "'.", e);
+		}
+		RowReader reader = sorter.sort();
+		runcount += sorter.getRunCount();
+		return reader;
+	}
+
+	public void close() {
+	}
+
+	/*
+	 * Reads the objects or associations at the given depth of nesting, and for
+	 * properties the elements of the properties array of every object. The
+	 * properties of an object are added once the whole object is read, as its
+	 * id may follow them.
+	 */
+	private static void read(JsonParser parser, int elementDepth, DiffTable table, RowSorter sorter)
+			throws ExtractionException {
+		int depth = 0;
+		String key = null;
+		boolean inProperties = false;
+		long id = 0;
+		int type = 0;
+		int seqno = 0;
+		String[] values = new String[table.fields.length];
+		List<DiffRow> properties = new ArrayList<DiffRow>();
+		String[] property = new String[DiffTable.PROPERTIES.fields.length];
+		int prpType = 0;
+		while (parser.hasNext()) {
+			Event event = parser.next();
+			switch (event) {
+			case START_OBJECT:
+				depth++;
+				break;
+			case START_ARRAY:
+				depth++;
+				if (depth == elementDepth + 1 && "properties".equals(key)) {
+					inProperties = true;
+				}
+				break;
+			case END_OBJECT:
+				if (depth == elementDepth) {
+					if (table == DiffTable.PROPERTIES) {
+						for (DiffRow row : properties) {
+							sorter.add(new DiffRow(id, row.type, 0, row.values));
+						}
+						properties.clear();
+					} else {
+						sorter.add(new DiffRow(id, table == DiffTable.OBJECTS ? 0 : type, seqno, values));
+						values = new String[table.fields.length];
+					}
+					id = 0;
+					type = seqno = 0;
+				} else if (inProperties && depth == elementDepth + 2 && table == DiffTable.PROPERTIES) {
+					properties.add(new DiffRow(0, prpType, 0, property));
+					property = new String[DiffTable.PROPERTIES.fields.length];
+					prpType = 0;
+				}
+				depth--;
+				break;
+			case END_ARRAY:
+				if (depth == elementDepth + 1) {
+					inProperties = false;
+				}
+				depth--;
+				break;
+			case KEY_NAME:
+				key = parser.getString();
+				break;
+			case VALUE_NUMBER:
+			case VALUE_STRING:
+				if (depth == elementDepth) {
+					if (table.keys[0].equals(key) || (table == DiffTable.PROPERTIES && "id".equals(key))) {
+						id = parser.getLong();
+					} else if ("type".equals(key) && table != DiffTable.OBJECTS) {
+						type = parser.getInt();
+					} else if ("seqno".equals(key)) {
+						seqno = parser.getInt();
+					} else if (table != DiffTable.PROPERTIES) {
+						setField(table, values, key, parser.getString());
+					}
+				} else if (inProperties && depth == elementDepth + 2 && table == DiffTable.PROPERTIES) {
+					if ("type".equals(key)) {
+						prpType = parser.getInt();
+					} else {
+						setField(DiffTable.PROPERTIES, property, key, parser.getString());
+					}
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		parser.close();
+	}
+
+	private static void setField(DiffTable table, String[] values, String key, String value) {
+		for (int i = 0; i < table.fields.length; i++) {
+			if (table.fields[i].equals(key)) {
+				values[i] = value;
+				return;
+			}
+		}
+	}
+
+}
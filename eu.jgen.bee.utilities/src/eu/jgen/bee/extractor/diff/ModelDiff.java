@@ -0,0 +1,145 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.diff;
+
+import java.io.IOException;
+
+import eu.jgen.bee.extractor.ExtractionException;
+
+/*
+ * Compares two extractions of a model and writes the records added, removed
+ * and changed in the newer one to the change feed. For each kind of records
+ * both extractions are read in ascending order of the keys and merged, so
+ * only the current record of each side is held in memory: a key found only in
+ * the older extraction is removed, a key found only in the newer one is added,
+ * and a key found in both is changed when any field differs.
+ */
+public class ModelDiff {
+
+	public static final int ADDED = 0;
+	public static final int REMOVED = 1;
+	public static final int CHANGED = 2;
+	public static final int UNCHANGED = 3;
+
+	private final DiffSource older;
+	private final DiffSource newer;
+	private final ChangeWriter writer;
+	private final long[][] counts = new long[DiffTable.values().length][4];
+	private final long[] elapsed = new long[DiffTable.values().length];
+
+	public ModelDiff(DiffSource older, DiffSource newer, ChangeWriter writer) {
+		this.older = older;
+		this.newer = newer;
+		this.writer = writer;
+	}
+
+	public void run() throws ExtractionException {
+		for (DiffTable table : DiffTable.values()) {
+			long start = System.nanoTime();
+			compare(table);
+			elapsed[table.ordinal()] = System.nanoTime() - start;
+		}
+	}
+
+	private void compare(DiffTable table) throws ExtractionException {
+		long[] count = counts[table.ordinal()];
+		RowReader left = older.open(table);
+		try {
+			RowReader right = newer.open(table);
+			try {
+				DiffRow one = left.next();
+				DiffRow other = right.next();
+				while (one != null || other != null) {
+					int result = one == null ? 1 : other == null ? -1 : one.compareTo(other);
+					if (result < 0) {
+						writer.removed(table, one);
+						count[REMOVED]++;
+						one = left.next();
+					} else if (result > 0) {
+						writer.added(table, other);
+						count[ADDED]++;
+						other = right.next();
+					} else {
+						if (one.sameValues(other)) {
+							count[UNCHANGED]++;
+						} else {
+							writer.changed(table, one, other);
+							count[CHANGED]++;
+						}
+						one = left.next();
+						other = right.next();
+					}
+				}
+			} catch (IOException e) {
+				throw new ExtractionException("Problem with writing the change feed.", e);
+			} finally {
+				right.close();
+			}
+		} finally {
+			left.close();
+		}
+	}
+
+	public long getCount(DiffTable table, int change) {
+		return counts[table.ordinal()][change];
+	}
+
+	/*
+	 * Number of changes of all kinds of records.
+	 */
+	public long getChangeCount() {
+		long total = 0;
+		for (long[] count : counts) {
+			total += count[ADDED] + count[REMOVED] + count[CHANGED];
+		}
+		return total;
+	}
+
+	/*
+	 * Number of records read from both extractions.
+	 */
+	public long getRowCount() {
+		long total = 0;
+		for (long[] count : counts) {
+			total += 2 * (count[CHANGED] + count[UNCHANGED]) + count[ADDED] + count[REMOVED];
+		}
+		return total;
+	}
+
+	public long getElapsed() {
+		long total = 0;
+		for (long time : elapsed) {
+			total += time;
+		}
+		return total;
+	}
+
+	public String report() {
+		StringBuilder builder = new StringBuilder();
+		for (DiffTable table : DiffTable.values()) {
+			long[] count = counts[table.ordinal()];
+			long rows = 2 * (count[CHANGED] + count[UNCHANGED]) + count[ADDED] + count[REMOVED];
+			long millis = elapsed[table.ordinal()] / 1000000;
+			builder.append(table.kind).append(": added ").append(count[ADDED]).append(", removed ")
+					.append(count[REMOVED]).append(", changed ").append(count[CHANGED]).append(", unchanged ")
+					.append(count[UNCHANGED]).append(", ").append(rows).append(" rows in ").append(millis)
+					.append(" ms (").append(millis == 0 ? rows : rows * 1000 / millis).append(" rows/s)\n");
+		}
+		builder.append("Number of changes is ").append(getChangeCount());
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,32 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.diff;
+
+import eu.jgen.bee.extractor.ExtractionException;
+
+/*
+ * Records of one kind read in ascending order of their keys.
+ */
+public interface RowReader {
+
+	/*
+	 * Returns null after the last record.
+	 */
+	DiffRow next() throws ExtractionException;
+
+	void close() throws ExtractionException;
+
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.diff;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import eu.jgen.bee.extractor.ExtractionException;
+
+/*
+ * Sorts records by their keys with a bounded number of them in memory. Records
+ * are collected in runs of a fixed size, and every full run is sorted and
+ * written to a temporary file. The files are then merged while they are read,
+ * so memory use depends on the size of a run and not on the number of
+ * records. When all records fit into one run nothing is written.
+ */
+public class RowSorter {
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private final int runSize;
+	private final File folder;
+	private final int fields;
+	private DiffRow[] run;
+	private int size;
+	private final List<File> files = new ArrayList<File>();
+
+	public RowSorter(int runSize, File folder, int fields) {
+		this.runSize = Math.max(1, runSize);
+		this.folder = folder;
+		this.fields = fields;
+		this.run = new DiffRow[Math.min(this.runSize, 1024)];
+	}
+
+	public void add(DiffRow row) throws ExtractionException {
+		if (size == run.length) {
+			if (size == runSize) {
+				spill();
+			} else {
+				run = Arrays.copyOf(run, Math.min(runSize, size * 2));
+			}
+		}
+		run[size++] = row;
+	}
+
+	/*
+	 * Number of runs written to temporary files.
+	 */
+	public int getRunCount() {
+		return files.size();
+	}
+
+	/*
+	 * Returns the records in ascending order of their keys. Records with the
+	 * same key keep the order in which they were added. Temporary files are
+	 * removed when the reader is closed.
+	 */
+	public RowReader sort() throws ExtractionException {
+		if (files.isEmpty()) {
+			Arrays.sort(run, 0, size);
+			final DiffRow[] rows = run;
+			final int count = size;
+			run = null;
+			return new RowReader() {
+
+				private int position;
+
+				public DiffRow next() {
+					return position < count ? rows[position++] : null;
+				}
+
+				public void close() {
+				}
+
+			};
+		}
+		if (size > 0) {
+			spill();
+		}
+		run = null;
+		final PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>();
+		try {
+			for (int i = 0; i < files.size(); i++) {
+				RunReader reader = new RunReader(files.get(i), i, fields);
+				if (reader.advance()) {
+					queue.add(reader);
+				} else {
+					reader.close();
+				}
+			}
+		} catch (IOException e) {
+			closeAll(queue);
+			throw new ExtractionException("Problem with reading sorted records.", e);
+		}
+		return new RowReader() {
+
+			public DiffRow next() throws ExtractionException {
+				RunReader reader = queue.poll();
+				if (reader == null) {
+					return null;
+				}
+				DiffRow row = reader.current;
+				try {
+					if (reader.advance()) {
+						queue.add(reader);
+					} else {
+						reader.close();
+					}
+				} catch (IOException e) {
+					throw new ExtractionException("Problem with reading sorted records.", e);
+				}
+				return row;
+			}
+
+			public void close() {
+				closeAll(queue);
+			}
+
+		};
+	}
+
+	private void spill() throws ExtractionException {
+		Arrays.sort(run, 0, size);
+		File file = null;
+		try {
+			file = File.createTempFile("beegen-diff", ".run", folder);
+			file.deleteOnExit();
+			files.add(file);
+			DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+			try {
+				for (int i = 0; i < size; i++) {
+					DiffRow row = run[i];
+					output.writeLong(row.id);
+					output.writeInt(row.type);
+					output.writeInt(row.seqno);
+					for (String value : row.values) {
+						if (value == null) {
+							output.writeInt(-1);
+						} else {
+							byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+							output.writeInt(bytes.length);
+							output.write(bytes);
+						}
+					}
+					run[i] = null;
+				}
+			} finally {
+				output.close();
+			}
+		} catch (IOException e) {
+			throw new ExtractionException("Problem with writing sorted records to '" + file + "'.", e);
+		}
+		size = 0;
+	}
+
+	private void closeAll(PriorityQueue<RunReader> queue) {
+		for (RunReader reader : queue) {
+			reader.close();
+		}
+		queue.clear();
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	/*
+	 * Reads one sorted run. Readers are ordered by their current record and,
+	 * for the same key, by the position of the run.
+	 */
+	private static final class RunReader implements Comparable<RunReader> {
+
+		private final DataInputStream input;
+		private final int index;
+		private final int fields;
+		private DiffRow current;
+
+		RunReader(File file, int index, int fields) throws IOException {
+			this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+			this.index = index;
+			this.fields = fields;
+		}
+
+		boolean advance() throws IOException {
+			long id;
+			try {
+				id = input.readLong();
+			} catch (EOFException e) {
+				current = null;
+				return false;
+			}
+			int type = input.readInt();
+			int seqno = input.readInt();
+			String[] values = new String[fields];
+			for (int i = 0; i < fields; i++) {
+				int length = input.readInt();
+				if (length >= 0) {
+					byte[] bytes = new byte[length];
+					input.readFully(bytes);
+					values[i] = new String(bytes, StandardCharsets.UTF_8);
+				}
+			}
+			current = new DiffRow(id, type, seqno, values);
+			return true;
+		}
+
+		void close() {
+			try {
+				input.close();
+			} catch (IOException e) {
+				// nothing more is read from it
+			}
+		}
+
+		public int compareTo(RunReader other) {
+			int result = current.compareTo(other.current);
+			return result != 0 ? result : index - other.index;
+		}
+
+	}
+
+}
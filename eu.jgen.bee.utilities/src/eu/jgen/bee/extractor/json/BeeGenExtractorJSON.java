@@ -18,63 +18,108 @@ package eu.jgen.bee.extractor.json;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
 
-import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonArrayBuilder;
-import javax.json.JsonObjectBuilder;
-import javax.json.JsonWriter;
 import com.ca.gen.jmmi.Ency;
 import com.ca.gen.jmmi.EncyManager;
-import com.ca.gen.jmmi.MMObj;
 import com.ca.gen.jmmi.Model;
 import com.ca.gen.jmmi.ModelManager;
 import com.ca.gen.jmmi.exceptions.EncyException;
-import com.ca.gen.jmmi.exceptions.EncyUnsupportedOperationException;
 import com.ca.gen.jmmi.exceptions.ModelNotFoundException;
-import com.ca.gen.jmmi.ids.ObjId;
-import com.ca.gen.jmmi.schema.AscTypeCode;
-import com.ca.gen.jmmi.schema.AscTypeHelper;
-import com.ca.gen.jmmi.schema.ObjTypeHelper;
-import com.ca.gen.jmmi.schema.PrpTypeCode;
-import com.ca.gen.jmmi.schema.PrpTypeHelper;
-import com.ca.gen.jmmi.util.PrpFormat;
 
 import eu.jgen.bee.extractor.BeeGenExtractor;
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.ExtractorOptions;
+import eu.jgen.bee.extractor.metrics.ExtractionMetrics;
+import eu.jgen.bee.extractor.metrics.MeteredModelSink;
+import eu.jgen.bee.extractor.metrics.MeteredModelSource;
+import eu.jgen.bee.extractor.metrics.MeteredSchemaSource;
+import eu.jgen.bee.extractor.model.JmmiModelSource;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.publish.StagingFolder;
+import eu.jgen.bee.extractor.schema.JmmiSchemaSource;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+import eu.jgen.bee.extractor.trace.RecordingModelSource;
+import eu.jgen.bee.extractor.trace.RecordingSchemaSource;
+import eu.jgen.bee.extractor.trace.ReplayModelSource;
+import eu.jgen.bee.extractor.trace.ReplaySchemaSource;
+import eu.jgen.bee.extractor.trace.Trace;
+import eu.jgen.bee.extractor.trace.TraceWriter;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+import eu.jgen.bee.extractor.traversal.PipelinedTraversal;
+import eu.jgen.bee.extractor.traversal.Projection;
 
 public class BeeGenExtractorJSON {
 	
 	private static final String ASSOCIATIONS_JSON = "associations.json";
 	private static final String OBJECTS_JSON = "objects.json";
-	private static final String STRING_SLASH = "\\";
+	private static final String ASSOCIATIONS_NDJSON = "associations.ndjson";
+	private static final String OBJECTS_NDJSON = "objects.ndjson";
+	private static final String GZIP_SUFFIX = ".gz";
+	private static final String METRICS_JSON = "json-metrics.json";
+	private static final String STRING_SLASH = File.separator;
+
+	public static final String[] OPTIONS = { "pipeline", "readBatch", "queueDepth", "parallel", "threads",
+			"shardSize", "ndjson", "gzip", "record", "replay", "replayLatency" };
 	private String BEE_FOLDER_NAME = "bee"; 
 
 	private Model model;
 	private Ency ency;
+	private ExtractionMetrics metrics = new ExtractionMetrics("json");
+	private SchemaCatalog catalog = new SchemaCatalog(new MeteredSchemaSource(new JmmiSchemaSource(), metrics));
 	private int objectcount;
 	private int propertycount;
 	private int associationcount;
 	private String modelName ="UNKNOWN";
+	private boolean pipeline = false;
+	private int readBatch = 256;
+	private int queueDepth = 16;
+	private boolean parallel = false;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int shardSize = 4096;
+	private boolean ndjson = false;
+	private boolean gzip = false;
+	private Projection projection;
+	private String recordPath;
+	private String replayPath;
+	private boolean replayLatency = false;
+	private String recordedOptions;
+	private TraceWriter traceWriter;
+	private Trace trace;
 
 	public static void main(String[] args) {
 
 		System.out.println("Bee Gen  Model Extractor, Version " + BeeGenExtractor.VERSION + ", Schema Level " + BeeGenExtractor.SCHEMA);
 		System.out.println("Extracts meta data from the CA Gen Model and creates two JSON files showing entire model contents.");
 		BeeGenExtractorJSON extractor = new BeeGenExtractorJSON();
+		boolean completed = false;
 		try {
 			extractor.usage();
-			extractor.start(args[0]);
+			ExtractorOptions options = ExtractorOptions.parse(args);
+			extractor.configure(options);
+			extractor.start(options.getModelPath());
 			System.out.println("Transactions extraction completed.");
+			completed = true;
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
 		} catch (EncyException e) {
 			System.out.println("Problem with connecting to the encyclopedia.");
 			e.printStackTrace();
 		} catch (ModelNotFoundException e) {
 			System.out.println("Cannot find model in the encyclopedia.");
 			e.printStackTrace();
-		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
 			System.out.println("Problem with creating output stream.");
 			e.printStackTrace();
+		} catch (ExtractionException e) {
+			System.out.println(e.getMessage());
+			e.printStackTrace();
+		}
+		if (!completed) {
+			System.exit(1);
 		}
 	}
 
@@ -82,6 +127,60 @@ public class BeeGenExtractorJSON {
 		System.out.println("USAGE:");
 		System.out.println(
 				"\tpathModel      -   Location of the directory containing CA Gen Local Model (directory ending with .ief)");
+		System.out.println(
+				"\t-pipeline      -   Reads the model and writes the files on separate threads");
+		System.out.println(
+				"\t-readBatch=n   -   Number of objects passed to the writer at once in pipeline mode (default 256)");
+		System.out.println(
+				"\t-queueDepth=n  -   Number of batches waiting for the writer in pipeline mode (default 16)");
+		System.out.println(
+				"\t-parallel      -   Encodes the JSON files on several threads");
+		System.out.println(
+				"\t-threads=n     -   Number of encoding threads in parallel mode (default number of processors)");
+		System.out.println(
+				"\t-shardSize=n   -   Number of objects encoded at once in parallel mode (default 4096)");
+		System.out.println(
+				"\t-ndjson        -   Writes one object or association on each line instead of one array");
+		System.out.println(
+				"\t-gzip          -   Compresses the files with GZIP while they are written");
+		System.out.println(
+				"\t-objTypes=x    -   Object types read as roots, mnemonics separated by commas (default all objects)");
+		System.out.println(
+				"\t-prpTypes=x    -   Properties read, mnemonics separated by commas (default all properties)");
+		System.out.println(
+				"\t-ascTypes=x    -   Associations read, mnemonics separated by commas (default all associations)");
+		System.out.println(
+				"\t-closure=n     -   Number of association steps followed from the roots (default 0)");
+		System.out.println(
+				"\t-record=path   -   Writes every call to the CA Gen model with its result and latency into a trace file");
+		System.out.println(
+				"\t-replay=path   -   Reads the model from a trace file instead, pathModel only receives the output");
+		System.out.println(
+				"\t-replayLatency -   Waits the recorded latency of every call when replaying a trace");
+	}
+
+	private void configure(ExtractorOptions options) {
+		options.check(OPTIONS, Projection.OPTIONS);
+		pipeline = options.has("pipeline");
+		readBatch = options.getInt("readBatch", readBatch, 1);
+		queueDepth = options.getInt("queueDepth", queueDepth, 1);
+		parallel = options.has("parallel");
+		threads = options.getInt("threads", threads, 1);
+		shardSize = options.getInt("shardSize", shardSize, 1);
+		ndjson = options.has("ndjson");
+		gzip = options.has("gzip");
+		projection = Projection.fromOptions(options);
+		recordPath = options.getString("record", null);
+		replayPath = options.getString("replay", null);
+		replayLatency = options.has("replayLatency");
+		if (recordPath != null && replayPath != null) {
+			throw new IllegalArgumentException("Options 'record' and 'replay' cannot be used together.");
+		}
+		StringBuilder recorded = new StringBuilder();
+		for (String option : options.getOtherOptions("record")) {
+			recorded.append(recorded.length() == 0 ? "" : " ").append(option);
+		}
+		recordedOptions = recorded.toString();
 	}
 
 	/*
@@ -89,152 +188,184 @@ public class BeeGenExtractorJSON {
 	 * Previous files will be overwritten by a newly created ones.
 	 */
 	private void start(String modelPath)
-			throws EncyException, ModelNotFoundException, FileNotFoundException {
-		System.out.println("Connecting to the CA Gen Model in the directory '" + modelPath + "'");
-		ency = EncyManager.connectLocalForReadOnly(modelPath);
-		model = ModelManager.open(ency, ency.getModelIds().get(0));
-		modelName = model.getName();
+			throws EncyException, ModelNotFoundException, IOException, ExtractionException {
+		if (replayPath != null) {
+			System.out.println("Replaying the trace '" + replayPath + "'" + (replayLatency ? " with the recorded latencies" : ""));
+			metrics.startPhase("connect");
+			try {
+				trace = Trace.read(new File(replayPath));
+			} catch (IOException e) {
+				throw new ExtractionException("Cannot read the trace '" + replayPath + "'.", e);
+			}
+			modelName = trace.getModelName();
+			catalog = new SchemaCatalog(new MeteredSchemaSource(new ReplaySchemaSource(trace, replayLatency), metrics));
+		} else {
+			System.out.println("Connecting to the CA Gen Model in the directory '" + modelPath + "'");
+			metrics.startPhase("connect");
+			ency = EncyManager.connectLocalForReadOnly(modelPath);
+			model = ModelManager.open(ency, ency.getModelIds().get(0));
+			modelName = model.getName();
+			if (recordPath != null) {
+				traceWriter = new TraceWriter(new File(recordPath), modelName, BeeGenExtractor.SCHEMA, recordedOptions);
+				catalog = new SchemaCatalog(new MeteredSchemaSource(new RecordingSchemaSource(new JmmiSchemaSource(),
+						traceWriter), metrics));
+			}
+		}
+		metrics.register(modelName);
 		
-		String outputPath = clearTargetDestination(modelPath);
+		StagingFolder staging = prepareTargetDestination(modelPath);
+		String outputPath = staging.getPath();
 		System.out.println("Connected to the model " + modelName + "...");
-		System.out.println("Extracting object and property definitions...");
-		FileOutputStream outputStreamForObjects = new FileOutputStream(outputPath +  STRING_SLASH +OBJECTS_JSON);
-		extractObjectsAndProperties(outputStreamForObjects);
-		System.out.println("Extracting associations definitions...");
-		FileOutputStream outputStreamForAssociations = new FileOutputStream(outputPath +  STRING_SLASH + ASSOCIATIONS_JSON);
-		extractAssociations(outputStreamForAssociations);
-		System.out.println("Two transaction files have been created in the sub-folder 'bee' of your CA Gen model '" + model.getName() + "' at location '" + modelPath + "'");
+		System.out.println("Extracting object, property and association definitions...");
+		metrics.startPhase("model");
+		MeteredModelSource source = new MeteredModelSource(createSource(), metrics);
+		ModelTraversal traversal;
+		if (pipeline) {
+			traversal = new PipelinedTraversal(source, readBatch, queueDepth);
+		} else {
+			traversal = new ModelTraversal(source);
+		}
+		if (projection != null) {
+			traversal.setProjection(projection);
+		}
+		String files = ndjson ? "NDJSON files" : "JSON files";
+		ParallelJsonModelSink parallelSink = null;
+		if (parallel) {
+			parallelSink = createParallelSink(outputPath, ndjson, gzip, shardSize, threads);
+			traversal.addSink(new MeteredModelSink(parallelSink, files, metrics));
+		} else {
+			traversal.addSink(new MeteredModelSink(createSink(outputPath, ndjson, gzip), files, metrics));
+		}
+		try {
+			traversal.run();
+		} finally {
+			if (traceWriter != null) {
+				traceWriter.close();
+			}
+		}
+		metrics.finish();
+		objectcount = traversal.getObjectCount();
+		propertycount = traversal.getPropertyCount();
+		associationcount = traversal.getAssociationCount();
 		System.out.println("Run Statistics:");
 		System.out.println("\tNumber of exported object definitions is " + objectcount);
 		System.out.println("\tNumber of exported property definitions  is " + propertycount);
 		System.out.println("\tNumber of exported association definitions is " + associationcount);
+		System.out.println("\tNumber of object types read from the schema is " + catalog.getLoadedCount());
+		if (pipeline) {
+			System.out.println("Pipeline Statistics:");
+			System.out.println("\t" + ((PipelinedTraversal) traversal).report().replace("\n", "\n\t"));
+		}
+		if (projection != null) {
+			System.out.println("Projection Statistics:");
+			System.out.println("\tProjection is " + projection);
+			System.out.println("\tNumber of objects reached through associations is " + traversal.getReachedCount());
+			System.out.println("\tNumber of associations leading outside the projection is " + traversal.getDroppedCount());
+		}
+		if (parallel) {
+			System.out.println("Parallel Encoding Statistics:");
+			System.out.println("\t" + parallelSink.report().replace("\n", "\n\t"));
+		}
+		if (traceWriter != null) {
+			System.out.println("Trace Statistics:");
+			System.out.println("\t" + traceWriter.report().replace("\n", "\n\t"));
+		}
+		if (trace != null) {
+			System.out.println("Trace Statistics:");
+			System.out.println("\t" + trace.report().replace("\n", "\n\t"));
+		}
+		metrics.setCount("objects", objectcount);
+		metrics.setCount("properties", propertycount);
+		metrics.setCount("associations", associationcount);
+		metrics.setCount("objectTypes", catalog.getLoadedCount());
+		System.out.println("Extraction Metrics:");
+		System.out.println("\t" + metrics.report().replace("\n", "\n\t"));
+		metrics.writeReport(new File(outputPath + STRING_SLASH + METRICS_JSON));
+		metrics.unregister();
+		String suffix = gzip ? GZIP_SUFFIX : "";
+		staging.setRows((ndjson ? OBJECTS_NDJSON : OBJECTS_JSON) + suffix, objectcount);
+		staging.setRows((ndjson ? ASSOCIATIONS_NDJSON : ASSOCIATIONS_JSON) + suffix, associationcount);
+		staging.publish(metrics);
+		System.out.println("Publish Statistics:");
+		System.out.println("\t" + staging.report().replace("\n", "\n\t"));
+		System.out.println("Two transaction files have been created in the sub-folder '" + staging.getFolder().getName() + "' of the sub-folder 'bee' of your CA Gen model '" + modelName + "' at location '" + modelPath + "'");
 	}
 	
-	private String clearTargetDestination(String modelPath) {
-		File file = new File(modelPath);
-		if(! file.isDirectory()) {
-			System.out.println("Specified model path is not a correct folder.");
-			System.exit(9);
+	/*
+	 * Source reading the CA Gen model, recording the calls into the trace or
+	 * answering them from the trace.
+	 */
+	private ModelSource createSource() {
+		if (trace != null) {
+			return new ReplayModelSource(trace, catalog, replayLatency);
 		}
-		file = new File(modelPath + STRING_SLASH + BEE_FOLDER_NAME);
-		if (file.exists()) {
-			file = new File(modelPath + STRING_SLASH + BEE_FOLDER_NAME + STRING_SLASH +  OBJECTS_JSON);
-			file.delete();
-			file = new File(modelPath + STRING_SLASH + BEE_FOLDER_NAME + STRING_SLASH +  ASSOCIATIONS_JSON);
-			file.delete();
-			return modelPath + STRING_SLASH + BEE_FOLDER_NAME;
+		ModelSource source = new JmmiModelSource(model, catalog);
+		if (traceWriter != null) {
+			return new RecordingModelSource(source, traceWriter);
 		}
-		if (file.mkdir()) {
-			return modelPath + STRING_SLASH + BEE_FOLDER_NAME;
+		return source;
+	}
+
+	/*
+	 * Sink writing both JSON files into the output folder.
+	 */
+	public static JsonModelSink createSink(String outputPath) throws FileNotFoundException {
+		FileOutputStream outputStreamForObjects = new FileOutputStream(outputPath + STRING_SLASH + OBJECTS_JSON);
+		FileOutputStream outputStreamForAssociations = new FileOutputStream(outputPath + STRING_SLASH + ASSOCIATIONS_JSON);
+		return new JsonModelSink(outputStreamForObjects, outputStreamForAssociations);
+	}
+
+	/*
+	 * Sink writing both files into the output folder either as JSON arrays or
+	 * as newline delimited JSON, optionally compressed.
+	 */
+	public static ModelSink createSink(String outputPath, boolean ndjson, boolean gzip) throws IOException {
+		OutputStream outputStreamForObjects = openOutput(outputPath, ndjson ? OBJECTS_NDJSON : OBJECTS_JSON, gzip);
+		OutputStream outputStreamForAssociations = openOutput(outputPath,
+				ndjson ? ASSOCIATIONS_NDJSON : ASSOCIATIONS_JSON, gzip);
+		if (ndjson) {
+			return new NdjsonModelSink(outputStreamForObjects, outputStreamForAssociations);
 		}
-		return null;
+		return new JsonModelSink(outputStreamForObjects, outputStreamForAssociations);
 	}
 
 	/*
-	 * Creates JSON file containing all model objects and their properties.
+	 * Sink writing the same files as createSink, encoded on several threads.
 	 */
-	private void extractObjectsAndProperties(FileOutputStream outputStream)
-			throws EncyUnsupportedOperationException, FileNotFoundException {
-		List<ObjId> objects = model.getObjIds();
-		JsonArrayBuilder objectsArray = Json.createArrayBuilder();
-		for (ObjId objId : objects) {
-			MMObj mmObj = MMObj.getInstance(model, objId);
-			JsonObjectBuilder valueObject = Json.createObjectBuilder().add("id", objId.getValue())
-					.add("type", ObjTypeHelper.getCode(mmObj.getObjTypeCode()))
-					.add("mnemonic", mmObj.getObjTypeCode().name());
-			JsonArrayBuilder propertiesArray = Json.createArrayBuilder();
-			List<PrpTypeCode> listprp = ObjTypeHelper.getProperties(mmObj.getObjTypeCode());
-			for (PrpTypeCode prp : listprp) {
-				PrpFormat format = PrpTypeHelper.getFormat(mmObj.getObjTypeCode(), prp);
-				if (format == PrpFormat.TEXT || format == PrpFormat.LOADNAME || format == PrpFormat.NAME) {
-					String textValue = mmObj.getTextProperty(prp);
-					if (textValue != PrpTypeHelper.getDefaultTxtValue(mmObj.getObjTypeCode(), prp)
-							&& textValue.length() != 0) {
-						JsonObjectBuilder valueProperty = Json.createObjectBuilder()
-								.add("type", PrpTypeHelper.getCode(prp)).add("format", format.name())
-								.add("mnemonic", prp.name()).add("value", textValue);
-						propertiesArray.add(valueProperty);
-						propertycount++;
-						continue;
-					}
-				} else if (format == PrpFormat.CHAR) {
-					char charValue = mmObj.getCharProperty(prp);
-					if (charValue != PrpTypeHelper.getDefaultChrValue(mmObj.getObjTypeCode(), prp)) {
-						JsonObjectBuilder valueProperty = Json.createObjectBuilder()
-								.add("type", PrpTypeHelper.getCode(prp)).add("format", format.name())
-								.add("mnemonic", prp.name()).add("value", String.valueOf(charValue));
-						propertiesArray.add(valueProperty);
-						propertycount++;
-						continue;
-					}
-				} else if (format == PrpFormat.INT || format == PrpFormat.SINT) {
-					int intValue = mmObj.getIntProperty(prp);
-					if (intValue != PrpTypeHelper.getDefaultIntValue(mmObj.getObjTypeCode(), prp)) {
-						JsonObjectBuilder valueProperty = Json.createObjectBuilder()
-								.add("type", PrpTypeHelper.getCode(prp)).add("format", format.name())
-								.add("mnemonic", prp.name()).add("value", String.valueOf(intValue));
-						propertiesArray.add(valueProperty);
-						propertycount++;
-						continue;
-					}
-				}
-			}
-			valueObject.add("properties", propertiesArray);
-			objectsArray.add(valueObject);
-			objectcount++;
-		}
-		JsonArray arr = objectsArray.build();
-		JsonWriter writer = Json.createWriter(outputStream);
-		writer.writeArray(arr);
-		writer.close();
+	public static ParallelJsonModelSink createParallelSink(String outputPath, boolean ndjson, boolean gzip,
+			int shardSize, int threads) throws IOException {
+		OutputStream outputStreamForObjects = openOutput(outputPath, ndjson ? OBJECTS_NDJSON : OBJECTS_JSON, gzip);
+		OutputStream outputStreamForAssociations = openOutput(outputPath,
+				ndjson ? ASSOCIATIONS_NDJSON : ASSOCIATIONS_JSON, gzip);
+		return new ParallelJsonModelSink(outputStreamForObjects, outputStreamForAssociations, shardSize, threads,
+				ndjson);
 	}
 
-	private void extractAssociations(FileOutputStream outputStream) throws EncyUnsupportedOperationException {
-
-		List<ObjId> objects = model.getObjIds();
-		JsonArrayBuilder assocArray = Json.createArrayBuilder();
-		for (ObjId objId : objects) {
-			MMObj mmObj = MMObj.getInstance(model, objId);
-
-			List<AscTypeCode> listasc = ObjTypeHelper.getAssociations(mmObj.getObjTypeCode());
-			for (AscTypeCode asc : listasc) {
-				String direction = "B";
-				if (AscTypeHelper.isForward(mmObj.getObjTypeCode(), asc)) {
-					direction = "F";
-				}
-			    
-
-				if (AscTypeHelper.isOneToMany(mmObj.getObjTypeCode(), asc)) {
-					List<MMObj> list = mmObj.followAssociationMany(asc);
-					int seqno = 0;
-					for (MMObj o : list) {
-						JsonObjectBuilder valueAssociation = Json.createObjectBuilder().add("from", objId.getValue())
-								.add("card", "M").add("mnemonic", asc.name()).add("type", AscTypeHelper.getCode(asc))
-								.add("inverseType",
-										AscTypeHelper.getCode(AscTypeHelper.getInverse(mmObj.getObjTypeCode(), asc)))
-								.add("to", o.getId().getValue()).add("seqno", seqno).add("direction", direction);
-						;
-						assocArray.add(valueAssociation.build());
-						associationcount++;
-						seqno = seqno + 1;
-					}
-				} else {
-					MMObj one = mmObj.followAssociationOne(asc);
-					if (one != null) {
-						JsonObjectBuilder valueAssociation = Json.createObjectBuilder().add("from", objId.getValue())
-								.add("card", "1").add("mnemonic", asc.name()).add("type", AscTypeHelper.getCode(asc))
-								.add("inverseType",
-										AscTypeHelper.getCode(AscTypeHelper.getInverse(mmObj.getObjTypeCode(), asc)))
-								.add("to", one.getId().getValue()).add("seqno", 0).add("direction", direction);
-						assocArray.add(valueAssociation.build());
-						associationcount++;
-					}
-				}
-			}
+	private static OutputStream openOutput(String outputPath, String fileName, boolean gzip) throws IOException {
+		if (gzip) {
+			return new GZIPOutputStream(
+					new FileOutputStream(outputPath + STRING_SLASH + fileName + GZIP_SUFFIX), 65536);
+		}
+		return new FileOutputStream(outputPath + STRING_SLASH + fileName);
+	}
+
+	/*
+	 * Files are written into a new generation folder inside the bee sub-folder
+	 * and are published only when the extraction has completed, so readers of
+	 * the files published before are not disturbed while it runs.
+	 */
+	private StagingFolder prepareTargetDestination(String modelPath) throws IOException {
+		File file = new File(modelPath);
+		if(! file.isDirectory()) {
+			System.out.println("Specified model path is not a correct folder.");
+			System.exit(9);
+		}
+		file = new File(modelPath + STRING_SLASH + BEE_FOLDER_NAME);
+		if (!file.isDirectory() && !file.mkdir()) {
+			throw new IOException("Cannot create the folder '" + file.getPath() + "'");
 		}
-		JsonArray arr = assocArray.build();
-		JsonWriter writer = Json.createWriter(outputStream);
-		writer.writeArray(arr);
-		writer.close();
+		StagingFolder staging = new StagingFolder(file, "json");
+		staging.prepare(false);
+		return staging;
 	}
 }
@@ -0,0 +1,111 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.json;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonGenerator;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ObjectRecord;
+
+/*
+ * Writes objects with their properties to one JSON array and associations to
+ * another. Both arrays are streamed, each object is written as soon as it is
+ * received.
+ */
+public class JsonModelSink implements ModelSink {
+
+	private final OutputStream objectsStream;
+	private final OutputStream associationsStream;
+	private JsonGenerator objects;
+	private JsonGenerator associations;
+
+	public JsonModelSink(OutputStream objectsStream, OutputStream associationsStream) {
+		this.objectsStream = objectsStream;
+		this.associationsStream = associationsStream;
+	}
+
+	public void begin(ModelSource source) throws ExtractionException {
+		try {
+			objects = Json.createGenerator(new BufferedOutputStream(objectsStream));
+			objects.writeStartArray();
+			associations = Json.createGenerator(new BufferedOutputStream(associationsStream));
+			associations.writeStartArray();
+		} catch (JsonException e) {
+			throw new ExtractionException("Problem with writing JSON output.", e);
+		}
+	}
+
+	public void object(ObjectRecord record) throws ExtractionException {
+		try {
+			writeObject(objects, record);
+			writeAssociations(associations, record);
+		} catch (JsonException e) {
+			throw new ExtractionException("Problem with writing JSON output.", e);
+		}
+	}
+
+	public void end() throws ExtractionException {
+		try {
+			objects.writeEnd();
+			objects.close();
+			associations.writeEnd();
+			associations.close();
+		} catch (JsonException e) {
+			throw new ExtractionException("Problem with writing JSON output.", e);
+		}
+	}
+
+	/*
+	 * Writes the object and its properties as one element of the objects array.
+	 */
+	public static void writeObject(JsonGenerator generator, ObjectRecord record) {
+		generator.writeStartObject().write("id", record.getId()).write("type", record.getObjType())
+				.write("mnemonic", record.getEntry().objTypeCode.name());
+		generator.writeStartArray("properties");
+		for (int i = 0; i < record.getPropertyCount(); i++) {
+			generator.writeStartObject().write("type", record.getPrpType(i))
+					.write("format", record.getFormat(i).name()).write("mnemonic", record.getPrpMnemonic(i))
+					.write("value", record.getValue(i)).writeEnd();
+		}
+		generator.writeEnd();
+		generator.writeEnd();
+	}
+
+	/*
+	 * Writes each association of the object as one element of the associations
+	 * array.
+	 */
+	public static void writeAssociations(JsonGenerator generator, ObjectRecord record) {
+		for (int i = 0; i < record.getAssociationCount(); i++) {
+			writeAssociation(generator, record, i);
+		}
+	}
+
+	public static void writeAssociation(JsonGenerator generator, ObjectRecord record, int i) {
+		generator.writeStartObject().write("from", record.getId()).write("card", record.getCard(i))
+				.write("mnemonic", record.getAscMnemonic(i)).write("type", record.getAscType(i))
+				.write("inverseType", record.getInverseAscType(i)).write("to", record.getTarget(i))
+				.write("seqno", record.getSeqno(i)).write("direction", record.getDirection(i)).writeEnd();
+	}
+
+}
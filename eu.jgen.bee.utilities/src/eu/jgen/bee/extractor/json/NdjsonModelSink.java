@@ -0,0 +1,105 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.json;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ObjectRecord;
+
+/*
+ * Writes newline delimited JSON, one object or one association on each line.
+ * The lines have the same content as the elements of the arrays written by
+ * JsonModelSink, so the files can be read line by line, split and processed in
+ * parallel without parsing the whole file.
+ */
+public class NdjsonModelSink implements ModelSink {
+
+	private static final JsonGeneratorFactory FACTORY = Json.createGeneratorFactory(null);
+
+	private final OutputStream objectsStream;
+	private final OutputStream associationsStream;
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+	private OutputStream objects;
+	private OutputStream associations;
+
+	public NdjsonModelSink(OutputStream objectsStream, OutputStream associationsStream) {
+		this.objectsStream = objectsStream;
+		this.associationsStream = associationsStream;
+	}
+
+	public void begin(ModelSource source) throws ExtractionException {
+		objects = new BufferedOutputStream(objectsStream, 65536);
+		associations = new BufferedOutputStream(associationsStream, 65536);
+	}
+
+	public void object(ObjectRecord record) throws ExtractionException {
+		try {
+			buffer.reset();
+			encodeObject(buffer, record);
+			buffer.writeTo(objects);
+			buffer.reset();
+			encodeAssociations(buffer, record);
+			buffer.writeTo(associations);
+		} catch (JsonException e) {
+			throw new ExtractionException("Problem with writing JSON output.", e);
+		} catch (IOException e) {
+			throw new ExtractionException("Problem with writing JSON output.", e);
+		}
+	}
+
+	public void end() throws ExtractionException {
+		try {
+			objects.close();
+			associations.close();
+		} catch (IOException e) {
+			throw new ExtractionException("Problem with writing JSON output.", e);
+		}
+	}
+
+	/*
+	 * Appends the line with the object and its properties to the buffer.
+	 */
+	public static void encodeObject(ByteArrayOutputStream buffer, ObjectRecord record) {
+		JsonGenerator generator = FACTORY.createGenerator(buffer);
+		JsonModelSink.writeObject(generator, record);
+		generator.close();
+		buffer.write('\n');
+	}
+
+	/*
+	 * Appends one line for each association of the object to the buffer.
+	 */
+	public static void encodeAssociations(ByteArrayOutputStream buffer, ObjectRecord record) {
+		for (int i = 0; i < record.getAssociationCount(); i++) {
+			JsonGenerator generator = FACTORY.createGenerator(buffer);
+			JsonModelSink.writeAssociation(generator, record, i);
+			generator.close();
+			buffer.write('\n');
+		}
+	}
+
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.json;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ObjectRecord;
+
+/*
+ * Writes the same two JSON arrays as JsonModelSink, but encodes them on a
+ * ForkJoinPool. Objects are collected into shards of consecutive objects, each
+ * shard is encoded to a byte buffer by a worker, and the buffers are written
+ * out in the order the shards were created, so the output is identical to the
+ * serial one. Only a limited number of shards is kept in memory, when the
+ * limit is reached the oldest shard is waited for and written. In line mode
+ * the output is the same as the one of NdjsonModelSink.
+ */
+public class ParallelJsonModelSink implements ModelSink {
+
+	private static final JsonGeneratorFactory FACTORY = Json.createGeneratorFactory(null);
+
+	private final OutputStream objectsStream;
+	private final OutputStream associationsStream;
+	private final int shardSize;
+	private final int parallelism;
+	private final int maxPending;
+	private final boolean lines;
+	private final ArrayDeque<ForkJoinTask<EncodedShard>> pending = new ArrayDeque<ForkJoinTask<EncodedShard>>();
+	private ForkJoinPool pool;
+	private List<ObjectRecord> shard;
+	private OutputStream objects;
+	private OutputStream associations;
+	private boolean firstObject;
+	private boolean firstAssociation;
+	private int shardcount;
+	private long bytecount;
+	private long writerWait;
+
+	public ParallelJsonModelSink(OutputStream objectsStream, OutputStream associationsStream, int shardSize,
+			int parallelism) {
+		this(objectsStream, associationsStream, shardSize, parallelism, false);
+	}
+
+	public ParallelJsonModelSink(OutputStream objectsStream, OutputStream associationsStream, int shardSize,
+			int parallelism, boolean lines) {
+		if (shardSize < 1) {
+			throw new IllegalArgumentException("Shard size must be at least 1.");
+		}
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Number of threads must be at least 1.");
+		}
+		this.objectsStream = objectsStream;
+		this.associationsStream = associationsStream;
+		this.shardSize = shardSize;
+		this.parallelism = parallelism;
+		this.maxPending = parallelism * 2;
+		this.lines = lines;
+	}
+
+	public void begin(ModelSource source) throws ExtractionException {
+		pool = new ForkJoinPool(parallelism);
+		shard = new ArrayList<ObjectRecord>(shardSize);
+		objects = new BufferedOutputStream(objectsStream, 65536);
+		associations = new BufferedOutputStream(associationsStream, 65536);
+		firstObject = true;
+		firstAssociation = true;
+		if (lines) {
+			return;
+		}
+		try {
+			objects.write('[');
+			associations.write('[');
+		} catch (IOException e) {
+			throw failed(e);
+		}
+	}
+
+	public void object(ObjectRecord record) throws ExtractionException {
+		shard.add(record);
+		if (shard.size() == shardSize) {
+			submit();
+		}
+	}
+
+	public void end() throws ExtractionException {
+		try {
+			if (!shard.isEmpty()) {
+				submit();
+			}
+			while (!pending.isEmpty()) {
+				writeOldest();
+			}
+			if (!lines) {
+				objects.write(']');
+				associations.write(']');
+			}
+			objects.close();
+			associations.close();
+		} catch (IOException e) {
+			throw failed(e);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/*
+	 * Hands the current shard to the pool and writes all shards at the head of
+	 * the queue which are already encoded.
+	 */
+	private void submit() throws ExtractionException {
+		pending.addLast(pool.submit(new ShardEncoder(shard, lines)));
+		shardcount++;
+		shard = new ArrayList<ObjectRecord>(shardSize);
+		try {
+			while (pending.size() > maxPending || pending.peekFirst().isDone()) {
+				writeOldest();
+				if (pending.isEmpty()) {
+					break;
+				}
+			}
+		} catch (IOException e) {
+			throw failed(e);
+		}
+	}
+
+	private void writeOldest() throws IOException, ExtractionException {
+		ForkJoinTask<EncodedShard> task = pending.pollFirst();
+		EncodedShard encoded;
+		long start = System.nanoTime();
+		try {
+			encoded = task.join();
+		} catch (RuntimeException e) {
+			throw new ExtractionException("Problem with writing JSON output.", e);
+		}
+		writerWait += System.nanoTime() - start;
+		firstObject = append(objects, encoded.objects, firstObject);
+		firstAssociation = append(associations, encoded.associations, firstAssociation);
+	}
+
+	/*
+	 * Appends the elements of one shard to the array, separated from the
+	 * elements written before by a comma. Returns whether the array is still
+	 * empty. Lines need no separator.
+	 */
+	private boolean append(OutputStream out, byte[] elements, boolean first) throws IOException {
+		if (elements.length == 0) {
+			return first;
+		}
+		if (!first && !lines) {
+			out.write(',');
+		}
+		out.write(elements);
+		bytecount += elements.length;
+		return false;
+	}
+
+	private ExtractionException failed(IOException e) {
+		pool.shutdownNow();
+		return new ExtractionException("Problem with writing JSON output.", e);
+	}
+
+	public int getShardCount() {
+		return shardcount;
+	}
+
+	public long getByteCount() {
+		return bytecount;
+	}
+
+	/*
+	 * Time in nanoseconds spent waiting for shards which were not encoded yet.
+	 */
+	public long getWriterWait() {
+		return writerWait;
+	}
+
+	public String report() {
+		return "Number of encoded shards is " + shardcount + " (" + shardSize + " objects each, " + parallelism
+				+ " threads)\n" + "Number of encoded bytes is " + bytecount + "\n"
+				+ "Time waiting for encoded shards is " + (writerWait / 1000000) + " ms";
+	}
+
+	private static class EncodedShard {
+		final byte[] objects;
+		final byte[] associations;
+
+		EncodedShard(byte[] objects, byte[] associations) {
+			this.objects = objects;
+			this.associations = associations;
+		}
+	}
+
+	/*
+	 * Encodes the shard with the same methods as the serial sinks. For arrays
+	 * each part is written as a complete array, and the brackets are removed so
+	 * that only the comma separated elements remain.
+	 */
+	private static class ShardEncoder implements Callable<EncodedShard> {
+
+		private final List<ObjectRecord> records;
+		private final boolean lines;
+
+		ShardEncoder(List<ObjectRecord> records, boolean lines) {
+			this.records = records;
+			this.lines = lines;
+		}
+
+		public EncodedShard call() throws JsonException {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream(records.size() * 256);
+			if (lines) {
+				for (ObjectRecord record : records) {
+					NdjsonModelSink.encodeObject(buffer, record);
+				}
+				byte[] objects = buffer.toByteArray();
+				buffer.reset();
+				for (ObjectRecord record : records) {
+					NdjsonModelSink.encodeAssociations(buffer, record);
+				}
+				return new EncodedShard(objects, buffer.toByteArray());
+			}
+			JsonGenerator generator = FACTORY.createGenerator(buffer);
+			generator.writeStartArray();
+			for (ObjectRecord record : records) {
+				JsonModelSink.writeObject(generator, record);
+			}
+			generator.writeEnd();
+			generator.close();
+			byte[] objects = elements(buffer);
+			buffer.reset();
+			generator = FACTORY.createGenerator(buffer);
+			generator.writeStartArray();
+			for (ObjectRecord record : records) {
+				JsonModelSink.writeAssociations(generator, record);
+			}
+			generator.writeEnd();
+			generator.close();
+			return new EncodedShard(objects, elements(buffer));
+		}
+
+		private static byte[] elements(ByteArrayOutputStream buffer) {
+			byte[] array = buffer.toByteArray();
+			byte[] elements = new byte[array.length - 2];
+			System.arraycopy(array, 1, elements, 0, elements.length);
+			return elements;
+		}
+
+	}
+
+}
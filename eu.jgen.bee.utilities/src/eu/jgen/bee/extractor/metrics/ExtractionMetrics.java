@@ -0,0 +1,340 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.metrics;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonGenerator;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import eu.jgen.bee.extractor.BeeGenExtractor;
+
+/*
+ * Collects timings and counters of a single extraction run. Phases follow
+ * each other, starting a phase ends the previous one. Tables are any outputs
+ * receiving rows, like database tables or files, and are recorded when they
+ * are closed. Native calls are counted by MeteredModelSource and
+ * MeteredSchemaSource and may come from several threads.
+ * 
+ * The metrics are registered as an MBean while the extraction runs and are
+ * written to a JSON report at the end.
+ */
+public class ExtractionMetrics implements ExtractionMetricsMBean {
+
+	private static final String DOMAIN = "eu.jgen.bee";
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	private final String tool;
+	private String modelName = "UNKNOWN";
+	private final long started = System.currentTimeMillis();
+	private final long startNanos = System.nanoTime();
+	private long finishNanos;
+
+	private final Map<String, Long> phases = new LinkedHashMap<String, Long>();
+	private String currentPhase;
+	private long phaseStart;
+	private final Map<String, long[]> tables = new LinkedHashMap<String, long[]>();
+	private final Map<String, Long> counts = new LinkedHashMap<String, Long>();
+	private final AtomicLongArray calls = new AtomicLongArray(NativeCall.values().length);
+	private final List<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+	private ObjectName objectName;
+
+	public ExtractionMetrics(String tool) {
+		this.tool = tool;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				pool.resetPeakUsage();
+				heapPools.add(pool);
+			}
+		}
+	}
+
+	/*
+	 * Registers the metrics in the platform MBean server. Extraction continues
+	 * without it when the registration fails.
+	 */
+	public synchronized void register(String modelName) {
+		this.modelName = modelName;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			objectName = new ObjectName(DOMAIN + ":type=ExtractionMetrics,tool=" + tool + ",model="
+					+ ObjectName.quote(modelName));
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(this, objectName);
+		} catch (JMException e) {
+			System.out.println("Extraction metrics are not available through JMX: " + e.getMessage());
+			objectName = null;
+		}
+	}
+
+	public synchronized void unregister() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			// already gone
+		}
+		objectName = null;
+	}
+
+	public synchronized void startPhase(String name) {
+		endPhase();
+		currentPhase = name;
+		phaseStart = System.nanoTime();
+	}
+
+	public synchronized void endPhase() {
+		if (currentPhase == null) {
+			return;
+		}
+		Long total = phases.get(currentPhase);
+		long elapsed = System.nanoTime() - phaseStart;
+		phases.put(currentPhase, total == null ? elapsed : total + elapsed);
+		currentPhase = null;
+	}
+
+	/*
+	 * Ends the last phase and stops the clock of the run.
+	 */
+	public synchronized void finish() {
+		endPhase();
+		finishNanos = System.nanoTime();
+	}
+
+	public void count(NativeCall call) {
+		calls.incrementAndGet(call.ordinal());
+	}
+
+	public long getCount(NativeCall call) {
+		return calls.get(call.ordinal());
+	}
+
+	/*
+	 * Adds rows written to the table and the time spent writing them, in
+	 * nanoseconds.
+	 */
+	public synchronized void addTable(String name, long rows, long elapsed) {
+		long[] table = tables.get(name);
+		if (table == null) {
+			table = new long[2];
+			tables.put(name, table);
+		}
+		table[0] += rows;
+		table[1] += elapsed;
+	}
+
+	/*
+	 * Records a result of the run, like the number of exported objects.
+	 */
+	public synchronized void setCount(String name, long value) {
+		counts.put(name, value);
+	}
+
+	/*
+	 * Results recorded with setCount, in the order they were recorded.
+	 */
+	public synchronized Map<String, Long> getCounts() {
+		return new LinkedHashMap<String, Long>(counts);
+	}
+
+	public String getTool() {
+		return tool;
+	}
+
+	public synchronized String getModelName() {
+		return modelName;
+	}
+
+	public synchronized String getCurrentPhase() {
+		return currentPhase;
+	}
+
+	/*
+	 * Time since the metrics were created, in milliseconds.
+	 */
+	public synchronized long getElapsedTime() {
+		long end = finishNanos == 0 ? System.nanoTime() : finishNanos;
+		return (end - startNanos) / NANOS_PER_MILLI;
+	}
+
+	public long getObjectsRead() {
+		return getCount(NativeCall.OPEN_OBJECT);
+	}
+
+	public long getNativeCallCount() {
+		long total = 0;
+		for (int i = 0; i < calls.length(); i++) {
+			total += calls.get(i);
+		}
+		return total;
+	}
+
+	public long getHeapUsed() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	/*
+	 * Sum of the peak usage of all heap pools since the metrics were created.
+	 * The pools may reach their peaks at different moments, so it is an upper
+	 * bound of the heap really used at any time.
+	 */
+	public long getHeapHighWater() {
+		long total = 0;
+		for (MemoryPoolMXBean pool : heapPools) {
+			if (pool.isValid()) {
+				total += pool.getPeakUsage().getUsed();
+			}
+		}
+		return total;
+	}
+
+	public synchronized String[] getPhaseTimes() {
+		List<String> list = new ArrayList<String>();
+		for (Map.Entry<String, Long> entry : getPhaseMap().entrySet()) {
+			list.add(entry.getKey() + ": " + entry.getValue() / NANOS_PER_MILLI + " ms");
+		}
+		return list.toArray(new String[list.size()]);
+	}
+
+	public synchronized String[] getTableRates() {
+		List<String> list = new ArrayList<String>();
+		for (Map.Entry<String, long[]> entry : tables.entrySet()) {
+			long[] table = entry.getValue();
+			list.add(entry.getKey() + ": " + table[0] + " rows in " + table[1] / NANOS_PER_MILLI + " ms, "
+					+ rowsPerSecond(table) + " rows per second");
+		}
+		return list.toArray(new String[list.size()]);
+	}
+
+	public String[] getNativeCalls() {
+		NativeCall[] values = NativeCall.values();
+		String[] result = new String[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = values[i].name() + ": " + calls.get(i);
+		}
+		return result;
+	}
+
+	/*
+	 * Completed phases together with the running one.
+	 */
+	private Map<String, Long> getPhaseMap() {
+		Map<String, Long> map = new LinkedHashMap<String, Long>(phases);
+		if (currentPhase != null) {
+			Long total = map.get(currentPhase);
+			long elapsed = System.nanoTime() - phaseStart;
+			map.put(currentPhase, total == null ? elapsed : total + elapsed);
+		}
+		return map;
+	}
+
+	private static long rowsPerSecond(long[] table) {
+		if (table[1] == 0) {
+			return 0;
+		}
+		return table[0] * 1000000000L / table[1];
+	}
+
+	/*
+	 * Writes all metrics as a JSON document.
+	 */
+	public synchronized void writeReport(File file) throws IOException {
+		try {
+			JsonGenerator generator = Json
+					.createGeneratorFactory(Collections.singletonMap(JsonGenerator.PRETTY_PRINTING, Boolean.TRUE))
+					.createGenerator(new BufferedOutputStream(new FileOutputStream(file)));
+			generator.writeStartObject();
+			generator.write("tool", tool).write("model", modelName).write("version", BeeGenExtractor.VERSION)
+					.write("schema", BeeGenExtractor.SCHEMA)
+					.write("started", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(new Date(started)))
+					.write("elapsedMillis", getElapsedTime());
+			generator.writeStartObject("counts");
+			for (Map.Entry<String, Long> entry : counts.entrySet()) {
+				generator.write(entry.getKey(), entry.getValue());
+			}
+			generator.writeEnd();
+			generator.writeStartArray("phases");
+			for (Map.Entry<String, Long> entry : getPhaseMap().entrySet()) {
+				generator.writeStartObject().write("name", entry.getKey())
+						.write("millis", entry.getValue() / NANOS_PER_MILLI).writeEnd();
+			}
+			generator.writeEnd();
+			generator.writeStartArray("tables");
+			for (Map.Entry<String, long[]> entry : tables.entrySet()) {
+				long[] table = entry.getValue();
+				generator.writeStartObject().write("name", entry.getKey()).write("rows", table[0])
+						.write("millis", table[1] / NANOS_PER_MILLI).write("rowsPerSecond", rowsPerSecond(table))
+						.writeEnd();
+			}
+			generator.writeEnd();
+			generator.writeStartObject("nativeCalls");
+			for (NativeCall call : NativeCall.values()) {
+				generator.write(call.name(), getCount(call));
+			}
+			generator.write("total", getNativeCallCount());
+			generator.writeEnd();
+			generator.writeStartObject("heap").write("highWaterBytes", getHeapHighWater())
+					.write("maxBytes", Runtime.getRuntime().maxMemory()).writeEnd();
+			generator.writeEnd();
+			generator.close();
+		} catch (JsonException e) {
+			throw new IOException("Problem with writing metrics report.", e);
+		}
+	}
+
+	public synchronized String report() {
+		StringBuilder builder = new StringBuilder();
+		for (String phase : getPhaseTimes()) {
+			builder.append("Phase ").append(phase).append("\n");
+		}
+		for (String table : getTableRates()) {
+			builder.append(table).append("\n");
+		}
+		builder.append("Number of native calls is ").append(getNativeCallCount());
+		for (NativeCall call : NativeCall.values()) {
+			long count = getCount(call);
+			if (count != 0) {
+				builder.append("\n\t").append(call.name()).append(": ").append(count);
+			}
+		}
+		builder.append("\nHeap high-water mark is ").append(getHeapHighWater() / (1024 * 1024)).append(" MB of ")
+				.append(Runtime.getRuntime().maxMemory() / (1024 * 1024)).append(" MB");
+		return builder.toString();
+	}
+
+}
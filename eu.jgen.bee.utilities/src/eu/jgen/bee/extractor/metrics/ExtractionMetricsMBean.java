@@ -0,0 +1,46 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.metrics;
+
+/*
+ * Management interface of the extraction metrics, visible in JConsole or any
+ * other JMX client while the extractor is running.
+ */
+public interface ExtractionMetricsMBean {
+
+	String getTool();
+
+	String getModelName();
+
+	String getCurrentPhase();
+
+	long getElapsedTime();
+
+	long getObjectsRead();
+
+	long getNativeCallCount();
+
+	long getHeapUsed();
+
+	long getHeapHighWater();
+
+	String[] getPhaseTimes();
+
+	String[] getTableRates();
+
+	String[] getNativeCalls();
+
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.metrics;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ObjectRecord;
+
+/*
+ * Measures time spent in another sink. Each object and each of its
+ * associations is counted as one row, the way they are written to the JSON
+ * files. The rows and the time are added to the metrics when the sink ends.
+ */
+public class MeteredModelSink implements ModelSink {
+
+	private final ModelSink sink;
+	private final String name;
+	private final ExtractionMetrics metrics;
+	private long rowcount;
+	private long elapsed;
+
+	public MeteredModelSink(ModelSink sink, String name, ExtractionMetrics metrics) {
+		this.sink = sink;
+		this.name = name;
+		this.metrics = metrics;
+	}
+
+	public void begin(ModelSource source) throws ExtractionException {
+		long start = System.nanoTime();
+		sink.begin(source);
+		elapsed += System.nanoTime() - start;
+	}
+
+	public void object(ObjectRecord record) throws ExtractionException {
+		long start = System.nanoTime();
+		sink.object(record);
+		elapsed += System.nanoTime() - start;
+		rowcount += 1 + record.getAssociationCount();
+	}
+
+	public void end() throws ExtractionException {
+		long start = System.nanoTime();
+		sink.end();
+		elapsed += System.nanoTime() - start;
+		metrics.addTable(name, rowcount, elapsed);
+	}
+
+	public ModelSink getSink() {
+		return sink;
+	}
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.metrics;
+
+import java.util.List;
+
+import com.ca.gen.jmmi.ids.ObjId;
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelObject;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+
+/*
+ * Model source counting calls made to another source. With the JMMI source
+ * each counted call is a call to the native layer.
+ */
+public class MeteredModelSource implements ModelSource {
+
+	private final ModelSource source;
+	private final ExtractionMetrics metrics;
+
+	public MeteredModelSource(ModelSource source, ExtractionMetrics metrics) {
+		this.source = source;
+		this.metrics = metrics;
+	}
+
+	public String getName() {
+		return source.getName();
+	}
+
+	public SchemaCatalog getCatalog() {
+		return source.getCatalog();
+	}
+
+	public List<ObjId> getObjIds() throws ExtractionException {
+		metrics.count(NativeCall.LIST_OBJECTS);
+		return source.getObjIds();
+	}
+
+	public List<ObjId> getObjIds(ObjTypeCode objTypeCode) throws ExtractionException {
+		metrics.count(NativeCall.LIST_OBJECTS);
+		return source.getObjIds(objTypeCode);
+	}
+
+	public ModelObject getObject(ObjId objId) throws ExtractionException {
+		metrics.count(NativeCall.OPEN_OBJECT);
+		return new MeteredModelObject(source.getObject(objId));
+	}
+
+	private class MeteredModelObject implements ModelObject {
+
+		private final ModelObject object;
+
+		MeteredModelObject(ModelObject object) {
+			this.object = object;
+		}
+
+		public ObjId getId() {
+			return object.getId();
+		}
+
+		public ObjTypeCode getObjTypeCode() {
+			return object.getObjTypeCode();
+		}
+
+		public String getTextProperty(PrpTypeCode prpTypeCode) {
+			metrics.count(NativeCall.TEXT_PROPERTY);
+			return object.getTextProperty(prpTypeCode);
+		}
+
+		public char getCharProperty(PrpTypeCode prpTypeCode) {
+			metrics.count(NativeCall.CHAR_PROPERTY);
+			return object.getCharProperty(prpTypeCode);
+		}
+
+		public int getIntProperty(PrpTypeCode prpTypeCode) {
+			metrics.count(NativeCall.INT_PROPERTY);
+			return object.getIntProperty(prpTypeCode);
+		}
+
+		public ObjId followAssociationOne(AscTypeCode ascTypeCode) {
+			metrics.count(NativeCall.FOLLOW_ONE);
+			return object.followAssociationOne(ascTypeCode);
+		}
+
+		public List<ObjId> followAssociationMany(AscTypeCode ascTypeCode) {
+			metrics.count(NativeCall.FOLLOW_MANY);
+			return object.followAssociationMany(ascTypeCode);
+		}
+
+	}
+
+}
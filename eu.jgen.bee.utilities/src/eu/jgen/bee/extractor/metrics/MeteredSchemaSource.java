@@ -0,0 +1,135 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.metrics;
+
+import java.util.List;
+
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+import com.ca.gen.jmmi.util.PrpFormat;
+
+import eu.jgen.bee.extractor.schema.SchemaSource;
+
+/*
+ * Schema source counting calls made to another source. Calls are counted per
+ * helper class the method mirrors.
+ */
+public class MeteredSchemaSource implements SchemaSource {
+
+	private final SchemaSource source;
+	private final ExtractionMetrics metrics;
+
+	public MeteredSchemaSource(SchemaSource source, ExtractionMetrics metrics) {
+		this.source = source;
+		this.metrics = metrics;
+	}
+
+	public String getSchemaLevel() {
+		return source.getSchemaLevel();
+	}
+
+	public short getCode(ObjTypeCode objTypeCode) {
+		metrics.count(NativeCall.OBJ_TYPE_HELPER);
+		return source.getCode(objTypeCode);
+	}
+
+	public String getMnemonic(ObjTypeCode objTypeCode) {
+		metrics.count(NativeCall.OBJ_TYPE_HELPER);
+		return source.getMnemonic(objTypeCode);
+	}
+
+	public List<PrpTypeCode> getProperties(ObjTypeCode objTypeCode) {
+		metrics.count(NativeCall.OBJ_TYPE_HELPER);
+		return source.getProperties(objTypeCode);
+	}
+
+	public List<AscTypeCode> getAssociations(ObjTypeCode objTypeCode) {
+		metrics.count(NativeCall.OBJ_TYPE_HELPER);
+		return source.getAssociations(objTypeCode);
+	}
+
+	public short getCode(PrpTypeCode prpTypeCode) {
+		metrics.count(NativeCall.PRP_TYPE_HELPER);
+		return source.getCode(prpTypeCode);
+	}
+
+	public String getMnemonic(PrpTypeCode prpTypeCode) {
+		metrics.count(NativeCall.PRP_TYPE_HELPER);
+		return source.getMnemonic(prpTypeCode);
+	}
+
+	public PrpFormat getFormat(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		metrics.count(NativeCall.PRP_TYPE_HELPER);
+		return source.getFormat(objTypeCode, prpTypeCode);
+	}
+
+	public short getLength(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		metrics.count(NativeCall.PRP_TYPE_HELPER);
+		return source.getLength(objTypeCode, prpTypeCode);
+	}
+
+	public String getDefaultTxtValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		metrics.count(NativeCall.PRP_TYPE_HELPER);
+		return source.getDefaultTxtValue(objTypeCode, prpTypeCode);
+	}
+
+	public long getDefaultIntValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		metrics.count(NativeCall.PRP_TYPE_HELPER);
+		return source.getDefaultIntValue(objTypeCode, prpTypeCode);
+	}
+
+	public char getDefaultChrValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		metrics.count(NativeCall.PRP_TYPE_HELPER);
+		return source.getDefaultChrValue(objTypeCode, prpTypeCode);
+	}
+
+	public short getCode(AscTypeCode ascTypeCode) {
+		metrics.count(NativeCall.ASC_TYPE_HELPER);
+		return source.getCode(ascTypeCode);
+	}
+
+	public String getMnemonic(AscTypeCode ascTypeCode) {
+		metrics.count(NativeCall.ASC_TYPE_HELPER);
+		return source.getMnemonic(ascTypeCode);
+	}
+
+	public boolean isForward(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		metrics.count(NativeCall.ASC_TYPE_HELPER);
+		return source.isForward(objTypeCode, ascTypeCode);
+	}
+
+	public boolean isOneToMany(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		metrics.count(NativeCall.ASC_TYPE_HELPER);
+		return source.isOneToMany(objTypeCode, ascTypeCode);
+	}
+
+	public boolean isIgnorable(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		metrics.count(NativeCall.ASC_TYPE_HELPER);
+		return source.isIgnorable(objTypeCode, ascTypeCode);
+	}
+
+	public boolean isOrdered(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		metrics.count(NativeCall.ASC_TYPE_HELPER);
+		return source.isOrdered(objTypeCode, ascTypeCode);
+	}
+
+	public AscTypeCode getInverse(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		metrics.count(NativeCall.ASC_TYPE_HELPER);
+		return source.getInverse(objTypeCode, ascTypeCode);
+	}
+
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.metrics;
+
+/*
+ * Kinds of calls going to the CA Gen native layer which are counted during
+ * the extraction.
+ */
+public enum NativeCall {
+
+	LIST_OBJECTS,
+	OPEN_OBJECT,
+	TEXT_PROPERTY,
+	CHAR_PROPERTY,
+	INT_PROPERTY,
+	FOLLOW_ONE,
+	FOLLOW_MANY,
+	OBJ_TYPE_HELPER,
+	PRP_TYPE_HELPER,
+	ASC_TYPE_HELPER
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ca.gen.jmmi.MMObj;
+import com.ca.gen.jmmi.Model;
+import com.ca.gen.jmmi.exceptions.EncyUnsupportedOperationException;
+import com.ca.gen.jmmi.exceptions.ObjectNotFoundException;
+import com.ca.gen.jmmi.ids.ObjId;
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+
+/*
+ * Model source reading the CA Gen Local Model using JMMI.
+ */
+public class JmmiModelSource implements ModelSource {
+
+	private final Model model;
+	private final SchemaCatalog catalog;
+
+	public JmmiModelSource(Model model) {
+		this(model, SchemaCatalog.getInstance());
+	}
+
+	public JmmiModelSource(Model model, SchemaCatalog catalog) {
+		this.model = model;
+		this.catalog = catalog;
+	}
+
+	public String getName() {
+		return model.getName();
+	}
+
+	public SchemaCatalog getCatalog() {
+		return catalog;
+	}
+
+	public Model getModel() {
+		return model;
+	}
+
+	public List<ObjId> getObjIds() throws ExtractionException {
+		try {
+			return model.getObjIds();
+		} catch (EncyUnsupportedOperationException e) {
+			throw new ExtractionException("Cannot list objects of the model " + model.getName() + ".", e);
+		}
+	}
+
+	public List<ObjId> getObjIds(ObjTypeCode objTypeCode) throws ExtractionException {
+		try {
+			return model.getObjIds(objTypeCode);
+		} catch (EncyUnsupportedOperationException e) {
+			throw new ExtractionException("Cannot list objects of the type " + objTypeCode.name() + " of the model "
+					+ model.getName() + ".", e);
+		}
+	}
+
+	public ModelObject getObject(ObjId objId) throws ExtractionException {
+		try {
+			return new JmmiModelObject(MMObj.getInstance(model, objId));
+		} catch (ObjectNotFoundException e) {
+			throw new ExtractionException("Cannot find object " + objId.getValue() + ".", e);
+		}
+	}
+
+	private static class JmmiModelObject implements ModelObject {
+
+		private final MMObj mmObj;
+
+		JmmiModelObject(MMObj mmObj) {
+			this.mmObj = mmObj;
+		}
+
+		public ObjId getId() {
+			return mmObj.getId();
+		}
+
+		public ObjTypeCode getObjTypeCode() {
+			return mmObj.getObjTypeCode();
+		}
+
+		public String getTextProperty(PrpTypeCode prpTypeCode) {
+			return mmObj.getTextProperty(prpTypeCode);
+		}
+
+		public char getCharProperty(PrpTypeCode prpTypeCode) {
+			return mmObj.getCharProperty(prpTypeCode);
+		}
+
+		public int getIntProperty(PrpTypeCode prpTypeCode) {
+			return mmObj.getIntProperty(prpTypeCode);
+		}
+
+		public ObjId followAssociationOne(AscTypeCode ascTypeCode) {
+			MMObj one = mmObj.followAssociationOne(ascTypeCode);
+			if (one == null) {
+				return null;
+			}
+			return one.getId();
+		}
+
+		public List<ObjId> followAssociationMany(AscTypeCode ascTypeCode) {
+			List<MMObj> list = mmObj.followAssociationMany(ascTypeCode);
+			List<ObjId> result = new ArrayList<ObjId>(list.size());
+			for (MMObj o : list) {
+				result.add(o.getId());
+			}
+			return result;
+		}
+
+	}
+
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ca.gen.jmmi.ids.ObjId;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+
+/*
+ * Model kept entirely in memory. It is built object by object or generated
+ * from a seed, and allows to run the extractors without JMMI. Objects are
+ * returned in the order they were added.
+ */
+public class MemoryModelSource implements ModelSource {
+
+	private final String name;
+	private final SchemaCatalog catalog;
+	private final List<ObjId> objIds = new ArrayList<ObjId>();
+	private final Map<Long, MemoryObject> objects = new HashMap<Long, MemoryObject>();
+
+	public MemoryModelSource(String name, SchemaCatalog catalog) {
+		this.name = name;
+		this.catalog = catalog;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public SchemaCatalog getCatalog() {
+		return catalog;
+	}
+
+	public List<ObjId> getObjIds() {
+		return Collections.unmodifiableList(objIds);
+	}
+
+	public List<ObjId> getObjIds(ObjTypeCode objTypeCode) {
+		List<ObjId> result = new ArrayList<ObjId>();
+		for (ObjId objId : objIds) {
+			if (objects.get(objId.getValue()).getObjTypeCode() == objTypeCode) {
+				result.add(objId);
+			}
+		}
+		return result;
+	}
+
+	public ModelObject getObject(ObjId objId) throws ExtractionException {
+		MemoryObject object = objects.get(objId.getValue());
+		if (object == null) {
+			throw new ExtractionException("Cannot find object " + objId.getValue() + ".");
+		}
+		return object;
+	}
+
+	public MemoryObject addObject(long id, ObjTypeCode objTypeCode) {
+		ObjId objId = ObjId.getInstance(id);
+		MemoryObject object = new MemoryObject(objId, catalog.get(objTypeCode));
+		if (objects.put(id, object) != null) {
+			throw new IllegalArgumentException("Object " + id + " already exists.");
+		}
+		objIds.add(objId);
+		return object;
+	}
+
+	public int size() {
+		return objIds.size();
+	}
+
+	/*
+	 * Generates a model using the synthetic schema. The same seed always gives
+	 * the same model, and the same objects as SyntheticModelSource.
+	 */
+	public static MemoryModelSource generate(String name, int count, long seed) {
+		SyntheticModelSource synthetic = new SyntheticModelSource(name, count, seed);
+		MemoryModelSource source = new MemoryModelSource(name, synthetic.getCatalog());
+		for (ObjId objId : synthetic.getObjIds()) {
+			MemoryObject object = synthetic.getObject(objId);
+			source.objIds.add(objId);
+			source.objects.put(objId.getValue(), object);
+		}
+		return source;
+	}
+
+}
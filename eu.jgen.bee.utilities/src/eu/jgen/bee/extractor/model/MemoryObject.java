@@ -0,0 +1,151 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.ca.gen.jmmi.ids.ObjId;
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+
+import eu.jgen.bee.extractor.schema.ObjTypeEntry;
+
+/*
+ * Object of the MemoryModelSource. Values are kept in arrays following the
+ * order of properties and associations of the object type in the catalog.
+ * Properties which were never set return the schema default.
+ */
+public class MemoryObject implements ModelObject {
+
+	private final ObjId id;
+	private final ObjTypeEntry entry;
+	private final Object[] values;
+	private final List<?>[] targets;
+
+	MemoryObject(ObjId id, ObjTypeEntry entry) {
+		this.id = id;
+		this.entry = entry;
+		this.values = new Object[entry.properties.length];
+		this.targets = new List<?>[entry.associations.length];
+	}
+
+	public ObjId getId() {
+		return id;
+	}
+
+	public ObjTypeCode getObjTypeCode() {
+		return entry.objTypeCode;
+	}
+
+	public ObjTypeEntry getEntry() {
+		return entry;
+	}
+
+	public String getTextProperty(PrpTypeCode prpTypeCode) {
+		int index = indexOf(prpTypeCode);
+		if (values[index] == null) {
+			return entry.defaultTexts[index];
+		}
+		return (String) values[index];
+	}
+
+	public char getCharProperty(PrpTypeCode prpTypeCode) {
+		int index = indexOf(prpTypeCode);
+		if (values[index] == null) {
+			return entry.defaultChars[index];
+		}
+		return ((Character) values[index]).charValue();
+	}
+
+	public int getIntProperty(PrpTypeCode prpTypeCode) {
+		int index = indexOf(prpTypeCode);
+		if (values[index] == null) {
+			return (int) entry.defaultInts[index];
+		}
+		return ((Integer) values[index]).intValue();
+	}
+
+	public void setTextProperty(PrpTypeCode prpTypeCode, String value) {
+		values[indexOf(prpTypeCode)] = value;
+	}
+
+	public void setCharProperty(PrpTypeCode prpTypeCode, char value) {
+		values[indexOf(prpTypeCode)] = Character.valueOf(value);
+	}
+
+	public void setIntProperty(PrpTypeCode prpTypeCode, int value) {
+		values[indexOf(prpTypeCode)] = Integer.valueOf(value);
+	}
+
+	public ObjId followAssociationOne(AscTypeCode ascTypeCode) {
+		List<ObjId> list = getTargets(indexOf(ascTypeCode));
+		if (list.isEmpty()) {
+			return null;
+		}
+		return list.get(0);
+	}
+
+	public List<ObjId> followAssociationMany(AscTypeCode ascTypeCode) {
+		return Collections.unmodifiableList(getTargets(indexOf(ascTypeCode)));
+	}
+
+	/*
+	 * Adds the object at the end of the association. For one to one
+	 * associations the previous object is replaced.
+	 */
+	public void associate(AscTypeCode ascTypeCode, ObjId target) {
+		int index = indexOf(ascTypeCode);
+		List<ObjId> list = getTargets(index);
+		if (list.isEmpty()) {
+			list = new ArrayList<ObjId>(entry.oneToMany[index] ? 4 : 1);
+			targets[index] = list;
+		} else if (!entry.oneToMany[index]) {
+			list.clear();
+		}
+		list.add(target);
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<ObjId> getTargets(int index) {
+		List<ObjId> list = (List<ObjId>) targets[index];
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		return list;
+	}
+
+	private int indexOf(PrpTypeCode prpTypeCode) {
+		int index = entry.indexOf(prpTypeCode);
+		if (index == -1) {
+			throw new IllegalArgumentException(
+					"Property " + prpTypeCode.name() + " is not valid for object type " + entry.mnemonic + ".");
+		}
+		return index;
+	}
+
+	private int indexOf(AscTypeCode ascTypeCode) {
+		int index = entry.indexOf(ascTypeCode);
+		if (index == -1) {
+			throw new IllegalArgumentException(
+					"Association " + ascTypeCode.name() + " is not valid for object type " + entry.mnemonic + ".");
+		}
+		return index;
+	}
+
+}
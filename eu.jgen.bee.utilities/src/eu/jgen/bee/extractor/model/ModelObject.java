@@ -0,0 +1,48 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.model;
+
+import java.util.List;
+
+import com.ca.gen.jmmi.ids.ObjId;
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+
+/*
+ * Single object of the model. Associations are followed returning only the
+ * identifiers of the associated objects.
+ */
+public interface ModelObject {
+
+	ObjId getId();
+
+	ObjTypeCode getObjTypeCode();
+
+	String getTextProperty(PrpTypeCode prpTypeCode);
+
+	char getCharProperty(PrpTypeCode prpTypeCode);
+
+	int getIntProperty(PrpTypeCode prpTypeCode);
+
+	/*
+	 * Returns null when there is no associated object.
+	 */
+	ObjId followAssociationOne(AscTypeCode ascTypeCode);
+
+	List<ObjId> followAssociationMany(AscTypeCode ascTypeCode);
+
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+
+/*
+ * Distributions used by SyntheticModelSource to derive objects. The uniform
+ * profile gives every object type the same share and a few associations to
+ * objects anywhere in the model. The typical profile resembles a real model:
+ * a small number of types, mostly statements, expressions and views of action
+ * blocks, make up most of the objects while the other types follow a long
+ * tail, one to many associations have a geometric number of targets with
+ * occasional large ones, and most targets are objects created close to the
+ * source, as the objects of one action block are.
+ */
+public final class ModelProfile {
+
+	public static final String UNIFORM = "uniform";
+	public static final String TYPICAL = "typical";
+
+	private static final ObjTypeCode[] TYPES = ObjTypeCode.values();
+
+	/*
+	 * Most frequent types of the typical profile, in the order of their share.
+	 */
+	private static final ObjTypeCode[] FREQUENT = { ObjTypeCode.EXPVUS, ObjTypeCode.ACTMOVE, ObjTypeCode.EXPTXT,
+			ObjTypeCode.EXPOPER, ObjTypeCode.ACTIF, ObjTypeCode.EXPNUM, ObjTypeCode.ATTRUSR, ObjTypeCode.ACTSE,
+			ObjTypeCode.ENTVW, ObjTypeCode.EXCOND, ObjTypeCode.ACTRE, ObjTypeCode.GRPVW, ObjTypeCode.ACBLKUSE,
+			ObjTypeCode.LCLST, ObjTypeCode.ACTNOTE, ObjTypeCode.ACBLKBSD, ObjTypeCode.PRDVW, ObjTypeCode.EXPCMD,
+			ObjTypeCode.SCRVAR, ObjTypeCode.DFGUIFLD, ObjTypeCode.ENTU, ObjTypeCode.ENTS, ObjTypeCode.DOMAIN,
+			ObjTypeCode.ENTD };
+
+	private static final String[] WORDS = { "CUSTOMER", "ORDER", "ACCOUNT", "NUMBER", "DATE", "AMOUNT", "STATUS",
+			"CODE", "LINE", "ITEM", "PRODUCT", "ADDRESS", "READ", "CREATE", "UPDATE", "DELETE", "LIST", "VALIDATE",
+			"the", "of", "is", "when", "for", "and" };
+
+	private final String name;
+	private final double[] cumulative;
+	private final ObjTypeCode[] ranked;
+	private final double fanOut;
+	private final double hubChance;
+	private final int hubSize;
+	private final double locality;
+	private final int window;
+	private final int fillPercent;
+
+	private ModelProfile(String name, double exponent, double fanOut, double hubChance, int hubSize, double locality,
+			int window, int fillPercent) {
+		this.name = name;
+		this.fanOut = fanOut;
+		this.hubChance = hubChance;
+		this.hubSize = hubSize;
+		this.locality = locality;
+		this.window = window;
+		this.fillPercent = fillPercent;
+		if (exponent == 0) {
+			ranked = null;
+			cumulative = null;
+			return;
+		}
+		List<ObjTypeCode> list = new ArrayList<ObjTypeCode>(Arrays.asList(FREQUENT));
+		for (ObjTypeCode objTypeCode : TYPES) {
+			if (objTypeCode != ObjTypeCode.INVALID && !list.contains(objTypeCode)) {
+				list.add(objTypeCode);
+			}
+		}
+		ranked = list.toArray(new ObjTypeCode[list.size()]);
+		cumulative = new double[ranked.length];
+		double total = 0;
+		for (int rank = 0; rank < ranked.length; rank++) {
+			total += 1 / Math.pow(rank + 1, exponent);
+			cumulative[rank] = total;
+		}
+		for (int rank = 0; rank < ranked.length; rank++) {
+			cumulative[rank] /= total;
+		}
+	}
+
+	public static ModelProfile uniform() {
+		return new ModelProfile(UNIFORM, 0, 0, 0, 0, 0, 0, 67);
+	}
+
+	public static ModelProfile typical() {
+		return new ModelProfile(TYPICAL, 1.2, 2.5, 0.01, 200, 0.85, 512, 80);
+	}
+
+	/*
+	 * Profile of the given name, uniform or typical.
+	 */
+	public static ModelProfile forName(String name) {
+		if (UNIFORM.equals(name)) {
+			return uniform();
+		}
+		if (TYPICAL.equals(name)) {
+			return typical();
+		}
+		throw new IllegalArgumentException("Unknown model profile '" + name + "', use uniform or typical.");
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/*
+	 * Type of the next object.
+	 */
+	ObjTypeCode nextType(Random random) {
+		ObjTypeCode objTypeCode;
+		if (cumulative == null) {
+			objTypeCode = TYPES[random.nextInt(TYPES.length)];
+		} else {
+			int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+			objTypeCode = ranked[Math.min(rank < 0 ? -rank - 1 : rank, ranked.length - 1)];
+		}
+		if (objTypeCode == ObjTypeCode.INVALID) {
+			objTypeCode = ObjTypeCode.ACBLKBSD;
+		}
+		return objTypeCode;
+	}
+
+	/*
+	 * True when a property other than NAME, MODDATE and MODTIME is set.
+	 */
+	boolean hasProperty(Random random) {
+		if (cumulative == null) {
+			return random.nextInt(3) != 0;
+		}
+		return random.nextInt(100) < fillPercent;
+	}
+
+	String nextText(Random random) {
+		if (cumulative == null) {
+			return "Value " + random.nextInt(1000);
+		}
+		int words = 1 + geometric(random, 3);
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < words; i++) {
+			if (i > 0) {
+				builder.append(' ');
+			}
+			builder.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return builder.toString();
+	}
+
+	/*
+	 * Number of targets of an association of the object.
+	 */
+	int nextTargets(Random random, boolean oneToMany) {
+		if (cumulative == null) {
+			return oneToMany ? random.nextInt(4) : random.nextInt(2);
+		}
+		if (!oneToMany) {
+			return random.nextInt(10) < 7 ? 1 : 0;
+		}
+		if (random.nextDouble() < hubChance) {
+			return hubSize / 2 + random.nextInt(hubSize);
+		}
+		return geometric(random, fanOut);
+	}
+
+	/*
+	 * Position of the target of an association of the object at the given
+	 * position.
+	 */
+	int nextTarget(Random random, int index, int count) {
+		if (cumulative == null || random.nextDouble() >= locality) {
+			return random.nextInt(count);
+		}
+		int target = index + random.nextInt(2 * window + 1) - window;
+		if (target < 0) {
+			target += count;
+		}
+		return target % count;
+	}
+
+	/*
+	 * Number of failures before the first success, with the given mean.
+	 */
+	private static int geometric(Random random, double mean) {
+		double chance = 1 / (mean + 1);
+		return (int) Math.min(1000, Math.floor(Math.log(1 - random.nextDouble()) / Math.log(1 - chance)));
+	}
+
+	public String toString() {
+		return name;
+	}
+
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.model;
+
+import java.util.List;
+
+import com.ca.gen.jmmi.ids.ObjId;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+
+/*
+ * Model read by the extractors. The JMMI model is one implementation, others
+ * allow to run the extraction without the CA Gen native libraries.
+ */
+public interface ModelSource {
+
+	String getName();
+
+	SchemaCatalog getCatalog();
+
+	List<ObjId> getObjIds() throws ExtractionException;
+
+	/*
+	 * Objects of one type, in the order of the model.
+	 */
+	List<ObjId> getObjIds(ObjTypeCode objTypeCode) throws ExtractionException;
+
+	ModelObject getObject(ObjId objId) throws ExtractionException;
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.ca.gen.jmmi.ids.ObjId;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+import com.ca.gen.jmmi.util.PrpFormat;
+
+import eu.jgen.bee.extractor.schema.ObjTypeEntry;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+import eu.jgen.bee.extractor.schema.SyntheticSchemaSource;
+
+/*
+ * Model generated on the fly from a seed using the synthetic schema. Nothing is
+ * kept in memory, each object is derived from the seed and its position when
+ * it is requested, so models of any size can be read repeatedly with the same
+ * result. The distribution of types, properties and associations is given by
+ * a ModelProfile, uniform unless another one is given.
+ */
+public class SyntheticModelSource implements ModelSource {
+
+	public static final long FIRST_ID = 22020096L;
+
+	private final String name;
+	private final int count;
+	private final long seed;
+	private final SchemaCatalog catalog;
+	private final ModelProfile profile;
+
+	public SyntheticModelSource(String name, int count, long seed) {
+		this(name, count, seed, new SchemaCatalog(new SyntheticSchemaSource()));
+	}
+
+	public SyntheticModelSource(String name, int count, long seed, SchemaCatalog catalog) {
+		this(name, count, seed, catalog, ModelProfile.uniform());
+	}
+
+	public SyntheticModelSource(String name, int count, long seed, ModelProfile profile) {
+		this(name, count, seed, new SchemaCatalog(new SyntheticSchemaSource()), profile);
+	}
+
+	public SyntheticModelSource(String name, int count, long seed, SchemaCatalog catalog, ModelProfile profile) {
+		this.name = name;
+		this.count = count;
+		this.seed = seed;
+		this.catalog = catalog;
+		this.profile = profile;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public ModelProfile getProfile() {
+		return profile;
+	}
+
+	public SchemaCatalog getCatalog() {
+		return catalog;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public List<ObjId> getObjIds() {
+		return new AbstractList<ObjId>() {
+
+			public ObjId get(int index) {
+				if (index < 0 || index >= count) {
+					throw new IndexOutOfBoundsException("Index " + index + ", size " + count);
+				}
+				return ObjId.getInstance(FIRST_ID + index);
+			}
+
+			public int size() {
+				return count;
+			}
+
+		};
+	}
+
+	/*
+	 * Only the type of each object is derived, the objects are not populated.
+	 */
+	public List<ObjId> getObjIds(ObjTypeCode objTypeCode) {
+		List<ObjId> result = new ArrayList<ObjId>();
+		for (int index = 0; index < count; index++) {
+			if (profile.nextType(new Random(seed * 31 + index)) == objTypeCode) {
+				result.add(ObjId.getInstance(FIRST_ID + index));
+			}
+		}
+		return result;
+	}
+
+	public MemoryObject getObject(ObjId objId) {
+		long index = objId.getValue() - FIRST_ID;
+		if (index < 0 || index >= count) {
+			throw new IllegalArgumentException("Object " + objId.getValue() + " does not exist.");
+		}
+		Random random = new Random(seed * 31 + index);
+		ObjTypeCode objTypeCode = profile.nextType(random);
+		MemoryObject object = new MemoryObject(objId, catalog.get(objTypeCode));
+		populate(object, (int) index, random);
+		return object;
+	}
+
+	private void populate(MemoryObject object, int index, Random random) {
+		ObjTypeEntry entry = object.getEntry();
+		for (int p = 0; p < entry.properties.length; p++) {
+			PrpTypeCode prp = entry.properties[p];
+			PrpFormat format = entry.formats[p];
+			if (prp == PrpTypeCode.NAME) {
+				object.setTextProperty(prp, entry.mnemonic + "_" + index);
+			} else if (prp == PrpTypeCode.MODDATE) {
+				object.setIntProperty(prp, 20200101 + random.nextInt(28));
+			} else if (prp == PrpTypeCode.MODTIME) {
+				object.setIntProperty(prp, random.nextInt(24000000));
+			} else if (!profile.hasProperty(random)) {
+				continue;
+			} else if (format == PrpFormat.TEXT || format == PrpFormat.LOADNAME || format == PrpFormat.NAME) {
+				object.setTextProperty(prp, profile.nextText(random));
+			} else if (format == PrpFormat.CHAR) {
+				object.setCharProperty(prp, random.nextBoolean() ? 'Y' : 'N');
+			} else if (format == PrpFormat.INT || format == PrpFormat.SINT) {
+				object.setIntProperty(prp, random.nextInt(100));
+			}
+		}
+		for (int a = 0; a < entry.associations.length; a++) {
+			int targets = profile.nextTargets(random, entry.oneToMany[a]);
+			for (int t = 0; t < targets; t++) {
+				object.associate(entry.associations[a],
+						ObjId.getInstance(FIRST_ID + profile.nextTarget(random, index, count)));
+			}
+		}
+	}
+
+}
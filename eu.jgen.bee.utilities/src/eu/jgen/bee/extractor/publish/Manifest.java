@@ -0,0 +1,310 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.publish;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
+
+/*
+ * Describes the files published together by one extraction: the tool, the
+ * generation folder holding the files, model, version and schema level, the
+ * counts of the run, the rows of the tables and the length and CRC-32 of every
+ * file. The manifest is switched after all the files it lists are complete,
+ * so readers looking up a file through the manifest with resolve always find
+ * the files of one publication.
+ */
+public final class Manifest {
+
+	public static final String SUFFIX = "-manifest.json";
+
+	private final String tool;
+	private final String generation;
+	private final String modelName;
+	private final String version;
+	private final String schemaLevel;
+	private final String published;
+	private final Map<String, Long> counts;
+	private final Map<String, Long> rows;
+	private final List<Entry> files = new ArrayList<Entry>();
+
+	Manifest(String tool, String generation, String modelName, String version, String schemaLevel, long published,
+			Map<String, Long> counts, Map<String, Long> rows) {
+		this(tool, generation, modelName, version, schemaLevel,
+				new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(new Date(published)), counts, rows);
+	}
+
+	private Manifest(String tool, String generation, String modelName, String version, String schemaLevel,
+			String published, Map<String, Long> counts, Map<String, Long> rows) {
+		this.tool = tool;
+		this.generation = generation;
+		this.modelName = modelName;
+		this.version = version;
+		this.schemaLevel = schemaLevel;
+		this.published = published;
+		this.counts = counts;
+		this.rows = rows;
+	}
+
+	/*
+	 * File holding the manifest of the tool in the folder.
+	 */
+	public static File getFile(File folder, String tool) {
+		return new File(folder, tool + SUFFIX);
+	}
+
+	/*
+	 * Published file for a location in a folder holding manifests, such as
+	 * bee/MODEL.db: the file of that name in the generation named by the
+	 * manifest listing it, otherwise the location itself.
+	 */
+	public static File resolve(File file) throws IOException {
+		File folder = file.getAbsoluteFile().getParentFile();
+		for (Manifest manifest : list(folder)) {
+			if (manifest.getFileNames().contains(file.getName())) {
+				return new File(manifest.getFolder(folder), file.getName());
+			}
+		}
+		return file;
+	}
+
+	/*
+	 * Manifests published in the folder.
+	 */
+	public static List<Manifest> list(File folder) throws IOException {
+		List<Manifest> manifests = new ArrayList<Manifest>();
+		File[] files = folder != null ? folder.listFiles() : null;
+		if (files != null) {
+			Arrays.sort(files);
+			for (File file : files) {
+				if (file.isFile() && file.getName().endsWith(SUFFIX)) {
+					manifests.add(read(file));
+				}
+			}
+		}
+		return manifests;
+	}
+
+	public static Manifest read(File file) throws IOException {
+		InputStream stream = new FileInputStream(file);
+		try {
+			JsonReader reader = Json.createReader(stream);
+			JsonObject object = reader.readObject();
+			Manifest manifest = new Manifest(object.getString("tool"), object.getString("generation", ""),
+					object.getString("model"), object.getString("version"), object.getString("schema"),
+					object.getString("published"), readLongs(object.getJsonObject("counts")),
+					readLongs(object.getJsonObject("rows")));
+			for (JsonValue value : object.getJsonArray("files")) {
+				JsonObject entry = (JsonObject) value;
+				manifest.files.add(new Entry(entry.getString("name"), entry.getJsonNumber("length").longValue(),
+						Long.parseLong(entry.getString("crc32"), 16)));
+			}
+			return manifest;
+		} catch (JsonException e) {
+			throw new IOException("Problem with reading the manifest '" + file.getPath() + "'.", e);
+		} catch (NumberFormatException e) {
+			throw new IOException("Problem with reading the manifest '" + file.getPath() + "'.", e);
+		} catch (ClassCastException e) {
+			throw new IOException("Problem with reading the manifest '" + file.getPath() + "'.", e);
+		} catch (NullPointerException e) {
+			throw new IOException("Manifest '" + file.getPath() + "' is not complete.", e);
+		} finally {
+			stream.close();
+		}
+	}
+
+	private static Map<String, Long> readLongs(JsonObject object) {
+		Map<String, Long> values = new LinkedHashMap<String, Long>();
+		for (Map.Entry<String, JsonValue> entry : object.entrySet()) {
+			values.put(entry.getKey(), ((JsonNumber) entry.getValue()).longValue());
+		}
+		return values;
+	}
+
+	void write(File file) throws IOException {
+		OutputStream stream = new FileOutputStream(file);
+		try {
+			JsonGenerator generator = Json
+					.createGeneratorFactory(Collections.singletonMap(JsonGenerator.PRETTY_PRINTING, Boolean.TRUE))
+					.createGenerator(new BufferedOutputStream(stream));
+			generator.writeStartObject();
+			generator.write("tool", tool).write("generation", generation).write("model", modelName).write("version", version)
+					.write("schema", schemaLevel).write("published", published);
+			generator.writeStartObject("counts");
+			for (Map.Entry<String, Long> entry : counts.entrySet()) {
+				generator.write(entry.getKey(), entry.getValue());
+			}
+			generator.writeEnd();
+			generator.writeStartObject("rows");
+			for (Map.Entry<String, Long> entry : rows.entrySet()) {
+				generator.write(entry.getKey(), entry.getValue());
+			}
+			generator.writeEnd();
+			generator.writeStartArray("files");
+			for (Entry entry : files) {
+				generator.writeStartObject().write("name", entry.name).write("length", entry.length)
+						.write("crc32", String.format("%08x", entry.checksum)).writeEnd();
+			}
+			generator.writeEnd();
+			generator.writeEnd();
+			generator.close();
+		} catch (JsonException e) {
+			throw new IOException("Problem with writing the manifest.", e);
+		} finally {
+			stream.close();
+		}
+	}
+
+	void addFile(String name, long length, long checksum) {
+		files.add(new Entry(name, length, checksum));
+	}
+
+	/*
+	 * Compares the files of the generation in the folder of the manifest with
+	 * the manifest. Returns the differences found, none when all files match.
+	 */
+	public List<String> verify(File folder) throws IOException {
+		List<String> problems = new ArrayList<String>();
+		for (Entry entry : files) {
+			File file = new File(getFolder(folder), entry.name);
+			if (!file.isFile()) {
+				problems.add("File '" + entry.name + "' is missing.");
+			} else if (file.length() != entry.length) {
+				problems.add("File '" + entry.name + "' has " + file.length() + " bytes instead of " + entry.length
+						+ ".");
+			} else if (checksum(file) != entry.checksum) {
+				problems.add("File '" + entry.name + "' does not match its checksum.");
+			}
+		}
+		return problems;
+	}
+
+	/*
+	 * CRC-32 of the whole file.
+	 */
+	static long checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[65536];
+		InputStream stream = new FileInputStream(file);
+		try {
+			int count;
+			while ((count = stream.read(buffer)) != -1) {
+				crc.update(buffer, 0, count);
+			}
+		} finally {
+			stream.close();
+		}
+		return crc.getValue();
+	}
+
+	public String getTool() {
+		return tool;
+	}
+
+	/*
+	 * Name of the generation folder, empty for a manifest published before
+	 * there were generations, with the files next to it.
+	 */
+	public String getGeneration() {
+		return generation;
+	}
+
+	/*
+	 * Folder holding the published files, given the folder of the manifest.
+	 */
+	public File getFolder(File folder) {
+		return generation.isEmpty() ? folder : new File(folder, generation);
+	}
+
+	public String getModelName() {
+		return modelName;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public String getSchemaLevel() {
+		return schemaLevel;
+	}
+
+	public String getPublished() {
+		return published;
+	}
+
+	public Map<String, Long> getCounts() {
+		return Collections.unmodifiableMap(counts);
+	}
+
+	public Map<String, Long> getRows() {
+		return Collections.unmodifiableMap(rows);
+	}
+
+	/*
+	 * Names of the files in the order they are listed.
+	 */
+	public List<String> getFileNames() {
+		List<String> names = new ArrayList<String>();
+		for (Entry entry : files) {
+			names.add(entry.name);
+		}
+		return names;
+	}
+
+	public long getLength() {
+		long length = 0;
+		for (Entry entry : files) {
+			length += entry.length;
+		}
+		return length;
+	}
+
+	private static final class Entry {
+
+		private final String name;
+		private final long length;
+		private final long checksum;
+
+		Entry(String name, long length, long checksum) {
+			this.name = name;
+			this.length = length;
+			this.checksum = checksum;
+		}
+
+	}
+
+}
@@ -0,0 +1,274 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.publish;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import eu.jgen.bee.extractor.BeeGenExtractor;
+import eu.jgen.bee.extractor.metrics.ExtractionMetrics;
+
+/*
+ * New generation of the outputs of an extractor: a folder inside the bee
+ * sub-folder of a model, named after the tool and a number, such as sqlite-3,
+ * where one extraction writes its files. Generations published before are not
+ * touched while it runs. Once it has completed, the manifest naming the new
+ * generation replaces the published one by a single atomic rename, so a
+ * reader looking up the files through the manifest finds either all old files
+ * or all new ones, and a reader which has old files open keeps reading them.
+ *
+ * The generation replaced is kept, as a reader may have just read the old
+ * manifest. Older generations are removed once none of their files is open:
+ * the folder is renamed first, which fails on Windows while a reader holds a
+ * file in it, and such a generation is tried again by the next publication.
+ */
+public class StagingFolder {
+
+	private static final String REMOVED = ".removed";
+	private static final String NEXT = ".next";
+	private static final int SWITCH_ATTEMPTS = 50;
+	private static final long SWITCH_WAIT = 100;
+
+	private final File target;
+	private final String tool;
+	private final Pattern generations;
+	private final Map<String, Long> rows = new LinkedHashMap<String, Long>();
+	private File folder;
+	private int filecount;
+	private long length;
+	private long checksumTime;
+	private long switchTime;
+	private int retrycount;
+	private int removedcount;
+	private int keptcount;
+
+	public StagingFolder(File target, String tool) {
+		this.target = target;
+		this.tool = tool;
+		this.generations = Pattern.compile(Pattern.quote(tool) + "-(\\d+)(" + Pattern.quote(REMOVED) + ")?");
+	}
+
+	public File getFolder() {
+		return folder;
+	}
+
+	public String getPath() {
+		return folder.getPath();
+	}
+
+	/*
+	 * Creates the folder of the new generation. An unpublished generation left
+	 * by an earlier extraction is resumed when it is kept, otherwise it is
+	 * removed and the new generation starts empty.
+	 */
+	public void prepare(boolean keep) throws IOException {
+		Manifest manifest = getPublished();
+		int published = manifest != null ? getNumber(manifest.getGeneration()) : 0;
+		File[] files = listGenerations();
+		int resumed = 0;
+		if (keep) {
+			for (File file : files) {
+				if (!file.getName().endsWith(REMOVED) && getNumber(file.getName()) > published) {
+					resumed = Math.max(resumed, getNumber(file.getName()));
+				}
+			}
+		}
+		int last = 0;
+		for (File file : files) {
+			int number = getNumber(file.getName());
+			if (file.getName().endsWith(REMOVED)) {
+				remove(file);
+			} else if (number <= published || number == resumed || !remove(file)) {
+				last = Math.max(last, number);
+			}
+		}
+		folder = new File(target, tool + "-" + (resumed > 0 ? resumed : last + 1));
+		if (!folder.isDirectory() && !folder.mkdirs()) {
+			throw new IOException("Cannot create the folder '" + folder.getPath() + "'");
+		}
+	}
+
+	/*
+	 * Copies the published file into the new generation to be updated there.
+	 * Returns false when there is no published file.
+	 */
+	public boolean copyPublished(String fileName) throws IOException {
+		File published = Manifest.resolve(new File(target, fileName));
+		if (!published.isFile()) {
+			return false;
+		}
+		Files.copy(published.toPath(), new File(folder, fileName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return true;
+	}
+
+	/*
+	 * Records the number of rows of a table for the manifest.
+	 */
+	public void setRows(String table, long count) {
+		rows.put(table, count);
+	}
+
+	/*
+	 * Publishes all files of the new generation with a manifest holding the
+	 * counts of the metrics, then removes the generations no longer needed.
+	 */
+	public Manifest publish(ExtractionMetrics metrics) throws IOException {
+		long start = System.nanoTime();
+		Manifest manifest = new Manifest(tool, folder.getName(), metrics.getModelName(), BeeGenExtractor.VERSION,
+				BeeGenExtractor.SCHEMA, System.currentTimeMillis(), metrics.getCounts(), rows);
+		File[] files = folder.listFiles();
+		if (files == null) {
+			throw new IOException("Cannot list the folder '" + folder.getPath() + "'");
+		}
+		Arrays.sort(files);
+		for (File file : files) {
+			if (file.isFile()) {
+				manifest.addFile(file.getName(), file.length(), Manifest.checksum(file));
+			}
+		}
+		File file = Manifest.getFile(target, tool);
+		File next = new File(target, file.getName() + NEXT);
+		manifest.write(next);
+		filecount = manifest.getFileNames().size();
+		length = manifest.getLength();
+		checksumTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		Manifest replaced = getPublished();
+		switchTo(next, file);
+		switchTime = System.nanoTime() - start;
+
+		for (File generation : listGenerations()) {
+			String name = generation.getName();
+			if (!name.equals(folder.getName()) && (replaced == null || !name.equals(replaced.getGeneration()))) {
+				if (remove(generation)) {
+					removedcount++;
+				} else {
+					keptcount++;
+				}
+			}
+		}
+		/* files published directly in the bee sub-folder before generations */
+		Set<String> earlier = new HashSet<String>(manifest.getFileNames());
+		if (replaced != null && replaced.getGeneration().isEmpty()) {
+			earlier.addAll(replaced.getFileNames());
+		}
+		for (String fileName : earlier) {
+			new File(target, fileName).delete();
+		}
+		return manifest;
+	}
+
+	/*
+	 * Replaces the manifest, trying again for a few seconds while a reader
+	 * on Windows has it open for the moment of reading it.
+	 */
+	private void switchTo(File next, File file) throws IOException {
+		for (int attempt = 1;; attempt++) {
+			try {
+				Files.move(next.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+				return;
+			} catch (AtomicMoveNotSupportedException e) {
+				throw e;
+			} catch (FileSystemException e) {
+				if (attempt == SWITCH_ATTEMPTS) {
+					throw new IOException("Cannot replace the manifest '" + file.getPath() + "'.", e);
+				}
+				retrycount++;
+				try {
+					Thread.sleep(SWITCH_WAIT);
+				} catch (InterruptedException e1) {
+					throw new InterruptedIOException("Publication of '" + file.getPath() + "' has been interrupted.");
+				}
+			}
+		}
+	}
+
+	/*
+	 * Manifest published before, null when there is none.
+	 */
+	private Manifest getPublished() throws IOException {
+		File file = Manifest.getFile(target, tool);
+		return file.isFile() ? Manifest.read(file) : null;
+	}
+
+	private File[] listGenerations() throws IOException {
+		File[] files = target.listFiles();
+		if (files == null) {
+			throw new IOException("Cannot list the folder '" + target.getPath() + "'");
+		}
+		int count = 0;
+		for (File file : files) {
+			if (file.isDirectory() && generations.matcher(file.getName()).matches()) {
+				files[count++] = file;
+			}
+		}
+		return Arrays.copyOf(files, count);
+	}
+
+	private int getNumber(String name) {
+		Matcher matcher = generations.matcher(name);
+		return matcher.matches() ? Integer.parseInt(matcher.group(1)) : 0;
+	}
+
+	/*
+	 * Renames the generation and deletes it. Returns false when it cannot be
+	 * renamed as a file in it is open, or it cannot be deleted completely.
+	 */
+	private boolean remove(File generation) {
+		File removed = generation;
+		if (!generation.getName().endsWith(REMOVED)) {
+			removed = new File(target, generation.getName() + REMOVED);
+			try {
+				Files.move(generation.toPath(), removed.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				return false;
+			}
+		}
+		boolean deleted = true;
+		File[] files = removed.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				deleted &= file.delete();
+			}
+		}
+		return removed.delete() && deleted;
+	}
+
+	public String report() {
+		return "Number of files published is " + filecount + " with " + length + " bytes"
+				+ "\nChecksums computed in " + checksumTime / 1000000 + " ms"
+				+ "\nManifest switched in " + switchTime / 1000000 + " ms with " + retrycount + " retries"
+				+ "\nNumber of earlier generations removed is " + removedcount + ", kept open by readers is "
+				+ keptcount
+				+ "\nManifest is '" + Manifest.getFile(target, tool).getPath() + "' naming '" + folder.getPath()
+				+ "'";
+	}
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.schema;
+
+import java.util.List;
+
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.AscTypeHelper;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeHelper;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeHelper;
+import com.ca.gen.jmmi.util.PrpFormat;
+
+import eu.jgen.bee.extractor.BeeGenExtractor;
+
+/*
+ * Schema information obtained from the JMMI helpers. Every call goes to the
+ * native layer, so it should be read through the SchemaCatalog.
+ */
+public class JmmiSchemaSource implements SchemaSource {
+
+	public String getSchemaLevel() {
+		return BeeGenExtractor.SCHEMA;
+	}
+
+	public short getCode(ObjTypeCode objTypeCode) {
+		return ObjTypeHelper.getCode(objTypeCode);
+	}
+
+	public String getMnemonic(ObjTypeCode objTypeCode) {
+		return ObjTypeHelper.getMnemonic(objTypeCode);
+	}
+
+	public List<PrpTypeCode> getProperties(ObjTypeCode objTypeCode) {
+		return ObjTypeHelper.getProperties(objTypeCode);
+	}
+
+	public List<AscTypeCode> getAssociations(ObjTypeCode objTypeCode) {
+		return ObjTypeHelper.getAssociations(objTypeCode);
+	}
+
+	public short getCode(PrpTypeCode prpTypeCode) {
+		return PrpTypeHelper.getCode(prpTypeCode);
+	}
+
+	public String getMnemonic(PrpTypeCode prpTypeCode) {
+		return PrpTypeHelper.getMnemonic(prpTypeCode);
+	}
+
+	public PrpFormat getFormat(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		return PrpTypeHelper.getFormat(objTypeCode, prpTypeCode);
+	}
+
+	public short getLength(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		return PrpTypeHelper.getLength(objTypeCode, prpTypeCode);
+	}
+
+	public String getDefaultTxtValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		return PrpTypeHelper.getDefaultTxtValue(objTypeCode, prpTypeCode);
+	}
+
+	public long getDefaultIntValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		return PrpTypeHelper.getDefaultIntValue(objTypeCode, prpTypeCode);
+	}
+
+	public char getDefaultChrValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		return PrpTypeHelper.getDefaultChrValue(objTypeCode, prpTypeCode);
+	}
+
+	public short getCode(AscTypeCode ascTypeCode) {
+		return AscTypeHelper.getCode(ascTypeCode);
+	}
+
+	public String getMnemonic(AscTypeCode ascTypeCode) {
+		return AscTypeHelper.getMnemonic(ascTypeCode);
+	}
+
+	public boolean isForward(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		return AscTypeHelper.isForward(objTypeCode, ascTypeCode);
+	}
+
+	public boolean isOneToMany(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		return AscTypeHelper.isOneToMany(objTypeCode, ascTypeCode);
+	}
+
+	public boolean isIgnorable(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		return AscTypeHelper.isIgnorable(objTypeCode, ascTypeCode);
+	}
+
+	public boolean isOrdered(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		return AscTypeHelper.isOrdered(objTypeCode, ascTypeCode);
+	}
+
+	public AscTypeCode getInverse(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		return AscTypeHelper.getInverse(objTypeCode, ascTypeCode);
+	}
+
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.schema;
+
+import java.util.List;
+
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+import com.ca.gen.jmmi.util.PrpFormat;
+
+/*
+ * Schema information for one object type. Properties and associations are kept
+ * in parallel arrays, the same index refers to the same property or association
+ * in all of them. Default values are read only for the format of the property,
+ * and the default text only when the property has a length, which is the same
+ * rule the meta data extraction follows.
+ */
+public final class ObjTypeEntry {
+
+	public final ObjTypeCode objTypeCode;
+	public final short code;
+	public final String mnemonic;
+
+	public final PrpTypeCode[] properties;
+	public final short[] prpCodes;
+	public final String[] prpMnemonics;
+	public final PrpFormat[] formats;
+	public final short[] lengths;
+	public final String[] defaultTexts;
+	public final long[] defaultInts;
+	public final char[] defaultChars;
+
+	public final AscTypeCode[] associations;
+	public final short[] ascCodes;
+	public final String[] ascMnemonics;
+	public final boolean[] forward;
+	public final boolean[] oneToMany;
+	public final AscTypeCode[] inverses;
+	public final short[] inverseCodes;
+
+	ObjTypeEntry(SchemaSource source, ObjTypeCode objTypeCode) {
+		this.objTypeCode = objTypeCode;
+		this.code = source.getCode(objTypeCode);
+		this.mnemonic = source.getMnemonic(objTypeCode);
+
+		List<PrpTypeCode> listprp = source.getProperties(objTypeCode);
+		int size = listprp.size();
+		properties = listprp.toArray(new PrpTypeCode[size]);
+		prpCodes = new short[size];
+		prpMnemonics = new String[size];
+		formats = new PrpFormat[size];
+		lengths = new short[size];
+		defaultTexts = new String[size];
+		defaultInts = new long[size];
+		defaultChars = new char[size];
+		for (int i = 0; i < size; i++) {
+			PrpTypeCode prp = properties[i];
+			prpCodes[i] = source.getCode(prp);
+			prpMnemonics[i] = prp.name();
+			formats[i] = source.getFormat(objTypeCode, prp);
+			lengths[i] = source.getLength(objTypeCode, prp);
+			defaultTexts[i] = "";
+			if (formats[i] == PrpFormat.TEXT || formats[i] == PrpFormat.LOADNAME || formats[i] == PrpFormat.NAME) {
+				if (lengths[i] != 0) {
+					defaultTexts[i] = source.getDefaultTxtValue(objTypeCode, prp);
+				}
+			} else if (formats[i] == PrpFormat.CHAR) {
+				defaultChars[i] = source.getDefaultChrValue(objTypeCode, prp);
+			} else if (formats[i] == PrpFormat.INT || formats[i] == PrpFormat.SINT) {
+				defaultInts[i] = source.getDefaultIntValue(objTypeCode, prp);
+			}
+		}
+
+		List<AscTypeCode> listasc = source.getAssociations(objTypeCode);
+		size = listasc.size();
+		associations = listasc.toArray(new AscTypeCode[size]);
+		ascCodes = new short[size];
+		ascMnemonics = new String[size];
+		forward = new boolean[size];
+		oneToMany = new boolean[size];
+		inverses = new AscTypeCode[size];
+		inverseCodes = new short[size];
+		for (int i = 0; i < size; i++) {
+			AscTypeCode asc = associations[i];
+			ascCodes[i] = source.getCode(asc);
+			ascMnemonics[i] = asc.name();
+			forward[i] = source.isForward(objTypeCode, asc);
+			oneToMany[i] = source.isOneToMany(objTypeCode, asc);
+			inverses[i] = source.getInverse(objTypeCode, asc);
+			inverseCodes[i] = source.getCode(inverses[i]);
+		}
+	}
+
+	/*
+	 * Position of the property in the arrays, or -1 when the object type does
+	 * not have the property.
+	 */
+	public int indexOf(PrpTypeCode prpTypeCode) {
+		for (int i = 0; i < properties.length; i++) {
+			if (properties[i] == prpTypeCode) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * Position of the association in the arrays, or -1 when the object type does
+	 * not have the association.
+	 */
+	public int indexOf(AscTypeCode ascTypeCode) {
+		for (int i = 0; i < associations.length; i++) {
+			if (associations[i] == ascTypeCode) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public int getPropertyCount() {
+		return properties.length;
+	}
+
+	public int getAssociationCount() {
+		return associations.length;
+	}
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.schema;
+
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+
+/*
+ * Keeps schema information for object types, so that the helpers are asked
+ * only once for each object type instead of once for each object in the model.
+ * Entries are loaded the first time the object type is requested and are held
+ * in an array indexed by the object type code. Entries are immutable, so they
+ * can be read by any thread once loaded.
+ */
+public class SchemaCatalog {
+
+	private static SchemaCatalog instance;
+
+	private final SchemaSource source;
+	private final ObjTypeEntry[] entries = new ObjTypeEntry[ObjTypeCode.values().length];
+	private int loadedcount;
+
+	public SchemaCatalog(SchemaSource source) {
+		this.source = source;
+	}
+
+	/*
+	 * Process wide catalog for the schema level of the extractor backed by the
+	 * JMMI helpers.
+	 */
+	public static synchronized SchemaCatalog getInstance() {
+		if (instance == null) {
+			instance = new SchemaCatalog(new JmmiSchemaSource());
+		}
+		return instance;
+	}
+
+	public ObjTypeEntry get(ObjTypeCode objTypeCode) {
+		ObjTypeEntry entry = entries[objTypeCode.ordinal()];
+		if (entry == null) {
+			entry = load(objTypeCode);
+		}
+		return entry;
+	}
+
+	private synchronized ObjTypeEntry load(ObjTypeCode objTypeCode) {
+		ObjTypeEntry entry = entries[objTypeCode.ordinal()];
+		if (entry == null) {
+			entry = new ObjTypeEntry(source, objTypeCode);
+			entries[objTypeCode.ordinal()] = entry;
+			loadedcount++;
+		}
+		return entry;
+	}
+
+	public String getSchemaLevel() {
+		return source.getSchemaLevel();
+	}
+
+	public SchemaSource getSource() {
+		return source;
+	}
+
+	public synchronized int getLoadedCount() {
+		return loadedcount;
+	}
+
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.schema;
+
+import java.util.List;
+
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+import com.ca.gen.jmmi.util.PrpFormat;
+
+/*
+ * Source of the schema information used by the extractors. The methods mirror
+ * the JMMI helpers ObjTypeHelper, PrpTypeHelper and AscTypeHelper.
+ */
+public interface SchemaSource {
+
+	String getSchemaLevel();
+
+	short getCode(ObjTypeCode objTypeCode);
+
+	String getMnemonic(ObjTypeCode objTypeCode);
+
+	List<PrpTypeCode> getProperties(ObjTypeCode objTypeCode);
+
+	List<AscTypeCode> getAssociations(ObjTypeCode objTypeCode);
+
+	short getCode(PrpTypeCode prpTypeCode);
+
+	String getMnemonic(PrpTypeCode prpTypeCode);
+
+	PrpFormat getFormat(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode);
+
+	short getLength(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode);
+
+	String getDefaultTxtValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode);
+
+	long getDefaultIntValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode);
+
+	char getDefaultChrValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode);
+
+	short getCode(AscTypeCode ascTypeCode);
+
+	String getMnemonic(AscTypeCode ascTypeCode);
+
+	boolean isForward(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode);
+
+	boolean isOneToMany(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode);
+
+	boolean isIgnorable(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode);
+
+	boolean isOrdered(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode);
+
+	AscTypeCode getInverse(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode);
+
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.schema;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+import com.ca.gen.jmmi.util.PrpFormat;
+
+/*
+ * Pure Java stand-in for the JMMI schema helpers. It uses only the JMMI enums,
+ * which do not need the native library, and derives a stable schema from their
+ * positions. Every object type has NAME, MODDATE and MODTIME properties plus a
+ * few others, and a few associations. It allows to run the extraction code on
+ * platforms where the CA Gen native libraries are not available.
+ */
+public class SyntheticSchemaSource implements SchemaSource {
+
+	public static final String SCHEMA_LEVEL = "SYNTHETIC";
+
+	private static final PrpTypeCode[] PRP_TYPES = PrpTypeCode.values();
+	private static final AscTypeCode[] ASC_TYPES = AscTypeCode.values();
+
+	public String getSchemaLevel() {
+		return SCHEMA_LEVEL;
+	}
+
+	public short getCode(ObjTypeCode objTypeCode) {
+		if (objTypeCode == ObjTypeCode.INVALID) {
+			return -1;
+		}
+		return (short) (objTypeCode.ordinal() + 1);
+	}
+
+	public String getMnemonic(ObjTypeCode objTypeCode) {
+		return objTypeCode.name();
+	}
+
+	public List<PrpTypeCode> getProperties(ObjTypeCode objTypeCode) {
+		if (objTypeCode == ObjTypeCode.INVALID) {
+			return Collections.emptyList();
+		}
+		List<PrpTypeCode> list = new ArrayList<PrpTypeCode>();
+		list.add(PrpTypeCode.NAME);
+		list.add(PrpTypeCode.MODDATE);
+		list.add(PrpTypeCode.MODTIME);
+		int ordinal = objTypeCode.ordinal();
+		int extra = ordinal % 6;
+		for (int k = 1; k <= extra; k++) {
+			PrpTypeCode prp = PRP_TYPES[(ordinal * 31 + k * 17) % PRP_TYPES.length];
+			if (prp != PrpTypeCode.INVALID && !list.contains(prp)) {
+				list.add(prp);
+			}
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	public List<AscTypeCode> getAssociations(ObjTypeCode objTypeCode) {
+		if (objTypeCode == ObjTypeCode.INVALID) {
+			return Collections.emptyList();
+		}
+		List<AscTypeCode> list = new ArrayList<AscTypeCode>();
+		int ordinal = objTypeCode.ordinal();
+		int count = ordinal % 5;
+		for (int k = 1; k <= count; k++) {
+			AscTypeCode asc = ASC_TYPES[(ordinal * 37 + k * 13) % ASC_TYPES.length];
+			if (asc != AscTypeCode.INVALID && !list.contains(asc)) {
+				list.add(asc);
+			}
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	public short getCode(PrpTypeCode prpTypeCode) {
+		if (prpTypeCode == PrpTypeCode.INVALID) {
+			return -1;
+		}
+		return (short) (prpTypeCode.ordinal() + 1);
+	}
+
+	public String getMnemonic(PrpTypeCode prpTypeCode) {
+		return prpTypeCode.name();
+	}
+
+	public PrpFormat getFormat(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		if (prpTypeCode == PrpTypeCode.NAME) {
+			return PrpFormat.NAME;
+		}
+		if (prpTypeCode == PrpTypeCode.MODDATE || prpTypeCode == PrpTypeCode.MODTIME
+				|| prpTypeCode == PrpTypeCode.CEID) {
+			return PrpFormat.INT;
+		}
+		if (prpTypeCode == PrpTypeCode.DESC) {
+			return PrpFormat.TEXT;
+		}
+		switch (prpTypeCode.ordinal() % 4) {
+		case 0:
+			return PrpFormat.INT;
+		case 1:
+			return PrpFormat.CHAR;
+		case 2:
+			return PrpFormat.TEXT;
+		default:
+			return PrpFormat.SINT;
+		}
+	}
+
+	public short getLength(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		PrpFormat format = getFormat(objTypeCode, prpTypeCode);
+		if (format == PrpFormat.CHAR) {
+			return 1;
+		}
+		if (format == PrpFormat.INT) {
+			return 4;
+		}
+		if (format == PrpFormat.SINT) {
+			return 2;
+		}
+		return 32;
+	}
+
+	public String getDefaultTxtValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		return "";
+	}
+
+	public long getDefaultIntValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		return 0;
+	}
+
+	public char getDefaultChrValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		return ' ';
+	}
+
+	public short getCode(AscTypeCode ascTypeCode) {
+		if (ascTypeCode == AscTypeCode.INVALID) {
+			return -1;
+		}
+		return (short) (ascTypeCode.ordinal() + 1);
+	}
+
+	public String getMnemonic(AscTypeCode ascTypeCode) {
+		return ascTypeCode.name();
+	}
+
+	public boolean isForward(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		return ascTypeCode.ordinal() % 2 == 0;
+	}
+
+	public boolean isOneToMany(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		return ascTypeCode.ordinal() % 3 == 0;
+	}
+
+	public boolean isIgnorable(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		return ascTypeCode.ordinal() % 5 == 0;
+	}
+
+	public boolean isOrdered(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		return isOneToMany(objTypeCode, ascTypeCode) && ascTypeCode.ordinal() % 2 == 0;
+	}
+
+	public AscTypeCode getInverse(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		AscTypeCode inverse = ASC_TYPES[(ascTypeCode.ordinal() + 1) % ASC_TYPES.length];
+		if (inverse == AscTypeCode.INVALID) {
+			inverse = ASC_TYPES[(ascTypeCode.ordinal() + 2) % ASC_TYPES.length];
+		}
+		return inverse;
+	}
+
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.ca.gen.jmmi.Ency;
+import com.ca.gen.jmmi.EncyManager;
+import com.ca.gen.jmmi.Model;
+import com.ca.gen.jmmi.ModelManager;
+import com.ca.gen.jmmi.exceptions.EncyException;
+import com.ca.gen.jmmi.exceptions.ModelNotFoundException;
+
+import eu.jgen.bee.extractor.BeeGenExtractor;
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.ExtractorOptions;
+import eu.jgen.bee.extractor.metrics.ExtractionMetrics;
+import eu.jgen.bee.extractor.metrics.MeteredModelSink;
+import eu.jgen.bee.extractor.metrics.MeteredModelSource;
+import eu.jgen.bee.extractor.metrics.MeteredSchemaSource;
+import eu.jgen.bee.extractor.model.JmmiModelSource;
+import eu.jgen.bee.extractor.publish.StagingFolder;
+import eu.jgen.bee.extractor.schema.JmmiSchemaSource;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+import eu.jgen.bee.extractor.traversal.PipelinedTraversal;
+import eu.jgen.bee.extractor.traversal.Projection;
+
+public class BeeGenExtractorSnapshot {
+
+	private static final String SNAPSHOT_FILE = "model.snapshot";
+	private static final String METRICS_JSON = "snapshot-metrics.json";
+	private static final String STRING_SLASH = File.separator;
+
+	public static final String[] OPTIONS = { "pipeline", "readBatch", "queueDepth" };
+	private String BEE_FOLDER_NAME = "bee";
+
+	private Model model;
+	private Ency ency;
+	private ExtractionMetrics metrics = new ExtractionMetrics("snapshot");
+	private SchemaCatalog catalog = new SchemaCatalog(new MeteredSchemaSource(new JmmiSchemaSource(), metrics));
+	private String modelName = "UNKNOWN";
+	private boolean pipeline = false;
+	private int readBatch = 256;
+	private int queueDepth = 16;
+	private Projection projection;
+
+	public static void main(String[] args) {
+
+		System.out.println("Bee Gen  Model Extractor, Version " + BeeGenExtractor.VERSION + ", Schema Level " + BeeGenExtractor.SCHEMA);
+		System.out.println("Extracts meta data from the CA Gen Model and creates binary snapshot of the entire model contents.");
+		BeeGenExtractorSnapshot extractor = new BeeGenExtractorSnapshot();
+		boolean completed = false;
+		try {
+			extractor.usage();
+			ExtractorOptions options = ExtractorOptions.parse(args);
+			extractor.configure(options);
+			extractor.start(options.getModelPath());
+			System.out.println("Snapshot extraction completed.");
+			completed = true;
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+		} catch (EncyException e) {
+			System.out.println("Problem with connecting to the encyclopedia.");
+			e.printStackTrace();
+		} catch (ModelNotFoundException e) {
+			System.out.println("Cannot find model in the encyclopedia.");
+			e.printStackTrace();
+		} catch (IOException e) {
+			System.out.println("Problem with writing metrics report.");
+			e.printStackTrace();
+		} catch (ExtractionException e) {
+			System.out.println(e.getMessage());
+			e.printStackTrace();
+		}
+		if (!completed) {
+			System.exit(1);
+		}
+	}
+
+	private void usage() {
+		System.out.println("USAGE:");
+		System.out.println(
+				"\tpathModel      -   Location of the directory containing CA Gen Local Model (directory ending with .ief)");
+		System.out.println(
+				"\t-pipeline      -   Reads the model and writes the snapshot on separate threads");
+		System.out.println(
+				"\t-readBatch=n   -   Number of objects passed to the writer at once in pipeline mode (default 256)");
+		System.out.println(
+				"\t-queueDepth=n  -   Number of batches waiting for the writer in pipeline mode (default 16)");
+		System.out.println(
+				"\t-objTypes=x    -   Object types read as roots, mnemonics separated by commas (default all objects)");
+		System.out.println(
+				"\t-prpTypes=x    -   Properties read, mnemonics separated by commas (default all properties)");
+		System.out.println(
+				"\t-ascTypes=x    -   Associations read, mnemonics separated by commas (default all associations)");
+		System.out.println(
+				"\t-closure=n     -   Number of association steps followed from the roots (default 0)");
+	}
+
+	private void configure(ExtractorOptions options) {
+		options.check(OPTIONS, Projection.OPTIONS);
+		pipeline = options.has("pipeline");
+		readBatch = options.getInt("readBatch", readBatch, 1);
+		queueDepth = options.getInt("queueDepth", queueDepth, 1);
+		projection = Projection.fromOptions(options);
+	}
+
+	/*
+	 * Snapshot file will be created in the bee sub-folder of the <your-model> .ief folder.
+	 * Previous file will be overwritten by a newly created one.
+	 */
+	private void start(String modelPath)
+			throws EncyException, ModelNotFoundException, IOException, ExtractionException {
+		System.out.println("Connecting to the CA Gen Model in the directory '" + modelPath + "'");
+		metrics.startPhase("connect");
+		ency = EncyManager.connectLocalForReadOnly(modelPath);
+		model = ModelManager.open(ency, ency.getModelIds().get(0));
+		modelName = model.getName();
+		metrics.register(modelName);
+
+		StagingFolder staging = prepareTargetDestination(modelPath);
+		String outputPath = staging.getPath();
+		System.out.println("Connected to the model " + modelName + "...");
+		System.out.println("Extracting object, property and association definitions...");
+		metrics.startPhase("model");
+		MeteredModelSource source = new MeteredModelSource(new JmmiModelSource(model, catalog), metrics);
+		ModelTraversal traversal;
+		if (pipeline) {
+			traversal = new PipelinedTraversal(source, readBatch, queueDepth);
+		} else {
+			traversal = new ModelTraversal(source);
+		}
+		if (projection != null) {
+			traversal.setProjection(projection);
+		}
+		SnapshotModelSink sink = new SnapshotModelSink(new File(outputPath + STRING_SLASH + SNAPSHOT_FILE));
+		traversal.addSink(new MeteredModelSink(sink, "snapshot", metrics));
+		traversal.run();
+		metrics.finish();
+		System.out.println("Run Statistics:");
+		System.out.println("\tNumber of exported object definitions is " + traversal.getObjectCount());
+		System.out.println("\tNumber of exported property definitions  is " + traversal.getPropertyCount());
+		System.out.println("\tNumber of exported association definitions is " + traversal.getAssociationCount());
+		System.out.println("\tNumber of distinct strings is " + sink.getStringCount());
+		System.out.println("\tSize of the snapshot file is " + sink.getLength() + " bytes");
+		if (pipeline) {
+			System.out.println("Pipeline Statistics:");
+			System.out.println("\t" + ((PipelinedTraversal) traversal).report().replace("\n", "\n\t"));
+		}
+		if (projection != null) {
+			System.out.println("Projection Statistics:");
+			System.out.println("\tProjection is " + projection);
+			System.out.println("\tNumber of objects reached through associations is " + traversal.getReachedCount());
+			System.out.println("\tNumber of associations leading outside the projection is " + traversal.getDroppedCount());
+		}
+		metrics.setCount("objects", traversal.getObjectCount());
+		metrics.setCount("properties", traversal.getPropertyCount());
+		metrics.setCount("associations", traversal.getAssociationCount());
+		metrics.setCount("objectTypes", catalog.getLoadedCount());
+		System.out.println("Extraction Metrics:");
+		System.out.println("\t" + metrics.report().replace("\n", "\n\t"));
+		metrics.writeReport(new File(outputPath + STRING_SLASH + METRICS_JSON));
+		metrics.unregister();
+		staging.setRows("objects", traversal.getObjectCount());
+		staging.setRows("properties", traversal.getPropertyCount());
+		staging.setRows("associations", traversal.getAssociationCount());
+		staging.publish(metrics);
+		System.out.println("Publish Statistics:");
+		System.out.println("\t" + staging.report().replace("\n", "\n\t"));
+		System.out.println("Snapshot file has been created in the sub-folder '" + staging.getFolder().getName() + "' of the sub-folder 'bee' of your CA Gen model '" + model.getName() + "' at location '" + modelPath + "'");
+	}
+
+	/*
+	 * The snapshot is written into a new generation folder inside the bee
+	 * sub-folder and is published only when it is complete. A reader which has
+	 * mapped the old snapshot keeps reading it.
+	 */
+	private StagingFolder prepareTargetDestination(String modelPath) throws IOException {
+		File file = new File(modelPath);
+		if(! file.isDirectory()) {
+			System.out.println("Specified model path is not a correct folder.");
+			System.exit(9);
+		}
+		file = new File(modelPath + STRING_SLASH + BEE_FOLDER_NAME);
+		if (!file.isDirectory() && !file.mkdir()) {
+			throw new IOException("Cannot create the folder '" + file.getPath() + "'");
+		}
+		StagingFolder staging = new StagingFolder(file, "snapshot");
+		staging.prepare(false);
+		return staging;
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/*
+ * Growing little endian buffer holding one column of the snapshot until the
+ * file is written.
+ */
+final class ColumnBuffer {
+
+	private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+
+	private byte[] data = new byte[1024];
+	private int length;
+
+	void putByte(int value) {
+		ensure(1);
+		data[length++] = (byte) value;
+	}
+
+	void putShort(int value) {
+		ensure(2);
+		data[length++] = (byte) value;
+		data[length++] = (byte) (value >> 8);
+	}
+
+	void putInt(int value) {
+		ensure(4);
+		for (int i = 0; i < 4; i++) {
+			data[length++] = (byte) (value >> (i * 8));
+		}
+	}
+
+	void putLong(long value) {
+		ensure(8);
+		for (int i = 0; i < 8; i++) {
+			data[length++] = (byte) (value >> (i * 8));
+		}
+	}
+
+	void putBytes(byte[] bytes) {
+		ensure(bytes.length);
+		System.arraycopy(bytes, 0, data, length, bytes.length);
+		length += bytes.length;
+	}
+
+	int length() {
+		return length;
+	}
+
+	void writeTo(WritableByteChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private void ensure(int count) {
+		if (length + count <= data.length) {
+			return;
+		}
+		if (length > MAX_LENGTH - count) {
+			throw new IllegalStateException("Snapshot column larger than 2 GB is not supported.");
+		}
+		long capacity = Math.max((long) data.length * 2, (long) length + count);
+		byte[] grown = new byte[(int) Math.min(capacity, MAX_LENGTH)];
+		System.arraycopy(data, 0, grown, 0, length);
+		data = grown;
+	}
+
+}
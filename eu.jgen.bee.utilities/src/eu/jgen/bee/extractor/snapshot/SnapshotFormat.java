@@ -0,0 +1,86 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.snapshot;
+
+import java.nio.charset.Charset;
+
+/*
+ * Layout of the snapshot file. All numbers are little endian. The file starts
+ * with a header followed by one section for each column, every section starts
+ * at a multiple of eight bytes.
+ *
+ * Header:
+ *   0  magic BEEGSNAP
+ *   8  int format version
+ *  12  int number of columns
+ *  16  int number of objects, properties, associations and strings
+ *  32  int string index of the extractor version, schema, schema level of the
+ *      model source and model name
+ *  48  long creation time in milliseconds
+ *  56  long offset of each column
+ *
+ * Columns of objects, properties and associations have one value for each row.
+ * The string offsets column has one more value than there are strings, the
+ * string data column holds the UTF-8 bytes of all strings. Properties with the
+ * INT, SINT or CHAR format keep the value in the value column, the others keep
+ * the index of the string.
+ */
+final class SnapshotFormat {
+
+	static final byte[] MAGIC = { 'B', 'E', 'E', 'G', 'S', 'N', 'A', 'P' };
+	static final int FORMAT_VERSION = 1;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	static final int OBJ_ID = 0;
+	static final int OBJ_TYPE = 1;
+	static final int OBJ_MNEMONIC = 2;
+	static final int OBJ_NAME = 3;
+	static final int PRP_OBJID = 4;
+	static final int PRP_TYPE = 5;
+	static final int PRP_FORMAT = 6;
+	static final int PRP_MNEMONIC = 7;
+	static final int PRP_VALUE = 8;
+	static final int ASC_FROM = 9;
+	static final int ASC_TYPE = 10;
+	static final int ASC_TO = 11;
+	static final int ASC_SEQNO = 12;
+	static final int ASC_INVERSE = 13;
+	static final int ASC_MNEMONIC = 14;
+	static final int ASC_CARD = 15;
+	static final int ASC_DIRECTION = 16;
+	static final int STR_OFFSET = 17;
+	static final int STR_DATA = 18;
+
+	/*
+	 * Number of bytes of one value in each column.
+	 */
+	static final int[] WIDTHS = { 8, 2, 4, 4, 8, 2, 1, 4, 8, 8, 2, 8, 4, 2, 4, 1, 1, 4, 1 };
+
+	static final int COLUMN_COUNT = WIDTHS.length;
+	static final int COUNTS_POSITION = 16;
+	static final int STRINGS_POSITION = 32;
+	static final int CREATED_POSITION = 48;
+	static final int OFFSETS_POSITION = 56;
+	static final int HEADER_LENGTH = OFFSETS_POSITION + COLUMN_COUNT * 8;
+
+	private SnapshotFormat() {
+	}
+
+	static int align(long position) {
+		return (int) ((position + 7) & ~7L);
+	}
+
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.snapshot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.ca.gen.jmmi.util.PrpFormat;
+
+import eu.jgen.bee.extractor.BeeGenExtractor;
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ObjectRecord;
+
+/*
+ * Collects the objects, properties and associations into columns held in
+ * memory and writes them as a snapshot file when the traversal ends. The
+ * layout is described in SnapshotFormat. Strings are kept once in a
+ * dictionary and referred to by their index.
+ */
+public class SnapshotModelSink implements ModelSink {
+
+	private final File file;
+	private final ColumnBuffer[] columns = new ColumnBuffer[SnapshotFormat.COLUMN_COUNT];
+	private final Map<String, Integer> strings = new HashMap<String, Integer>();
+	private String modelName;
+	private String schemaLevel;
+	private int objectcount;
+	private int propertycount;
+	private int associationcount;
+	private long length;
+
+	public SnapshotModelSink(File file) {
+		this.file = file;
+	}
+
+	public void begin(ModelSource source) throws ExtractionException {
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = new ColumnBuffer();
+		}
+		strings.clear();
+		columns[SnapshotFormat.STR_OFFSET].putInt(0);
+		modelName = source.getName();
+		schemaLevel = source.getCatalog().getSchemaLevel();
+		objectcount = 0;
+		propertycount = 0;
+		associationcount = 0;
+	}
+
+	public void object(ObjectRecord record) throws ExtractionException {
+		try {
+			columns[SnapshotFormat.OBJ_ID].putLong(record.getId());
+			columns[SnapshotFormat.OBJ_TYPE].putShort(record.getObjType());
+			columns[SnapshotFormat.OBJ_MNEMONIC].putInt(string(record.getObjMnemonic()));
+			columns[SnapshotFormat.OBJ_NAME].putInt(string(record.getName()));
+			objectcount++;
+			for (int i = 0; i < record.getPropertyCount(); i++) {
+				PrpFormat format = record.getFormat(i);
+				columns[SnapshotFormat.PRP_OBJID].putLong(record.getId());
+				columns[SnapshotFormat.PRP_TYPE].putShort(record.getPrpType(i));
+				columns[SnapshotFormat.PRP_FORMAT].putByte(format.ordinal());
+				columns[SnapshotFormat.PRP_MNEMONIC].putInt(string(record.getPrpMnemonic(i)));
+				columns[SnapshotFormat.PRP_VALUE].putLong(value(format, record.getValue(i)));
+				propertycount++;
+			}
+			for (int i = 0; i < record.getAssociationCount(); i++) {
+				columns[SnapshotFormat.ASC_FROM].putLong(record.getId());
+				columns[SnapshotFormat.ASC_TYPE].putShort(record.getAscType(i));
+				columns[SnapshotFormat.ASC_TO].putLong(record.getTarget(i));
+				columns[SnapshotFormat.ASC_SEQNO].putInt(record.getSeqno(i));
+				columns[SnapshotFormat.ASC_INVERSE].putShort(record.getInverseAscType(i));
+				columns[SnapshotFormat.ASC_MNEMONIC].putInt(string(record.getAscMnemonic(i)));
+				columns[SnapshotFormat.ASC_CARD].putByte(record.getCard(i).charAt(0));
+				columns[SnapshotFormat.ASC_DIRECTION].putByte(record.getDirection(i).charAt(0));
+				associationcount++;
+			}
+		} catch (IllegalStateException e) {
+			throw new ExtractionException(e.getMessage(), e);
+		}
+	}
+
+	public void end() throws ExtractionException {
+		int versionString = string(BeeGenExtractor.VERSION);
+		int schemaString = string(BeeGenExtractor.SCHEMA);
+		int schemaLevelString = string(schemaLevel);
+		int modelNameString = string(modelName);
+
+		ByteBuffer header = ByteBuffer.allocate(SnapshotFormat.HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(SnapshotFormat.MAGIC);
+		header.putInt(SnapshotFormat.FORMAT_VERSION);
+		header.putInt(SnapshotFormat.COLUMN_COUNT);
+		header.putInt(objectcount).putInt(propertycount).putInt(associationcount).putInt(strings.size());
+		header.putInt(versionString).putInt(schemaString).putInt(schemaLevelString).putInt(modelNameString);
+		header.putLong(System.currentTimeMillis());
+		long position = SnapshotFormat.align(SnapshotFormat.HEADER_LENGTH);
+		for (ColumnBuffer column : columns) {
+			header.putLong(position);
+			position = SnapshotFormat.align(position + column.length());
+		}
+		if (position > Integer.MAX_VALUE) {
+			throw new ExtractionException("Snapshot larger than 2 GB is not supported.");
+		}
+		header.flip();
+
+		FileOutputStream stream = null;
+		try {
+			stream = new FileOutputStream(file);
+			FileChannel channel = stream.getChannel();
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			for (ColumnBuffer column : columns) {
+				pad(channel);
+				column.writeTo(channel);
+			}
+			pad(channel);
+			length = channel.position();
+			stream.close();
+			stream = null;
+		} catch (IOException e) {
+			throw new ExtractionException("Problem with writing snapshot file " + file + ".", e);
+		} finally {
+			if (stream != null) {
+				try {
+					stream.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = null;
+		}
+	}
+
+	private static void pad(FileChannel channel) throws IOException {
+		int padding = SnapshotFormat.align(channel.position()) - (int) channel.position();
+		if (padding > 0) {
+			channel.write(ByteBuffer.allocate(padding));
+		}
+	}
+
+	/*
+	 * Index of the string in the dictionary, or -1 for null.
+	 */
+	private int string(String value) {
+		if (value == null) {
+			return -1;
+		}
+		Integer index = strings.get(value);
+		if (index == null) {
+			index = Integer.valueOf(strings.size());
+			strings.put(value, index);
+			columns[SnapshotFormat.STR_DATA].putBytes(value.getBytes(SnapshotFormat.UTF8));
+			columns[SnapshotFormat.STR_OFFSET].putInt(columns[SnapshotFormat.STR_DATA].length());
+		}
+		return index.intValue();
+	}
+
+	private long value(PrpFormat format, String value) {
+		if (format == PrpFormat.INT || format == PrpFormat.SINT) {
+			return Long.parseLong(value);
+		}
+		if (format == PrpFormat.CHAR) {
+			return value.charAt(0);
+		}
+		return string(value);
+	}
+
+	public int getStringCount() {
+		return strings.size();
+	}
+
+	/*
+	 * Length of the written file in bytes.
+	 */
+	public long getLength() {
+		return length;
+	}
+
+}
@@ -0,0 +1,284 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.ca.gen.jmmi.util.PrpFormat;
+
+import eu.jgen.bee.extractor.publish.Manifest;
+
+/*
+ * Reads a snapshot file in place. The file is mapped into memory and every
+ * value is read directly from the mapping when it is requested, only strings
+ * are decoded into new objects. Rows are addressed by their position, from 0
+ * to the number of rows minus one, in the order the objects were extracted.
+ * The reader can be shared by threads once opened.
+ */
+public class SnapshotReader {
+
+	private static final PrpFormat[] FORMATS = PrpFormat.values();
+
+	private final File file;
+	private final ByteBuffer buffer;
+	private final int objectcount;
+	private final int propertycount;
+	private final int associationcount;
+	private final int stringcount;
+	private final int[] offsets = new int[SnapshotFormat.COLUMN_COUNT];
+	private final String version;
+	private final String schema;
+	private final String schemaLevel;
+	private final String modelName;
+	private final long created;
+
+	/*
+	 * Maps the snapshot file. A snapshot in the bee sub-folder of a model is
+	 * read from the generation named by the manifest published there.
+	 */
+	public SnapshotReader(File file) throws IOException {
+		file = Manifest.resolve(file);
+		this.file = file;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot larger than 2 GB is not supported.");
+			}
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+		} finally {
+			raf.close();
+		}
+		if (buffer.capacity() < SnapshotFormat.HEADER_LENGTH) {
+			throw new IOException("File " + file + " is not a snapshot.");
+		}
+		byte[] magic = new byte[SnapshotFormat.MAGIC.length];
+		for (int i = 0; i < magic.length; i++) {
+			magic[i] = buffer.get(i);
+		}
+		if (!Arrays.equals(magic, SnapshotFormat.MAGIC)) {
+			throw new IOException("File " + file + " is not a snapshot.");
+		}
+		int formatVersion = buffer.getInt(8);
+		if (formatVersion != SnapshotFormat.FORMAT_VERSION || buffer.getInt(12) != SnapshotFormat.COLUMN_COUNT) {
+			throw new IOException("Snapshot " + file + " has unsupported format version " + formatVersion + ".");
+		}
+		objectcount = buffer.getInt(SnapshotFormat.COUNTS_POSITION);
+		propertycount = buffer.getInt(SnapshotFormat.COUNTS_POSITION + 4);
+		associationcount = buffer.getInt(SnapshotFormat.COUNTS_POSITION + 8);
+		stringcount = buffer.getInt(SnapshotFormat.COUNTS_POSITION + 12);
+		for (int i = 0; i < offsets.length; i++) {
+			long offset = buffer.getLong(SnapshotFormat.OFFSETS_POSITION + i * 8);
+			if (offset < SnapshotFormat.HEADER_LENGTH || offset + rows(i) * SnapshotFormat.WIDTHS[i] > buffer.capacity()) {
+				throw new IOException("Snapshot " + file + " is truncated.");
+			}
+			offsets[i] = (int) offset;
+		}
+		created = buffer.getLong(SnapshotFormat.CREATED_POSITION);
+		version = getString(buffer.getInt(SnapshotFormat.STRINGS_POSITION));
+		schema = getString(buffer.getInt(SnapshotFormat.STRINGS_POSITION + 4));
+		schemaLevel = getString(buffer.getInt(SnapshotFormat.STRINGS_POSITION + 8));
+		modelName = getString(buffer.getInt(SnapshotFormat.STRINGS_POSITION + 12));
+	}
+
+	private long rows(int column) {
+		if (column <= SnapshotFormat.OBJ_NAME) {
+			return objectcount;
+		}
+		if (column <= SnapshotFormat.PRP_VALUE) {
+			return propertycount;
+		}
+		if (column <= SnapshotFormat.ASC_DIRECTION) {
+			return associationcount;
+		}
+		if (column == SnapshotFormat.STR_OFFSET) {
+			return stringcount + 1;
+		}
+		return buffer.getInt(offsets[SnapshotFormat.STR_OFFSET] + stringcount * 4);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/*
+	 * Version of the extractor which wrote the snapshot.
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	/*
+	 * Schema level of the extractor which wrote the snapshot.
+	 */
+	public String getSchema() {
+		return schema;
+	}
+
+	/*
+	 * Schema level of the model source the snapshot was written from.
+	 */
+	public String getSchemaLevel() {
+		return schemaLevel;
+	}
+
+	public String getModelName() {
+		return modelName;
+	}
+
+	public long getCreated() {
+		return created;
+	}
+
+	public int getObjectCount() {
+		return objectcount;
+	}
+
+	public int getPropertyCount() {
+		return propertycount;
+	}
+
+	public int getAssociationCount() {
+		return associationcount;
+	}
+
+	public int getStringCount() {
+		return stringcount;
+	}
+
+	/*
+	 * String from the dictionary, or null for index -1.
+	 */
+	public String getString(int index) {
+		if (index == -1) {
+			return null;
+		}
+		if (index < 0 || index >= stringcount) {
+			throw new IndexOutOfBoundsException("String " + index + ", count " + stringcount);
+		}
+		int start = buffer.getInt(offsets[SnapshotFormat.STR_OFFSET] + index * 4);
+		int end = buffer.getInt(offsets[SnapshotFormat.STR_OFFSET] + index * 4 + 4);
+		byte[] bytes = new byte[end - start];
+		ByteBuffer data = buffer.duplicate();
+		data.position(offsets[SnapshotFormat.STR_DATA] + start);
+		data.get(bytes);
+		return new String(bytes, SnapshotFormat.UTF8);
+	}
+
+	public long getId(int object) {
+		return buffer.getLong(position(SnapshotFormat.OBJ_ID, object, objectcount));
+	}
+
+	public short getObjType(int object) {
+		return buffer.getShort(position(SnapshotFormat.OBJ_TYPE, object, objectcount));
+	}
+
+	public String getObjMnemonic(int object) {
+		return getString(buffer.getInt(position(SnapshotFormat.OBJ_MNEMONIC, object, objectcount)));
+	}
+
+	public String getName(int object) {
+		return getString(buffer.getInt(position(SnapshotFormat.OBJ_NAME, object, objectcount)));
+	}
+
+	public long getPropertyObjid(int property) {
+		return buffer.getLong(position(SnapshotFormat.PRP_OBJID, property, propertycount));
+	}
+
+	public short getPrpType(int property) {
+		return buffer.getShort(position(SnapshotFormat.PRP_TYPE, property, propertycount));
+	}
+
+	public PrpFormat getFormat(int property) {
+		return FORMATS[buffer.get(position(SnapshotFormat.PRP_FORMAT, property, propertycount))];
+	}
+
+	public String getPrpMnemonic(int property) {
+		return getString(buffer.getInt(position(SnapshotFormat.PRP_MNEMONIC, property, propertycount)));
+	}
+
+	/*
+	 * Value of INT and SINT properties, the character of CHAR properties or
+	 * the string index of the others.
+	 */
+	public long getRawValue(int property) {
+		return buffer.getLong(position(SnapshotFormat.PRP_VALUE, property, propertycount));
+	}
+
+	/*
+	 * Value of the property as the traversal delivered it.
+	 */
+	public String getValue(int property) {
+		PrpFormat format = getFormat(property);
+		long value = getRawValue(property);
+		if (format == PrpFormat.INT || format == PrpFormat.SINT) {
+			return String.valueOf(value);
+		}
+		if (format == PrpFormat.CHAR) {
+			return String.valueOf((char) value);
+		}
+		return getString((int) value);
+	}
+
+	public long getFrom(int association) {
+		return buffer.getLong(position(SnapshotFormat.ASC_FROM, association, associationcount));
+	}
+
+	public short getAscType(int association) {
+		return buffer.getShort(position(SnapshotFormat.ASC_TYPE, association, associationcount));
+	}
+
+	public long getTo(int association) {
+		return buffer.getLong(position(SnapshotFormat.ASC_TO, association, associationcount));
+	}
+
+	public int getSeqno(int association) {
+		return buffer.getInt(position(SnapshotFormat.ASC_SEQNO, association, associationcount));
+	}
+
+	public short getInverseAscType(int association) {
+		return buffer.getShort(position(SnapshotFormat.ASC_INVERSE, association, associationcount));
+	}
+
+	public String getAscMnemonic(int association) {
+		return getString(buffer.getInt(position(SnapshotFormat.ASC_MNEMONIC, association, associationcount)));
+	}
+
+	public String getCard(int association) {
+		return String.valueOf((char) buffer.get(position(SnapshotFormat.ASC_CARD, association, associationcount)));
+	}
+
+	public String getDirection(int association) {
+		return String.valueOf(
+				(char) buffer.get(position(SnapshotFormat.ASC_DIRECTION, association, associationcount)));
+	}
+
+	private int position(int column, int row, int count) {
+		if (row < 0 || row >= count) {
+			throw new IndexOutOfBoundsException("Row " + row + ", count " + count);
+		}
+		return offsets[column] + row * SnapshotFormat.WIDTHS[column];
+	}
+
+}
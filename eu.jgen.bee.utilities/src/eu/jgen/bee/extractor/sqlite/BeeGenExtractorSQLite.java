@@ -17,35 +17,52 @@ package eu.jgen.bee.extractor.sqlite;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.sqlite.SQLiteConfig;
 import org.sqlite.SQLiteConfig.JournalMode;
+import org.sqlite.SQLiteConfig.SynchronousMode;
 
 import com.ca.gen.jmmi.Ency;
 import com.ca.gen.jmmi.EncyManager;
-import com.ca.gen.jmmi.MMObj;
 import com.ca.gen.jmmi.Model;
 import com.ca.gen.jmmi.ModelManager;
 import com.ca.gen.jmmi.exceptions.EncyException;
-import com.ca.gen.jmmi.exceptions.EncyUnsupportedOperationException;
 import com.ca.gen.jmmi.exceptions.ModelNotFoundException;
 import com.ca.gen.jmmi.ids.ObjId;
-import com.ca.gen.jmmi.schema.AscTypeCode;
-import com.ca.gen.jmmi.schema.AscTypeHelper;
-import com.ca.gen.jmmi.schema.ObjTypeCode;
-import com.ca.gen.jmmi.schema.ObjTypeHelper;
-import com.ca.gen.jmmi.schema.PrpTypeCode;
-import com.ca.gen.jmmi.schema.PrpTypeHelper;
-import com.ca.gen.jmmi.util.PrpFormat;
 
 import eu.jgen.bee.extractor.BeeGenExtractor;
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.ExtractorOptions;
+import eu.jgen.bee.extractor.json.BeeGenExtractorJSON;
+import eu.jgen.bee.extractor.metrics.ExtractionMetrics;
+import eu.jgen.bee.extractor.metrics.MeteredModelSink;
+import eu.jgen.bee.extractor.metrics.MeteredModelSource;
+import eu.jgen.bee.extractor.metrics.MeteredSchemaSource;
+import eu.jgen.bee.extractor.model.JmmiModelSource;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.publish.StagingFolder;
+import eu.jgen.bee.extractor.schema.JmmiSchemaSource;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+import eu.jgen.bee.extractor.schema.SchemaSource;
+import eu.jgen.bee.extractor.trace.RecordingModelSource;
+import eu.jgen.bee.extractor.trace.RecordingSchemaSource;
+import eu.jgen.bee.extractor.trace.ReplayModelSource;
+import eu.jgen.bee.extractor.trace.ReplaySchemaSource;
+import eu.jgen.bee.extractor.trace.Trace;
+import eu.jgen.bee.extractor.trace.TraceWriter;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+import eu.jgen.bee.extractor.traversal.PipelinedTraversal;
+import eu.jgen.bee.extractor.traversal.Projection;
 
 /*
  * This class allows extract design metadata from the CA Gen Local Model and load
@@ -57,12 +74,22 @@ import eu.jgen.bee.extractor.BeeGenExtractor;
  */
 public class BeeGenExtractorSQLite {
 	
-	private static final String STRING_SLASH = "\\";
+	private static final String STRING_SLASH = File.separator;
+	private static final String METRICS_JSON = "sqlite-metrics.json";
+	private static final String[] TABLES = { "GenObjects", "GenProperties", "GenAssociations" };
+	private static final String[] META_TABLES = { "GenMetaObjects", "GenMetaProperties", "GenMetaAssociations" };
+
+	public static final String[] OPTIONS = { "batchSize", "insertRows", "json", "pipeline", "readBatch",
+			"queueDepth", "incremental", "noIndexes", "fullText", "noMetaCache", "metaCache", "compact",
+			"commitEvery", "record", "replay", "replayLatency" };
 	private String BEE_FOLDER_NAME = "bee";
 
 	private Connection connection = null;
 	private Model model;
 	private Ency ency;
+	private ExtractionMetrics metrics = new ExtractionMetrics("sqlite");
+	private SchemaSource schema = new MeteredSchemaSource(new JmmiSchemaSource(), metrics);
+	private SchemaCatalog catalog = new SchemaCatalog(schema);
 	private int objectcount;
 	private int propertycount;
 	private int associationcount;
@@ -71,16 +98,60 @@ public class BeeGenExtractorSQLite {
 	private int associationmetacount;
 	
 	private String modelName = "UNKNOWN";
+	
+	private int batchSize = 1000;
+	private int rowsPerInsert = 1;
+	private boolean withJson = false;
+	private boolean pipeline = false;
+	private int readBatch = 256;
+	private int queueDepth = 16;
+	private String pipelineReport;
+	private boolean incremental = false;
+	private String incrementalReport;
+	private int neighbourcount;
+	private boolean indexes = true;
+	private String indexReport;
+	private boolean fullText = false;
+	private String fullTextReport;
+	private boolean compact = false;
+	private int textcount;
+	private int commitEvery = 0;
+	private Checkpoint checkpoint;
+	private String checkpointReport;
+	private boolean failed = false;
+	private boolean useMetaCache = true;
+	private File metaCacheRoot;
+	private MetaCache metaCache;
+	private Projection projection;
+	private String projectionReport;
+	private String recordPath;
+	private String replayPath;
+	private boolean replayLatency = false;
+	private String recordedOptions;
+	private TraceWriter traceWriter;
+	private Trace trace;
+	private StagingFolder staging;
+	private List<BulkInserter> inserters = new ArrayList<BulkInserter>();
 
 	public static void main(String[] args) {
 
 		System.out.println("Bee Gen Model Creator, Version: " + BeeGenExtractor.VERSION + ",  Schema Level: " + BeeGenExtractor.SCHEMA);
 		System.out.println("Extracts meta data from the CA Gen Model and creates Bee Gen Model.");
 		BeeGenExtractorSQLite extractor = new BeeGenExtractorSQLite();
+		boolean completed = false;
 		try {
 			extractor.usage();
-			extractor.start(args[0]);
-			System.out.println("Model extraction completed.");
+			ExtractorOptions options = ExtractorOptions.parse(args);
+			extractor.configure(options);
+			extractor.start(options.getModelPath());
+			if (extractor.failed) {
+				System.out.println("Model extraction failed.");
+			} else {
+				System.out.println("Model extraction completed.");
+				completed = true;
+			}
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
 		} catch (EncyException e) {
 			System.out.println("Problem with connecting to the local CA Gen Model.");
 			e.printStackTrace();
@@ -93,6 +164,12 @@ public class BeeGenExtractorSQLite {
 		} catch (IOException e) {
 			System.out.println("Problem creating enumerations..");
 			e.printStackTrace();
+		} catch (ExtractionException e) {
+			System.out.println(e.getMessage());
+			e.printStackTrace();
+		}
+		if (!completed) {
+			System.exit(1);
 		}
 	}
 
@@ -100,506 +177,800 @@ public class BeeGenExtractorSQLite {
 		System.out.println("USAGE:");
 		System.out.println(
 				"\tpathModel      -   Location of the directory containing local CA Gen Model (directory name should end with .ief)");
+		System.out.println(
+				"\t-batchSize=n   -   Number of insert statements sent to SQLite in one batch (default 1000)");
+		System.out.println(
+				"\t-insertRows=n  -   Number of rows inserted by a single INSERT statement (default 1)");
+		System.out.println(
+				"\t-json          -   Creates also objects.json and associations.json in the same pass over the model");
+		System.out.println(
+				"\t-pipeline      -   Reads the model and loads the database on separate threads");
+		System.out.println(
+				"\t-readBatch=n   -   Number of objects passed to the writer at once in pipeline mode (default 256)");
+		System.out.println(
+				"\t-queueDepth=n  -   Number of batches waiting for the writer in pipeline mode (default 16)");
+		System.out.println(
+				"\t-incremental   -   Updates existing Bee Gen Model with objects changed since the last extraction");
+		System.out.println(
+				"\t-noIndexes     -   Does not create secondary indexes after the tables are loaded");
+		System.out.println(
+				"\t-compact       -   Stores only type codes and typed values, with views showing the usual tables");
+		System.out.println(
+				"\t-commitEvery=n -   Commits every n objects and resumes an interrupted extraction from the last commit");
+		System.out.println(
+				"\t-fullText      -   Creates full text index of names and descriptions of the objects");
+		System.out.println(
+				"\t-metaCache=dir -   Folder of the meta data cache shared by all models (default .beegen/meta in the home folder)");
+		System.out.println(
+				"\t-noMetaCache   -   Reads meta data from the schema for this model without using the cache");
+		System.out.println(
+				"\t-objTypes=x    -   Object types read as roots, mnemonics separated by commas (default all objects)");
+		System.out.println(
+				"\t-prpTypes=x    -   Properties read, mnemonics separated by commas (default all properties)");
+		System.out.println(
+				"\t-ascTypes=x    -   Associations read, mnemonics separated by commas (default all associations)");
+		System.out.println(
+				"\t-closure=n     -   Number of association steps followed from the roots (default 0)");
+		System.out.println(
+				"\t-record=path   -   Writes every call to the CA Gen model with its result and latency into a trace file");
+		System.out.println(
+				"\t-replay=path   -   Reads the model from a trace file instead, pathModel only receives the output");
+		System.out.println(
+				"\t-replayLatency -   Waits the recorded latency of every call when replaying a trace");
 		System.out.println("");
 	}
 
-	private void start(String modelPath) throws EncyException, ModelNotFoundException, IOException {
-		System.out.println("Connecting to the CA Gen Model in the directory '" + modelPath + "'");
-		ency = EncyManager.connectLocalForReadOnly(modelPath);
-		model = ModelManager.open(ency, ency.getModelIds().get(0));
-		modelName = model.getName();
+	private void configure(ExtractorOptions options) {
+		options.check(OPTIONS, Projection.OPTIONS);
+		batchSize = options.getInt("batchSize", batchSize, 1);
+		rowsPerInsert = options.getInt("insertRows", rowsPerInsert, 1);
+		withJson = options.has("json");
+		pipeline = options.has("pipeline");
+		readBatch = options.getInt("readBatch", readBatch, 1);
+		queueDepth = options.getInt("queueDepth", queueDepth, 1);
+		incremental = options.has("incremental");
+		indexes = !options.has("noIndexes");
+		fullText = options.has("fullText");
+		useMetaCache = !options.has("noMetaCache");
+		metaCacheRoot = new File(options.getString("metaCache", MetaCache.getDefaultRoot().getPath()));
+		compact = options.has("compact");
+		if (compact && incremental) {
+			System.out.println("Compact Bee Gen Model cannot be updated incrementally, a new one will be created...");
+			incremental = false;
+		}
+		projection = Projection.fromOptions(options);
+		if (projection != null && incremental) {
+			System.out.println("Projected Bee Gen Model cannot be updated incrementally, a new one will be created...");
+			incremental = false;
+		}
+		commitEvery = options.getInt("commitEvery", commitEvery, 0);
+		if (commitEvery > 0 && projection != null) {
+			System.out.println("Checkpoints are not used when a projection of the model is extracted...");
+			commitEvery = 0;
+		}
+		if (commitEvery > 0 && (incremental || compact)) {
+			System.out.println("Checkpoints are used only when a new Bee Gen Model in the usual layout is created...");
+			commitEvery = 0;
+		}
+		if (commitEvery > 0 && withJson) {
+			System.out.println("JSON files are not created when checkpoints are used.");
+			withJson = false;
+		}
+		recordPath = options.getString("record", null);
+		replayPath = options.getString("replay", null);
+		replayLatency = options.has("replayLatency");
+		if (recordPath != null && replayPath != null) {
+			throw new IllegalArgumentException("Options 'record' and 'replay' cannot be used together.");
+		}
+		if ((recordPath != null || replayPath != null) && useMetaCache) {
+			System.out.println("Meta data cache is not used when a trace is recorded or replayed...");
+			useMetaCache = false;
+		}
+		StringBuilder recorded = new StringBuilder();
+		for (String option : options.getOtherOptions("record")) {
+			recorded.append(recorded.length() == 0 ? "" : " ").append(option);
+		}
+		recordedOptions = recorded.toString();
+	}
+
+	private void start(String modelPath)
+			throws EncyException, ModelNotFoundException, IOException, ExtractionException {
+		if (replayPath != null) {
+			System.out.println("Replaying the trace '" + replayPath + "'" + (replayLatency ? " with the recorded latencies" : ""));
+			metrics.startPhase("connect");
+			try {
+				trace = Trace.read(new File(replayPath));
+			} catch (IOException e) {
+				throw new ExtractionException("Cannot read the trace '" + replayPath + "'.", e);
+			}
+			modelName = trace.getModelName();
+			schema = new MeteredSchemaSource(new ReplaySchemaSource(trace, replayLatency), metrics);
+			catalog = new SchemaCatalog(schema);
+		} else {
+			System.out.println("Connecting to the CA Gen Model in the directory '" + modelPath + "'");
+			metrics.startPhase("connect");
+			ency = EncyManager.connectLocalForReadOnly(modelPath);
+			model = ModelManager.open(ency, ency.getModelIds().get(0));
+			modelName = model.getName();
+			if (recordPath != null) {
+				traceWriter = new TraceWriter(new File(recordPath), modelName, BeeGenExtractor.SCHEMA, recordedOptions);
+				schema = new MeteredSchemaSource(new RecordingSchemaSource(new JmmiSchemaSource(), traceWriter), metrics);
+				catalog = new SchemaCatalog(schema);
+			}
+		}
+		metrics.register(modelName);
 		String outputPath = cleanTargetDestination(modelPath);
 		System.out.println("Connected to the model " + modelName + "...");
-		createDatabaseForModel(outputPath);
-		generateEnumForObjects(modelPath);
-		generateEnumForProperties(modelPath);
-		generateEnumForAssociations( modelPath);
+		prepareMetaCache();
+		try {
+			createDatabaseForModel(outputPath);
+			metrics.startPhase("enumerations");
+			generateMetaTypes(outputPath);
+			closeDatabase();
+		} finally {
+			if (traceWriter != null) {
+				traceWriter.close();
+			}
+		}
+		metrics.finish();
 		
-		System.out.println("BeeGen Model '" + model.getName() + ".db' has been created in the sub-folder 'bee' of your CA Gen model '" + model.getName() + "' at location '" + modelPath + "'");
-
 		System.out.println("Run Statistics:");
 		System.out.println("\tNumber of exported objects is " + objectcount);
 		System.out.println("\tNumber of exported properties is " + propertycount);
 		System.out.println("\tNumber of exported associations is " + associationcount);
+		if (compact) {
+			System.out.println("\tNumber of distinct texts is " + textcount);
+		}
 		
 		System.out.println("\tNumber of exported meta objects is " + objectmetacount);
 		System.out.println("\tNumber of exported meta properties is " + propertymetacount);
 		System.out.println("\tNumber of exported meta associations is " + associationmetacount); 
+		System.out.println("\tNumber of object types read from the schema is " + catalog.getLoadedCount());
+		if (metaCache != null) {
+			System.out.println("\tMeta data copied from the cache in '" + metaCache.getFolder() + "'");
+		}
+		System.out.println("Load Statistics (batch size " + batchSize + ", rows per insert " + rowsPerInsert + "):");
+		for (BulkInserter inserter : inserters) {
+			System.out.println("\t" + inserter.report());
+		}
+		if (pipelineReport != null) {
+			System.out.println("Pipeline Statistics:");
+			System.out.println("\t" + pipelineReport.replace("\n", "\n\t"));
+		}
+		if (incrementalReport != null) {
+			System.out.println("Incremental Statistics:");
+			System.out.println("\t" + incrementalReport.replace("\n", "\n\t"));
+		}
+		if (projectionReport != null) {
+			System.out.println("Projection Statistics:");
+			System.out.println("\t" + projectionReport.replace("\n", "\n\t"));
+		}
+		if (checkpointReport != null) {
+			System.out.println("Checkpoint Statistics:");
+			System.out.println("\t" + checkpointReport.replace("\n", "\n\t"));
+		}
+		if (indexReport != null) {
+			System.out.println("Index Statistics:");
+			System.out.println("\t" + indexReport.replace("\n", "\n\t"));
+		}
+		if (fullTextReport != null) {
+			System.out.println("Full Text Statistics:");
+			System.out.println("\t" + fullTextReport.replace("\n", "\n\t"));
+		}
+		if (traceWriter != null) {
+			System.out.println("Trace Statistics:");
+			System.out.println("\t" + traceWriter.report().replace("\n", "\n\t"));
+		}
+		if (trace != null) {
+			System.out.println("Trace Statistics:");
+			System.out.println("\t" + trace.report().replace("\n", "\n\t"));
+		}
+		writeMetrics(outputPath);
+		if (failed) {
+			System.out.println("Published Bee Gen Model has not been changed, files of the failed extraction are kept in '"
+					+ staging.getPath() + "'");
+		} else {
+			staging.publish(metrics);
+			System.out.println("Publish Statistics:");
+			System.out.println("\t" + staging.report().replace("\n", "\n\t"));
+			System.out.println("BeeGen Model '" + modelName + ".db' has been created in the sub-folder '" + staging.getFolder().getName() + "' of the sub-folder 'bee' of your CA Gen model '" + modelName + "' at location '" + modelPath + "'");
+		}
 	}
 
 	/*
-	 * The Bee Gen Model will be created in a new bee sub-folder of the <your-model>
-	 * .ief folder. Previous model will be overwritten by a newly created one.
+	 * Source reading the CA Gen model, recording the calls into the trace or
+	 * answering them from the trace.
 	 */
-	private String cleanTargetDestination(String modelPath) {
+	private ModelSource createSource() {
+		if (trace != null) {
+			return new ReplayModelSource(trace, catalog, replayLatency);
+		}
+		ModelSource source = new JmmiModelSource(model, catalog);
+		if (traceWriter != null) {
+			return new RecordingModelSource(source, traceWriter);
+		}
+		return source;
+	}
+
+	/*
+	 * Extraction metrics are shown and written to a JSON file next to the
+	 * database.
+	 */
+	private void writeMetrics(String outputPath) throws IOException {
+		for (BulkInserter inserter : inserters) {
+			metrics.addTable(inserter.getTable(), inserter.getRowCount(), inserter.getElapsed());
+		}
+		metrics.setCount("objects", objectcount);
+		metrics.setCount("properties", propertycount);
+		metrics.setCount("associations", associationcount);
+		metrics.setCount("metaObjects", objectmetacount);
+		metrics.setCount("metaProperties", propertymetacount);
+		metrics.setCount("metaAssociations", associationmetacount);
+		metrics.setCount("objectTypes", catalog.getLoadedCount());
+		System.out.println("Extraction Metrics:");
+		System.out.println("\t" + metrics.report().replace("\n", "\n\t"));
+		metrics.writeReport(new File(outputPath + STRING_SLASH + METRICS_JSON));
+		metrics.unregister();
+	}
+
+	/*
+	 * Meta data depends only on the schema level, so it is read from the schema
+	 * once into the cache and copied from there into every model. When the
+	 * cache cannot be written the meta data is read from the schema as before.
+	 */
+	private void prepareMetaCache() {
+		if (!useMetaCache) {
+			return;
+		}
+		metrics.startPhase("metaCache");
+		MetaCache cache = new MetaCache(metaCacheRoot, schema, BeeGenExtractor.VERSION);
+		try {
+			if (cache.prepare()) {
+				System.out.println("Meta data cache created in '" + cache.getFolder() + "' in "
+						+ cache.getBuildTime() / 1000000 + " ms...");
+			} else {
+				System.out.println("Using meta data cache in '" + cache.getFolder() + "'...");
+			}
+			metaCache = cache;
+		} catch (SQLException e) {
+			System.out.println("Meta data cache cannot be used: " + e.getMessage());
+		} catch (IOException e) {
+			System.out.println("Meta data cache cannot be used: " + e.getMessage());
+		}
+	}
+
+	private BulkInserter createInserter(String table, String... columns) throws SQLException {
+		BulkInserter inserter = new BulkInserter(connection, table, columns, batchSize, rowsPerInsert);
+		inserters.add(inserter);
+		return inserter;
+	}
+
+	/*
+	 * The database is built in a new generation folder inside the bee
+	 * sub-folder and is published only when the extraction has completed, so
+	 * readers keep using the published database until then. An interrupted
+	 * extraction with checkpoints is resumed in its generation folder, and an
+	 * incremental update starts from a copy of the published database.
+	 */
+	private String cleanTargetDestination(String modelPath) throws IOException {
 		File file = new File(modelPath);
 		if (!file.isDirectory()) {
 			System.out.println("Specified location is not a path to the folder.");
 			System.exit(9);
 		}
 		file = new File(modelPath + STRING_SLASH + BEE_FOLDER_NAME);
-		if (file.exists()) {
-			file = new File(modelPath + STRING_SLASH + BEE_FOLDER_NAME + STRING_SLASH + modelName + ".db");
-			file.delete();
-			return modelPath + STRING_SLASH + BEE_FOLDER_NAME;
+		if (!file.isDirectory() && !file.mkdir()) {
+			throw new IOException("Cannot create the folder '" + file.getPath() + "'");
 		}
-		if (file.mkdir()) {
-			return modelPath + STRING_SLASH + BEE_FOLDER_NAME;
+		staging = new StagingFolder(file, "sqlite");
+		staging.prepare(commitEvery > 0);
+		if (incremental && staging.copyPublished(modelName + ".db")) {
+			System.out.println("Published Bee Gen Model copied to the new generation to be updated...");
 		}
-		return null;
+		return staging.getPath();
 	}
 
-	private void createDatabaseForModel(String outputPath) {
+	/*
+	 * Rows of the tables are recorded for the manifest and the database is
+	 * closed, so that it can be moved over the published one.
+	 */
+	private void closeDatabase() {
+		try {
+			if (!failed) {
+				for (String table : compact ? ModelSchema.COMPACT_TABLES : TABLES) {
+					staging.setRows(table, countRows(table));
+				}
+				for (String table : META_TABLES) {
+					staging.setRows(table, countRows(table));
+				}
+			}
+			connection.close();
+		} catch (SQLException e) {
+			System.out.println(e.getMessage());
+			failed = true;
+		}
+	}
 
+	/*
+	 * Without checkpoints the database is loaded in one transaction and the
+	 * journal is not needed. With checkpoints every commit has to survive a
+	 * crash of the process, which the write-ahead log ensures.
+	 */
+	private void openDatabase(String outputPath) throws ExtractionException {
 		try {
 			Class.forName("org.sqlite.JDBC");
 			final SQLiteConfig config = new SQLiteConfig();
-			config.setJournalMode(JournalMode.OFF);
+			if (commitEvery > 0) {
+				config.setJournalMode(JournalMode.WAL);
+				config.setSynchronous(SynchronousMode.NORMAL);
+			} else {
+				config.setJournalMode(JournalMode.OFF);
+			}
 			connection = config.createConnection("jdbc:sqlite:" + outputPath + STRING_SLASH + modelName + ".db");
-		} catch (Exception e) {
-			System.err.println(e.getClass().getName() + ": " + e.getMessage());
-			System.exit(0);
+		} catch (ClassNotFoundException e) {
+			throw new ExtractionException("SQLite JDBC driver is not available.", e);
+		} catch (SQLException e) {
+			throw new ExtractionException("Cannot open the SQLite database in '" + outputPath + "'.", e);
 		}
-		
-		String droptbl1 = "DROP TABLE IF EXISTS  GenObjects;";
-		String droptbl2 = "DROP TABLE  IF EXISTS GenAssociations;";
-		String droptbl3 = "DROP TABLE  IF EXISTS GenProperties;";
+		if (metaCache != null) {
+			try {
+				metaCache.attach(connection);
+			} catch (SQLException e) {
+				System.out.println("Meta data cache cannot be used: " + e.getMessage());
+				metaCache = null;
+			}
+		}
+	}
 
-		String droptbl4 = "DROP TABLE  IF EXISTS GenMetaObjects;";
-		String droptbl5 = "DROP TABLE  IF EXISTS GenMetaAssociations;";
-		String droptbl6 = "DROP TABLE  IF EXISTS GenMetaProperties;";
-		
-		String droptbl7 = "DROP TABLE IF EXISTS  GenModel;";
-
-
-		String sqlTblObj = "CREATE TABLE  GenObjects (\n" + "	id INTEGER PRIMARY KEY,\n"
-				+ "  objType  INTEGER NOT NULL,\n" + "  objMnemonic TEXT NOT NULL,\n" + "	name TEXT\n" + ");";
-
-		String sqlTblAsc = "CREATE TABLE  GenAssociations (\n" + "	fromObjid            INTEGER,\n"
-				+ "  ascType                 INTEGER NOT NULL,\n" + "  toObjid                  INTEGER NOT NULL,\n"
-				+ "  inverseAscType   INTEGER NOT NULL,\n" + "  ascMnemonic      TEXT NOT NULL,\n"
-				+ "  card                        TEXT NOT NULL,\n" + "	direction               TEXT,\n"
-				+ "  seqno                      INTEGER NOT NULL,\n" + "PRIMARY KEY (fromObjid, ascType, seqno)" + ");";
-
-		String sqlTblPrp = "CREATE TABLE  GenProperties (\n" + "	objid            INTEGER,\n"
-				+ "  prpType                 INTEGER NOT NULL,\n" + "  mnemonic            TEXT NOT NULL,\n"
-				+ "  format                   TEXT NOT NULL,\n" + "	value                      TEXT,\n"
-				+ "PRIMARY KEY (objid, prpType)" + ");";
-
-		String sqlTblMetaObj = "CREATE TABLE  GenMetaObjects (\n" + "	objType INTEGER PRIMARY KEY,\n"
-				+ " objMnemonic TEXT NOT NULL);";		
-
-		String sqlTblMetaPrp = "CREATE TABLE  GenMetaProperties (\n" 
-				+ "	objType            INTEGER NOT NULL,\n"
-				+ " prpType            INTEGER NOT NULL,\n" 
-				+ " prpMnemonic        TEXT NOT NULL,\n"
-				+ " format             TEXT NOT NULL,\n" 
-				+ " length             INTEGER NOT NULL,\n"
-	 			+ "	defaultInt         INTEGER NOT NULL,\n" 
-	 			+ "	defaultText        TEXT NOT NULL,\n"
-	 			+ "	defaultChar        TEXT NOT NULL,\n"
-				+ "PRIMARY KEY (objtype, prpType)"
-				+ ");";
-		
-		String sqlTblMetaAsc = "CREATE TABLE  GenMetaAssociations (\n" 
-				+ "	fromObjType         INTEGER NOT NULL,\n"
-				+ " ascType             INTEGER NOT NULL,\n" 
-				+ " ascMnemonic         TEXT NOT NULL,\n"
-				+ "	direction           TEXT NOT NULL,\n" 
-				+ " inverseAscType      INTEGER NOT NULL,\n"
-				+ " optionality         TEXT NOT NULL,\n" 
-				+ " card                TEXT NOT NULL,\n"
-				+ " ordered             TEXT NOT NULL,\n" 
-				+ "PRIMARY KEY (fromObjType, ascType)" 
-				+ ");";
-
-		String sqlTblModel = "CREATE TABLE GenModel (\n"
-				+ " key TEXT NOT NULL PRIMARY KEY,\n"
-				+ " value TEXT NOT NULL"
-				+ ");";
-		
+	private void createDatabaseForModel(String outputPath) throws ExtractionException {
+
+		openDatabase(outputPath);
+		if (incremental) {
+			if (isReusable()) {
+				updateDatabaseForModel(outputPath);
+				return;
+			}
+			System.out.println("Existing Bee Gen Model cannot be updated, a new one will be created...");
+		}
+		if (commitEvery > 0) {
+			if (isResumable(outputPath)) {
+				resumeDatabaseForModel(outputPath);
+				return;
+			}
+			checkpoint = new Checkpoint(modelName);
+		}
 		
 		try {
+			metrics.startPhase("tables");
 			Statement stmt = connection.createStatement();
 
-			stmt.execute(droptbl1);
-			stmt.execute(droptbl2);
-			stmt.execute(droptbl3);
-			stmt.execute(droptbl4);
-			stmt.execute(droptbl5);
-			stmt.execute(droptbl6);
-			stmt.execute(droptbl7);
+			ModelSchema.dropTables(stmt);
 
 			System.out.println("Tables dropped...");
 
-			stmt.execute(sqlTblObj);
-			stmt.execute(sqlTblAsc);
-			stmt.execute(sqlTblPrp);
-			
-			stmt.execute(sqlTblMetaObj);			
-			stmt.execute(sqlTblMetaPrp);			
-			stmt.execute(sqlTblMetaAsc);
-			
-			stmt.execute(sqlTblModel);
+			if (compact) {
+				ModelSchema.createCompactTables(stmt);
+			} else {
+				ModelSchema.createTables(stmt);
+			}
+
+			if (checkpoint != null) {
+				ModelSchema.createCheckpointTable(stmt);
+				checkpoint.save(connection);
+			}
 
 			System.out.println("Tables created...");
 
 			connection.setAutoCommit(false);			
-			extractObjectsAndProperties();			
-			populateModelTable();			
-			extractAssociations();			
-			extractMetaDataForObjects();
-			extractMetaDataForProperties();
-			extractMetaDataForAssociations();
-			connection.commit();
+			extractModel(outputPath);
+			loadMetaData();
 			stmt.close();
 			System.out.println("Tables populated...");
+			createIndexes();
+			createFullText();
+			completeCheckpoint();
 		} catch (SQLException e) {
 			System.out.println(e.getMessage());
-		} catch (EncyUnsupportedOperationException e) {
+			failed = true;
+		} catch (ExtractionException e) {
 			System.out.println(e.getMessage());
+			failed = true;
 		}
 	}
-	
-	private void populateModelTable() throws SQLException {
-		String queryModel = "INSERT INTO GenModel  (key, value) VALUES (?,?);";
-		PreparedStatement statementModel = connection.prepareStatement(queryModel);
-		statementModel.setString(1, "name");
-		statementModel.setString(2, model.getName());
-		statementModel.executeUpdate();
-		statementModel.setString(1, "version");
-		statementModel.setString(2, BeeGenExtractor.VERSION);
-		statementModel.executeUpdate(); 
-		statementModel.setString(1, "schema");
-		statementModel.setString(2, BeeGenExtractor.SCHEMA);
-		statementModel.executeUpdate();
-		statementModel.close();
+
+	private void loadMetaData() throws SQLException {
+		metrics.startPhase("metadata");
+		if (checkpoint != null) {
+			saveCheckpoint(Checkpoint.PHASE_METADATA);
+			connection.commit();
+		}
+		populateModelTable();			
+		extractMetaDataForObjects();
+		extractMetaDataForProperties();
+		extractMetaDataForAssociations();
+		saveCheckpoint(Checkpoint.PHASE_INDEXES);
+		metrics.startPhase("commit");
+		connection.commit();
 	}
-	
-	private void generateEnumForProperties(String modelPath) throws IOException {
-		StringBuffer buffer = new StringBuffer();
-		buffer.append("/**\n");
-		buffer.append(" * Generated by BeeGenExtractorSQLite, Version: " + BeeGenExtractor.VERSION + ", Schema: " + BeeGenExtractor.SCHEMA + "\n");
-		buffer.append("**/\n");
-		buffer.append("package eu.jgen.beegen.model.meta;\n");
-		buffer.append("public enum PrpMetaType {\n");
-		for (PrpTypeCode prpTypeCode : PrpTypeCode.values()) {
-			short code = PrpTypeHelper.getCode(prpTypeCode);
-			if (code != -1) {
-				buffer.append("\t" + PrpTypeHelper.getMnemonic(prpTypeCode) + "((short) " + code + "),\n");
+
+	/*
+	 * Extraction can be resumed when the database holds a checkpoint of an
+	 * unfinished extraction of the same model. Otherwise the database is
+	 * removed and created again.
+	 */
+	private boolean isResumable(String outputPath) throws ExtractionException {
+		try {
+			Checkpoint previous = Checkpoint.load(connection);
+			if (previous != null && previous.isFor(modelName) && !previous.isDone()) {
+				checkpoint = previous;
+				return true;
+			}
+			connection.close();
+		} catch (SQLException e) {
+			System.out.println("Existing Bee Gen Model cannot be read, a new one will be created...");
+			try {
+				connection.close();
+			} catch (SQLException e1) {
+				// not usable anyway
 			}
 		}
-		buffer.append("\tINVALID((short) -1),\n");
-		buffer.append("\tDISCOVER((short) -2);\n");
-		buffer.append("\n\tpublic final short code;\n");
-		buffer.append("\n\tPrpMetaType(short code) {\n");
-		buffer.append("\t\tthis.code = code;\n");
-		buffer.append("\t}\n");
-		buffer.append("\n\tpublic PrpMetaType getType(short code) {\n");
-		buffer.append("\t\tfor (PrpMetaType obj : PrpMetaType.values()) {\n");
-		buffer.append("\t\t\tif (obj.code == code) {\n");
-		buffer.append("\t\t\t\treturn obj;\n");
-		buffer.append("\t\t\t}\n");
-		buffer.append("\t\t}\n");
-		buffer.append("\t\treturn PrpMetaType.INVALID;\n");
-		buffer.append("\t}\n");		
-		buffer.append("}");
-		//System.out.println(buffer);	
-		FileWriter 	fileWriter = new FileWriter(modelPath + STRING_SLASH + BEE_FOLDER_NAME + STRING_SLASH +" PrpMetaType.java");
-		fileWriter.write(buffer.toString());
-		fileWriter.close();
+		String fileName = outputPath + STRING_SLASH + modelName + ".db";
+		new File(fileName).delete();
+		new File(fileName + "-wal").delete();
+		new File(fileName + "-shm").delete();
+		openDatabase(outputPath);
+		return false;
 	}
-	
-	private void generateEnumForAssociations(String modelPath) throws IOException {
-		StringBuffer buffer = new StringBuffer();
-		buffer.append("/**\n");
-		buffer.append(" * Generated by BeeGenExtractorSQLite, Version: " + BeeGenExtractor.VERSION + ", Schema: " + BeeGenExtractor.SCHEMA + "\n");
-		buffer.append("**/\n");
-		buffer.append("package eu.jgen.beegen.model.meta;\n");
-		buffer.append("public enum AscMetaType {\n");
-		for (AscTypeCode ascTypeCode : AscTypeCode.values()) {
-			short code = AscTypeHelper.getCode(ascTypeCode);
-			if (code != -1) {
-				buffer.append("\t" + AscTypeHelper.getMnemonic(ascTypeCode) + "((short) " + code + "),\n");
+
+	/*
+	 * Continues the extraction from the phase and the object recorded in the
+	 * checkpoint. Rows committed before the interruption are kept.
+	 */
+	private void resumeDatabaseForModel(String outputPath) {
+		System.out.println("Resuming extraction interrupted in the phase '" + checkpoint.getPhase() + "' after "
+				+ checkpoint.getObjectCount() + " objects...");
+		try {
+			connection.setAutoCommit(false);
+			if (Checkpoint.PHASE_MODEL.equals(checkpoint.getPhase())) {
+				extractModel(outputPath);
+			}
+			if (!Checkpoint.PHASE_INDEXES.equals(checkpoint.getPhase())) {
+				Statement stmt = connection.createStatement();
+				ModelSchema.clearMetaData(stmt);
+				stmt.close();
+				loadMetaData();
 			}
+			System.out.println("Tables populated...");
+			createIndexes();
+			createFullText();
+			completeCheckpoint();
+		} catch (SQLException e) {
+			System.out.println(e.getMessage());
+			failed = true;
+		} catch (ExtractionException e) {
+			System.out.println(e.getMessage());
+			failed = true;
 		}
-		buffer.append("\tINVALID((short) -1),\n");
-		buffer.append("\tDISCOVER((short) -2);\n");
-		buffer.append("\n\tpublic final short code;\n");
-		buffer.append("\n\tAscMetaType(short code) {\n");
-		buffer.append("\t\tthis.code = code;\n");
-		buffer.append("\t}\n");
-		buffer.append("\n\tpublic AscMetaType getType(short code) {\n");
-		buffer.append("\t\tfor (AscMetaType obj : AscMetaType.values()) {\n");
-		buffer.append("\t\t\tif (obj.code == code) {\n");
-		buffer.append("\t\t\t\treturn obj;\n");
-		buffer.append("\t\t\t}\n");
-		buffer.append("\t\t}\n");
-		buffer.append("\t\treturn AscMetaType.INVALID;\n");
-		buffer.append("\t}\n");		
-		buffer.append("}");
-		//System.out.println(buffer);	
-		FileWriter 	fileWriter = new FileWriter(modelPath + STRING_SLASH + BEE_FOLDER_NAME + STRING_SLASH +" AscMetaType.java");
-		fileWriter.write(buffer.toString());
-		fileWriter.close();
 	}
 
-	
-	private void generateEnumForObjects(String modelPath) throws IOException {
-		StringBuffer buffer = new StringBuffer();
-		buffer.append("/**\n");
-		buffer.append(" * Generated by BeeGenExtractorSQLite, Version: " + BeeGenExtractor.VERSION + ", Schema: " + BeeGenExtractor.SCHEMA + "\n");
-		buffer.append("**/\n");
-		buffer.append("package eu.jgen.beegen.model.meta;\n");
-		buffer.append("public enum ObjMetaType {\n");
-		for (ObjTypeCode objTypeCode : ObjTypeCode.values()) {
-			short code = ObjTypeHelper.getCode(objTypeCode);
-			if (code != -1) {
-				buffer.append("\t" + ObjTypeHelper.getMnemonic(objTypeCode) + "((short) " + code + "),\n");
-			}
+	private void saveCheckpoint(String phase) throws SQLException {
+		if (checkpoint != null) {
+			checkpoint.setPhase(phase);
+			checkpoint.save(connection);
 		}
-		buffer.append("\tINVALID((short) -1),\n");
-		buffer.append("\tDISCOVER((short) -2);\n");
-		buffer.append("\n\tpublic final short code;\n");
-		buffer.append("\n\tObjMetaType(short code) {\n");
-		buffer.append("\t\tthis.code = code;\n");
-		buffer.append("\t}\n");
-		buffer.append("\n\tpublic ObjMetaType getType(short code) {\n");
-		buffer.append("\t\tfor (ObjMetaType obj : ObjMetaType.values()) {\n");
-		buffer.append("\t\t\tif (obj.code == code) {\n");
-		buffer.append("\t\t\t\treturn obj;\n");
-		buffer.append("\t\t\t}\n");
-		buffer.append("\t\t}\n");
-		buffer.append("\t\treturn ObjMetaType.INVALID;\n");
-		buffer.append("\t}\n");		
-		buffer.append("}");
-		//System.out.println(buffer);
-		FileWriter 	fileWriter = new FileWriter(modelPath + STRING_SLASH + BEE_FOLDER_NAME + STRING_SLASH +" ObjMetaType.java");
-		fileWriter.write(buffer.toString());
-		fileWriter.close();
 	}
 
 	/*
-	 * Populates tables with meta data.
+	 * Marks the extraction as finished and folds the write-ahead log back into
+	 * the database, which is then a single file again.
 	 */
-	
-	private void extractMetaDataForAssociations() throws SQLException {
-		System.out.println("Loading meta data for associations...");
+	private void completeCheckpoint() throws SQLException {
+		if (checkpoint == null) {
+			return;
+		}
+		saveCheckpoint(Checkpoint.PHASE_DONE);
+		connection.commit();
+		connection.setAutoCommit(true);
+		Statement stmt = connection.createStatement();
+		stmt.execute("PRAGMA journal_mode=DELETE;");
+		stmt.close();
+	}
 
-		String queryMetaAsc = "INSERT INTO GenMetaAssociations  (fromObjType, ascType, ascMnemonic, direction, inverseAscType, optionality, card, ordered) VALUES (?,?,?,?,?,?,?,?);";
-		PreparedStatement statementAsc = connection.prepareStatement(queryMetaAsc);
-		for (ObjTypeCode objTypeCode : ObjTypeCode.values()) {
-			if (objTypeCode == ObjTypeCode.HORIZUS ||
-					objTypeCode == ObjTypeCode.GUIPROP) {
-				continue;
+	/*
+	 * Existing database can be updated when it has been created for the same
+	 * model by the same version of the extractor and the same schema level.
+	 */
+	private boolean isReusable() {
+		try {
+			Statement stmt = connection.createStatement();
+			ResultSet resultSet = stmt.executeQuery("SELECT key, value FROM GenModel;");
+			Map<String, String> values = new HashMap<String, String>();
+			while (resultSet.next()) {
+				values.put(resultSet.getString(1), resultSet.getString(2));
 			}
-			for (AscTypeCode ascTypeCode : ObjTypeHelper.getAssociations(objTypeCode)) {
-				statementAsc.setInt(1, ObjTypeHelper.getCode(objTypeCode));
-				statementAsc.setInt(2, AscTypeHelper.getCode(ascTypeCode));
-				statementAsc.setString(3, AscTypeHelper.getMnemonic(ascTypeCode));
-				if (AscTypeHelper.isForward(objTypeCode, ascTypeCode)) {
-					statementAsc.setString(4, "F");
-				} else {
-					statementAsc.setString(4, "B");
-				}			
-				statementAsc.setInt(5,100);
-				if (AscTypeHelper.isIgnorable(objTypeCode, ascTypeCode)) {
-					statementAsc.setString(6, "Y");
-				} else {
-					statementAsc.setString(6, "N");
-				}
-				if (AscTypeHelper.isOneToMany(objTypeCode, ascTypeCode)) {
-					statementAsc.setString(7, "M");
-				} else {
-					statementAsc.setString(7, "1");
-				}
-				if (AscTypeHelper.isOrdered(objTypeCode, ascTypeCode)) {
-					statementAsc.setString(8, "Y");
-				} else {
-					statementAsc.setString(8, "N");
-				}	
-				statementAsc.executeUpdate();
-				associationmetacount++;				
-			}			
+			resultSet.close();
+			stmt.close();
+			Checkpoint previous = Checkpoint.load(connection);
+			if (previous != null && !previous.isDone()) {
+				return false;
+			}
+			return !ModelSchema.isCompact(connection) && modelName.equals(values.get("name")) && BeeGenExtractor.VERSION.equals(values.get("version"))
+					&& BeeGenExtractor.SCHEMA.equals(values.get("schema"));
+		} catch (SQLException e) {
+			return false;
 		}
 	}
 
-	private void extractMetaDataForProperties() throws SQLException {
-		System.out.println("Loading meta data for properties...");
-		String queryMetaPrp = "INSERT INTO GenMetaProperties  (objType, prpType, prpMnemonic, format, length, defaultInt, defaultText, defaultChar) VALUES (?,?,?,?,?,?,?,?);";
-		PreparedStatement statementPrp = connection.prepareStatement(queryMetaPrp);
-		for (ObjTypeCode objTypeCode : ObjTypeCode.values()) {
-			for (PrpTypeCode prpTypeCode : ObjTypeHelper.getProperties(objTypeCode)) {
-				statementPrp.setInt(1, ObjTypeHelper.getCode(objTypeCode));
-				statementPrp.setInt(2, PrpTypeHelper.getCode(prpTypeCode));
-				statementPrp.setString(3, PrpTypeHelper.getMnemonic(prpTypeCode));
-				String format = PrpTypeHelper.getFormat(objTypeCode, prpTypeCode).name();
-				statementPrp.setString(4,  format);
-				int length = PrpTypeHelper.getLength(objTypeCode, prpTypeCode);
-				statementPrp.setInt(5, length);
-				
-				switch (format) {
-				case "NAME":
-				case "LOADNAME":
-				case "TEXT":
-					statementPrp.setDouble(6, 0);
-					if (length == 0) {
-						statementPrp.setString(7,"");
-					} else {
-						statementPrp.setString(7, PrpTypeHelper.getDefaultTxtValue(objTypeCode, prpTypeCode));							
-					}
-					statementPrp.setString(8,"");
-					break;
-				case "INT":
-				case "SINT":
-					statementPrp.setDouble(6, PrpTypeHelper.getDefaultIntValue(objTypeCode, prpTypeCode));
-					statementPrp.setString(7, "");	
-					statementPrp.setString(8,"");
-					break;					
-				case "CHAR":
-					statementPrp.setDouble(6, 0);	
-					statementPrp.setString(7,"");
-				 	statementPrp.setString(8, String.valueOf(PrpTypeHelper.getDefaultChrValue(objTypeCode, prpTypeCode)));
-			    	break;
-				
-				default:
-					statementPrp.setDouble(6, 0);
-					statementPrp.setString(7,"");
-					statementPrp.setString(8,"");
-					break;
-				}	    	 	
- 				statementPrp.executeUpdate();
-				propertymetacount++;
+	/*
+	 * Updates existing database. Only new and modified objects, and the objects
+	 * associated with them, are read and loaded again, objects deleted from the
+	 * model are removed. Meta data tables are kept as they are.
+	 */
+	private void updateDatabaseForModel(String outputPath) {
+		try {
+			connection.setAutoCommit(false);
+			System.out.println("Reading modification stamps of stored objects...");
+			metrics.startPhase("stamps");
+			IncrementalFilter filter = IncrementalFilter.load(connection);
+			ObjectRemover remover = new ObjectRemover(connection);
+			extractModel(outputPath, filter, remover);
+			System.out.println("Removing deleted objects...");
+			metrics.startPhase("remove");
+			remover.removeAll(filter.getVanished());
+			remover.close();
+			metrics.startPhase("commit");
+			connection.commit();
+			long written = 0;
+			for (BulkInserter inserter : inserters) {
+				written += inserter.getRowCount();
 			}
+			long kept = countRows("GenObjects") + countRows("GenProperties") + countRows("GenAssociations") - written;
+			createIndexes();
+			if (ModelSchema.hasTable(connection, ModelSchema.FULL_TEXT_TABLE)) {
+				fullText = true;
+			}
+			createFullText();
+			incrementalReport = "Number of new objects is " + filter.getNewCount()
+					+ "\nNumber of changed objects is " + filter.getChangedCount()
+					+ "\nNumber of unchanged objects skipped is " + filter.getUnchangedCount()
+					+ "\nNumber of unchanged objects loaded again for their associations is " + neighbourcount
+					+ "\nNumber of deleted objects is " + remover.getRemovedCount()
+					+ "\nNumber of rows written is " + written
+					+ "\nNumber of rows deleted is " + remover.getRowCount()
+					+ "\nNumber of rows kept unchanged is " + kept;
+			System.out.println("Tables updated...");
+		} catch (SQLException e) {
+			System.out.println(e.getMessage());
+			failed = true;
+		} catch (ExtractionException e) {
+			System.out.println(e.getMessage());
+			failed = true;
 		}
 	}
 
-	private void extractMetaDataForObjects() throws SQLException {
-		System.out.println("Loading meta data for objects...");
-		String queryMetaObj = "INSERT INTO GenMetaObjects  (objType, objMnemonic) VALUES (?,?);";
-		PreparedStatement statementObj = connection.prepareStatement(queryMetaObj);
-		for (ObjTypeCode objTypeCode : ObjTypeCode.values()) {
-			statementObj.setInt(1, ObjTypeHelper.getCode(objTypeCode));
-			statementObj.setString(2, objTypeCode.toString());
-			statementObj.executeUpdate();
-			objectmetacount++;
+	/*
+	 * Secondary indexes are created once the tables are loaded.
+	 */
+	private void createIndexes() throws SQLException {
+		if (!indexes) {
+			return;
 		}
+		System.out.println("Creating indexes...");
+		metrics.startPhase("indexes");
+		indexReport = ModelSchema.createIndexes(connection, compact);
+		connection.commit();
 	}
 
 	/*
-	 * Populates tables creating model objects and their properties.
+	 * Full text index is filled in bulk from the loaded tables. It is created
+	 * again when the model is updated incrementally, so that it does not show
+	 * values which are no longer in the model.
 	 */
-	private void extractObjectsAndProperties() throws EncyUnsupportedOperationException, SQLException {
-		System.out.println("Loading objects and properties...");
-		String queryObj = "INSERT INTO GenObjects  (id, objType, objMnemonic, name ) VALUES (?,?,?,?);";
-		PreparedStatement statementObj = connection.prepareStatement(queryObj);
-
-		String queryPrp = "INSERT INTO GenProperties  (objid, prpType, mnemonic, format, value ) VALUES (?,?,?,?,?);";
-		PreparedStatement statementPrp = connection.prepareStatement(queryPrp);
-
-		for (ObjId objId : model.getObjIds()) {
-			MMObj mmObj = MMObj.getInstance(model, objId);
-			statementObj.setLong(1, objId.getValue());
-			statementObj.setShort(2, ObjTypeHelper.getCode(mmObj.getObjTypeCode()));
-			statementObj.setString(3, ObjTypeHelper.getMnemonic(mmObj.getObjTypeCode()));
-
-			List<PrpTypeCode> listprp = ObjTypeHelper.getProperties(mmObj.getObjTypeCode());
-			for (PrpTypeCode prp : listprp) {
-				PrpFormat format = PrpTypeHelper.getFormat(mmObj.getObjTypeCode(), prp);
-
-				statementPrp.setLong(1, objId.getValue());
-				statementPrp.setShort(2, PrpTypeHelper.getCode(prp));
-				statementPrp.setString(3, prp.name());
-				statementPrp.setString(4, format.name());
-
-				if (format == PrpFormat.TEXT || format == PrpFormat.LOADNAME || format == PrpFormat.NAME) {
-					String textValue = mmObj.getTextProperty(prp);
-					if (textValue != PrpTypeHelper.getDefaultTxtValue(mmObj.getObjTypeCode(), prp)
-							&& textValue.length() != 0) {
-						if (format == PrpFormat.NAME) {
-							statementObj.setString(4, textValue);
-						}
-						statementPrp.setString(5, textValue);
-						statementPrp.executeUpdate();
-						propertycount++;
-						continue;
-					}
-				} else if (format == PrpFormat.CHAR) {
-					char charValue = mmObj.getCharProperty(prp);
-					if (charValue != PrpTypeHelper.getDefaultChrValue(mmObj.getObjTypeCode(), prp)) {
-
-						statementPrp.setString(5, String.valueOf(charValue));
-						statementPrp.executeUpdate();
-						propertycount++;
-						continue;
-					}
-				} else if (format == PrpFormat.INT || format == PrpFormat.SINT) {
-					int intValue = mmObj.getIntProperty(prp);
-					if (intValue != PrpTypeHelper.getDefaultIntValue(mmObj.getObjTypeCode(), prp)) {
-
-						statementPrp.setString(5, String.valueOf(intValue));
-						statementPrp.executeUpdate();
-						propertycount++;
-						continue;
-					}
-				}
-			}
-			statementObj.executeUpdate();
-			objectcount++;
+	private void createFullText() throws SQLException {
+		if (!fullText) {
+			return;
 		}
+		System.out.println("Creating full text index...");
+		metrics.startPhase("fullText");
+		fullTextReport = ModelSchema.createFullText(connection);
+		connection.commit();
+	}
+
+	private long countRows(String table) throws SQLException {
+		Statement stmt = connection.createStatement();
+		ResultSet resultSet = stmt.executeQuery("SELECT COUNT(*) FROM " + table + ";");
+		resultSet.next();
+		long count = resultSet.getLong(1);
+		resultSet.close();
+		stmt.close();
+		return count;
 	}
 
 	/*
-	 * Populates tables creating model associations.
+	 * Populates tables creating model objects, their properties and associations
+	 * in a single pass over the model. Optionally JSON files are created in the
+	 * same pass.
 	 */
-	private void extractAssociations() throws EncyUnsupportedOperationException, SQLException {
-		System.out.println("Loading associations...");
-		String queryAsc = "INSERT INTO GenAssociations  (fromObjid, ascType, toObjid, inverseAscType, ascMnemonic, card, direction, seqno ) VALUES (?,?,?,?,?,?,?,?);";
-		PreparedStatement statementAsc = connection.prepareStatement(queryAsc);
-		List<ObjId> objects = model.getObjIds();
-		for (ObjId objId : objects) {
-			MMObj mmObj = MMObj.getInstance(model, objId);
-			List<AscTypeCode> listasc = ObjTypeHelper.getAssociations(mmObj.getObjTypeCode());
-			for (AscTypeCode asc : listasc) {
-				String direction = "B";
-				if (AscTypeHelper.isForward(mmObj.getObjTypeCode(), asc)) {
-					direction = "F";
-				}
-				if (AscTypeHelper.isOneToMany(mmObj.getObjTypeCode(), asc)) {
-					List<MMObj> list = mmObj.followAssociationMany(asc);
-					int seqno = 0;
-					for (MMObj o : list) {
-						statementAsc.setLong(1, objId.getValue());
-						statementAsc.setShort(2, AscTypeHelper.getCode(asc));
-						statementAsc.setLong(3, o.getId().getValue());
-						statementAsc.setShort(4,
-								AscTypeHelper.getCode(AscTypeHelper.getInverse(mmObj.getObjTypeCode(), asc)));
-						statementAsc.setString(5, asc.name());
-						statementAsc.setString(6, "M");
-						statementAsc.setString(7, direction);
-						statementAsc.setLong(8, seqno);
-						statementAsc.executeUpdate();
-						associationcount++;
-						seqno = seqno + 1;
-					}
-				} else {
-					MMObj one = mmObj.followAssociationOne(asc);
-					if (one != null) {
-						statementAsc.setLong(1, objId.getValue());
-						statementAsc.setShort(2, AscTypeHelper.getCode(asc));
-						statementAsc.setLong(3, one.getId().getValue());
-						statementAsc.setShort(4,
-								AscTypeHelper.getCode(AscTypeHelper.getInverse(mmObj.getObjTypeCode(), asc)));
-						statementAsc.setString(5, asc.name());
-						statementAsc.setString(6, "1");
-						statementAsc.setString(7, direction);
-						statementAsc.setLong(8, 0);
-						statementAsc.executeUpdate();
-						associationcount++;
-					}
+	private void extractModel(String outputPath) throws SQLException, ExtractionException {
+		extractModel(outputPath, null, null);
+	}
+
+	private void extractModel(String outputPath, IncrementalFilter filter, ObjectRemover remover)
+			throws SQLException, ExtractionException {
+		System.out.println("Loading objects, properties and associations...");
+		metrics.startPhase("model");
+		MeteredModelSource source = new MeteredModelSource(createSource(), metrics);
+		ModelTraversal traversal;
+		if (pipeline) {
+			traversal = new PipelinedTraversal(source, readBatch, queueDepth);
+		} else {
+			traversal = new ModelTraversal(source);
+		}
+		if (projection != null) {
+			traversal.setProjection(projection);
+		}
+		CompactModelSink compactSink = null;
+		CheckpointSink checkpointSink = null;
+		if (compact) {
+			compactSink = new CompactModelSink(connection,
+					createInserter("GenObjectsData", "id", "objType", "name"),
+					createInserter("GenPropertiesData", "objid", "prpType", "intValue", "textId"),
+					createInserter("GenAssociationsData", "fromObjid", "ascType", "seqno", "toObjid"),
+					createInserter("GenTexts", "id", "value"));
+			traversal.addSink(compactSink);
+		} else {
+			BulkInserter statementObj = createInserter("GenObjects", "id", "objType", "objMnemonic", "name");
+			BulkInserter statementPrp = createInserter("GenProperties", "objid", "prpType", "mnemonic", "format",
+					"value");
+			BulkInserter statementAsc = createInserter("GenAssociations", "fromObjid", "ascType", "toObjid",
+					"inverseAscType", "ascMnemonic", "card", "direction", "seqno");
+			SQLiteModelSink sink = new SQLiteModelSink(statementObj, statementPrp, statementAsc);
+			if (filter != null) {
+				traversal.setFilter(filter);
+				sink.setRemover(remover);
+			}
+			if (checkpoint != null) {
+				if (checkpoint.getLastObjid() != -1) {
+					traversal.setResumeAfter(ObjId.getInstance(checkpoint.getLastObjid()));
 				}
+				checkpointSink = new CheckpointSink(sink, connection, checkpoint, commitEvery, statementObj,
+						statementPrp, statementAsc);
+				traversal.addSink(checkpointSink);
+			} else {
+				traversal.addSink(sink);
 			}
 		}
+		if (withJson && filter != null) {
+			System.out.println("JSON files are not created when the model is updated incrementally.");
+		} else if (withJson) {
+			try {
+				traversal.addSink(new MeteredModelSink(BeeGenExtractorJSON.createSink(outputPath), "JSON files", metrics));
+			} catch (FileNotFoundException e) {
+				throw new ExtractionException("Problem with creating JSON files.", e);
+			}
+		}
+		traversal.run();
+		if (filter != null) {
+			reloadNeighbours(source, filter, remover);
+		}
+		if (pipeline) {
+			pipelineReport = ((PipelinedTraversal) traversal).report();
+		}
+		objectcount = traversal.getObjectCount();
+		propertycount = traversal.getPropertyCount();
+		associationcount = traversal.getAssociationCount();
+		if (compactSink != null) {
+			textcount = compactSink.getTextCount();
+		}
+		if (projection != null) {
+			projectionReport = "Projection is " + projection + "\nNumber of objects reached through associations is "
+					+ traversal.getReachedCount() + "\nNumber of associations leading outside the projection is "
+					+ traversal.getDroppedCount();
+		}
+		if (checkpointSink != null) {
+			objectcount = (int) checkpoint.getObjectCount();
+			propertycount = (int) checkpoint.getPropertyCount();
+			associationcount = (int) checkpoint.getAssociationCount();
+			checkpointReport = "Number of objects loaded before the extraction was resumed is "
+					+ traversal.getResumeIndex() + "\n" + checkpointSink.report();
+			metrics.setCount("commits", checkpointSink.getCommitCount());
+			metrics.setCount("commitMillis", checkpointSink.getElapsed() / 1000000);
+		}
+	}
+	
+	/*
+	 * Unchanged objects associated with a loaded object are loaded again once
+	 * all objects have been seen, so that the associations stored from their
+	 * end match the model.
+	 */
+	private void reloadNeighbours(ModelSource source, IncrementalFilter filter, ObjectRemover remover)
+			throws SQLException, ExtractionException {
+		List<ObjId> objIds = remover.getNeighbours(filter.getVanished());
+		neighbourcount = objIds.size();
+		if (objIds.isEmpty()) {
+			return;
+		}
+		System.out.println("Loading again " + objIds.size() + " objects associated with changed objects...");
+		ModelTraversal traversal = new ModelTraversal(source);
+		traversal.setObjIds(objIds);
+		SQLiteModelSink sink = new SQLiteModelSink(
+				createInserter("GenObjects", "id", "objType", "objMnemonic", "name"),
+				createInserter("GenProperties", "objid", "prpType", "mnemonic", "format", "value"),
+				createInserter("GenAssociations", "fromObjid", "ascType", "toObjid", "inverseAscType", "ascMnemonic",
+						"card", "direction", "seqno"));
+		sink.setRemover(remover);
+		traversal.addSink(sink);
+		traversal.run();
+	}
+
+	private void populateModelTable() throws SQLException {
+		String queryModel = "INSERT INTO GenModel  (key, value) VALUES (?,?);";
+		PreparedStatement statementModel = connection.prepareStatement(queryModel);
+		statementModel.setString(1, "name");
+		statementModel.setString(2, modelName);
+		statementModel.executeUpdate();
+		statementModel.setString(1, "version");
+		statementModel.setString(2, BeeGenExtractor.VERSION);
+		statementModel.executeUpdate(); 
+		statementModel.setString(1, "schema");
+		statementModel.setString(2, BeeGenExtractor.SCHEMA);
+		statementModel.executeUpdate();
+		if (projection != null) {
+			statementModel.setString(1, "projection");
+			statementModel.setString(2, projection.toString());
+			statementModel.executeUpdate();
+		}
+		statementModel.close();
+	}
+	
+	/*
+	 * Enums of the object, property and association types are written to the
+	 * bee sub-folder, with lookup tables by code and the properties and
+	 * associations of every object type.
+	 */
+	private void generateMetaTypes(String outputPath) throws IOException {
+		if (metaCache != null) {
+			metaCache.copyEnums(new File(outputPath));
+		} else {
+			new MetaTypeGenerator(schema).writeAll(new File(outputPath));
+		}
+	}
+
+	private void extractMetaDataForAssociations() throws SQLException {
+		System.out.println("Loading meta data for associations...");
+		if (metaCache != null) {
+			associationmetacount = copyMetaData("GenMetaAssociations", MetaDataWriter.ASSOCIATION_COLUMNS);
+		} else {
+			associationmetacount = MetaDataWriter.writeAssociations(schema,
+					createInserter("GenMetaAssociations", MetaDataWriter.ASSOCIATION_COLUMNS));
+		}
+	}
+
+	private void extractMetaDataForProperties() throws SQLException {
+		System.out.println("Loading meta data for properties...");
+		if (metaCache != null) {
+			propertymetacount = copyMetaData("GenMetaProperties", MetaDataWriter.PROPERTY_COLUMNS);
+		} else {
+			propertymetacount = MetaDataWriter.writeProperties(schema,
+					createInserter("GenMetaProperties", MetaDataWriter.PROPERTY_COLUMNS));
+		}
+	}
+
+	private void extractMetaDataForObjects() throws SQLException {
+		System.out.println("Loading meta data for objects...");
+		if (metaCache != null) {
+			objectmetacount = copyMetaData("GenMetaObjects", MetaDataWriter.OBJECT_COLUMNS);
+		} else {
+			objectmetacount = MetaDataWriter.writeObjects(schema,
+					createInserter("GenMetaObjects", MetaDataWriter.OBJECT_COLUMNS));
+		}
+	}
+
+	private int copyMetaData(String table, String[] columns) throws SQLException {
+		long start = System.nanoTime();
+		int count = metaCache.copyTable(connection, table, columns);
+		metrics.addTable(table, count, System.nanoTime() - start);
+		return count;
 	}
 
 }
@@ -0,0 +1,212 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.sqlite;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/*
+ * Loads rows into a single table using prepared statements executed in batches.
+ * Optionally several rows are packed into one INSERT ... VALUES (...),(...)
+ * statement. Values are set column by column, starting from 1, and the row is
+ * completed calling endRow(). Remaining rows are written when the inserter is
+ * closed.
+ */
+public class BulkInserter {
+
+	/*
+	 * Default limit of host parameters in a single SQLite statement.
+	 */
+	private static final int MAX_VARIABLES = 999;
+
+	private final String table;
+	private final int columns;
+	private final int batchSize;
+	private final int rowsPerInsert;
+
+	private final PreparedStatement statement;
+	private final PreparedStatement statementSingle;
+	private final Object[] pending;
+	private int pendingRows;
+	private int batchedStatements;
+
+	private long rowcount;
+	private long elapsed;
+
+	public BulkInserter(Connection connection, String table, String[] columns, int batchSize, int rowsPerInsert)
+			throws SQLException {
+		this.table = table;
+		this.columns = columns.length;
+		this.batchSize = Math.max(1, batchSize);
+		this.rowsPerInsert = Math.max(1, Math.min(rowsPerInsert, MAX_VARIABLES / columns.length));
+		this.statementSingle = connection.prepareStatement(createInsert(table, columns, 1));
+		if (this.rowsPerInsert == 1) {
+			this.statement = statementSingle;
+			this.pending = null;
+		} else {
+			this.statement = connection.prepareStatement(createInsert(table, columns, this.rowsPerInsert));
+			this.pending = new Object[this.rowsPerInsert * this.columns];
+		}
+	}
+
+	private static String createInsert(String table, String[] columns, int rows) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("INSERT INTO ").append(table).append(" (");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append(columns[i]);
+		}
+		builder.append(") VALUES ");
+		for (int row = 0; row < rows; row++) {
+			if (row > 0) {
+				builder.append(",");
+			}
+			builder.append("(");
+			for (int i = 0; i < columns.length; i++) {
+				if (i > 0) {
+					builder.append(",");
+				}
+				builder.append("?");
+			}
+			builder.append(")");
+		}
+		builder.append(";");
+		return builder.toString();
+	}
+
+	public void setLong(int column, long value) throws SQLException {
+		if (pending == null) {
+			statement.setLong(column, value);
+		} else {
+			pending[pendingRows * columns + column - 1] = Long.valueOf(value);
+		}
+	}
+
+	public void setInt(int column, int value) throws SQLException {
+		if (pending == null) {
+			statement.setInt(column, value);
+		} else {
+			pending[pendingRows * columns + column - 1] = Integer.valueOf(value);
+		}
+	}
+
+	public void setDouble(int column, double value) throws SQLException {
+		if (pending == null) {
+			statement.setDouble(column, value);
+		} else {
+			pending[pendingRows * columns + column - 1] = Double.valueOf(value);
+		}
+	}
+
+	public void setString(int column, String value) throws SQLException {
+		if (pending == null) {
+			statement.setString(column, value);
+		} else {
+			pending[pendingRows * columns + column - 1] = value;
+		}
+	}
+
+	public void setNull(int column) throws SQLException {
+		if (pending == null) {
+			statement.setNull(column, Types.NULL);
+		} else {
+			pending[pendingRows * columns + column - 1] = null;
+		}
+	}
+
+	public void endRow() throws SQLException {
+		long start = System.nanoTime();
+		rowcount++;
+		if (pending == null) {
+			statement.addBatch();
+			batchedStatements++;
+		} else if (++pendingRows == rowsPerInsert) {
+			for (int i = 0; i < pending.length; i++) {
+				statement.setObject(i + 1, pending[i]);
+			}
+			statement.addBatch();
+			batchedStatements++;
+			pendingRows = 0;
+		}
+		if (batchedStatements >= batchSize) {
+			statement.executeBatch();
+			batchedStatements = 0;
+		}
+		elapsed += System.nanoTime() - start;
+	}
+
+	/*
+	 * Writes all rows collected so far.
+	 */
+	public void flush() throws SQLException {
+		long start = System.nanoTime();
+		if (batchedStatements > 0) {
+			statement.executeBatch();
+			batchedStatements = 0;
+		}
+		if (pendingRows > 0) {
+			for (int row = 0; row < pendingRows; row++) {
+				for (int i = 0; i < columns; i++) {
+					statementSingle.setObject(i + 1, pending[row * columns + i]);
+				}
+				statementSingle.addBatch();
+			}
+			statementSingle.executeBatch();
+			pendingRows = 0;
+		}
+		elapsed += System.nanoTime() - start;
+	}
+
+	public void close() throws SQLException {
+		flush();
+		if (statement != statementSingle) {
+			statement.close();
+		}
+		statementSingle.close();
+	}
+
+	public String getTable() {
+		return table;
+	}
+
+	public long getRowCount() {
+		return rowcount;
+	}
+
+	/*
+	 * Time spent binding and executing statements, in nanoseconds.
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	public long getRowsPerSecond() {
+		if (elapsed == 0) {
+			return 0;
+		}
+		return rowcount * 1000000000L / elapsed;
+	}
+
+	public String report() {
+		return table + ": " + rowcount + " rows in " + (elapsed / 1000000) + " ms, " + getRowsPerSecond()
+				+ " rows per second";
+	}
+
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.sqlite;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import eu.jgen.bee.extractor.BeeGenExtractor;
+
+/*
+ * Progress of an extraction committed to the database, kept in the single row
+ * of the table GenCheckpoint. It tells the phase the extraction reached, and in
+ * the model phase the last object whose rows have been committed together with
+ * the number of rows loaded so far. An extraction interrupted by a crash can
+ * continue from that point, as long as it is for the same model, extractor
+ * version and schema level.
+ */
+public class Checkpoint {
+
+	public static final String PHASE_MODEL = "model";
+	public static final String PHASE_METADATA = "metadata";
+	public static final String PHASE_INDEXES = "indexes";
+	public static final String PHASE_DONE = "done";
+
+	private static final String SELECT_CHECKPOINT = "SELECT modelName, version, schemaLevel, phase, lastObjid, "
+			+ "objectCount, propertyCount, associationCount FROM GenCheckpoint WHERE id = 1;";
+	private static final String SAVE_CHECKPOINT = "INSERT OR REPLACE INTO GenCheckpoint (id, modelName, version, "
+			+ "schemaLevel, phase, lastObjid, objectCount, propertyCount, associationCount) "
+			+ "VALUES (1, ?, ?, ?, ?, ?, ?, ?, ?);";
+
+	private final String modelName;
+	private final String version;
+	private final String schemaLevel;
+	private String phase = PHASE_MODEL;
+	private long lastObjid = -1;
+	private long objectCount;
+	private long propertyCount;
+	private long associationCount;
+
+	public Checkpoint(String modelName) {
+		this(modelName, BeeGenExtractor.VERSION, BeeGenExtractor.SCHEMA);
+	}
+
+	private Checkpoint(String modelName, String version, String schemaLevel) {
+		this.modelName = modelName;
+		this.version = version;
+		this.schemaLevel = schemaLevel;
+	}
+
+	/*
+	 * Reads the checkpoint stored in the database, or returns null when there is
+	 * none.
+	 */
+	public static Checkpoint load(Connection connection) throws SQLException {
+		if (!ModelSchema.hasTable(connection, "GenCheckpoint")) {
+			return null;
+		}
+		Statement stmt = connection.createStatement();
+		try {
+			ResultSet resultSet = stmt.executeQuery(SELECT_CHECKPOINT);
+			if (!resultSet.next()) {
+				return null;
+			}
+			Checkpoint checkpoint = new Checkpoint(resultSet.getString(1), resultSet.getString(2),
+					resultSet.getString(3));
+			checkpoint.phase = resultSet.getString(4);
+			checkpoint.lastObjid = resultSet.getLong(5);
+			if (resultSet.wasNull()) {
+				checkpoint.lastObjid = -1;
+			}
+			checkpoint.objectCount = resultSet.getLong(6);
+			checkpoint.propertyCount = resultSet.getLong(7);
+			checkpoint.associationCount = resultSet.getLong(8);
+			resultSet.close();
+			return checkpoint;
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/*
+	 * Writes the checkpoint in the current transaction.
+	 */
+	public void save(Connection connection) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement(SAVE_CHECKPOINT);
+		try {
+			statement.setString(1, modelName);
+			statement.setString(2, version);
+			statement.setString(3, schemaLevel);
+			statement.setString(4, phase);
+			if (lastObjid == -1) {
+				statement.setNull(5, Types.INTEGER);
+			} else {
+				statement.setLong(5, lastObjid);
+			}
+			statement.setLong(6, objectCount);
+			statement.setLong(7, propertyCount);
+			statement.setLong(8, associationCount);
+			statement.executeUpdate();
+		} finally {
+			statement.close();
+		}
+	}
+
+	/*
+	 * Tells whether the checkpoint has been written by an extraction of the
+	 * model which can be continued by this extractor.
+	 */
+	public boolean isFor(String modelName) {
+		return this.modelName.equals(modelName) && BeeGenExtractor.VERSION.equals(version)
+				&& BeeGenExtractor.SCHEMA.equals(schemaLevel);
+	}
+
+	public boolean isDone() {
+		return PHASE_DONE.equals(phase);
+	}
+
+	public String getPhase() {
+		return phase;
+	}
+
+	public void setPhase(String phase) {
+		this.phase = phase;
+	}
+
+	/*
+	 * Id of the last object loaded, or -1 when no object has been loaded yet.
+	 */
+	public long getLastObjid() {
+		return lastObjid;
+	}
+
+	/*
+	 * Counts the object as loaded.
+	 */
+	public void add(long objid, int properties, int associations) {
+		lastObjid = objid;
+		objectCount++;
+		propertyCount += properties;
+		associationCount += associations;
+	}
+
+	public long getObjectCount() {
+		return objectCount;
+	}
+
+	public long getPropertyCount() {
+		return propertyCount;
+	}
+
+	public long getAssociationCount() {
+		return associationCount;
+	}
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.sqlite;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ObjectRecord;
+
+/*
+ * Sink loading the tables through another sink and committing every given
+ * number of objects. Before each commit the rows held by the inserters are
+ * written and the checkpoint is moved to the last object, so the committed
+ * rows and the checkpoint always agree. The time of each commit is measured,
+ * without writing of the rows, which the inserters measure themselves.
+ */
+public class CheckpointSink implements ModelSink {
+
+	private final ModelSink sink;
+	private final Connection connection;
+	private final BulkInserter[] inserters;
+	private final Checkpoint checkpoint;
+	private final int commitEvery;
+	private int pending;
+
+	private int commitcount;
+	private long elapsed;
+	private long maxElapsed;
+
+	public CheckpointSink(ModelSink sink, Connection connection, Checkpoint checkpoint, int commitEvery,
+			BulkInserter... inserters) {
+		this.sink = sink;
+		this.connection = connection;
+		this.checkpoint = checkpoint;
+		this.commitEvery = Math.max(1, commitEvery);
+		this.inserters = inserters;
+	}
+
+	public void begin(ModelSource source) throws ExtractionException {
+		sink.begin(source);
+	}
+
+	public void object(ObjectRecord record) throws ExtractionException {
+		sink.object(record);
+		checkpoint.add(record.getId(), record.getPropertyCount(), record.getAssociationCount());
+		if (++pending >= commitEvery) {
+			commit();
+		}
+	}
+
+	public void end() throws ExtractionException {
+		sink.end();
+		commit();
+	}
+
+	private void commit() throws ExtractionException {
+		long time;
+		try {
+			for (BulkInserter inserter : inserters) {
+				inserter.flush();
+			}
+			long start = System.nanoTime();
+			checkpoint.save(connection);
+			connection.commit();
+			time = System.nanoTime() - start;
+		} catch (SQLException e) {
+			throw new ExtractionException("Problem with committing objects up to " + checkpoint.getLastObjid() + ".",
+					e);
+		}
+		elapsed += time;
+		if (time > maxElapsed) {
+			maxElapsed = time;
+		}
+		commitcount++;
+		pending = 0;
+	}
+
+	public int getCommitCount() {
+		return commitcount;
+	}
+
+	/*
+	 * Time spent in commits, in nanoseconds.
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	public String report() {
+		long average = commitcount == 0 ? 0 : elapsed / commitcount;
+		return "Number of commits is " + commitcount + ", one every " + commitEvery + " objects"
+				+ "\nTime spent committing is " + elapsed / 1000000 + " ms, on average "
+				+ String.format("%.2f", average / 1000000.0) + " ms, at most "
+				+ String.format("%.2f", maxElapsed / 1000000.0) + " ms";
+	}
+
+}
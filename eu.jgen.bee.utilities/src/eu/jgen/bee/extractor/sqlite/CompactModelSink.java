@@ -0,0 +1,172 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.sqlite;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.ca.gen.jmmi.util.PrpFormat;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.schema.ObjTypeEntry;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ObjectRecord;
+
+/*
+ * Loads objects, properties and associations to the tables of the compact
+ * layout described in ModelSchema. Texts are numbered in the order they are
+ * first met. The type tables are written at the end from the schema entries
+ * of all loaded objects, so they describe exactly the loaded rows. The tables
+ * have to exist, the transaction is controlled by the caller.
+ */
+public class CompactModelSink implements ModelSink {
+
+	private final Connection connection;
+	private final BulkInserter statementObj;
+	private final BulkInserter statementPrp;
+	private final BulkInserter statementAsc;
+	private final BulkInserter statementTxt;
+	private final Map<String, Integer> texts = new HashMap<String, Integer>();
+	private final Set<ObjTypeEntry> entries = new LinkedHashSet<ObjTypeEntry>();
+
+	public CompactModelSink(Connection connection, BulkInserter statementObj, BulkInserter statementPrp,
+			BulkInserter statementAsc, BulkInserter statementTxt) {
+		this.connection = connection;
+		this.statementObj = statementObj;
+		this.statementPrp = statementPrp;
+		this.statementAsc = statementAsc;
+		this.statementTxt = statementTxt;
+	}
+
+	public void begin(ModelSource source) throws ExtractionException {
+	}
+
+	public void object(ObjectRecord record) throws ExtractionException {
+		try {
+			entries.add(record.getEntry());
+			insertObject(record);
+			insertAssociations(record);
+		} catch (SQLException e) {
+			throw new ExtractionException("Problem with loading object " + record.getId() + ".", e);
+		}
+	}
+
+	public void end() throws ExtractionException {
+		try {
+			statementObj.close();
+			statementPrp.close();
+			statementAsc.close();
+			statementTxt.close();
+			insertTypes();
+		} catch (SQLException e) {
+			throw new ExtractionException("Problem with loading tables.", e);
+		}
+	}
+
+	private void insertObject(ObjectRecord record) throws SQLException {
+		for (int i = 0; i < record.getPropertyCount(); i++) {
+			PrpFormat format = record.getFormat(i);
+			String value = record.getValue(i);
+			statementPrp.setLong(1, record.getId());
+			statementPrp.setInt(2, record.getPrpType(i));
+			if (format == PrpFormat.INT || format == PrpFormat.SINT) {
+				statementPrp.setLong(3, Long.parseLong(value));
+				statementPrp.setNull(4);
+			} else if (format == PrpFormat.CHAR) {
+				statementPrp.setInt(3, value.charAt(0));
+				statementPrp.setNull(4);
+			} else {
+				statementPrp.setNull(3);
+				statementPrp.setInt(4, text(value));
+			}
+			statementPrp.endRow();
+		}
+		statementObj.setLong(1, record.getId());
+		statementObj.setInt(2, record.getObjType());
+		statementObj.setString(3, record.getName());
+		statementObj.endRow();
+	}
+
+	private void insertAssociations(ObjectRecord record) throws SQLException {
+		for (int i = 0; i < record.getAssociationCount(); i++) {
+			statementAsc.setLong(1, record.getId());
+			statementAsc.setInt(2, record.getAscType(i));
+			statementAsc.setInt(3, record.getSeqno(i));
+			statementAsc.setLong(4, record.getTarget(i));
+			statementAsc.endRow();
+		}
+	}
+
+	private int text(String value) throws SQLException {
+		Integer id = texts.get(value);
+		if (id == null) {
+			id = Integer.valueOf(texts.size() + 1);
+			texts.put(value, id);
+			statementTxt.setInt(1, id.intValue());
+			statementTxt.setString(2, value);
+			statementTxt.endRow();
+		}
+		return id.intValue();
+	}
+
+	private void insertTypes() throws SQLException {
+		PreparedStatement statementObjType = connection
+				.prepareStatement("INSERT INTO GenObjTypes (objType, objMnemonic) VALUES (?,?);");
+		PreparedStatement statementPrpType = connection
+				.prepareStatement("INSERT INTO GenPrpTypes (objType, prpType, mnemonic, format) VALUES (?,?,?,?);");
+		PreparedStatement statementAscType = connection.prepareStatement(
+				"INSERT INTO GenAscTypes (objType, ascType, inverseAscType, ascMnemonic, card, direction) VALUES (?,?,?,?,?,?);");
+		for (ObjTypeEntry entry : entries) {
+			statementObjType.setInt(1, entry.code);
+			statementObjType.setString(2, entry.mnemonic);
+			statementObjType.executeUpdate();
+			for (int i = 0; i < entry.properties.length; i++) {
+				statementPrpType.setInt(1, entry.code);
+				statementPrpType.setInt(2, entry.prpCodes[i]);
+				statementPrpType.setString(3, entry.prpMnemonics[i]);
+				statementPrpType.setString(4, entry.formats[i].name());
+				statementPrpType.executeUpdate();
+			}
+			for (int i = 0; i < entry.associations.length; i++) {
+				statementAscType.setInt(1, entry.code);
+				statementAscType.setInt(2, entry.ascCodes[i]);
+				statementAscType.setInt(3, entry.inverseCodes[i]);
+				statementAscType.setString(4, entry.ascMnemonics[i]);
+				statementAscType.setString(5, entry.oneToMany[i] ? "M" : "1");
+				statementAscType.setString(6, entry.forward[i] ? "F" : "B");
+				statementAscType.executeUpdate();
+			}
+		}
+		statementObjType.close();
+		statementPrpType.close();
+		statementAscType.close();
+	}
+
+	public int getTextCount() {
+		return texts.size();
+	}
+
+	public int getObjTypeCount() {
+		return entries.size();
+	}
+
+}
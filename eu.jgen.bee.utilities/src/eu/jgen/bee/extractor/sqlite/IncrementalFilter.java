@@ -0,0 +1,125 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.sqlite;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+
+import eu.jgen.bee.extractor.model.ModelObject;
+import eu.jgen.bee.extractor.schema.ObjTypeEntry;
+import eu.jgen.bee.extractor.traversal.ObjectFilter;
+
+/*
+ * Accepts only objects which are new or have been modified since they were
+ * stored in an existing Bee Gen Model. Modification is detected comparing the
+ * MODDATE and MODTIME properties. Objects without these properties are always
+ * accepted. Objects stored in the database but not seen in the model are
+ * reported as vanished once the traversal has finished.
+ */
+public class IncrementalFilter implements ObjectFilter {
+
+	private static final long NO_STAMP = -1;
+
+	private final Map<Long, Long> stored;
+	private int newcount;
+	private int changedcount;
+	private int unchangedcount;
+
+	private IncrementalFilter(Map<Long, Long> stored) {
+		this.stored = stored;
+	}
+
+	/*
+	 * Reads identifiers and modification stamps of all objects stored in the
+	 * database.
+	 */
+	public static IncrementalFilter load(Connection connection) throws SQLException {
+		Map<Long, Long> stored = new HashMap<Long, Long>();
+		Statement stmt = connection.createStatement();
+		ResultSet resultSet = stmt.executeQuery("SELECT o.id, d.value, t.value FROM GenObjects o "
+				+ "LEFT JOIN GenProperties d ON d.objid = o.id AND d.mnemonic = 'MODDATE' "
+				+ "LEFT JOIN GenProperties t ON t.objid = o.id AND t.mnemonic = 'MODTIME';");
+		while (resultSet.next()) {
+			stored.put(resultSet.getLong(1), stamp(parse(resultSet.getString(2)), parse(resultSet.getString(3))));
+		}
+		resultSet.close();
+		stmt.close();
+		return new IncrementalFilter(stored);
+	}
+
+	private static int parse(String value) {
+		if (value == null) {
+			return 0;
+		}
+		return Integer.parseInt(value);
+	}
+
+	private static long stamp(int date, int time) {
+		if (date == 0 && time == 0) {
+			return NO_STAMP;
+		}
+		return date * 100000000L + time;
+	}
+
+	public boolean accept(ModelObject object, ObjTypeEntry entry) {
+		Long storedStamp = stored.remove(object.getId().getValue());
+		if (storedStamp == null) {
+			newcount++;
+			return true;
+		}
+		int date = entry.indexOf(PrpTypeCode.MODDATE);
+		int time = entry.indexOf(PrpTypeCode.MODTIME);
+		if (date == -1 || time == -1) {
+			changedcount++;
+			return true;
+		}
+		long stamp = stamp(object.getIntProperty(PrpTypeCode.MODDATE), object.getIntProperty(PrpTypeCode.MODTIME));
+		if (stamp != NO_STAMP && stamp == storedStamp.longValue()) {
+			unchangedcount++;
+			return false;
+		}
+		changedcount++;
+		return true;
+	}
+
+	/*
+	 * Identifiers of stored objects not found in the model. Complete only after
+	 * the traversal has finished.
+	 */
+	public Set<Long> getVanished() {
+		return stored.keySet();
+	}
+
+	public int getNewCount() {
+		return newcount;
+	}
+
+	public int getChangedCount() {
+		return changedcount;
+	}
+
+	public int getUnchangedCount() {
+		return unchangedcount;
+	}
+
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.sqlite;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConfig.JournalMode;
+
+import eu.jgen.bee.extractor.schema.SchemaSource;
+
+/*
+ * Meta data tables and meta type enums of one schema level, kept in a local
+ * cache directory and copied into every Bee Gen Model extracted at the same
+ * schema level, so that the schema is read only once. The cache of a schema
+ * level is a folder named after the schema level and the version of the
+ * extractor, and its database records both, so a cache written by another
+ * version or for another schema level is never used. The tables are copied
+ * into a model by SQLite from the attached cache database. The folder is written
+ * under a temporary name and renamed when complete, so extractors running at
+ * the same time never see a half written cache.
+ */
+public class MetaCache {
+
+	public static final String DATABASE_NAME = "meta.db";
+	public static final String SCHEMA_NAME = "metacache";
+
+	static final String CREATE_CACHE = "CREATE TABLE GenMetaCache (\n"
+			+ " key TEXT NOT NULL PRIMARY KEY,\n"
+			+ " value TEXT NOT NULL"
+			+ ");";
+
+	private static final int BATCH_SIZE = 1000;
+	private static final int ROWS_PER_INSERT = 50;
+
+	private final File root;
+	private final SchemaSource schema;
+	private final String version;
+	private final File folder;
+	private long buildTime;
+
+	public MetaCache(File root, SchemaSource schema, String version) {
+		this.root = root;
+		this.schema = schema;
+		this.version = version;
+		this.folder = new File(root, toFileName(schema.getSchemaLevel()) + "-" + toFileName(version));
+	}
+
+	/*
+	 * Cache directory shared by all models of the user.
+	 */
+	public static File getDefaultRoot() {
+		return new File(System.getProperty("user.home"), ".beegen" + File.separator + "meta");
+	}
+
+	public File getFolder() {
+		return folder;
+	}
+
+	/*
+	 * Nanoseconds taken to build the cache, 0 when it was already there.
+	 */
+	public long getBuildTime() {
+		return buildTime;
+	}
+
+	/*
+	 * The cache is valid when its folder holds all enum files and the database
+	 * written for the same schema level by the same version of the extractor.
+	 */
+	public boolean isValid() {
+		File database = new File(folder, DATABASE_NAME);
+		if (!database.isFile()) {
+			return false;
+		}
+		for (String fileName : MetaTypeGenerator.FILE_NAMES) {
+			if (!new File(folder, fileName).isFile()) {
+				return false;
+			}
+		}
+		try {
+			Connection connection = open(database, true);
+			try {
+				Map<String, String> values = readValues(connection);
+				return schema.getSchemaLevel().equals(values.get("schema")) && version.equals(values.get("version"));
+			} finally {
+				connection.close();
+			}
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/*
+	 * Builds the cache from the schema unless a valid one exists. A folder
+	 * left incomplete by an earlier run is replaced. Returns true when the
+	 * cache has been built.
+	 */
+	public synchronized boolean prepare() throws SQLException, IOException {
+		if (isValid()) {
+			return false;
+		}
+		long start = System.nanoTime();
+		root.mkdirs();
+		File temporary = new File(root, folder.getName() + ".tmp" + System.nanoTime());
+		if (!temporary.mkdir()) {
+			throw new IOException("Cannot create the folder '" + temporary + "'");
+		}
+		try {
+			build(temporary);
+			if (folder.exists() && !isValid()) {
+				delete(folder);
+			}
+			if (!temporary.renameTo(folder) && !isValid()) {
+				throw new IOException("Cannot rename the folder '" + temporary + "' to '" + folder + "'");
+			}
+		} finally {
+			delete(temporary);
+		}
+		buildTime = System.nanoTime() - start;
+		return true;
+	}
+
+	private void build(File target) throws SQLException, IOException {
+		Connection connection = open(new File(target, DATABASE_NAME), false);
+		try {
+			connection.setAutoCommit(false);
+			Statement stmt = connection.createStatement();
+			stmt.execute(ModelSchema.CREATE_META_OBJECTS);
+			stmt.execute(ModelSchema.CREATE_META_PROPERTIES);
+			stmt.execute(ModelSchema.CREATE_META_ASSOCIATIONS);
+			stmt.execute(CREATE_CACHE);
+			stmt.close();
+			int objects = MetaDataWriter.writeObjects(schema, new BulkInserter(connection, "GenMetaObjects",
+					MetaDataWriter.OBJECT_COLUMNS, BATCH_SIZE, ROWS_PER_INSERT));
+			int properties = MetaDataWriter.writeProperties(schema, new BulkInserter(connection, "GenMetaProperties",
+					MetaDataWriter.PROPERTY_COLUMNS, BATCH_SIZE, ROWS_PER_INSERT));
+			int associations = MetaDataWriter.writeAssociations(schema, new BulkInserter(connection,
+					"GenMetaAssociations", MetaDataWriter.ASSOCIATION_COLUMNS, BATCH_SIZE, ROWS_PER_INSERT));
+			PreparedStatement statement = connection.prepareStatement("INSERT INTO GenMetaCache (key, value) VALUES (?,?);");
+			String[][] values = { { "schema", schema.getSchemaLevel() }, { "version", version },
+					{ "created", String.valueOf(System.currentTimeMillis()) }, { "objects", String.valueOf(objects) },
+					{ "properties", String.valueOf(properties) }, { "associations", String.valueOf(associations) } };
+			for (String[] value : values) {
+				statement.setString(1, value[0]);
+				statement.setString(2, value[1]);
+				statement.executeUpdate();
+			}
+			statement.close();
+			connection.commit();
+		} finally {
+			connection.close();
+		}
+		new MetaTypeGenerator(schema).writeAll(target);
+	}
+
+	/*
+	 * Attaches the cache database to the connection of a model, so that SQLite
+	 * copies the meta data tables itself. SQLite does not attach databases
+	 * inside a transaction, so this is done before the model is loaded.
+	 */
+	public void attach(Connection connection) throws SQLException {
+		Statement stmt = connection.createStatement();
+		try {
+			stmt.execute("ATTACH DATABASE '" + new File(folder, DATABASE_NAME).getPath().replace("'", "''") + "' AS "
+					+ SCHEMA_NAME + ";");
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/*
+	 * Copies the rows of a meta data table from the attached cache into the
+	 * same table of the model. Returns the number of rows copied.
+	 */
+	public int copyTable(Connection connection, String table, String[] columns) throws SQLException {
+		StringBuilder list = new StringBuilder();
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				list.append(", ");
+			}
+			list.append(columns[i]);
+		}
+		Statement stmt = connection.createStatement();
+		try {
+			return stmt.executeUpdate("INSERT INTO " + table + " (" + list + ") SELECT " + list + " FROM "
+					+ SCHEMA_NAME + "." + table + " ORDER BY rowid;");
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/*
+	 * Copies the meta type enums from the cache into the folder.
+	 */
+	public void copyEnums(File target) throws IOException {
+		for (String fileName : MetaTypeGenerator.FILE_NAMES) {
+			Files.copy(new File(folder, fileName).toPath(), new File(target, fileName).toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static Map<String, String> readValues(Connection connection) throws SQLException {
+		Map<String, String> values = new HashMap<String, String>();
+		Statement stmt = connection.createStatement();
+		ResultSet resultSet = stmt.executeQuery("SELECT key, value FROM GenMetaCache;");
+		while (resultSet.next()) {
+			values.put(resultSet.getString(1), resultSet.getString(2));
+		}
+		resultSet.close();
+		stmt.close();
+		return values;
+	}
+
+	private static Connection open(File database, boolean readOnly) throws SQLException {
+		SQLiteConfig config = new SQLiteConfig();
+		if (readOnly) {
+			config.setReadOnly(true);
+		} else {
+			config.setJournalMode(JournalMode.OFF);
+		}
+		return config.createConnection("jdbc:sqlite:" + database.getPath());
+	}
+
+	private static String toFileName(String value) {
+		return value.replaceAll("[^A-Za-z0-9._-]", "_");
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.sqlite;
+
+import java.sql.SQLException;
+
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+
+import eu.jgen.bee.extractor.schema.SchemaSource;
+
+/*
+ * Writes the rows of the meta data tables for the schema. The rows depend only
+ * on the schema level, so they are written either into the Bee Gen Model or
+ * into the meta data cache from which they are copied into later models.
+ */
+public final class MetaDataWriter {
+
+	public static final String[] OBJECT_COLUMNS = { "objType", "objMnemonic" };
+	public static final String[] PROPERTY_COLUMNS = { "objType", "prpType", "prpMnemonic", "format", "length",
+			"defaultInt", "defaultText", "defaultChar" };
+	public static final String[] ASSOCIATION_COLUMNS = { "fromObjType", "ascType", "ascMnemonic", "direction",
+			"inverseAscType", "optionality", "card", "ordered" };
+
+	private MetaDataWriter() {
+	}
+
+	public static int writeObjects(SchemaSource schema, BulkInserter statementObj) throws SQLException {
+		int count = 0;
+		for (ObjTypeCode objTypeCode : ObjTypeCode.values()) {
+			statementObj.setInt(1, schema.getCode(objTypeCode));
+			statementObj.setString(2, objTypeCode.toString());
+			statementObj.endRow();
+			count++;
+		}
+		statementObj.close();
+		return count;
+	}
+
+	public static int writeProperties(SchemaSource schema, BulkInserter statementPrp) throws SQLException {
+		int count = 0;
+		for (ObjTypeCode objTypeCode : ObjTypeCode.values()) {
+			for (PrpTypeCode prpTypeCode : schema.getProperties(objTypeCode)) {
+				statementPrp.setInt(1, schema.getCode(objTypeCode));
+				statementPrp.setInt(2, schema.getCode(prpTypeCode));
+				statementPrp.setString(3, schema.getMnemonic(prpTypeCode));
+				String format = schema.getFormat(objTypeCode, prpTypeCode).name();
+				statementPrp.setString(4, format);
+				int length = schema.getLength(objTypeCode, prpTypeCode);
+				statementPrp.setInt(5, length);
+
+				switch (format) {
+				case "NAME":
+				case "LOADNAME":
+				case "TEXT":
+					statementPrp.setDouble(6, 0);
+					if (length == 0) {
+						statementPrp.setString(7, "");
+					} else {
+						statementPrp.setString(7, schema.getDefaultTxtValue(objTypeCode, prpTypeCode));
+					}
+					statementPrp.setString(8, "");
+					break;
+				case "INT":
+				case "SINT":
+					statementPrp.setDouble(6, schema.getDefaultIntValue(objTypeCode, prpTypeCode));
+					statementPrp.setString(7, "");
+					statementPrp.setString(8, "");
+					break;
+				case "CHAR":
+					statementPrp.setDouble(6, 0);
+					statementPrp.setString(7, "");
+					statementPrp.setString(8, String.valueOf(schema.getDefaultChrValue(objTypeCode, prpTypeCode)));
+					break;
+
+				default:
+					statementPrp.setDouble(6, 0);
+					statementPrp.setString(7, "");
+					statementPrp.setString(8, "");
+					break;
+				}
+				statementPrp.endRow();
+				count++;
+			}
+		}
+		statementPrp.close();
+		return count;
+	}
+
+	public static int writeAssociations(SchemaSource schema, BulkInserter statementAsc) throws SQLException {
+		int count = 0;
+		for (ObjTypeCode objTypeCode : ObjTypeCode.values()) {
+			if (objTypeCode == ObjTypeCode.HORIZUS || objTypeCode == ObjTypeCode.GUIPROP) {
+				continue;
+			}
+			for (AscTypeCode ascTypeCode : schema.getAssociations(objTypeCode)) {
+				statementAsc.setInt(1, schema.getCode(objTypeCode));
+				statementAsc.setInt(2, schema.getCode(ascTypeCode));
+				statementAsc.setString(3, schema.getMnemonic(ascTypeCode));
+				if (schema.isForward(objTypeCode, ascTypeCode)) {
+					statementAsc.setString(4, "F");
+				} else {
+					statementAsc.setString(4, "B");
+				}
+				statementAsc.setInt(5, 100);
+				if (schema.isIgnorable(objTypeCode, ascTypeCode)) {
+					statementAsc.setString(6, "Y");
+				} else {
+					statementAsc.setString(6, "N");
+				}
+				if (schema.isOneToMany(objTypeCode, ascTypeCode)) {
+					statementAsc.setString(7, "M");
+				} else {
+					statementAsc.setString(7, "1");
+				}
+				if (schema.isOrdered(objTypeCode, ascTypeCode)) {
+					statementAsc.setString(8, "Y");
+				} else {
+					statementAsc.setString(8, "N");
+				}
+				statementAsc.endRow();
+				count++;
+			}
+		}
+		statementAsc.close();
+		return count;
+	}
+
+}
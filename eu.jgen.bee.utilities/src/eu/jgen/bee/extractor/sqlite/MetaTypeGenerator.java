@@ -0,0 +1,383 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.sqlite;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+import com.ca.gen.jmmi.util.PrpFormat;
+
+import eu.jgen.bee.extractor.BeeGenExtractor;
+import eu.jgen.bee.extractor.schema.SchemaSource;
+
+/*
+ * Generates the Java enums ObjMetaType, PrpMetaType, AscMetaType and
+ * PrpMetaFormat describing the schema. Every enum finds its constant by code
+ * in a static array indexed by the code. ObjMetaType also holds the codes of
+ * the properties and associations of the object type in ascending order,
+ * together with the format, length and default value of each property and the
+ * inverse and cardinality of each association, so that they are known without
+ * reading the meta data tables. These arrays are written as string constants
+ * and decoded when the enum is loaded, because array initializers of all
+ * object types would not fit into the size limit of a static initializer.
+ */
+public class MetaTypeGenerator {
+
+	public static final String DEFAULT_PACKAGE = "eu.jgen.beegen.model.meta";
+	public static final String[] FILE_NAMES = { "PrpMetaFormat.java", "PrpMetaType.java", "AscMetaType.java",
+			"ObjMetaType.java" };
+
+	private final SchemaSource schema;
+	private final String packageName;
+
+	public MetaTypeGenerator(SchemaSource schema) {
+		this(schema, DEFAULT_PACKAGE);
+	}
+
+	public MetaTypeGenerator(SchemaSource schema, String packageName) {
+		this.schema = schema;
+		this.packageName = packageName;
+	}
+
+	/*
+	 * Writes the source files of all enums into the folder.
+	 */
+	public void writeAll(File folder) throws IOException {
+		write(new File(folder, FILE_NAMES[0]), generateFormats());
+		write(new File(folder, FILE_NAMES[1]), generateProperties());
+		write(new File(folder, FILE_NAMES[2]), generateAssociations());
+		write(new File(folder, FILE_NAMES[3]), generateObjects());
+	}
+
+	private static void write(File file, String source) throws IOException {
+		FileWriter fileWriter = new FileWriter(file);
+		fileWriter.write(source);
+		fileWriter.close();
+	}
+
+	public String generateFormats() {
+		StringBuilder buffer = header("PrpMetaFormat");
+		for (PrpFormat format : PrpFormat.values()) {
+			buffer.append("\t" + format.name() + ",\n");
+		}
+		buffer.setLength(buffer.length() - 2);
+		buffer.append(";\n\n");
+		buffer.append("\tstatic final PrpMetaFormat[] FORMATS = values();\n");
+		buffer.append("}\n");
+		return buffer.toString();
+	}
+
+	public String generateProperties() {
+		StringBuilder buffer = header("PrpMetaType");
+		for (PrpTypeCode prpTypeCode : PrpTypeCode.values()) {
+			short code = schema.getCode(prpTypeCode);
+			if (code != -1) {
+				buffer.append("\t" + schema.getMnemonic(prpTypeCode) + "((short) " + code + "),\n");
+			}
+		}
+		appendLookup(buffer, "PrpMetaType", "(short code)", "");
+		buffer.append("}\n");
+		return buffer.toString();
+	}
+
+	public String generateAssociations() {
+		StringBuilder buffer = header("AscMetaType");
+		for (AscTypeCode ascTypeCode : AscTypeCode.values()) {
+			short code = schema.getCode(ascTypeCode);
+			if (code != -1) {
+				buffer.append("\t" + schema.getMnemonic(ascTypeCode) + "((short) " + code + "),\n");
+			}
+		}
+		appendLookup(buffer, "AscMetaType", "(short code)", "");
+		buffer.append("}\n");
+		return buffer.toString();
+	}
+
+	/*
+	 * Each object type is followed by its property codes, formats, lengths and
+	 * default values separated by zero characters, then by its association
+	 * codes, inverse codes and four flags of each association: direction,
+	 * cardinality, optionality and ordering. Associations of HORIZUS and
+	 * GUIPROP are left out like in the meta data tables.
+	 */
+	public String generateObjects() {
+		StringBuilder buffer = header("ObjMetaType");
+		for (ObjTypeCode objTypeCode : ObjTypeCode.values()) {
+			short code = schema.getCode(objTypeCode);
+			if (code == -1) {
+				continue;
+			}
+			List<short[]> properties = new ArrayList<short[]>();
+			for (PrpTypeCode prpTypeCode : schema.getProperties(objTypeCode)) {
+				properties.add(new short[] { schema.getCode(prpTypeCode), (short) prpTypeCode.ordinal() });
+			}
+			sort(properties);
+			StringBuilder prpCodes = new StringBuilder();
+			StringBuilder formats = new StringBuilder();
+			StringBuilder lengths = new StringBuilder();
+			StringBuilder defaults = new StringBuilder();
+			for (short[] property : properties) {
+				PrpTypeCode prpTypeCode = PrpTypeCode.values()[property[1]];
+				PrpFormat format = schema.getFormat(objTypeCode, prpTypeCode);
+				short length = schema.getLength(objTypeCode, prpTypeCode);
+				prpCodes.append((char) property[0]);
+				formats.append((char) format.ordinal());
+				lengths.append((char) length);
+				if (prpCodes.length() > 1) {
+					defaults.append('\0');
+				}
+				defaults.append(defaultValue(objTypeCode, prpTypeCode, format, length));
+			}
+
+			List<short[]> associations = new ArrayList<short[]>();
+			if (objTypeCode != ObjTypeCode.HORIZUS && objTypeCode != ObjTypeCode.GUIPROP) {
+				for (AscTypeCode ascTypeCode : schema.getAssociations(objTypeCode)) {
+					associations.add(new short[] { schema.getCode(ascTypeCode), (short) ascTypeCode.ordinal() });
+				}
+			}
+			sort(associations);
+			StringBuilder ascCodes = new StringBuilder();
+			StringBuilder inverseCodes = new StringBuilder();
+			StringBuilder flags = new StringBuilder();
+			for (short[] association : associations) {
+				AscTypeCode ascTypeCode = AscTypeCode.values()[association[1]];
+				ascCodes.append((char) association[0]);
+				inverseCodes.append((char) schema.getCode(schema.getInverse(objTypeCode, ascTypeCode)));
+				flags.append(schema.isForward(objTypeCode, ascTypeCode) ? 'F' : 'B');
+				flags.append(schema.isOneToMany(objTypeCode, ascTypeCode) ? 'M' : '1');
+				flags.append(schema.isIgnorable(objTypeCode, ascTypeCode) ? 'Y' : 'N');
+				flags.append(schema.isOrdered(objTypeCode, ascTypeCode) ? 'Y' : 'N');
+			}
+			buffer.append("\t" + schema.getMnemonic(objTypeCode) + "((short) " + code + ",\n");
+			buffer.append("\t\t\t" + literal(prpCodes) + ", " + literal(formats) + ", " + literal(lengths) + ",\n");
+			buffer.append("\t\t\t" + literal(defaults) + ",\n");
+			buffer.append("\t\t\t" + literal(ascCodes) + ", " + literal(inverseCodes) + ", " + literal(flags) + "),\n");
+		}
+		appendLookup(buffer, "ObjMetaType", "(short code, String prpCodes, String formats, String lengths,\n"
+				+ "\t\t\tString defaults, String ascCodes, String inverseCodes, String ascFlags)",
+				"\"\", \"\", \"\", \"\", \"\", \"\", \"\"");
+		buffer.append("\n\t/*\n\t * Codes of the properties in ascending order. The format, length and default\n"
+				+ "\t * value of the property are at the same index of the other arrays.\n\t */\n");
+		buffer.append("\tpublic final short[] prpCodes;\n");
+		buffer.append("\tpublic final PrpMetaFormat[] formats;\n");
+		buffer.append("\tpublic final short[] lengths;\n");
+		buffer.append("\tpublic final String[] defaults;\n");
+		buffer.append("\n\t/*\n\t * Codes of the associations in ascending order. The inverse and the flags\n"
+				+ "\t * of the association are at the same index.\n\t */\n");
+		buffer.append("\tpublic final short[] ascCodes;\n");
+		buffer.append("\tpublic final short[] inverseCodes;\n");
+		buffer.append("\tprivate final String ascFlags;\n");
+		buffer.append(OBJECT_METHODS);
+		buffer.append("}\n");
+		return buffer.toString();
+	}
+
+	private static void sort(List<short[]> codes) {
+		Collections.sort(codes, new Comparator<short[]>() {
+			public int compare(short[] one, short[] other) {
+				return one[0] - other[0];
+			}
+		});
+	}
+
+	/*
+	 * Default value in the same form as in the table GenMetaProperties.
+	 */
+	private String defaultValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode, PrpFormat format, short length) {
+		switch (format) {
+		case NAME:
+		case LOADNAME:
+		case TEXT:
+			return length == 0 ? "" : schema.getDefaultTxtValue(objTypeCode, prpTypeCode);
+		case INT:
+		case SINT:
+			return String.valueOf(schema.getDefaultIntValue(objTypeCode, prpTypeCode));
+		case CHAR:
+			return String.valueOf(schema.getDefaultChrValue(objTypeCode, prpTypeCode));
+		default:
+			return "";
+		}
+	}
+
+	private StringBuilder header(String name) {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append("/**\n");
+		buffer.append(" * Generated by BeeGenExtractorSQLite, Version: " + BeeGenExtractor.VERSION + ", Schema: "
+				+ schema.getSchemaLevel() + "\n");
+		buffer.append("**/\n");
+		buffer.append("package " + packageName + ";\n\n");
+		buffer.append("public enum " + name + " {\n");
+		return buffer;
+	}
+
+	/*
+	 * Closes the list of constants with INVALID and DISCOVER and adds the code,
+	 * the constructor and the lookup by code.
+	 */
+	private static void appendLookup(StringBuilder buffer, String name, String parameters, String values) {
+		String arguments = values.isEmpty() ? "" : ", " + values;
+		buffer.append("\tINVALID((short) -1" + arguments + "),\n");
+		buffer.append("\tDISCOVER((short) -2" + arguments + ");\n");
+		buffer.append("\n\tprivate static final " + name + "[] TYPES;\n");
+		buffer.append("\n\tstatic {\n");
+		buffer.append("\t\tint max = 0;\n");
+		buffer.append("\t\tfor (" + name + " type : values()) {\n");
+		buffer.append("\t\t\tmax = Math.max(max, type.code);\n");
+		buffer.append("\t\t}\n");
+		buffer.append("\t\tTYPES = new " + name + "[max + 1];\n");
+		buffer.append("\t\tfor (" + name + " type : values()) {\n");
+		buffer.append("\t\t\tif (type.code >= 0 && TYPES[type.code] == null) {\n");
+		buffer.append("\t\t\t\tTYPES[type.code] = type;\n");
+		buffer.append("\t\t\t}\n");
+		buffer.append("\t\t}\n");
+		buffer.append("\t}\n");
+		buffer.append("\n\tpublic final short code;\n");
+		buffer.append("\n\t" + name + parameters + " {\n");
+		buffer.append("\t\tthis.code = code;\n");
+		if (!values.isEmpty()) {
+			buffer.append("\t\tthis.prpCodes = codes(prpCodes);\n");
+			buffer.append("\t\tthis.formats = new PrpMetaFormat[formats.length()];\n");
+			buffer.append("\t\tfor (int i = 0; i < this.formats.length; i++) {\n");
+			buffer.append("\t\t\tthis.formats[i] = PrpMetaFormat.FORMATS[formats.charAt(i)];\n");
+			buffer.append("\t\t}\n");
+			buffer.append("\t\tthis.lengths = codes(lengths);\n");
+			buffer.append("\t\tthis.defaults = this.prpCodes.length == 0 ? new String[0] : defaults.split(\"\\0\", -1);\n");
+			buffer.append("\t\tthis.ascCodes = codes(ascCodes);\n");
+			buffer.append("\t\tthis.inverseCodes = codes(inverseCodes);\n");
+			buffer.append("\t\tthis.ascFlags = ascFlags;\n");
+		}
+		buffer.append("\t}\n");
+		buffer.append("\n\t/*\n\t * Constant with the code, or INVALID when there is none.\n\t */\n");
+		buffer.append("\tpublic static " + name + " getType(short code) {\n");
+		buffer.append("\t\tif (code < 0 || code >= TYPES.length || TYPES[code] == null) {\n");
+		buffer.append("\t\t\treturn INVALID;\n");
+		buffer.append("\t\t}\n");
+		buffer.append("\t\treturn TYPES[code];\n");
+		buffer.append("\t}\n");
+	}
+
+	private static final String OBJECT_METHODS = "\n"
+			+ "\tprivate static short[] codes(String value) {\n"
+			+ "\t\tshort[] codes = new short[value.length()];\n"
+			+ "\t\tfor (int i = 0; i < codes.length; i++) {\n"
+			+ "\t\t\tcodes[i] = (short) value.charAt(i);\n"
+			+ "\t\t}\n"
+			+ "\t\treturn codes;\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\t/*\n"
+			+ "\t * Index of the property in the arrays, or -1 when the object type does not\n"
+			+ "\t * have it.\n"
+			+ "\t */\n"
+			+ "\tpublic int indexOf(PrpMetaType prp) {\n"
+			+ "\t\tint index = java.util.Arrays.binarySearch(prpCodes, prp.code);\n"
+			+ "\t\treturn index < 0 ? -1 : index;\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\tpublic boolean hasProperty(PrpMetaType prp) {\n"
+			+ "\t\treturn indexOf(prp) != -1;\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\tpublic PrpMetaFormat getFormat(PrpMetaType prp) {\n"
+			+ "\t\tint index = indexOf(prp);\n"
+			+ "\t\treturn index == -1 ? PrpMetaFormat.INVALID : formats[index];\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\tpublic short getLength(PrpMetaType prp) {\n"
+			+ "\t\tint index = indexOf(prp);\n"
+			+ "\t\treturn index == -1 ? 0 : lengths[index];\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\t/*\n"
+			+ "\t * Default value as text, a number for INT and SINT properties, or null\n"
+			+ "\t * when the object type does not have the property.\n"
+			+ "\t */\n"
+			+ "\tpublic String getDefault(PrpMetaType prp) {\n"
+			+ "\t\tint index = indexOf(prp);\n"
+			+ "\t\treturn index == -1 ? null : defaults[index];\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\t/*\n"
+			+ "\t * Index of the association in the arrays, or -1 when the object type does\n"
+			+ "\t * not have it.\n"
+			+ "\t */\n"
+			+ "\tpublic int indexOf(AscMetaType asc) {\n"
+			+ "\t\tint index = java.util.Arrays.binarySearch(ascCodes, asc.code);\n"
+			+ "\t\treturn index < 0 ? -1 : index;\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\tpublic boolean hasAssociation(AscMetaType asc) {\n"
+			+ "\t\treturn indexOf(asc) != -1;\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\tpublic AscMetaType getInverse(AscMetaType asc) {\n"
+			+ "\t\tint index = indexOf(asc);\n"
+			+ "\t\treturn index == -1 ? AscMetaType.INVALID : AscMetaType.getType(inverseCodes[index]);\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\tpublic boolean isForward(AscMetaType asc) {\n"
+			+ "\t\treturn flag(asc, 0) == 'F';\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\tpublic boolean isOneToMany(AscMetaType asc) {\n"
+			+ "\t\treturn flag(asc, 1) == 'M';\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\tpublic boolean isOptional(AscMetaType asc) {\n"
+			+ "\t\treturn flag(asc, 2) == 'Y';\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\tpublic boolean isOrdered(AscMetaType asc) {\n"
+			+ "\t\treturn flag(asc, 3) == 'Y';\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\tprivate char flag(AscMetaType asc, int flag) {\n"
+			+ "\t\tint index = indexOf(asc);\n"
+			+ "\t\treturn index == -1 ? ' ' : ascFlags.charAt(index * 4 + flag);\n"
+			+ "\t}\n";
+
+	/*
+	 * Java string literal of the characters. Characters which are not printable
+	 * ASCII are escaped, those below 256 with three octal digits, so that none of
+	 * them is taken for a line terminator when the source is read.
+	 */
+	static String literal(CharSequence value) {
+		StringBuilder literal = new StringBuilder(value.length() * 4 + 2);
+		literal.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				literal.append('\\').append(c);
+			} else if (c >= 0x20 && c < 0x7f) {
+				literal.append(c);
+			} else if (c < 0x100) {
+				literal.append(String.format("\\%03o", (int) c));
+			} else {
+				literal.append(String.format("\\u%04x", (int) c));
+			}
+		}
+		return literal.append('"').toString();
+	}
+
+}
@@ -0,0 +1,387 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.sqlite;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/*
+ * Tables and indexes of the Bee Gen Model. Tables have only their primary keys
+ * while they are loaded, secondary indexes are created after the load has
+ * finished, which is faster than maintaining them for every inserted row.
+ *
+ * The compact layout keeps only type codes in the rows of objects, properties
+ * and associations. Mnemonics, formats, cardinality, direction and inverse
+ * association types are kept once for each object type in GenObjTypes,
+ * GenPrpTypes and GenAscTypes. Property values are stored as numbers, or as
+ * references to GenTexts where each text is stored once. Views named as the
+ * tables of the wide layout return the same rows as those tables.
+ */
+public class ModelSchema {
+
+	static final String DROP_OBJECTS = "DROP TABLE IF EXISTS  GenObjects;";
+	static final String DROP_ASSOCIATIONS = "DROP TABLE  IF EXISTS GenAssociations;";
+	static final String DROP_PROPERTIES = "DROP TABLE  IF EXISTS GenProperties;";
+
+	static final String DROP_META_OBJECTS = "DROP TABLE  IF EXISTS GenMetaObjects;";
+	static final String DROP_META_ASSOCIATIONS = "DROP TABLE  IF EXISTS GenMetaAssociations;";
+	static final String DROP_META_PROPERTIES = "DROP TABLE  IF EXISTS GenMetaProperties;";
+	
+	static final String DROP_MODEL = "DROP TABLE IF EXISTS  GenModel;";
+
+	static final String DROP_CHECKPOINT = "DROP TABLE IF EXISTS GenCheckpoint;";
+	static final String DROP_FULL_TEXT = "DROP TABLE IF EXISTS GenPropertiesText;";
+
+	static final String CREATE_OBJECTS = "CREATE TABLE  GenObjects (\n" + "	id INTEGER PRIMARY KEY,\n"
+			+ "  objType  INTEGER NOT NULL,\n" + "  objMnemonic TEXT NOT NULL,\n" + "	name TEXT\n" + ");";
+
+	static final String CREATE_ASSOCIATIONS = "CREATE TABLE  GenAssociations (\n" + "	fromObjid            INTEGER,\n"
+			+ "  ascType                 INTEGER NOT NULL,\n" + "  toObjid                  INTEGER NOT NULL,\n"
+			+ "  inverseAscType   INTEGER NOT NULL,\n" + "  ascMnemonic      TEXT NOT NULL,\n"
+			+ "  card                        TEXT NOT NULL,\n" + "	direction               TEXT,\n"
+			+ "  seqno                      INTEGER NOT NULL,\n" + "PRIMARY KEY (fromObjid, ascType, seqno)" + ");";
+
+	static final String CREATE_PROPERTIES = "CREATE TABLE  GenProperties (\n" + "	objid            INTEGER,\n"
+			+ "  prpType                 INTEGER NOT NULL,\n" + "  mnemonic            TEXT NOT NULL,\n"
+			+ "  format                   TEXT NOT NULL,\n" + "	value                      TEXT,\n"
+			+ "PRIMARY KEY (objid, prpType)" + ");";
+
+	static final String CREATE_META_OBJECTS = "CREATE TABLE  GenMetaObjects (\n" + "	objType INTEGER PRIMARY KEY,\n"
+			+ " objMnemonic TEXT NOT NULL);";		
+
+	static final String CREATE_META_PROPERTIES = "CREATE TABLE  GenMetaProperties (\n" 
+			+ "	objType            INTEGER NOT NULL,\n"
+			+ " prpType            INTEGER NOT NULL,\n" 
+			+ " prpMnemonic        TEXT NOT NULL,\n"
+			+ " format             TEXT NOT NULL,\n" 
+			+ " length             INTEGER NOT NULL,\n"
+			+ "	defaultInt         INTEGER NOT NULL,\n" 
+			+ "	defaultText        TEXT NOT NULL,\n"
+			+ "	defaultChar        TEXT NOT NULL,\n"
+			+ "PRIMARY KEY (objtype, prpType)"
+			+ ");";
+	
+	static final String CREATE_META_ASSOCIATIONS = "CREATE TABLE  GenMetaAssociations (\n" 
+			+ "	fromObjType         INTEGER NOT NULL,\n"
+			+ " ascType             INTEGER NOT NULL,\n" 
+			+ " ascMnemonic         TEXT NOT NULL,\n"
+			+ "	direction           TEXT NOT NULL,\n" 
+			+ " inverseAscType      INTEGER NOT NULL,\n"
+			+ " optionality         TEXT NOT NULL,\n" 
+			+ " card                TEXT NOT NULL,\n"
+			+ " ordered             TEXT NOT NULL,\n" 
+			+ "PRIMARY KEY (fromObjType, ascType)" 
+			+ ");";
+
+	static final String CREATE_MODEL = "CREATE TABLE GenModel (\n"
+			+ " key TEXT NOT NULL PRIMARY KEY,\n"
+			+ " value TEXT NOT NULL"
+			+ ");";
+
+	static final String CREATE_CHECKPOINT = "CREATE TABLE GenCheckpoint (\n"
+			+ " id                 INTEGER PRIMARY KEY CHECK (id = 1),\n"
+			+ " modelName          TEXT NOT NULL,\n"
+			+ " version            TEXT NOT NULL,\n"
+			+ " schemaLevel        TEXT NOT NULL,\n"
+			+ " phase              TEXT NOT NULL,\n"
+			+ " lastObjid          INTEGER,\n"
+			+ " objectCount        INTEGER NOT NULL,\n"
+			+ " propertyCount      INTEGER NOT NULL,\n"
+			+ " associationCount   INTEGER NOT NULL\n"
+			+ ");";
+
+	public static final String FULL_TEXT_TABLE = "GenPropertiesText";
+
+	static final String CREATE_FULL_TEXT = "CREATE VIRTUAL TABLE GenPropertiesText USING fts5(\n"
+			+ " objid UNINDEXED,\n"
+			+ " objMnemonic,\n"
+			+ " prpMnemonic,\n"
+			+ " value\n"
+			+ ");";
+
+	static final String POPULATE_FULL_TEXT = "INSERT INTO GenPropertiesText (objid, objMnemonic, prpMnemonic, value)\n"
+			+ "SELECT p.objid, o.objMnemonic, p.mnemonic, p.value\n"
+			+ "FROM GenProperties p JOIN GenObjects o ON o.id = p.objid\n"
+			+ "WHERE p.format IN ('NAME', 'LOADNAME', 'TEXT') AND p.value <> '';";
+
+	static final String OPTIMIZE_FULL_TEXT = "INSERT INTO GenPropertiesText (GenPropertiesText) VALUES ('optimize');";
+
+	static final String CREATE_OBJECTS_DATA = "CREATE TABLE GenObjectsData (\n"
+			+ " id                 INTEGER PRIMARY KEY,\n"
+			+ " objType            INTEGER NOT NULL,\n"
+			+ " name               TEXT\n"
+			+ ");";
+
+	static final String CREATE_PROPERTIES_DATA = "CREATE TABLE GenPropertiesData (\n"
+			+ " objid              INTEGER NOT NULL,\n"
+			+ " prpType            INTEGER NOT NULL,\n"
+			+ " intValue           INTEGER,\n"
+			+ " textId             INTEGER,\n"
+			+ "PRIMARY KEY (objid, prpType)"
+			+ ") WITHOUT ROWID;";
+
+	static final String CREATE_ASSOCIATIONS_DATA = "CREATE TABLE GenAssociationsData (\n"
+			+ " fromObjid          INTEGER NOT NULL,\n"
+			+ " ascType            INTEGER NOT NULL,\n"
+			+ " seqno              INTEGER NOT NULL,\n"
+			+ " toObjid            INTEGER NOT NULL,\n"
+			+ "PRIMARY KEY (fromObjid, ascType, seqno)"
+			+ ") WITHOUT ROWID;";
+
+	static final String CREATE_TEXTS = "CREATE TABLE GenTexts (\n"
+			+ " id                 INTEGER PRIMARY KEY,\n"
+			+ " value              TEXT NOT NULL\n"
+			+ ");";
+
+	static final String CREATE_OBJ_TYPES = "CREATE TABLE GenObjTypes (\n"
+			+ " objType            INTEGER PRIMARY KEY,\n"
+			+ " objMnemonic        TEXT NOT NULL\n"
+			+ ");";
+
+	static final String CREATE_PRP_TYPES = "CREATE TABLE GenPrpTypes (\n"
+			+ " objType            INTEGER NOT NULL,\n"
+			+ " prpType            INTEGER NOT NULL,\n"
+			+ " mnemonic           TEXT NOT NULL,\n"
+			+ " format             TEXT NOT NULL,\n"
+			+ "PRIMARY KEY (objType, prpType)"
+			+ ") WITHOUT ROWID;";
+
+	static final String CREATE_ASC_TYPES = "CREATE TABLE GenAscTypes (\n"
+			+ " objType            INTEGER NOT NULL,\n"
+			+ " ascType            INTEGER NOT NULL,\n"
+			+ " inverseAscType     INTEGER NOT NULL,\n"
+			+ " ascMnemonic        TEXT NOT NULL,\n"
+			+ " card               TEXT NOT NULL,\n"
+			+ " direction          TEXT NOT NULL,\n"
+			+ "PRIMARY KEY (objType, ascType)"
+			+ ") WITHOUT ROWID;";
+
+	static final String CREATE_OBJECTS_VIEW = "CREATE VIEW GenObjects AS\n"
+			+ "SELECT o.id, o.objType, t.objMnemonic, o.name\n"
+			+ "FROM GenObjectsData o JOIN GenObjTypes t ON t.objType = o.objType;";
+
+	static final String CREATE_PROPERTIES_VIEW = "CREATE VIEW GenProperties AS\n"
+			+ "SELECT p.objid, p.prpType, t.mnemonic, t.format,\n"
+			+ " CASE WHEN p.textId IS NOT NULL THEN x.value\n"
+			+ "  WHEN t.format = 'CHAR' THEN char(p.intValue)\n"
+			+ "  ELSE CAST(p.intValue AS TEXT) END AS value\n"
+			+ "FROM GenPropertiesData p JOIN GenObjectsData o ON o.id = p.objid\n"
+			+ " JOIN GenPrpTypes t ON t.objType = o.objType AND t.prpType = p.prpType\n"
+			+ " LEFT JOIN GenTexts x ON x.id = p.textId;";
+
+	static final String CREATE_ASSOCIATIONS_VIEW = "CREATE VIEW GenAssociations AS\n"
+			+ "SELECT a.fromObjid, a.ascType, a.toObjid, t.inverseAscType, t.ascMnemonic, t.card, t.direction, a.seqno\n"
+			+ "FROM GenAssociationsData a JOIN GenObjectsData o ON o.id = a.fromObjid\n"
+			+ " JOIN GenAscTypes t ON t.objType = o.objType AND t.ascType = a.ascType;";
+
+	static final String[] COMPACT_VIEWS = { "GenObjects", "GenProperties", "GenAssociations" };
+
+	static final String[] COMPACT_TABLES = { "GenObjectsData", "GenPropertiesData", "GenAssociationsData", "GenTexts",
+			"GenObjTypes", "GenPrpTypes", "GenAscTypes" };
+
+	/*
+	 * Secondary indexes for the common lookups, each given as name and columns:
+	 * where-used and inverse navigation, objects of a type or with a name, and
+	 * properties of a type with a value.
+	 */
+	static final String[][] INDEXES = {
+			{ "GenAssociationsByTarget", "GenAssociations (toObjid, ascType)" },
+			{ "GenObjectsByType", "GenObjects (objType)" },
+			{ "GenObjectsByName", "GenObjects (name)" },
+			{ "GenPropertiesByType", "GenProperties (prpType, value)" } };
+
+	static final String[][] COMPACT_INDEXES = {
+			{ "GenAssociationsDataByTarget", "GenAssociationsData (toObjid, ascType)" },
+			{ "GenObjectsDataByType", "GenObjectsData (objType)" },
+			{ "GenObjectsDataByName", "GenObjectsData (name)" },
+			{ "GenPropertiesDataByInt", "GenPropertiesData (prpType, intValue)" },
+			{ "GenPropertiesDataByText", "GenPropertiesData (prpType, textId)" },
+			{ "GenTextsByValue", "GenTexts (value)" } };
+
+	private ModelSchema() {
+	}
+
+	/*
+	 * Drops the tables of both layouts.
+	 */
+	public static void dropTables(Statement stmt) throws SQLException {
+		for (String view : COMPACT_VIEWS) {
+			if (isView(stmt, view)) {
+				stmt.execute("DROP VIEW " + view + ";");
+			}
+		}
+		for (String table : COMPACT_TABLES) {
+			stmt.execute("DROP TABLE IF EXISTS " + table + ";");
+		}
+		stmt.execute(DROP_OBJECTS);
+		stmt.execute(DROP_ASSOCIATIONS);
+		stmt.execute(DROP_PROPERTIES);
+		stmt.execute(DROP_META_OBJECTS);
+		stmt.execute(DROP_META_ASSOCIATIONS);
+		stmt.execute(DROP_META_PROPERTIES);
+		stmt.execute(DROP_MODEL);
+		stmt.execute(DROP_CHECKPOINT);
+		stmt.execute(DROP_FULL_TEXT);
+	}
+
+	public static void createTables(Statement stmt) throws SQLException {
+		stmt.execute(CREATE_OBJECTS);
+		stmt.execute(CREATE_ASSOCIATIONS);
+		stmt.execute(CREATE_PROPERTIES);
+		stmt.execute(CREATE_META_OBJECTS);
+		stmt.execute(CREATE_META_PROPERTIES);
+		stmt.execute(CREATE_META_ASSOCIATIONS);
+		stmt.execute(CREATE_MODEL);
+	}
+
+	/*
+	 * Creates tables of the compact layout with the views of the wide layout.
+	 * The meta data and model tables are the same in both layouts.
+	 */
+	public static void createCompactTables(Statement stmt) throws SQLException {
+		stmt.execute(CREATE_OBJECTS_DATA);
+		stmt.execute(CREATE_PROPERTIES_DATA);
+		stmt.execute(CREATE_ASSOCIATIONS_DATA);
+		stmt.execute(CREATE_TEXTS);
+		stmt.execute(CREATE_OBJ_TYPES);
+		stmt.execute(CREATE_PRP_TYPES);
+		stmt.execute(CREATE_ASC_TYPES);
+		stmt.execute(CREATE_OBJECTS_VIEW);
+		stmt.execute(CREATE_PROPERTIES_VIEW);
+		stmt.execute(CREATE_ASSOCIATIONS_VIEW);
+		stmt.execute(CREATE_META_OBJECTS);
+		stmt.execute(CREATE_META_PROPERTIES);
+		stmt.execute(CREATE_META_ASSOCIATIONS);
+		stmt.execute(CREATE_MODEL);
+	}
+
+	/*
+	 * Creates the table recording progress of an extraction committed in parts.
+	 */
+	public static void createCheckpointTable(Statement stmt) throws SQLException {
+		stmt.execute(CREATE_CHECKPOINT);
+	}
+
+	/*
+	 * Removes rows of the meta data and model tables, so that they can be loaded
+	 * again.
+	 */
+	public static void clearMetaData(Statement stmt) throws SQLException {
+		stmt.execute("DELETE FROM GenMetaObjects;");
+		stmt.execute("DELETE FROM GenMetaProperties;");
+		stmt.execute("DELETE FROM GenMetaAssociations;");
+		stmt.execute("DELETE FROM GenModel;");
+	}
+
+	public static boolean hasTable(Connection connection, String name) throws SQLException {
+		Statement stmt = connection.createStatement();
+		try {
+			ResultSet resultSet = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = '"
+					+ name + "';");
+			try {
+				return resultSet.next();
+			} finally {
+				resultSet.close();
+			}
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/*
+	 * Tells whether the database has the compact layout.
+	 */
+	public static boolean isCompact(Connection connection) throws SQLException {
+		Statement stmt = connection.createStatement();
+		try {
+			return isView(stmt, "GenObjects");
+		} finally {
+			stmt.close();
+		}
+	}
+
+	private static boolean isView(Statement stmt, String name) throws SQLException {
+		ResultSet resultSet = stmt.executeQuery("SELECT type FROM sqlite_master WHERE name = '" + name + "';");
+		try {
+			return resultSet.next() && "view".equals(resultSet.getString(1));
+		} finally {
+			resultSet.close();
+		}
+	}
+
+	public static String createIndexes(Connection connection) throws SQLException {
+		return createIndexes(connection, false);
+	}
+
+	/*
+	 * Creates missing secondary indexes of the layout and refreshes the
+	 * statistics used by the query planner. Returns the time taken by each step.
+	 */
+	public static String createIndexes(Connection connection, boolean compact) throws SQLException {
+		StringBuilder report = new StringBuilder();
+		Statement stmt = connection.createStatement();
+		try {
+			for (String[] index : compact ? COMPACT_INDEXES : INDEXES) {
+				long start = System.nanoTime();
+				stmt.execute("CREATE INDEX IF NOT EXISTS " + index[0] + " ON " + index[1] + ";");
+				report.append("Index " + index[0] + " created in " + (System.nanoTime() - start) / 1000000 + " ms\n");
+			}
+			long start = System.nanoTime();
+			stmt.execute("ANALYZE;");
+			report.append("Statistics analyzed in " + (System.nanoTime() - start) / 1000000 + " ms");
+		} finally {
+			stmt.close();
+		}
+		return report.toString();
+	}
+
+	/*
+	 * Creates the full text index of the values of NAME, LOADNAME and TEXT
+	 * properties again from the loaded tables. The rows are inserted with a
+	 * single statement and the index is then merged into one segment. Returns
+	 * the time taken by each step.
+	 */
+	public static String createFullText(Connection connection) throws SQLException {
+		Statement stmt = connection.createStatement();
+		try {
+			long start = System.nanoTime();
+			stmt.execute(DROP_FULL_TEXT);
+			stmt.execute(CREATE_FULL_TEXT);
+			int count = stmt.executeUpdate(POPULATE_FULL_TEXT);
+			String report = "Full text index of " + count + " values created in " + (System.nanoTime() - start) / 1000000
+					+ " ms\n";
+			start = System.nanoTime();
+			stmt.execute(OPTIMIZE_FULL_TEXT);
+			return report + "Full text index optimized in " + (System.nanoTime() - start) / 1000000 + " ms";
+		} finally {
+			stmt.close();
+		}
+	}
+
+	public static void dropIndexes(Connection connection, boolean compact) throws SQLException {
+		Statement stmt = connection.createStatement();
+		try {
+			for (String[] index : compact ? COMPACT_INDEXES : INDEXES) {
+				stmt.execute("DROP INDEX IF EXISTS " + index[0] + ";");
+			}
+		} finally {
+			stmt.close();
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.sqlite;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.ca.gen.jmmi.ids.ObjId;
+
+/*
+ * Deletes objects with their properties and associations from the Bee Gen
+ * Model. Single objects are removed immediately, so that they can be inserted
+ * again in the same transaction. Objects at the other end of their old and new
+ * associations are collected, as the associations stored from that end may
+ * have to be loaded again.
+ */
+public class ObjectRemover {
+
+	private final Connection connection;
+	private final PreparedStatement deleteObj;
+	private final PreparedStatement deletePrp;
+	private final PreparedStatement deleteAsc;
+	private final PreparedStatement selectTargets;
+	private final Set<Long> reloaded = new HashSet<Long>();
+	private final Set<Long> neighbours = new HashSet<Long>();
+	private long rowcount;
+	private int objectcount;
+
+	public ObjectRemover(Connection connection) throws SQLException {
+		this.connection = connection;
+		deleteObj = connection.prepareStatement("DELETE FROM GenObjects WHERE id = ?;");
+		deletePrp = connection.prepareStatement("DELETE FROM GenProperties WHERE objid = ?;");
+		deleteAsc = connection.prepareStatement("DELETE FROM GenAssociations WHERE fromObjid = ?;");
+		selectTargets = connection.prepareStatement("SELECT toObjid FROM GenAssociations WHERE fromObjid = ?;");
+	}
+
+	/*
+	 * Removes the object, its properties and the associations going from it.
+	 */
+	public void remove(long id) throws SQLException {
+		reloaded.add(id);
+		selectTargets.setLong(1, id);
+		ResultSet resultSet = selectTargets.executeQuery();
+		while (resultSet.next()) {
+			neighbours.add(resultSet.getLong(1));
+		}
+		resultSet.close();
+		deleteObj.setLong(1, id);
+		rowcount += deleteObj.executeUpdate();
+		deletePrp.setLong(1, id);
+		rowcount += deletePrp.executeUpdate();
+		deleteAsc.setLong(1, id);
+		rowcount += deleteAsc.executeUpdate();
+	}
+
+	/*
+	 * Object at the end of an association of an object loaded again.
+	 */
+	public void addNeighbour(long id) {
+		neighbours.add(id);
+	}
+
+	/*
+	 * Objects associated with an object loaded again, before or now, which
+	 * were not loaded again themselves. The association going back from them
+	 * may have changed while their modification stamp did not, so they have
+	 * to be loaded again too. Objects no longer in the model are left out.
+	 */
+	public List<ObjId> getNeighbours(Collection<Long> vanished) {
+		List<Long> ids = new ArrayList<Long>();
+		for (Long id : neighbours) {
+			if (!reloaded.contains(id) && !vanished.contains(id)) {
+				ids.add(id);
+			}
+		}
+		Collections.sort(ids);
+		List<ObjId> result = new ArrayList<ObjId>(ids.size());
+		for (Long id : ids) {
+			result.add(ObjId.getInstance(id));
+		}
+		return result;
+	}
+
+	/*
+	 * Removes objects which no longer exist in the model, together with all
+	 * associations going to them.
+	 */
+	public void removeAll(Collection<Long> ids) throws SQLException {
+		if (ids.isEmpty()) {
+			return;
+		}
+		Statement stmt = connection.createStatement();
+		stmt.execute("CREATE TEMP TABLE IF NOT EXISTS BeeGenRemoved (id INTEGER PRIMARY KEY);");
+		stmt.execute("DELETE FROM BeeGenRemoved;");
+		PreparedStatement insert = connection.prepareStatement("INSERT INTO BeeGenRemoved (id) VALUES (?);");
+		for (Long id : ids) {
+			insert.setLong(1, id);
+			insert.addBatch();
+		}
+		insert.executeBatch();
+		insert.close();
+		rowcount += stmt.executeUpdate("DELETE FROM GenObjects WHERE id IN (SELECT id FROM BeeGenRemoved);");
+		rowcount += stmt.executeUpdate("DELETE FROM GenProperties WHERE objid IN (SELECT id FROM BeeGenRemoved);");
+		rowcount += stmt.executeUpdate("DELETE FROM GenAssociations WHERE fromObjid IN (SELECT id FROM BeeGenRemoved) "
+				+ "OR toObjid IN (SELECT id FROM BeeGenRemoved);");
+		stmt.execute("DELETE FROM BeeGenRemoved;");
+		stmt.close();
+		objectcount += ids.size();
+	}
+
+	public void close() throws SQLException {
+		deleteObj.close();
+		deletePrp.close();
+		deleteAsc.close();
+		selectTargets.close();
+	}
+
+	/*
+	 * Number of rows deleted from all tables.
+	 */
+	public long getRowCount() {
+		return rowcount;
+	}
+
+	/*
+	 * Number of objects removed as no longer existing in the model.
+	 */
+	public int getRemovedCount() {
+		return objectcount;
+	}
+
+}
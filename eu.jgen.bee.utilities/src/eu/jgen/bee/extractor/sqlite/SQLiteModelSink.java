@@ -0,0 +1,109 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.sqlite;
+
+import java.sql.SQLException;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ObjectRecord;
+
+/*
+ * Loads objects, properties and associations to the tables GenObjects,
+ * GenProperties and GenAssociations. The tables have to exist, the transaction
+ * is controlled by the caller.
+ */
+public class SQLiteModelSink implements ModelSink {
+
+	private final BulkInserter statementObj;
+	private final BulkInserter statementPrp;
+	private final BulkInserter statementAsc;
+	private ObjectRemover remover;
+
+	public SQLiteModelSink(BulkInserter statementObj, BulkInserter statementPrp, BulkInserter statementAsc) {
+		this.statementObj = statementObj;
+		this.statementPrp = statementPrp;
+		this.statementAsc = statementAsc;
+	}
+
+	/*
+	 * When set, rows already stored for the object are deleted before it is
+	 * inserted, and the targets of its associations are passed to the remover.
+	 */
+	public void setRemover(ObjectRemover remover) {
+		this.remover = remover;
+	}
+
+	public void begin(ModelSource source) throws ExtractionException {
+	}
+
+	public void object(ObjectRecord record) throws ExtractionException {
+		try {
+			if (remover != null) {
+				remover.remove(record.getId());
+				for (int i = 0; i < record.getAssociationCount(); i++) {
+					remover.addNeighbour(record.getTarget(i));
+				}
+			}
+			insertObject(record);
+			insertAssociations(record);
+		} catch (SQLException e) {
+			throw new ExtractionException("Problem with loading object " + record.getId() + ".", e);
+		}
+	}
+
+	public void end() throws ExtractionException {
+		try {
+			statementObj.close();
+			statementPrp.close();
+			statementAsc.close();
+		} catch (SQLException e) {
+			throw new ExtractionException("Problem with loading tables.", e);
+		}
+	}
+
+	private void insertObject(ObjectRecord record) throws SQLException {
+		for (int i = 0; i < record.getPropertyCount(); i++) {
+			statementPrp.setLong(1, record.getId());
+			statementPrp.setInt(2, record.getPrpType(i));
+			statementPrp.setString(3, record.getPrpMnemonic(i));
+			statementPrp.setString(4, record.getFormat(i).name());
+			statementPrp.setString(5, record.getValue(i));
+			statementPrp.endRow();
+		}
+		statementObj.setLong(1, record.getId());
+		statementObj.setInt(2, record.getObjType());
+		statementObj.setString(3, record.getObjMnemonic());
+		statementObj.setString(4, record.getName());
+		statementObj.endRow();
+	}
+
+	private void insertAssociations(ObjectRecord record) throws SQLException {
+		for (int i = 0; i < record.getAssociationCount(); i++) {
+			statementAsc.setLong(1, record.getId());
+			statementAsc.setInt(2, record.getAscType(i));
+			statementAsc.setLong(3, record.getTarget(i));
+			statementAsc.setInt(4, record.getInverseAscType(i));
+			statementAsc.setString(5, record.getAscMnemonic(i));
+			statementAsc.setString(6, record.getCard(i));
+			statementAsc.setString(7, record.getDirection(i));
+			statementAsc.setLong(8, record.getSeqno(i));
+			statementAsc.endRow();
+		}
+	}
+
+}
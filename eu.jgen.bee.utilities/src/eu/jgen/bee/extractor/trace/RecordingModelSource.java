@@ -0,0 +1,130 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.trace;
+
+import java.util.List;
+
+import com.ca.gen.jmmi.ids.ObjId;
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelObject;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+
+/*
+ * Model source writing every call made to another source, its result and
+ * the time it has taken into a trace. Opening an object includes reading its
+ * type.
+ */
+public class RecordingModelSource implements ModelSource {
+
+	private final ModelSource source;
+	private final TraceWriter writer;
+
+	public RecordingModelSource(ModelSource source, TraceWriter writer) {
+		this.source = source;
+		this.writer = writer;
+	}
+
+	public String getName() {
+		return source.getName();
+	}
+
+	public SchemaCatalog getCatalog() {
+		return source.getCatalog();
+	}
+
+	public List<ObjId> getObjIds() throws ExtractionException {
+		long start = System.nanoTime();
+		List<ObjId> objIds = source.getObjIds();
+		writer.objects(null, objIds, System.nanoTime() - start);
+		return objIds;
+	}
+
+	public List<ObjId> getObjIds(ObjTypeCode objTypeCode) throws ExtractionException {
+		long start = System.nanoTime();
+		List<ObjId> objIds = source.getObjIds(objTypeCode);
+		writer.objects(objTypeCode, objIds, System.nanoTime() - start);
+		return objIds;
+	}
+
+	public ModelObject getObject(ObjId objId) throws ExtractionException {
+		long start = System.nanoTime();
+		ModelObject object = source.getObject(objId);
+		ObjTypeCode objTypeCode = object.getObjTypeCode();
+		writer.object(objId, objTypeCode, System.nanoTime() - start);
+		return new RecordingModelObject(object, objTypeCode);
+	}
+
+	private class RecordingModelObject implements ModelObject {
+
+		private final ModelObject object;
+		private final ObjTypeCode objTypeCode;
+
+		RecordingModelObject(ModelObject object, ObjTypeCode objTypeCode) {
+			this.object = object;
+			this.objTypeCode = objTypeCode;
+		}
+
+		public ObjId getId() {
+			return object.getId();
+		}
+
+		public ObjTypeCode getObjTypeCode() {
+			return objTypeCode;
+		}
+
+		public String getTextProperty(PrpTypeCode prpTypeCode) {
+			long start = System.nanoTime();
+			String value = object.getTextProperty(prpTypeCode);
+			writer.textProperty(object.getId(), prpTypeCode, value, System.nanoTime() - start);
+			return value;
+		}
+
+		public char getCharProperty(PrpTypeCode prpTypeCode) {
+			long start = System.nanoTime();
+			char value = object.getCharProperty(prpTypeCode);
+			writer.charProperty(object.getId(), prpTypeCode, value, System.nanoTime() - start);
+			return value;
+		}
+
+		public int getIntProperty(PrpTypeCode prpTypeCode) {
+			long start = System.nanoTime();
+			int value = object.getIntProperty(prpTypeCode);
+			writer.intProperty(object.getId(), prpTypeCode, value, System.nanoTime() - start);
+			return value;
+		}
+
+		public ObjId followAssociationOne(AscTypeCode ascTypeCode) {
+			long start = System.nanoTime();
+			ObjId one = object.followAssociationOne(ascTypeCode);
+			writer.followOne(object.getId(), ascTypeCode, one, System.nanoTime() - start);
+			return one;
+		}
+
+		public List<ObjId> followAssociationMany(AscTypeCode ascTypeCode) {
+			long start = System.nanoTime();
+			List<ObjId> many = object.followAssociationMany(ascTypeCode);
+			writer.followMany(object.getId(), ascTypeCode, many, System.nanoTime() - start);
+			return many;
+		}
+
+	}
+
+}
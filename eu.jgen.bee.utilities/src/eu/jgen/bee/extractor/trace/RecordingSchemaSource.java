@@ -0,0 +1,172 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package eu.jgen.bee.extractor.trace;
+
+import java.util.List;
+
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+import com.ca.gen.jmmi.util.PrpFormat;
+
+import eu.jgen.bee.extractor.schema.SchemaSource;
+
+/*
+ * Schema source writing every call made to another source, its result and
+ * the time it has taken into a trace.
+ */
+public class RecordingSchemaSource implements SchemaSource {
+
+	private final SchemaSource source;
+	private final TraceWriter writer;
+
+	public RecordingSchemaSource(SchemaSource source, TraceWriter writer) {
+		this.source = source;
+		this.writer = writer;
+	}
+
+	public String getSchemaLevel() {
+		return source.getSchemaLevel();
+	}
+
+	public short getCode(ObjTypeCode objTypeCode) {
+		long start = System.nanoTime();
+		short value = source.getCode(objTypeCode);
+		writer.schema(TraceCall.OBJ_CODE, objTypeCode, null, Short.valueOf(value), System.nanoTime() - start);
+		return value;
+	}
+
+	public String getMnemonic(ObjTypeCode objTypeCode) {
+		long start = System.nanoTime();
+		String value = source.getMnemonic(objTypeCode);
+		writer.schema(TraceCall.OBJ_MNEMONIC, objTypeCode, null, value, System.nanoTime() - start);
+		return value;
+	}
+
+	public List<PrpTypeCode> getProperties(ObjTypeCode objTypeCode) {
+		long start = System.nanoTime();
+		List<PrpTypeCode> value = source.getProperties(objTypeCode);
+		writer.schema(TraceCall.OBJ_PROPERTIES, objTypeCode, null, value, System.nanoTime() - start);
+		return value;
+	}
+
+	public List<AscTypeCode> getAssociations(ObjTypeCode objTypeCode) {
+		long start = System.nanoTime();
+		List<AscTypeCode> value = source.getAssociations(objTypeCode);
+		writer.schema(TraceCall.OBJ_ASSOCIATIONS, objTypeCode, null, value, System.nanoTime() - start);
+		return value;
+	}
+
+	public short getCode(PrpTypeCode prpTypeCode) {
+		long start = System.nanoTime();
+		short value = source.getCode(prpTypeCode);
+		writer.schema(TraceCall.PRP_CODE, prpTypeCode, null, Short.valueOf(value), System.nanoTime() - start);
+		return value;
+	}
+
+	public String getMnemonic(PrpTypeCode prpTypeCode) {
+		long start = System.nanoTime();
+		String value = source.getMnemonic(prpTypeCode);
+		writer.schema(TraceCall.PRP_MNEMONIC, prpTypeCode, null, value, System.nanoTime() - start);
+		return value;
+	}
+
+	public PrpFormat getFormat(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		long start = System.nanoTime();
+		PrpFormat value = source.getFormat(objTypeCode, prpTypeCode);
+		writer.schema(TraceCall.PRP_FORMAT, objTypeCode, prpTypeCode, value, System.nanoTime() - start);
+		return value;
+	}
+
+	public short getLength(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		long start = System.nanoTime();
+		short value = source.getLength(objTypeCode, prpTypeCode);
+		writer.schema(TraceCall.PRP_LENGTH, objTypeCode, prpTypeCode, Short.valueOf(value), System.nanoTime() - start);
+		return value;
+	}
+
+	public String getDefaultTxtValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		long start = System.nanoTime();
+		String value = source.getDefaultTxtValue(objTypeCode, prpTypeCode);
+		writer.schema(TraceCall.PRP_DEFAULT_TEXT, objTypeCode, prpTypeCode, value, System.nanoTime() - start);
+		return value;
+	}
+
+	public long getDefaultIntValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		long start = System.nanoTime();
+		long value = source.getDefaultIntValue(objTypeCode, prpTypeCode);
+		writer.schema(TraceCall.PRP_DEFAULT_INT, objTypeCode, prpTypeCode, Long.valueOf(value), System.nanoTime() - start);
+		return value;
+	}
+
+	public char getDefaultChrValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		long start = System.nanoTime();
+		char value = source.getDefaultChrValue(objTypeCode, prpTypeCode);
+		writer.schema(TraceCall.PRP_DEFAULT_CHAR, objTypeCode, prpTypeCode, Character.valueOf(value), System.nanoTime() - start);
+		return value;
+	}
+
+	public short getCode(AscTypeCode ascTypeCode) {
+		long start = System.nanoTime();
+		short value = source.getCode(ascTypeCode);
+		writer.schema(TraceCall.ASC_CODE, ascTypeCode, null, Short.valueOf(value), System.nanoTime() - start);
+		return value;
+	}
+
+	public String getMnemonic(AscTypeCode ascTypeCode) {
+		long start = System.nanoTime();
+		String value = source.getMnemonic(ascTypeCode);
+		writer.schema(TraceCall.ASC_MNEMONIC, ascTypeCode, null, value, System.nanoTime() - start);
+		return value;
+	}
+
+	public boolean isForward(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		long start = System.nanoTime();
+		boolean value = source.isForward(objTypeCode, ascTypeCode);
+		writer.schema(TraceCall.ASC_FORWARD, objTypeCode, ascTypeCode, Boolean.valueOf(value), System.nanoTime() - start);
+		return value;
+	}
+
+	public boolean isOneToMany(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		long start = System.nanoTime();
+		boolean value = source.isOneToMany(objTypeCode, ascTypeCode);
+		writer.schema(TraceCall.ASC_ONE_TO_MANY, objTypeCode, ascTypeCode, Boolean.valueOf(value), System.nanoTime() - start);
+		return value;
+	}
+
+	public boolean isIgnorable(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		long start = System.nanoTime();
+		boolean value = source.isIgnorable(objTypeCode, ascTypeCode);
+		writer.schema(TraceCall.ASC_IGNORABLE, objTypeCode, ascTypeCode, Boolean.valueOf(value), System.nanoTime() - start);
+		return value;
+	}
+
+	public boolean isOrdered(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		long start = System.nanoTime();
+		boolean value = source.isOrdered(objTypeCode, ascTypeCode);
+		writer.schema(TraceCall.ASC_ORDERED, objTypeCode, ascTypeCode, Boolean.valueOf(value), System.nanoTime() - start);
+		return value;
+	}
+
+	public AscTypeCode getInverse(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		long start = System.nanoTime();
+		AscTypeCode value = source.getInverse(objTypeCode, ascTypeCode);
+		writer.schema(TraceCall.ASC_INVERSE, objTypeCode, ascTypeCode, value, System.nanoTime() - start);
+		return value;
+	}
+
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.trace;
+
+import java.util.List;
+
+import com.ca.gen.jmmi.ids.ObjId;
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelObject;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+
+/*
+ * Model source answering from a trace, so the extraction runs without CA Gen
+ * and the JMMI native library. Without latency the calls cost only the
+ * lookup in memory, which leaves the time of the extraction code itself.
+ * With latency each call takes as long as it took when it was recorded.
+ * Calls of objects which have not been recorded fail with
+ * IllegalStateException, as the calls of JMMI fail with unchecked
+ * exceptions.
+ */
+public class ReplayModelSource implements ModelSource {
+
+	private static final ObjTypeCode[] TYPES = ObjTypeCode.values();
+
+	private final Trace trace;
+	private final SchemaCatalog catalog;
+	private final boolean latency;
+
+	public ReplayModelSource(Trace trace, SchemaCatalog catalog, boolean latency) {
+		this.trace = trace;
+		this.catalog = catalog;
+		this.latency = latency;
+	}
+
+	public String getName() {
+		return trace.getModelName();
+	}
+
+	public SchemaCatalog getCatalog() {
+		return catalog;
+	}
+
+	public List<ObjId> getObjIds() throws ExtractionException {
+		List<ObjId> objIds = trace.getObjIds(null, latency);
+		if (objIds == null) {
+			throw new ExtractionException("List of the objects of the model has not been recorded in the trace.");
+		}
+		return objIds;
+	}
+
+	public List<ObjId> getObjIds(ObjTypeCode objTypeCode) throws ExtractionException {
+		List<ObjId> objIds = trace.getObjIds(objTypeCode, latency);
+		if (objIds == null) {
+			throw new ExtractionException("List of the objects of the type " + objTypeCode.name()
+					+ " has not been recorded in the trace.");
+		}
+		return objIds;
+	}
+
+	public ModelObject getObject(ObjId objId) throws ExtractionException {
+		Trace.RecordedObject recorded = trace.getObject(objId.getValue());
+		if (recorded == null) {
+			throw new ExtractionException("Object " + objId.getValue() + " has not been recorded in the trace.");
+		}
+		if (latency) {
+			Trace.pause(recorded.getLatency());
+		}
+		return new ReplayModelObject(objId, recorded);
+	}
+
+	private class ReplayModelObject implements ModelObject {
+
+		private final ObjId objId;
+		private final Trace.RecordedObject recorded;
+
+		ReplayModelObject(ObjId objId, Trace.RecordedObject recorded) {
+			this.objId = objId;
+			this.recorded = recorded;
+		}
+
+		public ObjId getId() {
+			return objId;
+		}
+
+		public ObjTypeCode getObjTypeCode() {
+			return TYPES[recorded.getObjType()];
+		}
+
+		public String getTextProperty(PrpTypeCode prpTypeCode) {
+			return (String) value(TraceCall.TEXT_PROPERTY, prpTypeCode);
+		}
+
+		public char getCharProperty(PrpTypeCode prpTypeCode) {
+			return ((Character) value(TraceCall.CHAR_PROPERTY, prpTypeCode)).charValue();
+		}
+
+		public int getIntProperty(PrpTypeCode prpTypeCode) {
+			return ((Integer) value(TraceCall.INT_PROPERTY, prpTypeCode)).intValue();
+		}
+
+		public ObjId followAssociationOne(AscTypeCode ascTypeCode) {
+			long one = ((Long) value(TraceCall.FOLLOW_ONE, ascTypeCode)).longValue();
+			return one == -1 ? null : ObjId.getInstance(one);
+		}
+
+		public List<ObjId> followAssociationMany(AscTypeCode ascTypeCode) {
+			return Trace.toObjIds((long[]) value(TraceCall.FOLLOW_MANY, ascTypeCode));
+		}
+
+		private Object value(TraceCall call, Enum<?> code) {
+			int i = recorded.find(call, code);
+			if (i == -1) {
+				throw new IllegalStateException("Call " + call + " for " + code.name() + " of the object "
+						+ objId.getValue() + " has not been recorded in the trace.");
+			}
+			if (latency) {
+				Trace.pause(recorded.getLatency(i));
+			}
+			return recorded.getValue(i);
+		}
+
+	}
+
+}
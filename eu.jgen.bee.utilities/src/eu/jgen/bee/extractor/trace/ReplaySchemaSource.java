@@ -0,0 +1,121 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package eu.jgen.bee.extractor.trace;
+
+import java.util.List;
+
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+import com.ca.gen.jmmi.util.PrpFormat;
+
+import eu.jgen.bee.extractor.schema.SchemaSource;
+
+/*
+ * Schema source answering from a trace. Calls which have not been recorded
+ * fail with IllegalStateException. With latency each call takes as long as
+ * it took when it was recorded.
+ */
+public class ReplaySchemaSource implements SchemaSource {
+
+	private final Trace trace;
+	private final boolean latency;
+
+	public ReplaySchemaSource(Trace trace, boolean latency) {
+		this.trace = trace;
+		this.latency = latency;
+	}
+
+	public String getSchemaLevel() {
+		return trace.getSchemaLevel();
+	}
+
+	public short getCode(ObjTypeCode objTypeCode) {
+		return ((Short) trace.getSchemaValue(TraceCall.OBJ_CODE, objTypeCode, null, latency)).shortValue();
+	}
+
+	public String getMnemonic(ObjTypeCode objTypeCode) {
+		return (String) trace.getSchemaValue(TraceCall.OBJ_MNEMONIC, objTypeCode, null, latency);
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<PrpTypeCode> getProperties(ObjTypeCode objTypeCode) {
+		return (List<PrpTypeCode>) trace.getSchemaValue(TraceCall.OBJ_PROPERTIES, objTypeCode, null, latency);
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<AscTypeCode> getAssociations(ObjTypeCode objTypeCode) {
+		return (List<AscTypeCode>) trace.getSchemaValue(TraceCall.OBJ_ASSOCIATIONS, objTypeCode, null, latency);
+	}
+
+	public short getCode(PrpTypeCode prpTypeCode) {
+		return ((Short) trace.getSchemaValue(TraceCall.PRP_CODE, prpTypeCode, null, latency)).shortValue();
+	}
+
+	public String getMnemonic(PrpTypeCode prpTypeCode) {
+		return (String) trace.getSchemaValue(TraceCall.PRP_MNEMONIC, prpTypeCode, null, latency);
+	}
+
+	public PrpFormat getFormat(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		return (PrpFormat) trace.getSchemaValue(TraceCall.PRP_FORMAT, objTypeCode, prpTypeCode, latency);
+	}
+
+	public short getLength(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		return ((Short) trace.getSchemaValue(TraceCall.PRP_LENGTH, objTypeCode, prpTypeCode, latency)).shortValue();
+	}
+
+	public String getDefaultTxtValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		return (String) trace.getSchemaValue(TraceCall.PRP_DEFAULT_TEXT, objTypeCode, prpTypeCode, latency);
+	}
+
+	public long getDefaultIntValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		return ((Long) trace.getSchemaValue(TraceCall.PRP_DEFAULT_INT, objTypeCode, prpTypeCode, latency)).longValue();
+	}
+
+	public char getDefaultChrValue(ObjTypeCode objTypeCode, PrpTypeCode prpTypeCode) {
+		return ((Character) trace.getSchemaValue(TraceCall.PRP_DEFAULT_CHAR, objTypeCode, prpTypeCode, latency)).charValue();
+	}
+
+	public short getCode(AscTypeCode ascTypeCode) {
+		return ((Short) trace.getSchemaValue(TraceCall.ASC_CODE, ascTypeCode, null, latency)).shortValue();
+	}
+
+	public String getMnemonic(AscTypeCode ascTypeCode) {
+		return (String) trace.getSchemaValue(TraceCall.ASC_MNEMONIC, ascTypeCode, null, latency);
+	}
+
+	public boolean isForward(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		return ((Boolean) trace.getSchemaValue(TraceCall.ASC_FORWARD, objTypeCode, ascTypeCode, latency)).booleanValue();
+	}
+
+	public boolean isOneToMany(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		return ((Boolean) trace.getSchemaValue(TraceCall.ASC_ONE_TO_MANY, objTypeCode, ascTypeCode, latency)).booleanValue();
+	}
+
+	public boolean isIgnorable(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		return ((Boolean) trace.getSchemaValue(TraceCall.ASC_IGNORABLE, objTypeCode, ascTypeCode, latency)).booleanValue();
+	}
+
+	public boolean isOrdered(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		return ((Boolean) trace.getSchemaValue(TraceCall.ASC_ORDERED, objTypeCode, ascTypeCode, latency)).booleanValue();
+	}
+
+	public AscTypeCode getInverse(ObjTypeCode objTypeCode, AscTypeCode ascTypeCode) {
+		return (AscTypeCode) trace.getSchemaValue(TraceCall.ASC_INVERSE, objTypeCode, ascTypeCode, latency);
+	}
+
+}
@@ -0,0 +1,354 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.trace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPInputStream;
+
+import com.ca.gen.jmmi.ids.ObjId;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+
+/*
+ * Trace file read into memory. Results are kept by the call and its
+ * arguments instead of the order of the calls, so the trace can be replayed
+ * with other sinks or with the pipeline on or off, as long as the same parts
+ * of the model are read. A trace cut short, because the recording extraction
+ * has been stopped, is read up to the last complete call.
+ */
+public final class Trace {
+
+	private static final TraceCall[] CALLS = TraceCall.values();
+	private static final int NO_CODE = 0xFFFF;
+
+	/*
+	 * Latencies shorter than this are waited for by spinning, because parking
+	 * the thread is not precise enough for them.
+	 */
+	private static final long SPIN_NANOS = 100000;
+
+	private final File file;
+	private final String modelName;
+	private final String schemaLevel;
+	private final String options;
+	private final long created;
+	private final Map<Integer, Recorded> lists = new HashMap<Integer, Recorded>();
+	private final Map<Long, RecordedObject> objects = new HashMap<Long, RecordedObject>();
+	private final Map<Long, Recorded> schema = new HashMap<Long, Recorded>();
+	private final long[] counts = new long[CALLS.length];
+	private final long[] nanos = new long[CALLS.length];
+	private boolean complete;
+
+	private Trace(File file, String[] header) {
+		this.file = file;
+		this.modelName = header[0];
+		this.schemaLevel = header[1];
+		this.options = header[2];
+		this.created = Long.parseLong(header[3]);
+	}
+
+	public static Trace read(File file) throws IOException {
+		InputStream stream = new FileInputStream(file);
+		try {
+			if (file.getName().endsWith(".gz")) {
+				stream = new GZIPInputStream(stream, 65536);
+			}
+			DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 65536));
+			Trace trace = new Trace(file, TraceFormat.readHeader(in));
+			try {
+				trace.readCalls(in);
+			} catch (EOFException e) {
+				trace.complete = false;
+			}
+			return trace;
+		} finally {
+			stream.close();
+		}
+	}
+
+	private void readCalls(DataInputStream in) throws IOException {
+		long calls = 0;
+		while (true) {
+			int code = TraceFormat.readCode(in);
+			if (code == -1) {
+				return;
+			}
+			if (code == TraceFormat.END) {
+				if (TraceFormat.readVarLong(in) != calls) {
+					throw new IOException("Trace '" + file.getPath() + "' is damaged.");
+				}
+				complete = true;
+				return;
+			}
+			if (code > CALLS.length) {
+				throw new IOException("Trace '" + file.getPath() + "' holds an unknown call " + code + ".");
+			}
+			TraceCall call = CALLS[code - 1];
+			long elapsed = TraceFormat.readVarLong(in);
+			switch (call) {
+			case LIST_OBJECTS:
+				int objType = (int) TraceFormat.readSigned(in);
+				lists.put(Integer.valueOf(objType), new Recorded(readIds(in), elapsed));
+				break;
+			case OPEN_OBJECT:
+				long id = TraceFormat.readVarLong(in);
+				int type = (int) TraceFormat.readVarLong(in);
+				if (!objects.containsKey(Long.valueOf(id))) {
+					objects.put(Long.valueOf(id), new RecordedObject(type, elapsed));
+				}
+				break;
+			case TEXT_PROPERTY:
+			case CHAR_PROPERTY:
+			case INT_PROPERTY:
+			case FOLLOW_ONE:
+			case FOLLOW_MANY:
+				readObjectCall(in, call, elapsed);
+				break;
+			default:
+				int first = (int) TraceFormat.readVarLong(in);
+				int second = (int) TraceFormat.readSigned(in);
+				schema.put(Long.valueOf(key(call, first, second)),
+						new Recorded(TraceFormat.readSchemaValue(in, call), elapsed));
+				break;
+			}
+			counts[call.ordinal()]++;
+			nanos[call.ordinal()] += elapsed;
+			calls++;
+		}
+	}
+
+	private void readObjectCall(DataInputStream in, TraceCall call, long elapsed) throws IOException {
+		long id = TraceFormat.readVarLong(in);
+		int code = (int) TraceFormat.readVarLong(in);
+		Object value;
+		switch (call) {
+		case TEXT_PROPERTY:
+			value = TraceFormat.readString(in);
+			break;
+		case CHAR_PROPERTY:
+			value = Character.valueOf((char) TraceFormat.readVarLong(in));
+			break;
+		case INT_PROPERTY:
+			value = Integer.valueOf((int) TraceFormat.readSigned(in));
+			break;
+		case FOLLOW_ONE:
+			value = Long.valueOf(TraceFormat.readSigned(in));
+			break;
+		default:
+			value = readIds(in);
+			break;
+		}
+		RecordedObject object = objects.get(Long.valueOf(id));
+		if (object == null) {
+			throw new IOException("Trace '" + file.getPath() + "' reads object " + id + " before opening it.");
+		}
+		object.add(call.ordinal() << 16 | code, value, elapsed);
+	}
+
+	private static long[] readIds(DataInputStream in) throws IOException {
+		long[] ids = new long[(int) TraceFormat.readVarLong(in)];
+		long previous = 0;
+		for (int i = 0; i < ids.length; i++) {
+			previous += TraceFormat.readSigned(in);
+			ids[i] = previous;
+		}
+		return ids;
+	}
+
+	private static long key(TraceCall call, int first, int second) {
+		return (long) call.ordinal() << 32 | (long) first << 16 | (second == -1 ? NO_CODE : second);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public String getModelName() {
+		return modelName;
+	}
+
+	public String getSchemaLevel() {
+		return schemaLevel;
+	}
+
+	/*
+	 * Options of the extraction which has been recorded.
+	 */
+	public String getOptions() {
+		return options;
+	}
+
+	public long getCreated() {
+		return created;
+	}
+
+	/*
+	 * False when the recording extraction has been stopped before the end.
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	public int getObjectCount() {
+		return objects.size();
+	}
+
+	/*
+	 * Objects of the type, or of the whole model for null, or null when the
+	 * list has not been recorded.
+	 */
+	List<ObjId> getObjIds(ObjTypeCode objTypeCode, boolean latency) {
+		Recorded recorded = lists.get(Integer.valueOf(objTypeCode == null ? -1 : objTypeCode.ordinal()));
+		if (recorded == null) {
+			return null;
+		}
+		if (latency) {
+			pause(recorded.latency);
+		}
+		return toObjIds((long[]) recorded.value);
+	}
+
+	RecordedObject getObject(long id) {
+		return objects.get(Long.valueOf(id));
+	}
+
+	Object getSchemaValue(TraceCall call, Enum<?> first, Enum<?> second, boolean latency) {
+		Recorded recorded = schema.get(Long.valueOf(key(call, first.ordinal(), second == null ? -1 : second.ordinal())));
+		if (recorded == null) {
+			throw new IllegalStateException("Call " + call + " for " + first.name()
+					+ (second == null ? "" : " and " + second.name()) + " has not been recorded in the trace.");
+		}
+		if (latency) {
+			pause(recorded.latency);
+		}
+		return recorded.value;
+	}
+
+	static List<ObjId> toObjIds(long[] ids) {
+		List<ObjId> list = new ArrayList<ObjId>(ids.length);
+		for (long id : ids) {
+			list.add(ObjId.getInstance(id));
+		}
+		return list;
+	}
+
+	/*
+	 * Waits for the given time without giving up the processor for short
+	 * times.
+	 */
+	static void pause(long nanos) {
+		long deadline = System.nanoTime() + nanos;
+		if (nanos > SPIN_NANOS) {
+			LockSupport.parkNanos(nanos - SPIN_NANOS);
+		}
+		while (System.nanoTime() - deadline < 0) {
+			/* spins until the deadline */
+		}
+	}
+
+	public String report() {
+		return "Trace '" + file.getPath() + "' of the model " + modelName + " recorded on " + new Date(created)
+				+ (options.length() == 0 ? "" : " with the options " + options)
+				+ (complete ? "" : ", cut short") + "\nNumber of objects in the trace is " + objects.size()
+				+ "\nRecorded " + TraceFormat.report(counts, nanos).replace("Number", "number");
+	}
+
+	private static final class Recorded {
+
+		private final Object value;
+		private final long latency;
+
+		Recorded(Object value, long latency) {
+			this.value = value;
+			this.latency = latency;
+		}
+
+	}
+
+	/*
+	 * Calls made for one object. Objects have only a few calls, so they are
+	 * kept in arrays searched from the start.
+	 */
+	static final class RecordedObject {
+
+		private final int objType;
+		private final long latency;
+		private int[] keys = new int[8];
+		private Object[] values = new Object[8];
+		private long[] latencies = new long[8];
+		private int size;
+
+		RecordedObject(int objType, long latency) {
+			this.objType = objType;
+			this.latency = latency;
+		}
+
+		int getObjType() {
+			return objType;
+		}
+
+		long getLatency() {
+			return latency;
+		}
+
+		void add(int key, Object value, long latency) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+				latencies = Arrays.copyOf(latencies, size * 2);
+			}
+			keys[size] = key;
+			values[size] = value;
+			latencies[size] = latency;
+			size++;
+		}
+
+		/*
+		 * Position of the call, -1 when it has not been recorded.
+		 */
+		int find(TraceCall call, Enum<?> code) {
+			int key = call.ordinal() << 16 | code.ordinal();
+			for (int i = 0; i < size; i++) {
+				if (keys[i] == key) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		Object getValue(int i) {
+			return values[i];
+		}
+
+		long getLatency(int i) {
+			return latencies[i];
+		}
+
+	}
+
+}
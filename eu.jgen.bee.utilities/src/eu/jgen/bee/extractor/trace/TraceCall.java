@@ -0,0 +1,51 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.trace;
+
+/*
+ * Calls to the CA Gen model and the schema helpers kept in a trace. The
+ * position of each call in this enum is its code in the trace file, so new
+ * calls are added at the end.
+ */
+public enum TraceCall {
+
+	LIST_OBJECTS,
+	OPEN_OBJECT,
+	TEXT_PROPERTY,
+	CHAR_PROPERTY,
+	INT_PROPERTY,
+	FOLLOW_ONE,
+	FOLLOW_MANY,
+	OBJ_CODE,
+	OBJ_MNEMONIC,
+	OBJ_PROPERTIES,
+	OBJ_ASSOCIATIONS,
+	PRP_CODE,
+	PRP_MNEMONIC,
+	PRP_FORMAT,
+	PRP_LENGTH,
+	PRP_DEFAULT_TEXT,
+	PRP_DEFAULT_INT,
+	PRP_DEFAULT_CHAR,
+	ASC_CODE,
+	ASC_MNEMONIC,
+	ASC_FORWARD,
+	ASC_ONE_TO_MANY,
+	ASC_IGNORABLE,
+	ASC_ORDERED,
+	ASC_INVERSE
+
+}
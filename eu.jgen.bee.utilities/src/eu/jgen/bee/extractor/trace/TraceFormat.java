@@ -0,0 +1,252 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.trace;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+import com.ca.gen.jmmi.util.PrpFormat;
+
+/*
+ * Layout of the trace file. The header holds the name of the model, the
+ * schema level, the options of the extraction and the sizes of the JMMI
+ * enums, whose positions stand for the type codes in the records. Each record
+ * is the code of the call plus one, its latency in nanoseconds, its arguments
+ * and its result. Numbers are written with a variable number of bytes, signed
+ * ones in zig-zag form, and a record with code 0 holding the number of calls
+ * ends the file.
+ */
+final class TraceFormat {
+
+	static final int MAGIC = 0x42454554;
+	static final short VERSION = 1;
+	static final int END = 0;
+
+	private TraceFormat() {
+	}
+
+	static void writeHeader(DataOutputStream out, String modelName, String schemaLevel, String options, long created)
+			throws IOException {
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		writeString(out, modelName);
+		writeString(out, schemaLevel);
+		writeString(out, options);
+		out.writeLong(created);
+		writeVarLong(out, ObjTypeCode.values().length);
+		writeVarLong(out, PrpTypeCode.values().length);
+		writeVarLong(out, AscTypeCode.values().length);
+		writeVarLong(out, PrpFormat.values().length);
+	}
+
+	/*
+	 * Checks the header and returns the name of the model, the schema level and
+	 * the options, followed by the time of the recording.
+	 */
+	static String[] readHeader(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("File is not a trace of a CA Gen model.");
+		}
+		short version = in.readShort();
+		if (version != VERSION) {
+			throw new IOException("Trace has version " + version + ", expected " + VERSION + ".");
+		}
+		String[] header = { readString(in), readString(in), readString(in), String.valueOf(in.readLong()) };
+		if (readVarLong(in) != ObjTypeCode.values().length || readVarLong(in) != PrpTypeCode.values().length
+				|| readVarLong(in) != AscTypeCode.values().length || readVarLong(in) != PrpFormat.values().length) {
+			throw new IOException("Trace has been recorded with another version of JMMI.");
+		}
+		return header;
+	}
+
+	static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed number in the trace.");
+	}
+
+	static void writeSigned(DataOutputStream out, long value) throws IOException {
+		writeVarLong(out, (value << 1) ^ (value >> 63));
+	}
+
+	static long readSigned(DataInputStream in) throws IOException {
+		long value = readVarLong(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/*
+	 * Length plus one followed by UTF-8 bytes, 0 stands for null.
+	 */
+	static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			writeVarLong(out, 0);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(out, bytes.length + 1);
+		out.write(bytes);
+	}
+
+	static String readString(DataInputStream in) throws IOException {
+		int length = (int) readVarLong(in);
+		if (length == 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length - 1];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Writes the result of a call to the schema helpers.
+	 */
+	static void writeSchemaValue(DataOutputStream out, TraceCall call, Object value) throws IOException {
+		switch (call) {
+		case OBJ_CODE:
+		case PRP_CODE:
+		case ASC_CODE:
+		case PRP_LENGTH:
+			writeSigned(out, ((Short) value).shortValue());
+			break;
+		case PRP_DEFAULT_INT:
+			writeSigned(out, ((Long) value).longValue());
+			break;
+		case PRP_DEFAULT_CHAR:
+			writeVarLong(out, ((Character) value).charValue());
+			break;
+		case ASC_FORWARD:
+		case ASC_ONE_TO_MANY:
+		case ASC_IGNORABLE:
+		case ASC_ORDERED:
+			out.writeBoolean(((Boolean) value).booleanValue());
+			break;
+		case PRP_FORMAT:
+		case ASC_INVERSE:
+			writeSigned(out, value == null ? -1 : ((Enum<?>) value).ordinal());
+			break;
+		case OBJ_PROPERTIES:
+		case OBJ_ASSOCIATIONS:
+			List<?> list = (List<?>) value;
+			writeVarLong(out, list.size());
+			for (Object element : list) {
+				writeVarLong(out, ((Enum<?>) element).ordinal());
+			}
+			break;
+		default:
+			writeString(out, (String) value);
+			break;
+		}
+	}
+
+	static Object readSchemaValue(DataInputStream in, TraceCall call) throws IOException {
+		switch (call) {
+		case OBJ_CODE:
+		case PRP_CODE:
+		case ASC_CODE:
+		case PRP_LENGTH:
+			return Short.valueOf((short) readSigned(in));
+		case PRP_DEFAULT_INT:
+			return Long.valueOf(readSigned(in));
+		case PRP_DEFAULT_CHAR:
+			return Character.valueOf((char) readVarLong(in));
+		case ASC_FORWARD:
+		case ASC_ONE_TO_MANY:
+		case ASC_IGNORABLE:
+		case ASC_ORDERED:
+			return Boolean.valueOf(in.readBoolean());
+		case PRP_FORMAT:
+			int format = (int) readSigned(in);
+			return format == -1 ? null : PrpFormat.values()[format];
+		case ASC_INVERSE:
+			int inverse = (int) readSigned(in);
+			return inverse == -1 ? null : AscTypeCode.values()[inverse];
+		case OBJ_PROPERTIES:
+			int prpCount = (int) readVarLong(in);
+			List<PrpTypeCode> properties = new ArrayList<PrpTypeCode>(prpCount);
+			for (int i = 0; i < prpCount; i++) {
+				properties.add(PrpTypeCode.values()[(int) readVarLong(in)]);
+			}
+			return Collections.unmodifiableList(properties);
+		case OBJ_ASSOCIATIONS:
+			int ascCount = (int) readVarLong(in);
+			List<AscTypeCode> associations = new ArrayList<AscTypeCode>(ascCount);
+			for (int i = 0; i < ascCount; i++) {
+				associations.add(AscTypeCode.values()[(int) readVarLong(in)]);
+			}
+			return Collections.unmodifiableList(associations);
+		default:
+			return readString(in);
+		}
+	}
+
+	/*
+	 * Number of calls and their latency for each kind of call.
+	 */
+	static String report(long[] counts, long[] nanos) {
+		long total = 0;
+		long time = 0;
+		for (int i = 0; i < counts.length; i++) {
+			total += counts[i];
+			time += nanos[i];
+		}
+		StringBuilder builder = new StringBuilder();
+		builder.append("Number of calls is " + total + ", taking " + time / 1000000 + " ms");
+		for (TraceCall call : TraceCall.values()) {
+			int i = call.ordinal();
+			if (counts[i] > 0) {
+				builder.append(String.format("\n%-17s %10d calls %10d ms %10.1f us/call", call.name(), counts[i],
+						nanos[i] / 1000000, nanos[i] / 1000.0 / counts[i]));
+			}
+		}
+		return builder.toString();
+	}
+
+	/*
+	 * Code of the next record, or -1 when the file has been cut short, as it
+	 * is when the recording extraction has been stopped.
+	 */
+	static int readCode(DataInputStream in) throws IOException {
+		try {
+			return in.readUnsignedByte();
+		} catch (EOFException e) {
+			return -1;
+		}
+	}
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import com.ca.gen.jmmi.ids.ObjId;
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+
+/*
+ * Writes the calls made to the CA Gen model and the schema helpers, with their
+ * results and latencies, into a trace file as they happen. Files ending with
+ * .gz are compressed. Calls are written by the thread making them, so the
+ * methods are synchronized. Problems with writing are reported by close(),
+ * because the calls of model objects cannot throw them.
+ */
+public class TraceWriter {
+
+	private final File file;
+	private final DataOutputStream out;
+	private final long[] counts = new long[TraceCall.values().length];
+	private final long[] nanos = new long[TraceCall.values().length];
+	private long calls;
+	private IOException error;
+
+	public TraceWriter(File file, String modelName, String schemaLevel, String options) throws IOException {
+		this.file = file;
+		OutputStream stream = new FileOutputStream(file);
+		if (file.getName().endsWith(".gz")) {
+			stream = new GZIPOutputStream(stream, 65536);
+		}
+		out = new DataOutputStream(new BufferedOutputStream(stream, 65536));
+		TraceFormat.writeHeader(out, modelName, schemaLevel, options, System.currentTimeMillis());
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	synchronized void objects(ObjTypeCode objTypeCode, List<ObjId> objIds, long elapsed) {
+		try {
+			begin(TraceCall.LIST_OBJECTS, elapsed);
+			TraceFormat.writeSigned(out, objTypeCode == null ? -1 : objTypeCode.ordinal());
+			writeIds(objIds);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	synchronized void object(ObjId objId, ObjTypeCode objTypeCode, long elapsed) {
+		try {
+			begin(TraceCall.OPEN_OBJECT, elapsed);
+			TraceFormat.writeVarLong(out, objId.getValue());
+			TraceFormat.writeVarLong(out, objTypeCode.ordinal());
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	synchronized void textProperty(ObjId objId, PrpTypeCode prpTypeCode, String value, long elapsed) {
+		try {
+			beginProperty(TraceCall.TEXT_PROPERTY, objId, prpTypeCode, elapsed);
+			TraceFormat.writeString(out, value);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	synchronized void charProperty(ObjId objId, PrpTypeCode prpTypeCode, char value, long elapsed) {
+		try {
+			beginProperty(TraceCall.CHAR_PROPERTY, objId, prpTypeCode, elapsed);
+			TraceFormat.writeVarLong(out, value);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	synchronized void intProperty(ObjId objId, PrpTypeCode prpTypeCode, int value, long elapsed) {
+		try {
+			beginProperty(TraceCall.INT_PROPERTY, objId, prpTypeCode, elapsed);
+			TraceFormat.writeSigned(out, value);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	synchronized void followOne(ObjId objId, AscTypeCode ascTypeCode, ObjId one, long elapsed) {
+		try {
+			beginProperty(TraceCall.FOLLOW_ONE, objId, ascTypeCode, elapsed);
+			TraceFormat.writeSigned(out, one == null ? -1 : one.getValue());
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	synchronized void followMany(ObjId objId, AscTypeCode ascTypeCode, List<ObjId> many, long elapsed) {
+		try {
+			beginProperty(TraceCall.FOLLOW_MANY, objId, ascTypeCode, elapsed);
+			writeIds(many);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	/*
+	 * Call to the schema helpers with one or two type codes, the second one
+	 * is null for the calls with one.
+	 */
+	synchronized void schema(TraceCall call, Enum<?> first, Enum<?> second, Object value, long elapsed) {
+		try {
+			begin(call, elapsed);
+			TraceFormat.writeVarLong(out, first.ordinal());
+			TraceFormat.writeSigned(out, second == null ? -1 : second.ordinal());
+			TraceFormat.writeSchemaValue(out, call, value);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	private void begin(TraceCall call, long elapsed) throws IOException {
+		out.writeByte(call.ordinal() + 1);
+		TraceFormat.writeVarLong(out, elapsed);
+		counts[call.ordinal()]++;
+		nanos[call.ordinal()] += elapsed;
+		calls++;
+	}
+
+	private void beginProperty(TraceCall call, ObjId objId, Enum<?> code, long elapsed) throws IOException {
+		begin(call, elapsed);
+		TraceFormat.writeVarLong(out, objId.getValue());
+		TraceFormat.writeVarLong(out, code.ordinal());
+	}
+
+	/*
+	 * Identifiers as differences from the previous one, which are small for
+	 * the sorted lists of the model.
+	 */
+	private void writeIds(List<ObjId> objIds) throws IOException {
+		TraceFormat.writeVarLong(out, objIds.size());
+		long previous = 0;
+		for (ObjId objId : objIds) {
+			TraceFormat.writeSigned(out, objId.getValue() - previous);
+			previous = objId.getValue();
+		}
+	}
+
+	private void failed(IOException e) {
+		if (error == null) {
+			error = e;
+		}
+	}
+
+	public synchronized void close() throws IOException {
+		try {
+			out.writeByte(TraceFormat.END);
+			TraceFormat.writeVarLong(out, calls);
+		} finally {
+			out.close();
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	public synchronized String report() {
+		return "Trace has been written to '" + file.getPath() + "', " + file.length() / 1024 + " KB\n"
+				+ TraceFormat.report(counts, nanos);
+	}
+
+}
@@ -0,0 +1,291 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.traversal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ca.gen.jmmi.ids.ObjId;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+import com.ca.gen.jmmi.util.PrpFormat;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelObject;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.schema.ObjTypeEntry;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+
+/*
+ * Visits every object of the model exactly once. For each object its properties
+ * with other than default values and all its associations are read into an
+ * ObjectRecord, which is then passed to all registered sinks. With a projection
+ * only its objects, properties and associations are read.
+ */
+public class ModelTraversal {
+
+	private final ModelSource source;
+	private final SchemaCatalog catalog;
+	private final List<ModelSink> sinks = new ArrayList<ModelSink>();
+	private ObjectFilter filter;
+	private List<ObjId> objIds;
+	private ObjId resumeAfter;
+	private int resumeIndex;
+	private Projection projection;
+
+	/*
+	 * Objects of the projection with the number of steps from the nearest root.
+	 * Objects reached from the roots are appended to the list being read.
+	 */
+	private Map<Long, Integer> depths;
+	private List<ObjId> projected;
+
+	private int objectcount;
+	private int skippedcount;
+	private int propertycount;
+	private int associationcount;
+	private int reachedcount;
+	private int droppedcount;
+
+	public ModelTraversal(ModelSource source) {
+		this.source = source;
+		this.catalog = source.getCatalog();
+	}
+
+	public void addSink(ModelSink sink) {
+		sinks.add(sink);
+	}
+
+	public void setFilter(ObjectFilter filter) {
+		this.filter = filter;
+	}
+
+	/*
+	 * Reads only the given objects instead of all objects of the model.
+	 */
+	public void setObjIds(List<ObjId> objIds) {
+		this.objIds = objIds;
+	}
+
+	/*
+	 * Objects up to and including the given one have been processed by an
+	 * earlier run and are not read again.
+	 */
+	public void setResumeAfter(ObjId objId) {
+		this.resumeAfter = objId;
+	}
+
+	/*
+	 * Restricts the traversal to the projection. It is not combined with
+	 * resuming an earlier run.
+	 */
+	public void setProjection(Projection projection) {
+		this.projection = projection;
+	}
+
+	public void run() throws ExtractionException {
+		for (ModelSink sink : sinks) {
+			sink.begin(source);
+		}
+		List<ObjId> list = getObjIdsToRead();
+		for (int i = 0; i < list.size(); i++) {
+			ObjectRecord record = read(list.get(i));
+			if (record == null) {
+				continue;
+			}
+			for (ModelSink sink : sinks) {
+				sink.object(record);
+			}
+		}
+		for (ModelSink sink : sinks) {
+			sink.end();
+		}
+	}
+
+	/*
+	 * Objects of the model which are read, those after the resume point when
+	 * one is set. With a projection of object types these are the roots, and
+	 * the list grows while the objects reached from them are read.
+	 */
+	protected List<ObjId> getObjIdsToRead() throws ExtractionException {
+		if (projection != null && projection.hasObjTypes()) {
+			depths = new HashMap<Long, Integer>();
+			projected = new ArrayList<ObjId>();
+			for (ObjTypeCode objTypeCode : projection.getObjTypes()) {
+				for (ObjId objId : source.getObjIds(objTypeCode)) {
+					if (depths.put(objId.getValue(), 0) == null) {
+						projected.add(objId);
+					}
+				}
+			}
+			return projected;
+		}
+		List<ObjId> list = objIds != null ? objIds : source.getObjIds();
+		if (resumeAfter == null) {
+			return list;
+		}
+		long value = resumeAfter.getValue();
+		for (int i = 0; i < list.size(); i++) {
+			if (list.get(i).getValue() == value) {
+				resumeIndex = i + 1;
+				return list.subList(resumeIndex, list.size());
+			}
+		}
+		throw new ExtractionException("Cannot resume after object " + value + ", it is not in the model.");
+	}
+
+	/*
+	 * Reads single object with its properties and associations. Returns null
+	 * when the object is not accepted by the filter.
+	 */
+	public ObjectRecord read(ObjId objId) throws ExtractionException {
+		ModelObject object = source.getObject(objId);
+		ObjTypeEntry entry = catalog.get(object.getObjTypeCode());
+		if (filter != null && !filter.accept(object, entry)) {
+			skippedcount++;
+			return null;
+		}
+		ObjectRecord record = new ObjectRecord(objId.getValue(), entry);
+		boolean[] prpMask = projection == null ? null : projection.getPropertyMask(entry);
+		boolean[] ascMask = projection == null ? null : projection.getAssociationMask(entry);
+		int depth = depths == null ? 0 : depths.get(objId.getValue());
+		for (int i = 0; i < entry.properties.length; i++) {
+			if (prpMask != null && !prpMask[i]) {
+				continue;
+			}
+			PrpTypeCode prp = entry.properties[i];
+			PrpFormat format = entry.formats[i];
+			if (format == PrpFormat.TEXT || format == PrpFormat.LOADNAME || format == PrpFormat.NAME) {
+				String textValue = object.getTextProperty(prp);
+				if (textValue != entry.defaultTexts[i] && textValue.length() != 0) {
+					record.addProperty(i, textValue);
+				}
+			} else if (format == PrpFormat.CHAR) {
+				char charValue = object.getCharProperty(prp);
+				if (charValue != entry.defaultChars[i]) {
+					record.addProperty(i, String.valueOf(charValue));
+				}
+			} else if (format == PrpFormat.INT || format == PrpFormat.SINT) {
+				int intValue = object.getIntProperty(prp);
+				if (intValue != entry.defaultInts[i]) {
+					record.addProperty(i, String.valueOf(intValue));
+				}
+			}
+		}
+		for (int i = 0; i < entry.associations.length; i++) {
+			if (ascMask != null && !ascMask[i]) {
+				continue;
+			}
+			if (entry.oneToMany[i]) {
+				List<ObjId> list = object.followAssociationMany(entry.associations[i]);
+				int seqno = 0;
+				for (ObjId o : list) {
+					if (reach(o, depth)) {
+						record.addAssociation(i, o.getValue(), seqno);
+					}
+					seqno = seqno + 1;
+				}
+			} else {
+				ObjId one = object.followAssociationOne(entry.associations[i]);
+				if (one != null && reach(one, depth)) {
+					record.addAssociation(i, one.getValue(), 0);
+				}
+			}
+		}
+		objectcount++;
+		propertycount += record.getPropertyCount();
+		associationcount += record.getAssociationCount();
+		return record;
+	}
+
+	/*
+	 * Returns true when the target of an association read from an object at
+	 * the given depth belongs to the projection, adding it to the objects to
+	 * read while the closure allows. Objects are read breadth first, so all
+	 * objects within the closure are known before those at its boundary are
+	 * read, and associations leaving the projection are dropped.
+	 */
+	private boolean reach(ObjId target, int depth) {
+		if (depths == null) {
+			return true;
+		}
+		if (depths.containsKey(target.getValue())) {
+			return true;
+		}
+		if (depth < projection.getClosure()) {
+			depths.put(target.getValue(), depth + 1);
+			projected.add(target);
+			reachedcount++;
+			return true;
+		}
+		droppedcount++;
+		return false;
+	}
+
+	public ModelSource getSource() {
+		return source;
+	}
+
+	protected List<ModelSink> getSinks() {
+		return sinks;
+	}
+
+	public int getObjectCount() {
+		return objectcount;
+	}
+
+	/*
+	 * Number of objects passed over because they were processed by an earlier
+	 * run.
+	 */
+	public int getResumeIndex() {
+		return resumeIndex;
+	}
+
+	/*
+	 * Number of objects not accepted by the filter.
+	 */
+	public int getSkippedCount() {
+		return skippedcount;
+	}
+
+	/*
+	 * Number of objects added to the projection through the association
+	 * closure.
+	 */
+	public int getReachedCount() {
+		return reachedcount;
+	}
+
+	/*
+	 * Number of associations not written because they lead outside the
+	 * projection.
+	 */
+	public int getDroppedCount() {
+		return droppedcount;
+	}
+
+	public int getPropertyCount() {
+		return propertycount;
+	}
+
+	public int getAssociationCount() {
+		return associationcount;
+	}
+
+}
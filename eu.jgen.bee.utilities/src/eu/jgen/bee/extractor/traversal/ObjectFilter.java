@@ -0,0 +1,31 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.traversal;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelObject;
+import eu.jgen.bee.extractor.schema.ObjTypeEntry;
+
+/*
+ * Decides whether an object is read and passed to the sinks. It is asked
+ * before properties and associations of the object are read, so rejected
+ * objects cost no further access to the model.
+ */
+public interface ObjectFilter {
+
+	boolean accept(ModelObject object, ObjTypeEntry entry) throws ExtractionException;
+
+}
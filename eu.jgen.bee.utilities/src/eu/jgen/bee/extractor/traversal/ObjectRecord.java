@@ -0,0 +1,163 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.traversal;
+
+import java.util.Arrays;
+
+import com.ca.gen.jmmi.util.PrpFormat;
+
+import eu.jgen.bee.extractor.schema.ObjTypeEntry;
+
+/*
+ * Everything extracted for one object: the object itself, its properties having
+ * other than default values and its associations. Properties and associations
+ * refer to their position in the catalog entry of the object type, so the
+ * schema information is not copied for each object.
+ */
+public final class ObjectRecord {
+
+	private final long id;
+	private final ObjTypeEntry entry;
+	private String name;
+
+	private int propertycount;
+	private final int[] propertyIndexes;
+	private final String[] values;
+
+	private int associationcount;
+	private int[] associationIndexes = new int[4];
+	private long[] targets = new long[4];
+	private int[] seqnos = new int[4];
+
+	public ObjectRecord(long id, ObjTypeEntry entry) {
+		this.id = id;
+		this.entry = entry;
+		this.propertyIndexes = new int[entry.properties.length];
+		this.values = new String[entry.properties.length];
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public ObjTypeEntry getEntry() {
+		return entry;
+	}
+
+	public short getObjType() {
+		return entry.code;
+	}
+
+	public String getObjMnemonic() {
+		return entry.mnemonic;
+	}
+
+	/*
+	 * Value of the last property of the NAME format, or null.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public void addProperty(int index, String value) {
+		propertyIndexes[propertycount] = index;
+		values[propertycount] = value;
+		propertycount++;
+		if (entry.formats[index] == PrpFormat.NAME) {
+			name = value;
+		}
+	}
+
+	public int getPropertyCount() {
+		return propertycount;
+	}
+
+	public int getPropertyIndex(int i) {
+		return propertyIndexes[i];
+	}
+
+	public short getPrpType(int i) {
+		return entry.prpCodes[propertyIndexes[i]];
+	}
+
+	public String getPrpMnemonic(int i) {
+		return entry.prpMnemonics[propertyIndexes[i]];
+	}
+
+	public PrpFormat getFormat(int i) {
+		return entry.formats[propertyIndexes[i]];
+	}
+
+	public String getValue(int i) {
+		return values[i];
+	}
+
+	public void addAssociation(int index, long target, int seqno) {
+		if (associationcount == targets.length) {
+			int size = associationcount * 2;
+			associationIndexes = Arrays.copyOf(associationIndexes, size);
+			targets = Arrays.copyOf(targets, size);
+			seqnos = Arrays.copyOf(seqnos, size);
+		}
+		associationIndexes[associationcount] = index;
+		targets[associationcount] = target;
+		seqnos[associationcount] = seqno;
+		associationcount++;
+	}
+
+	public int getAssociationCount() {
+		return associationcount;
+	}
+
+	public int getAssociationIndex(int i) {
+		return associationIndexes[i];
+	}
+
+	public short getAscType(int i) {
+		return entry.ascCodes[associationIndexes[i]];
+	}
+
+	public String getAscMnemonic(int i) {
+		return entry.ascMnemonics[associationIndexes[i]];
+	}
+
+	public short getInverseAscType(int i) {
+		return entry.inverseCodes[associationIndexes[i]];
+	}
+
+	/*
+	 * Cardinality, M for one to many associations and 1 for the others.
+	 */
+	public String getCard(int i) {
+		return entry.oneToMany[associationIndexes[i]] ? "M" : "1";
+	}
+
+	/*
+	 * Direction, F for forward associations and B for backward.
+	 */
+	public String getDirection(int i) {
+		return entry.forward[associationIndexes[i]] ? "F" : "B";
+	}
+
+	public long getTarget(int i) {
+		return targets[i];
+	}
+
+	public int getSeqno(int i) {
+		return seqnos[i];
+	}
+
+}
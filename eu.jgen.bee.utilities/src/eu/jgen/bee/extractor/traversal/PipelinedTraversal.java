@@ -0,0 +1,226 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.traversal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.ca.gen.jmmi.ids.ObjId;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelSource;
+
+/*
+ * Traversal separating reading of the model from writing of the outputs. The
+ * thread calling run() is the only one reading the model, which keeps JMMI used
+ * from the thread that opened it. Records are passed in batches through a
+ * bounded queue to a writer thread of each sink, so every sink still receives
+ * the objects in the order of the model.
+ */
+public class PipelinedTraversal extends ModelTraversal {
+
+	private static final List<ObjectRecord> END = new ArrayList<ObjectRecord>(0);
+
+	private final int batchSize;
+	private final int queueDepth;
+	private final List<Writer> writers = new ArrayList<Writer>();
+
+	private long readerStall;
+	private int batchcount;
+
+	public PipelinedTraversal(ModelSource source, int batchSize, int queueDepth) {
+		super(source);
+		this.batchSize = Math.max(1, batchSize);
+		this.queueDepth = Math.max(1, queueDepth);
+	}
+
+	public void run() throws ExtractionException {
+		writers.clear();
+		for (ModelSink sink : getSinks()) {
+			Writer writer = new Writer(sink, new ArrayBlockingQueue<List<ObjectRecord>>(queueDepth));
+			writers.add(writer);
+			writer.start();
+		}
+		boolean completed = false;
+		try {
+			List<ObjectRecord> batch = new ArrayList<ObjectRecord>(batchSize);
+			List<ObjId> list = getObjIdsToRead();
+			for (int i = 0; i < list.size(); i++) {
+				ObjectRecord record = read(list.get(i));
+				if (record == null) {
+					continue;
+				}
+				batch.add(record);
+				if (batch.size() == batchSize) {
+					publish(batch);
+					batch = new ArrayList<ObjectRecord>(batchSize);
+				}
+			}
+			if (!batch.isEmpty()) {
+				publish(batch);
+			}
+			publish(END);
+			completed = true;
+		} finally {
+			if (!completed) {
+				for (Writer writer : writers) {
+					writer.interrupt();
+				}
+			}
+			join();
+		}
+		for (Writer writer : writers) {
+			if (writer.failure != null) {
+				throw writer.failure;
+			}
+		}
+	}
+
+	/*
+	 * Puts the batch to the queue of each writer. Waiting for space in a queue
+	 * is counted as reader stall. A failed writer stops the reading at the next
+	 * batch rather than when its queue is full.
+	 */
+	private void publish(List<ObjectRecord> batch) throws ExtractionException {
+		if (batch != END) {
+			batchcount++;
+		}
+		for (Writer writer : writers) {
+			writer.sampleDepth();
+			if (writer.failure != null) {
+				throw writer.failure;
+			}
+			long start = System.nanoTime();
+			try {
+				while (!writer.queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+					if (writer.failure != null) {
+						throw writer.failure;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ExtractionException("Extraction has been interrupted.", e);
+			} finally {
+				readerStall += System.nanoTime() - start;
+			}
+		}
+	}
+
+	private void join() throws ExtractionException {
+		for (Writer writer : writers) {
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ExtractionException("Extraction has been interrupted.", e);
+			}
+		}
+	}
+
+	/*
+	 * Time the reader waited for space in the queues, in nanoseconds.
+	 */
+	public long getReaderStall() {
+		return readerStall;
+	}
+
+	public int getBatchCount() {
+		return batchcount;
+	}
+
+	public String report() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("Reader: " + batchcount + " batches of up to " + batchSize + " objects, stalled "
+				+ (readerStall / 1000000) + " ms");
+		for (Writer writer : writers) {
+			builder.append("\n" + writer.report());
+		}
+		return builder.toString();
+	}
+
+	/*
+	 * Thread writing batches from its queue to one sink.
+	 */
+	private class Writer extends Thread {
+
+		private final ModelSink sink;
+		private final BlockingQueue<List<ObjectRecord>> queue;
+		private volatile ExtractionException failure;
+
+		/*
+		 * Time the writer waited for a batch, in nanoseconds.
+		 */
+		private long stall;
+		private int maxDepth;
+		private long sumDepth;
+		private int samples;
+
+		Writer(ModelSink sink, BlockingQueue<List<ObjectRecord>> queue) {
+			super("Bee Gen Writer " + sink.getClass().getSimpleName());
+			this.sink = sink;
+			this.queue = queue;
+			setDaemon(true);
+		}
+
+		public void run() {
+			try {
+				sink.begin(getSource());
+				while (true) {
+					long start = System.nanoTime();
+					List<ObjectRecord> batch = queue.take();
+					stall += System.nanoTime() - start;
+					if (batch == END) {
+						break;
+					}
+					for (ObjectRecord record : batch) {
+						sink.object(record);
+					}
+				}
+				sink.end();
+			} catch (ExtractionException e) {
+				failure = e;
+			} catch (InterruptedException e) {
+				failure = new ExtractionException("Writer has been interrupted.", e);
+			} catch (RuntimeException e) {
+				failure = new ExtractionException("Writer failed: " + e.getMessage(), e);
+			}
+		}
+
+		/*
+		 * Called by the reader before each batch is queued.
+		 */
+		void sampleDepth() {
+			int depth = queue.size();
+			if (depth > maxDepth) {
+				maxDepth = depth;
+			}
+			sumDepth += depth;
+			samples++;
+		}
+
+		String report() {
+			long average = samples == 0 ? 0 : sumDepth * 100 / samples;
+			return sink.getClass().getSimpleName() + ": queue depth max " + maxDepth + " of " + queueDepth
+					+ ", average " + (average / 100) + "." + String.format("%02d", average % 100) + ", stalled "
+					+ (stall / 1000000) + " ms";
+		}
+
+	}
+
+}
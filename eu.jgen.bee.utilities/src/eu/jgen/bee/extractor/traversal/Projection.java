@@ -0,0 +1,213 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.traversal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+
+import eu.jgen.bee.extractor.ExtractorOptions;
+import eu.jgen.bee.extractor.schema.ObjTypeEntry;
+
+/*
+ * Part of the model read by a traversal. Objects of the listed types are the
+ * roots, and objects reached from them through the listed associations are
+ * added up to the given number of steps. Only the listed properties and
+ * associations are read, the others are never requested from the model. An
+ * empty list stands for everything.
+ */
+public final class Projection {
+
+	public static final String[] OPTIONS = { "objTypes", "prpTypes", "ascTypes", "closure" };
+
+	private static final int TYPE_COUNT = ObjTypeCode.values().length;
+
+	private final Set<ObjTypeCode> objTypes;
+	private final Set<PrpTypeCode> properties;
+	private final Set<AscTypeCode> associations;
+	private final int closure;
+
+	/*
+	 * Masks of the properties and associations of each object type, indexed by
+	 * the ordinal of the object type and filled when the type is first seen.
+	 */
+	private final boolean[][] prpMasks = new boolean[TYPE_COUNT][];
+	private final boolean[][] ascMasks = new boolean[TYPE_COUNT][];
+
+	public Projection(Set<ObjTypeCode> objTypes, Set<PrpTypeCode> properties, Set<AscTypeCode> associations,
+			int closure) {
+		if (closure < 0) {
+			throw new IllegalArgumentException("Association closure cannot be negative.");
+		}
+		this.objTypes = Collections.unmodifiableSet(copy(objTypes, ObjTypeCode.class));
+		this.properties = Collections.unmodifiableSet(copy(properties, PrpTypeCode.class));
+		this.associations = Collections.unmodifiableSet(copy(associations, AscTypeCode.class));
+		this.closure = closure;
+	}
+
+	/*
+	 * Projection given by the options -objTypes, -prpTypes, -ascTypes and
+	 * -closure, or null when none of them is used.
+	 */
+	public static Projection fromOptions(ExtractorOptions options) {
+		if (!options.has("objTypes") && !options.has("prpTypes") && !options.has("ascTypes")
+				&& !options.has("closure")) {
+			return null;
+		}
+		return parse(options.getString("objTypes", ""), options.getString("prpTypes", ""),
+				options.getString("ascTypes", ""), options.getInt("closure", 0, 0));
+	}
+
+	/*
+	 * Projection from lists of mnemonics separated by commas.
+	 */
+	public static Projection parse(String objTypes, String properties, String associations, int closure) {
+		return new Projection(parse(objTypes, ObjTypeCode.class, "object type"),
+				parse(properties, PrpTypeCode.class, "property"),
+				parse(associations, AscTypeCode.class, "association"), closure);
+	}
+
+	private static <E extends Enum<E>> Set<E> parse(String list, Class<E> type, String kind) {
+		Set<E> result = EnumSet.noneOf(type);
+		for (String mnemonic : list.split(",")) {
+			mnemonic = mnemonic.trim().toUpperCase();
+			if (mnemonic.length() == 0) {
+				continue;
+			}
+			E value = find(type, mnemonic);
+			if (value == null) {
+				throw new IllegalArgumentException("Unknown " + kind + " '" + mnemonic + "'.");
+			}
+			result.add(value);
+		}
+		return result;
+	}
+
+	private static <E extends Enum<E>> E find(Class<E> type, String mnemonic) {
+		for (E value : type.getEnumConstants()) {
+			if (value.name().equals(mnemonic) && !mnemonic.equals("INVALID")) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+	private static <E extends Enum<E>> Set<E> copy(Set<E> set, Class<E> type) {
+		if (set == null || set.isEmpty()) {
+			return EnumSet.noneOf(type);
+		}
+		return EnumSet.copyOf(set);
+	}
+
+	/*
+	 * True when the objects read are restricted to the roots and the objects
+	 * reached from them.
+	 */
+	public boolean hasObjTypes() {
+		return !objTypes.isEmpty();
+	}
+
+	public Set<ObjTypeCode> getObjTypes() {
+		return objTypes;
+	}
+
+	public Set<PrpTypeCode> getProperties() {
+		return properties;
+	}
+
+	public Set<AscTypeCode> getAssociations() {
+		return associations;
+	}
+
+	/*
+	 * Number of association steps followed from the roots.
+	 */
+	public int getClosure() {
+		return closure;
+	}
+
+	/*
+	 * Properties of the object type which are read, or null when all of them
+	 * are read.
+	 */
+	public boolean[] getPropertyMask(ObjTypeEntry entry) {
+		if (properties.isEmpty()) {
+			return null;
+		}
+		int ordinal = entry.objTypeCode.ordinal();
+		boolean[] mask = prpMasks[ordinal];
+		if (mask == null) {
+			mask = new boolean[entry.properties.length];
+			for (int i = 0; i < mask.length; i++) {
+				mask[i] = properties.contains(entry.properties[i]);
+			}
+			prpMasks[ordinal] = mask;
+		}
+		return mask;
+	}
+
+	/*
+	 * Associations of the object type which are read, or null when all of them
+	 * are read.
+	 */
+	public boolean[] getAssociationMask(ObjTypeEntry entry) {
+		if (associations.isEmpty()) {
+			return null;
+		}
+		int ordinal = entry.objTypeCode.ordinal();
+		boolean[] mask = ascMasks[ordinal];
+		if (mask == null) {
+			mask = new boolean[entry.associations.length];
+			for (int i = 0; i < mask.length; i++) {
+				mask[i] = associations.contains(entry.associations[i]);
+			}
+			ascMasks[ordinal] = mask;
+		}
+		return mask;
+	}
+
+	public String toString() {
+		List<String> parts = new ArrayList<String>();
+		parts.add("object types " + describe(objTypes));
+		parts.add("properties " + describe(properties));
+		parts.add("associations " + describe(associations));
+		if (!objTypes.isEmpty()) {
+			parts.add("closure " + closure);
+		}
+		return String.join(", ", parts);
+	}
+
+	private static String describe(Set<? extends Enum<?>> set) {
+		if (set.isEmpty()) {
+			return "all";
+		}
+		StringBuilder builder = new StringBuilder();
+		for (Enum<?> value : set) {
+			if (builder.length() > 0) {
+				builder.append(",");
+			}
+			builder.append(value.name());
+		}
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Runs the batch over a folder of generated model directories with
+ * StubExtractor in place of the real extractors. Largest models are started
+ * first, no more extractions than workers run at once, a crashed or hanging
+ * extraction succeeds when started again, and an extraction which always
+ * fails is given up after the retries.
+ */
+public class BatchRunnerTest {
+
+	private static final int WORKERS = 2;
+	private static final int RETRIES = 2;
+	private static final long TIMEOUT = 3000;
+
+	private static final String[][] MODELS = { { "sales/orders.ief", "80" }, { "sales/billing.ief", "30" },
+			{ "hr/payroll.ief", "70" }, { "finance.ief", "60" }, { "core/tools.ief", "10" },
+			{ "core/crash.ief", "20", "stub.crash-once" }, { "core/hang.ief", "12", "stub.hang-once" },
+			{ "core/broken.ief", "6", "stub.fail" } };
+
+	private File root;
+
+	@BeforeEach
+	public void createModels() throws IOException {
+		root = File.createTempFile("beegen", ".batch");
+		root.delete();
+		for (String[] model : MODELS) {
+			File directory = new File(root, model[0]);
+			directory.mkdirs();
+			FileOutputStream stream = new FileOutputStream(new File(directory, "model.dat"));
+			stream.write(new byte[Integer.parseInt(model[1]) * 1024]);
+			stream.close();
+			if (model.length > 2) {
+				new File(directory, model[2]).createNewFile();
+			}
+		}
+		new File(root, "documents").mkdirs();
+	}
+
+	@AfterEach
+	public void deleteModels() {
+		delete(root);
+	}
+
+	@Test
+	public void extractsAllModels() throws IOException, InterruptedException {
+		List<ModelJob> jobs = ModelJob.discover(root);
+		assertEquals(MODELS.length, jobs.size());
+		List<String> command = StubExtractor.command();
+		File output = new File(root, "bee-batch");
+		BatchRunner runner = new BatchRunner(command, Arrays.asList("-millisPerKB=1"), output, WORKERS, RETRIES,
+				TIMEOUT);
+		runner.run(jobs);
+
+		assertTrue(runner.getMaxRunning() <= WORKERS);
+		List<ModelJob> done = runner.getJobs();
+		for (int i = 1; i < done.size(); i++) {
+			assertTrue(done.get(i).getSize() <= done.get(i - 1).getSize());
+		}
+		for (ModelJob job : done) {
+			String name = job.getName();
+			if (name.equals("core/broken.ief")) {
+				assertEquals("FAILED", job.getStatus());
+				assertEquals(RETRIES + 1, job.getAttempts());
+			} else if (name.equals("core/crash.ief") || name.equals("core/hang.ief")) {
+				assertEquals("OK", job.getStatus(), name);
+				assertEquals(2, job.getAttempts(), name);
+			} else {
+				assertEquals("OK", job.getStatus(), name);
+				assertEquals(1, job.getAttempts(), name);
+			}
+		}
+		assertEquals(MODELS.length - 1, runner.getSucceededCount());
+		assertEquals(1, runner.getFailedCount());
+
+		File summary = new File(output, "summary.json");
+		runner.writeSummary(summary, root.getPath(), StubExtractor.class.getName());
+		InputStream stream = new FileInputStream(summary);
+		JsonObject json = Json.createReader(stream).readObject();
+		stream.close();
+		assertEquals(MODELS.length - 1, json.getInt("succeeded"));
+		assertEquals(1, json.getInt("failed"));
+		assertTrue(json.getJsonArray("results").getJsonObject(0).containsKey("counts"));
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.batch;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+
+import eu.jgen.bee.extractor.ExtractorOptions;
+
+/*
+ * Stands in for an extractor in tests of the batch extraction, without the CA
+ * Gen native libraries. It takes time proportional to the size of the model
+ * and writes a metrics report into the bee sub-folder. Marker files in the
+ * model directory change its behaviour:
+ *   stub.fail        the extraction always ends with exit code 1
+ *   stub.crash-once  the first extraction halts the JVM like a native crash
+ *   stub.hang-once   the first extraction does not end for a minute
+ *
+ * Arguments: pathModel [-millisPerKB=n (default 1)]
+ */
+public class StubExtractor {
+
+	/*
+	 * Command starting the stub in a new JVM. Its class path is made of the
+	 * locations of the stub, the extractors and javax.json, as the class path
+	 * of the running JVM may hold only a launcher.
+	 */
+	public static List<String> command() {
+		StringBuilder classPath = new StringBuilder();
+		for (Class<?> type : Arrays.asList(StubExtractor.class, ExtractorOptions.class, Json.class)) {
+			try {
+				String location = new File(type.getProtectionDomain().getCodeSource().getLocation().toURI())
+						.getPath();
+				classPath.append(classPath.length() == 0 ? "" : File.pathSeparator).append(location);
+			} catch (URISyntaxException e) {
+				throw new IllegalStateException("Location of " + type.getName() + " is not a file.", e);
+			}
+		}
+		return new ArrayList<String>(Arrays.asList(
+				System.getProperty("java.home") + File.separator + "bin" + File.separator + "java", "-cp",
+				classPath.toString(), StubExtractor.class.getName()));
+	}
+
+	private static final String BEE_FOLDER_NAME = "bee";
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		ExtractorOptions options = ExtractorOptions.parse(args);
+		options.check(new String[] { "millisPerKB" });
+		int millisPerKB = options.getInt("millisPerKB", 1, 0);
+		File model = new File(options.getModelPath());
+		File bee = new File(model, BEE_FOLDER_NAME);
+		bee.mkdir();
+		System.out.println("Stub extraction of '" + model.getPath() + "'");
+		if (new File(model, "stub.fail").exists()) {
+			System.out.println("Stub extraction failed.");
+			System.exit(1);
+		}
+		if (new File(model, "stub.crash-once").exists() && new File(bee, "stub.crashed").createNewFile()) {
+			System.out.println("Stub extraction crashes.");
+			Runtime.getRuntime().halt(134);
+		}
+		if (new File(model, "stub.hang-once").exists() && new File(bee, "stub.hung").createNewFile()) {
+			System.out.println("Stub extraction hangs.");
+			Thread.sleep(60000);
+		}
+		long files = 0;
+		long size = 0;
+		for (File file : model.listFiles()) {
+			if (file.isFile()) {
+				files++;
+				size += file.length();
+			}
+		}
+		Thread.sleep(size / 1024 * millisPerKB);
+		JsonGenerator generator = Json
+				.createGeneratorFactory(Collections.singletonMap(JsonGenerator.PRETTY_PRINTING, Boolean.TRUE))
+				.createGenerator(new FileOutputStream(new File(bee, "stub-metrics.json")));
+		generator.writeStartObject().write("tool", "stub").writeStartObject("counts").write("files", files)
+				.write("kilobytes", size / 1024).writeEnd().writeEnd();
+		generator.close();
+		System.out.println("Stub extraction completed.");
+	}
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.publish;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sqlite.SQLiteConfig;
+
+import eu.jgen.bee.extractor.metrics.ExtractionMetrics;
+
+/*
+ * Publishes small databases into generations of a bee folder. A reader which
+ * holds its connection open across publications keeps reading the database
+ * it opened, while the manifest names the new generation at once. Earlier
+ * generations are removed once they are closed, and an extraction which is
+ * not published leaves the published files as they were.
+ */
+public class StagingFolderTest {
+
+	private static final String TOOL = "sqlite";
+	private static final String DATABASE = "MODEL.db";
+
+	private File bee;
+	private ExtractionMetrics metrics;
+
+	@BeforeEach
+	public void createFolder() throws IOException {
+		bee = File.createTempFile("beegen", ".bee");
+		bee.delete();
+		bee.mkdirs();
+		metrics = new ExtractionMetrics(TOOL);
+		metrics.register("MODEL");
+	}
+
+	@AfterEach
+	public void deleteFolder() {
+		metrics.unregister();
+		delete(bee);
+	}
+
+	@Test
+	public void keepsConnectionOpenAcrossPublication() throws IOException, SQLException {
+		publish(1);
+		Connection held = open();
+		try {
+			assertEquals(1, count(held));
+
+			publish(2);
+			assertEquals(1, count(held));
+			assertEquals(2, count());
+			Manifest manifest = Manifest.read(Manifest.getFile(bee, TOOL));
+			assertEquals("sqlite-2", manifest.getGeneration());
+			assertTrue(manifest.verify(bee).isEmpty());
+
+			publish(3);
+			assertEquals(1, count(held));
+			assertEquals(3, count());
+		} finally {
+			held.close();
+		}
+		publish(4);
+		assertEquals(4, count());
+		assertArrayEquals(new String[] { "sqlite-3", "sqlite-4", "sqlite-manifest.json" }, list());
+	}
+
+	@Test
+	public void keepsPublicationWhenExtractionIsNotPublished() throws IOException, SQLException {
+		publish(1);
+		StagingFolder failed = new StagingFolder(bee, TOOL);
+		failed.prepare(false);
+		createDatabase(new File(failed.getFolder(), DATABASE), 5);
+		assertEquals(1, count());
+
+		StagingFolder resumed = new StagingFolder(bee, TOOL);
+		resumed.prepare(true);
+		assertEquals(failed.getFolder(), resumed.getFolder());
+		assertTrue(new File(resumed.getFolder(), DATABASE).isFile());
+
+		StagingFolder restarted = new StagingFolder(bee, TOOL);
+		restarted.prepare(false);
+		assertEquals(0, restarted.getFolder().list().length);
+		assertEquals(1, count());
+	}
+
+	@Test
+	public void replacesDatabasePublishedBeforeGenerations() throws IOException, SQLException {
+		createDatabase(new File(bee, DATABASE), 1);
+		assertEquals(1, count());
+		publish(2);
+		assertEquals(2, count());
+		assertFalse(new File(bee, DATABASE).exists());
+		assertArrayEquals(new String[] { "sqlite-1", "sqlite-manifest.json" }, list());
+	}
+
+	private void publish(int rows) throws IOException, SQLException {
+		StagingFolder staging = new StagingFolder(bee, TOOL);
+		staging.prepare(false);
+		createDatabase(new File(staging.getFolder(), DATABASE), rows);
+		staging.setRows("GenObjects", rows);
+		staging.publish(metrics);
+	}
+
+	private static void createDatabase(File file, int rows) throws SQLException {
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+		try {
+			Statement stmt = connection.createStatement();
+			stmt.executeUpdate("CREATE TABLE GenObjects (objid INTEGER);");
+			stmt.close();
+			PreparedStatement insert = connection.prepareStatement("INSERT INTO GenObjects VALUES (?);");
+			for (int i = 0; i < rows; i++) {
+				insert.setInt(1, i);
+				insert.executeUpdate();
+			}
+			insert.close();
+		} finally {
+			connection.close();
+		}
+	}
+
+	/*
+	 * Opens the published database read only.
+	 */
+	private Connection open() throws IOException, SQLException {
+		SQLiteConfig config = new SQLiteConfig();
+		config.setReadOnly(true);
+		return config.createConnection("jdbc:sqlite:" + Manifest.resolve(new File(bee, DATABASE)).getPath());
+	}
+
+	private int count() throws IOException, SQLException {
+		Connection connection = open();
+		try {
+			return count(connection);
+		} finally {
+			connection.close();
+		}
+	}
+
+	private static int count(Connection connection) throws SQLException {
+		Statement stmt = connection.createStatement();
+		ResultSet resultSet = stmt.executeQuery("SELECT COUNT(*) FROM GenObjects;");
+		resultSet.next();
+		int count = resultSet.getInt(1);
+		resultSet.close();
+		stmt.close();
+		return count;
+	}
+
+	private String[] list() {
+		String[] names = bee.list();
+		Arrays.sort(names);
+		return names;
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
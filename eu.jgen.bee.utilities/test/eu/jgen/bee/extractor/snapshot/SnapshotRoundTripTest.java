@@ -0,0 +1,125 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.snapshot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import eu.jgen.bee.extractor.BeeGenExtractor;
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.model.SyntheticModelSource;
+import eu.jgen.bee.extractor.traversal.ModelSink;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+import eu.jgen.bee.extractor.traversal.ObjectRecord;
+
+/*
+ * Writes a synthetic model into a snapshot and reads it back, every object,
+ * property and association must be found in the snapshot in the order of the
+ * traversal and with the same values.
+ */
+public class SnapshotRoundTripTest {
+
+	private static final int OBJECTS = 2000;
+	private static final long SEED = 20200101L;
+
+	private File file;
+
+	@BeforeEach
+	public void createFile() throws IOException {
+		file = File.createTempFile("beegen", ".snapshot");
+	}
+
+	@AfterEach
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void readsBackTheModel() throws ExtractionException, IOException {
+		ModelSource source = new SyntheticModelSource("ROUNDTRIP", OBJECTS, SEED);
+		final List<ObjectRecord> records = new ArrayList<ObjectRecord>();
+		ModelTraversal traversal = new ModelTraversal(source);
+		SnapshotModelSink sink = new SnapshotModelSink(file);
+		traversal.addSink(sink);
+		traversal.addSink(new ModelSink() {
+
+			public void begin(ModelSource source) {
+			}
+
+			public void object(ObjectRecord record) {
+				records.add(record);
+			}
+
+			public void end() {
+			}
+
+		});
+		traversal.run();
+
+		SnapshotReader reader = new SnapshotReader(file);
+		assertEquals(file.length(), sink.getLength());
+		assertEquals(BeeGenExtractor.VERSION, reader.getVersion());
+		assertEquals(BeeGenExtractor.SCHEMA, reader.getSchema());
+		assertEquals(source.getCatalog().getSchemaLevel(), reader.getSchemaLevel());
+		assertEquals("ROUNDTRIP", reader.getModelName());
+		assertEquals(OBJECTS, records.size());
+		assertEquals(records.size(), reader.getObjectCount());
+		assertEquals(traversal.getPropertyCount(), reader.getPropertyCount());
+		assertEquals(traversal.getAssociationCount(), reader.getAssociationCount());
+		assertEquals(sink.getStringCount(), reader.getStringCount());
+		assertTrue(reader.getPropertyCount() > 0 && reader.getAssociationCount() > 0);
+
+		int property = 0;
+		int association = 0;
+		for (int object = 0; object < records.size(); object++) {
+			ObjectRecord record = records.get(object);
+			assertEquals(record.getId(), reader.getId(object));
+			assertEquals(record.getObjType(), reader.getObjType(object));
+			assertEquals(record.getObjMnemonic(), reader.getObjMnemonic(object));
+			assertEquals(record.getName(), reader.getName(object));
+			for (int i = 0; i < record.getPropertyCount(); i++, property++) {
+				assertEquals(record.getId(), reader.getPropertyObjid(property));
+				assertEquals(record.getPrpType(i), reader.getPrpType(property));
+				assertEquals(record.getFormat(i), reader.getFormat(property));
+				assertEquals(record.getPrpMnemonic(i), reader.getPrpMnemonic(property));
+				assertEquals(record.getValue(i), reader.getValue(property));
+			}
+			for (int i = 0; i < record.getAssociationCount(); i++, association++) {
+				assertEquals(record.getId(), reader.getFrom(association));
+				assertEquals(record.getAscType(i), reader.getAscType(association));
+				assertEquals(record.getTarget(i), reader.getTo(association));
+				assertEquals(record.getSeqno(i), reader.getSeqno(association));
+				assertEquals(record.getInverseAscType(i), reader.getInverseAscType(association));
+				assertEquals(record.getAscMnemonic(i), reader.getAscMnemonic(association));
+				assertEquals(record.getCard(i), reader.getCard(association));
+				assertEquals(record.getDirection(i), reader.getDirection(association));
+			}
+		}
+		assertEquals(reader.getPropertyCount(), property);
+		assertEquals(reader.getAssociationCount(), association);
+	}
+
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.sqlite;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.ca.gen.jmmi.schema.AscTypeCode;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.MemoryModelSource;
+import eu.jgen.bee.extractor.model.MemoryObject;
+import eu.jgen.bee.extractor.schema.ObjTypeEntry;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+import eu.jgen.bee.extractor.schema.SyntheticSchemaSource;
+import eu.jgen.bee.extractor.traversal.ModelTraversal;
+
+/*
+ * Updates a Bee Gen Model stored from one in-memory model with a later one in
+ * the way the incremental extraction does, and compares the tables with a
+ * full load of the later model. Only object A changes its modification stamp,
+ * while the objects at the other end of its old and new association keep
+ * theirs.
+ */
+public class IncrementalUpdateTest {
+
+	private static final long A = 1001;
+	private static final long B = 1002;
+	private static final long C = 1003;
+	private static final long D = 1004;
+
+	private final SchemaCatalog catalog = new SchemaCatalog(new SyntheticSchemaSource());
+	private ObjTypeCode objType;
+	private AscTypeCode ascType;
+	private Connection updated;
+	private Connection expected;
+
+	@BeforeEach
+	public void openDatabases() throws SQLException {
+		for (ObjTypeCode code : ObjTypeCode.values()) {
+			if (code == ObjTypeCode.INVALID) {
+				continue;
+			}
+			ObjTypeEntry entry = catalog.get(code);
+			for (int i = 0; i < entry.associations.length; i++) {
+				if (entry.oneToMany[i] && objType == null) {
+					objType = code;
+					ascType = entry.associations[i];
+				}
+			}
+		}
+		updated = open();
+		expected = open();
+	}
+
+	@AfterEach
+	public void closeDatabases() throws SQLException {
+		updated.close();
+		expected.close();
+	}
+
+	@Test
+	public void reloadsBothEndsOfChangedAssociations() throws ExtractionException, SQLException {
+		MemoryModelSource older = new MemoryModelSource("OLDER", catalog);
+		MemoryObject a = add(older, A, 1);
+		MemoryObject b = add(older, B, 1);
+		add(older, C, 1);
+		add(older, D, 1);
+		link(a, b);
+
+		MemoryModelSource newer = new MemoryModelSource("NEWER", catalog);
+		a = add(newer, A, 2);
+		add(newer, B, 1);
+		MemoryObject c = add(newer, C, 1);
+		add(newer, D, 1);
+		link(a, c);
+
+		load(updated, older);
+		IncrementalFilter filter = IncrementalFilter.load(updated);
+		ObjectRemover remover = new ObjectRemover(updated);
+		ModelTraversal traversal = new ModelTraversal(newer);
+		traversal.setFilter(filter);
+		traversal.addSink(sink(updated, remover));
+		traversal.run();
+		assertEquals(1, filter.getChangedCount());
+		assertEquals(3, filter.getUnchangedCount());
+
+		traversal = new ModelTraversal(newer);
+		traversal.setObjIds(remover.getNeighbours(filter.getVanished()));
+		traversal.addSink(sink(updated, remover));
+		traversal.run();
+		assertEquals(2, traversal.getObjectCount());
+		remover.removeAll(filter.getVanished());
+		remover.close();
+
+		load(expected, newer);
+		assertEquals(rows(expected, "GenAssociations", "fromObjid, ascType, seqno"),
+				rows(updated, "GenAssociations", "fromObjid, ascType, seqno"));
+		assertEquals(rows(expected, "GenProperties", "objid, prpType"),
+				rows(updated, "GenProperties", "objid, prpType"));
+		assertEquals(rows(expected, "GenObjects", "id"), rows(updated, "GenObjects", "id"));
+	}
+
+	private MemoryObject add(MemoryModelSource model, long id, int time) {
+		MemoryObject object = model.addObject(id, objType);
+		object.setTextProperty(PrpTypeCode.NAME, "OBJECT_" + id);
+		object.setIntProperty(PrpTypeCode.MODDATE, 20200101);
+		object.setIntProperty(PrpTypeCode.MODTIME, time);
+		return object;
+	}
+
+	/*
+	 * Associates both objects with each other, as CA Gen keeps both ends.
+	 */
+	private void link(MemoryObject first, MemoryObject second) {
+		first.associate(ascType, second.getId());
+		second.associate(ascType, first.getId());
+	}
+
+	private static Connection open() throws SQLException {
+		Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+		Statement stmt = connection.createStatement();
+		ModelSchema.createTables(stmt);
+		stmt.close();
+		return connection;
+	}
+
+	private static SQLiteModelSink sink(Connection connection, ObjectRemover remover) throws SQLException {
+		SQLiteModelSink sink = new SQLiteModelSink(
+				new BulkInserter(connection, "GenObjects", new String[] { "id", "objType", "objMnemonic", "name" }, 100,
+						1),
+				new BulkInserter(connection, "GenProperties",
+						new String[] { "objid", "prpType", "mnemonic", "format", "value" }, 100, 1),
+				new BulkInserter(connection, "GenAssociations", new String[] { "fromObjid", "ascType", "toObjid",
+						"inverseAscType", "ascMnemonic", "card", "direction", "seqno" }, 100, 1));
+		sink.setRemover(remover);
+		return sink;
+	}
+
+	private static void load(Connection connection, MemoryModelSource model) throws ExtractionException, SQLException {
+		ModelTraversal traversal = new ModelTraversal(model);
+		traversal.addSink(sink(connection, null));
+		traversal.run();
+	}
+
+	private static List<String> rows(Connection connection, String table, String order) throws SQLException {
+		List<String> rows = new ArrayList<String>();
+		Statement stmt = connection.createStatement();
+		ResultSet resultSet = stmt.executeQuery("SELECT * FROM " + table + " ORDER BY " + order + ";");
+		int columns = resultSet.getMetaData().getColumnCount();
+		while (resultSet.next()) {
+			StringBuilder row = new StringBuilder();
+			for (int i = 1; i <= columns; i++) {
+				row.append(i == 1 ? "" : " ").append(resultSet.getString(i));
+			}
+			rows.add(row.toString());
+		}
+		resultSet.close();
+		stmt.close();
+		return rows;
+	}
+
+}
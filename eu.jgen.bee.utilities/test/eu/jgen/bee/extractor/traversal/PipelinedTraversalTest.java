@@ -0,0 +1,137 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.traversal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import com.ca.gen.jmmi.ids.ObjId;
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.model.MemoryModelSource;
+import eu.jgen.bee.extractor.model.ModelObject;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.schema.SchemaCatalog;
+
+/*
+ * Pipelined traversal of a synthetic in-memory model.
+ */
+public class PipelinedTraversalTest {
+
+	private static final int OBJECTS = 2000;
+	private static final long SEED = 2020;
+
+	@Test
+	public void deliversAllObjectsInOrder() throws ExtractionException {
+		MemoryModelSource model = MemoryModelSource.generate("PIPELINE", OBJECTS, SEED);
+		final List<Long> ids = new ArrayList<Long>();
+		PipelinedTraversal traversal = new PipelinedTraversal(model, 7, 2);
+		traversal.addSink(new ModelSink() {
+
+			public void begin(ModelSource source) {
+			}
+
+			public void object(ObjectRecord record) {
+				ids.add(record.getId());
+			}
+
+			public void end() {
+			}
+
+		});
+		traversal.run();
+		assertEquals(OBJECTS, ids.size());
+		for (int i = 0; i < OBJECTS; i++) {
+			assertEquals(model.getObjIds().get(i).getValue(), ids.get(i).longValue());
+		}
+	}
+
+	/*
+	 * The writer fails on the first object, and the reader waits for it
+	 * before reading the second one. Reading must stop at the next batch,
+	 * long before the queue of the writer is full.
+	 */
+	@Test
+	public void stopsReadingWhenWriterFails() {
+		final MemoryModelSource model = MemoryModelSource.generate("PIPELINE", OBJECTS, SEED);
+		final CountDownLatch failed = new CountDownLatch(1);
+		ModelSource source = new ModelSource() {
+
+			public String getName() {
+				return model.getName();
+			}
+
+			public SchemaCatalog getCatalog() {
+				return model.getCatalog();
+			}
+
+			public List<ObjId> getObjIds() {
+				return model.getObjIds();
+			}
+
+			public List<ObjId> getObjIds(ObjTypeCode objTypeCode) {
+				return model.getObjIds(objTypeCode);
+			}
+
+			public ModelObject getObject(ObjId objId) throws ExtractionException {
+				if (objId.equals(model.getObjIds().get(1))) {
+					try {
+						failed.await(5, TimeUnit.SECONDS);
+						Thread.sleep(200);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return model.getObject(objId);
+			}
+
+		};
+		final PipelinedTraversal traversal = new PipelinedTraversal(source, 1, OBJECTS);
+		traversal.addSink(new ModelSink() {
+
+			public void begin(ModelSource source) {
+			}
+
+			public void object(ObjectRecord record) throws ExtractionException {
+				failed.countDown();
+				throw new ExtractionException("Sink failed.");
+			}
+
+			public void end() {
+			}
+
+		});
+		assertThrows(ExtractionException.class, new Executable() {
+
+			public void execute() throws ExtractionException {
+				traversal.run();
+			}
+
+		});
+		assertTrue(traversal.getObjectCount() <= 2, "read " + traversal.getObjectCount() + " objects");
+	}
+
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright Marek Stankiewicz, 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package eu.jgen.bee.extractor.traversal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import com.ca.gen.jmmi.schema.ObjTypeCode;
+import com.ca.gen.jmmi.schema.PrpTypeCode;
+
+import eu.jgen.bee.extractor.ExtractionException;
+import eu.jgen.bee.extractor.ExtractorOptions;
+import eu.jgen.bee.extractor.model.MemoryModelSource;
+import eu.jgen.bee.extractor.model.ModelSource;
+import eu.jgen.bee.extractor.schema.ObjTypeEntry;
+
+/*
+ * Extracts projections of a synthetic in-memory model and compares them with
+ * the full extraction of the same model.
+ */
+public class ProjectionTest {
+
+	private static final int OBJECTS = 5000;
+	private static final long SEED = 2020;
+
+	private static MemoryModelSource model;
+	private static Map<Long, ObjectRecord> full;
+
+	@BeforeAll
+	public static void extractModel() throws ExtractionException {
+		model = MemoryModelSource.generate("PROJECTION", OBJECTS, SEED);
+		full = extract(null);
+		assertFalse(model.getObjIds(ObjTypeCode.ACBLKBSD).isEmpty());
+	}
+
+	@Test
+	public void readsOnlyTheRoots() throws ExtractionException {
+		Map<Long, ObjectRecord> projected = extract(Projection.parse("ACBLKBSD", "", "", 0));
+		assertEquals(model.getObjIds(ObjTypeCode.ACBLKBSD).size(), projected.size());
+		for (ObjectRecord record : projected.values()) {
+			assertEquals(ObjTypeCode.ACBLKBSD, record.getEntry().objTypeCode);
+			assertEquals(full.get(record.getId()).getPropertyCount(), record.getPropertyCount());
+			assertTargetsProjected(record, projected);
+		}
+	}
+
+	@Test
+	public void readsOnlyTheListedProperties() throws ExtractionException {
+		Map<Long, ObjectRecord> projected = extract(Projection.parse("", "NAME", "", 0));
+		assertEquals(full.keySet(), projected.keySet());
+		int total = 0;
+		for (ObjectRecord record : projected.values()) {
+			ObjectRecord expected = full.get(record.getId());
+			int names = 0;
+			for (int i = 0; i < expected.getPropertyCount(); i++) {
+				if (expected.getEntry().properties[expected.getPropertyIndex(i)] == PrpTypeCode.NAME) {
+					assertEquals(expected.getValue(i), record.getValue(names++));
+				}
+			}
+			assertEquals(names, record.getPropertyCount());
+			assertEquals(expected.getAssociationCount(), record.getAssociationCount());
+			total += names;
+		}
+		assertTrue(total > 0);
+	}
+
+	@Test
+	public void followsTheListedAssociations() throws ExtractionException {
+		ObjTypeEntry root = model.getCatalog().get(ObjTypeCode.ACBLKBSD);
+		Projection projection = Projection.parse("ACBLKBSD", "", String.join(",", root.ascMnemonics), 1);
+		Map<Long, ObjectRecord> projected = extract(projection);
+		Set<Long> expected = new HashSet<Long>();
+		for (ObjectRecord record : full.values()) {
+			if (record.getEntry().objTypeCode == ObjTypeCode.ACBLKBSD) {
+				expected.add(record.getId());
+				for (int i = 0; i < record.getAssociationCount(); i++) {
+					expected.add(record.getTarget(i));
+				}
+			}
+		}
+		assertTrue(expected.size() > model.getObjIds(ObjTypeCode.ACBLKBSD).size());
+		assertEquals(expected, projected.keySet());
+		for (ObjectRecord record : projected.values()) {
+			for (int i = 0; i < record.getAssociationCount(); i++) {
+				assertTrue(projection.getAssociations()
+						.contains(record.getEntry().associations[record.getAssociationIndex(i)]));
+			}
+			assertTargetsProjected(record, projected);
+		}
+	}
+
+	@Test
+	public void isReadFromOptions() {
+		assertNull(Projection.fromOptions(ExtractorOptions.parse(new String[] { "model", "-pipeline" })));
+		Projection projection = Projection
+				.fromOptions(ExtractorOptions.parse(new String[] { "model", "-objTypes=acblkbsd", "-closure=2" }));
+		assertEquals(1, projection.getObjTypes().size());
+		assertTrue(projection.getObjTypes().contains(ObjTypeCode.ACBLKBSD));
+		assertTrue(projection.getProperties().isEmpty());
+		assertTrue(projection.getAssociations().isEmpty());
+		assertEquals(2, projection.getClosure());
+	}
+
+	@Test
+	public void rejectsUnknownTypes() {
+		assertThrows(IllegalArgumentException.class, new Executable() {
+
+			public void execute() {
+				Projection.parse("NOSUCHTYPE", "", "", 0);
+			}
+
+		});
+		assertThrows(IllegalArgumentException.class, new Executable() {
+
+			public void execute() {
+				Projection.parse("ACBLKBSD", "", "", -1);
+			}
+
+		});
+	}
+
+	private static void assertTargetsProjected(ObjectRecord record, Map<Long, ObjectRecord> projected) {
+		for (int i = 0; i < record.getAssociationCount(); i++) {
+			assertTrue(projected.containsKey(record.getTarget(i)));
+		}
+	}
+
+	private static Map<Long, ObjectRecord> extract(Projection projection) throws ExtractionException {
+		final Map<Long, ObjectRecord> records = new LinkedHashMap<Long, ObjectRecord>();
+		ModelTraversal traversal = new ModelTraversal(model);
+		if (projection != null) {
+			traversal.setProjection(projection);
+		}
+		traversal.addSink(new ModelSink() {
+
+			public void begin(ModelSource source) {
+			}
+
+			public void object(ObjectRecord record) {
+				records.put(record.getId(), record);
+			}
+
+			public void end() {
+			}
+
+		});
+		traversal.run();
+		return records;
+	}
+
+}